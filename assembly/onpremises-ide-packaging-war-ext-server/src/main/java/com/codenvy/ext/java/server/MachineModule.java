@@ -21,6 +21,7 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.multibindings.MapBinder;
 import com.google.inject.name.Names;
+import com.palominolabs.metrics.guice.InstrumentationModule;
 
 import org.eclipse.che.EventBusURLProvider;
 import org.eclipse.che.UserTokenProvider;
@@ -115,6 +116,7 @@ public class MachineModule extends AbstractModule {
 
         bind(com.codenvy.workspace.websocket.WorkspaceWebsocketConnectionListener.class);
         install(new org.eclipse.che.commons.schedule.executor.ScheduleModule());
+        install(new InstrumentationModule());
 
         bind(RequestTokenExtractor.class).to(com.codenvy.auth.sso.client.token.ChainedTokenExtractor.class);
 
@@ -44,7 +44,7 @@ import com.codenvy.plugin.github.factory.resolver.GithubFactoryParametersResolve
 import com.codenvy.plugin.gitlab.factory.resolver.GitlabFactoryParametersResolver;
 import com.codenvy.report.ReportModule;
 import com.codenvy.resource.api.ResourceModule;
-import com.codenvy.service.systemram.DockerBasedSystemRamInfoProvider;
+import com.codenvy.service.systemram.CachingSystemRamInfoProvider;
 import com.codenvy.service.systemram.SystemRamInfoProvider;
 import com.codenvy.service.systemram.SystemRamLimitMessageSender;
 import com.codenvy.service.systemram.SystemRamService;
@@ -238,7 +238,7 @@ public class OnPremisesIdeApiModule extends AbstractModule {
 
         bind(SystemRamService.class);
 
-        bind(SystemRamInfoProvider.class).to(DockerBasedSystemRamInfoProvider.class);
+        bind(SystemRamInfoProvider.class).to(CachingSystemRamInfoProvider.class);
 
         bind(AuditService.class);
         bind(AuditServicePermissionsFilter.class);
@@ -275,6 +275,13 @@ public class OnPremisesIdeApiModule extends AbstractModule {
         bindConstant().annotatedWith(Names.named("auth.sso.access_cookie_path")).to("/api/internal/sso/server");
         bindConstant().annotatedWith(Names.named("auth.sso.access_ticket_lifetime_seconds")).to(259200);
         bindConstant().annotatedWith(Names.named("auth.sso.bearer_ticket_lifetime_seconds")).to(3600);
+        bindConstant().annotatedWith(Names.named("auth.sso.ticket.idle_timeout_seconds")).to(259200);
+        bindConstant().annotatedWith(Names.named("auth.sso.ticket.max_size")).to(100000);
+        bindConstant().annotatedWith(Names.named("auth.sso.ticket.store_period_seconds")).to(60);
+        bindConstant().annotatedWith(Names.named("auth.sso.logout.pool_size")).to(10);
+        bindConstant().annotatedWith(Names.named("auth.sso.logout.queue_size")).to(10000);
+        bindConstant().annotatedWith(Names.named("auth.sso.logout.timeout_ms")).to(5000);
+        bindConstant().annotatedWith(Names.named("auth.sso.logout.max_attempts")).to(3);
         bindConstant().annotatedWith(Names.named("auth.sso.create_workspace_page_url")).to("/site/auth/create");
         bindConstant().annotatedWith(Names.named("auth.sso.login_page_url")).to("/site/login");
         bindConstant().annotatedWith(Names.named("che.auth.access_denied_error_page")).to("/site/login");
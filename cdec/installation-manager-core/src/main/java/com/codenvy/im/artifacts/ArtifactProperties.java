@@ -30,6 +30,7 @@ public class ArtifactProperties {
     public static final String SUBSCRIPTION_PROPERTY            = "subscription";
     public static final String MD5_PROPERTY                     = "md5";
     public static final String SIZE_PROPERTY                    = "size";
+    public static final String SHA256_PROPERTY                  = "sha256";
     public static final String DESCRIPTION_PROPERTY             = "description";
 
     public static final Set<String> PUBLIC_PROPERTIES = ImmutableSet.of(
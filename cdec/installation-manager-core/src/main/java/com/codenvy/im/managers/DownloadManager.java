@@ -26,6 +26,7 @@ import com.google.common.base.Function;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
@@ -36,6 +37,7 @@ import javax.inject.Named;
 import javax.ws.rs.core.MediaType;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -43,6 +45,7 @@ import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,7 +54,16 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -83,22 +95,31 @@ public class DownloadManager {
     private static final Logger LOG = Logger.getLogger(DownloadManager.class.getSimpleName());  // use java.util.logging instead of slf4j 
     // to prevent echo error message into the CLI console
 
-    private final String        updateEndpoint;
-    private final HttpTransport transport;
-    private final Path          downloadDir;
-    private final Set<Artifact> artifacts;
+    private final String                    updateEndpoint;
+    private final HttpTransport             transport;
+    private final Path                      downloadDir;
+    private final Set<Artifact>             artifacts;
+    private final int                       connections;
+    private final long                      chunkSize;
+    /** MD5 sums calculated while downloading, so that binaries aren't read once again to validate them */
+    private final ConcurrentMap<Path, String> downloadedMd5Sums;
 
     protected DownloadProgress downloadProgress;
 
     @Inject
     public DownloadManager(@Named("installation-manager.update_server_endpoint") String updateEndpoint,
                            @Named("installation-manager.download_dir") String downloadDir,
+                           @Named("installation-manager.download.connections") int connections,
+                           @Named("installation-manager.download.chunk_size_bytes") long chunkSize,
                            HttpTransport transport,
                            Set<Artifact> artifacts) throws IOException {
         this.updateEndpoint = updateEndpoint;
         this.transport = transport;
         this.downloadDir = Paths.get(downloadDir);
         this.artifacts = new Commons.ArtifactsSet(artifacts); // keep order
+        this.connections = Math.max(1, connections);
+        this.chunkSize = chunkSize;
+        this.downloadedMd5Sums = new ConcurrentHashMap<>();
         checkRWPermissions(this.downloadDir);
     }
 
@@ -186,29 +207,45 @@ public class DownloadManager {
 
             latcher.countDown();
 
-            for (Map.Entry<Artifact, Version> e : updatesToDownload.entrySet()) {
-                Artifact artToDownload = e.getKey();
-                Version verToDownload = e.getValue();
+            // artifacts are downloaded concurrently and a failure of any of them is handled as soon as it happens,
+            // successfully downloaded artifacts are reported in the order of artifacts
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, updatesToDownload.size()),
+                                                                    new ThreadFactoryBuilder().setNameFormat("download-artifact-%d")
+                                                                                              .setDaemon(true)
+                                                                                              .build());
+            try {
+                CompletionService<Path> completionService = new ExecutorCompletionService<>(executor);
+                Map<Future<Path>, Artifact> downloads = new HashMap<>();
+                for (Map.Entry<Artifact, Version> e : updatesToDownload.entrySet()) {
+                    downloads.put(completionService.submit(() -> {
+                        Path pathToBinaries = download(e.getKey(), e.getValue());
+                        validateMd5Sum(e.getKey(), e.getValue(), pathToBinaries);
+                        saveArtifactProperties(e.getKey(), e.getValue(), pathToBinaries);
+                        return pathToBinaries;
+                    }), e.getKey());
+                }
 
-                try {
-                    Path pathToBinaries = download(artToDownload, verToDownload);
-                    validateMd5Sum(artToDownload, verToDownload, pathToBinaries);
-
-                    DownloadArtifactInfo downloadArtifactDesc = new DownloadArtifactInfo(artToDownload,
-                                                                                         verToDownload,
-                                                                                         pathToBinaries,
-                                                                                         DownloadArtifactInfo.Status.DOWNLOADED);
-                    downloadProgress.addDownloadedArtifact(downloadArtifactDesc);
-                    saveArtifactProperties(artToDownload, verToDownload, pathToBinaries);
-                } catch (Exception exp) {
-                    LOG.log(Level.SEVERE, exp.getMessage(), exp);
-                    DownloadArtifactInfo info = new DownloadArtifactInfo(artToDownload,
-                                                                         verToDownload,
-                                                                         DownloadArtifactInfo.Status.FAILED);
-                    downloadProgress.addDownloadedArtifact(info);
-                    downloadProgress.setDownloadStatus(DownloadArtifactInfo.Status.FAILED, exp);
-                    return;
+                Map<Artifact, Path> downloaded = new HashMap<>();
+                for (int i = 0; i < downloads.size(); i++) {
+                    Future<Path> download = takeCompletedDownload(completionService);
+                    Artifact artToDownload = downloads.get(download);
+
+                    try {
+                        downloaded.put(artToDownload, getDownloadResult(download));
+                    } catch (Exception exp) {
+                        LOG.log(Level.SEVERE, exp.getMessage(), exp);
+                        addDownloadedArtifacts(updatesToDownload, downloaded);
+                        DownloadArtifactInfo info = new DownloadArtifactInfo(artToDownload,
+                                                                             updatesToDownload.get(artToDownload),
+                                                                             DownloadArtifactInfo.Status.FAILED);
+                        downloadProgress.addDownloadedArtifact(info);
+                        downloadProgress.setDownloadStatus(DownloadArtifactInfo.Status.FAILED, exp);
+                        return;
+                    }
                 }
+                addDownloadedArtifacts(updatesToDownload, downloaded);
+            } finally {
+                stopDownloads(executor);
             }
 
             downloadProgress.setDownloadStatus(DownloadArtifactInfo.Status.DOWNLOADED);
@@ -226,15 +263,75 @@ public class DownloadManager {
         }
     }
 
+    /** Reports successfully downloaded artifacts in the order of artifacts to download. */
+    private void addDownloadedArtifacts(Map<Artifact, Version> updatesToDownload, Map<Artifact, Path> downloaded) {
+        for (Map.Entry<Artifact, Version> e : updatesToDownload.entrySet()) {
+            Path pathToBinaries = downloaded.get(e.getKey());
+            if (pathToBinaries != null) {
+                downloadProgress.addDownloadedArtifact(new DownloadArtifactInfo(e.getKey(),
+                                                                                e.getValue(),
+                                                                                pathToBinaries,
+                                                                                DownloadArtifactInfo.Status.DOWNLOADED));
+            }
+        }
+    }
+
+    private Future<Path> takeCompletedDownload(CompletionService<Path> completionService) throws IOException {
+        try {
+            return completionService.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Downloading was canceled");
+        }
+    }
+
+    private Path getDownloadResult(Future<Path> download) throws Exception {
+        try {
+            return download.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Downloading was canceled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception)cause : e;
+        }
+    }
+
+    /** Interrupts downloads which are still in progress and waits until they release the files. */
+    private void stopDownloads(ExecutorService executor) {
+        executor.shutdownNow();
+
+        // downloading could be stopped by interrupting this thread, but the downloads must be awaited anyway
+        boolean interrupted = Thread.interrupted();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.warning("Downloads haven't been stopped in time");
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     protected void validateMd5Sum(Artifact artToDownload, Version verToDownload, Path pathToBinaries) throws IOException {
         String md5sum = artToDownload.getProperty(verToDownload, MD5_PROPERTY);
-        if (!md5sum.equals(calculateMD5Sum(pathToBinaries))) {
+        String actualMd5Sum = downloadedMd5Sums.remove(pathToBinaries);
+        if (actualMd5Sum == null) {
+            actualMd5Sum = calculateMD5Sum(pathToBinaries);
+        }
+
+        if (!md5sum.equals(actualMd5Sum)) {
             throw new IOException("File corrupted. Redownload artifact.");
         }
     }
 
     /**
      * Download the specific version of the artifact.
+     * If the name and the size of the binaries are known they are downloaded by chunks over several connections
+     * and the download continues from the last completed chunk if it has been interrupted before.
      *
      * @return path to downloaded artifact
      * @throws java.io.IOException
@@ -245,10 +342,41 @@ public class DownloadManager {
     protected Path download(Artifact artifact, Version version) throws IOException, IllegalStateException {
         try {
             String requestUrl = combinePaths(updateEndpoint, "/repository/public/download/" + artifact.getName() + "/" + version);
-
             Path artifactDownloadDir = getDownloadDirectory(artifact, version);
-            deleteDirectory(artifactDownloadDir.toFile());
 
+            Map<String, String> properties = artifact.getProperties(version);
+            String fileName = properties.get(FILE_NAME_PROPERTY);
+            String size = properties.get(SIZE_PROPERTY);
+            if (fileName != null && size != null) {
+                Path pathToBinaries = artifactDownloadDir.resolve(fileName);
+                try {
+                    ResumableDownload download = new ResumableDownload(transport,
+                                                                       requestUrl,
+                                                                       pathToBinaries,
+                                                                       Long.parseLong(size),
+                                                                       properties.get(MD5_PROPERTY),
+                                                                       chunkSize,
+                                                                       connections,
+                                                                       bytes -> {
+                                                                           DownloadProgress progress = downloadProgress;
+                                                                           if (progress != null) {
+                                                                               progress.addTransferred(pathToBinaries, bytes);
+                                                                           }
+                                                                       });
+                    downloadedMd5Sums.put(pathToBinaries, download.run());
+                    return pathToBinaries;
+                } catch (HttpException e) {
+                    if (e.getStatus() != HttpURLConnection.HTTP_OK) {
+                        throw e;
+                    }
+                    LOG.warning(format("%s, downloading the whole file", e.getMessage()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Downloading was canceled");
+                }
+            }
+
+            deleteDirectory(artifactDownloadDir.toFile());
             return transport.download(requestUrl, artifactDownloadDir, MediaType.APPLICATION_OCTET_STREAM);
         } catch (IOException e) {
             throw getProperException(e, artifact);
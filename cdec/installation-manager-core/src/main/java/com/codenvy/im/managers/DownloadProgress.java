@@ -30,6 +30,7 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.nio.file.Files.exists;
 import static java.nio.file.Files.size;
@@ -45,6 +46,7 @@ public class DownloadProgress {
     private final List<DownloadArtifactInfo>                   downloadedArtifacts;
     private final Map<Artifact, Version>                       artifacts2Download;
     private final Map<Path, Long>                              binaries;
+    private final Map<Path, LongAdder>                         transferred;
     private final AtomicReference<Exception>                   exception;
     private final AtomicReference<DownloadArtifactInfo.Status> status;
     private final String                                       uuid;
@@ -53,6 +55,7 @@ public class DownloadProgress {
     public DownloadProgress(Map<Path, Long> binaries, Map<Artifact, Version> artifacts) {
         this.downloadThread = Thread.currentThread();
         this.binaries = new ConcurrentHashMap<>(binaries);
+        this.transferred = new ConcurrentHashMap<>();
         this.status = new AtomicReference<>(DownloadArtifactInfo.Status.DOWNLOADING);
         this.exception = new AtomicReference<>();
         this.downloadedArtifacts = new CopyOnWriteArrayList<>();
@@ -101,11 +104,20 @@ public class DownloadProgress {
         for (Path path : binaries.keySet()) {
             if (exists(path)) {
                 downloadedSize += size(path);
+            } else if (transferred.containsKey(path)) {
+                downloadedSize += transferred.get(path).sum();
             }
         }
         return downloadedSize;
     }
 
+    /**
+     * Accounts bytes of the binaries which are downloaded into a temporary file, so they can't be counted by the size of the binaries.
+     */
+    public void addTransferred(Path binaries, long bytes) {
+        transferred.computeIfAbsent(binaries, key -> new LongAdder()).add(bytes);
+    }
+
     /** @return the downloading status. */
     public DownloadArtifactInfo.Status getDownloadStatus() {
         return status.get();
@@ -0,0 +1,334 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.im.managers;
+
+import com.codenvy.im.utils.HttpTransport;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.eclipse.che.commons.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+import static com.codenvy.im.utils.Commons.toHexString;
+import static java.lang.String.format;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Downloads a file of the known size by chunks fetched over several connections at once.
+ *
+ * <p>The file is written into {@value #PART_SUFFIX} file and the completed chunks are recorded into {@value #CHUNKS_SUFFIX} file,
+ * so the interrupted download continues with the incomplete chunks only. The MD5 sum is calculated in the order of the file
+ * while chunks are being downloaded, so it is known once the last chunk is written.
+ */
+class ResumableDownload {
+    static final String PART_SUFFIX   = ".part";
+    static final String CHUNKS_SUFFIX = ".chunks";
+
+    private static final long WORKERS_TERMINATION_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final HttpTransport transport;
+    private final String        url;
+    private final Path          file;
+    private final Path          partFile;
+    private final Path          chunksFile;
+    private final long          size;
+    private final long          chunkSize;
+    private final int           chunks;
+    private final int           connections;
+    private final String        header;
+    private final LongConsumer  onTransferred;
+
+    private final Object        digestLock;
+    private final BitSet        completed;
+    private final MessageDigest digest;
+    private       int           nextToDigest;
+    private       boolean       digestedByWriter;
+
+    private FileChannel channel;
+
+    /**
+     * @param expectedMd5
+     *         the MD5 sum of the file if it is known, chunks downloaded for another MD5 sum are discarded
+     * @param onTransferred
+     *         is notified on every portion of bytes written into the file
+     */
+    ResumableDownload(HttpTransport transport,
+                      String url,
+                      Path file,
+                      long size,
+                      @Nullable String expectedMd5,
+                      long chunkSize,
+                      int connections,
+                      LongConsumer onTransferred) {
+        this.transport = transport;
+        this.url = url;
+        this.file = file;
+        this.partFile = file.resolveSibling(file.getFileName() + PART_SUFFIX);
+        this.chunksFile = file.resolveSibling(file.getFileName() + CHUNKS_SUFFIX);
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.chunks = (int)((size + chunkSize - 1) / chunkSize);
+        this.connections = connections;
+        this.header = size + ":" + (expectedMd5 == null ? "" : expectedMd5);
+        this.onTransferred = onTransferred;
+        this.digestLock = new Object();
+        this.completed = new BitSet(chunks);
+        try {
+            this.digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Downloads the file, the file appears under its name only when it is completely downloaded.
+     *
+     * @return the MD5 sum of the downloaded file
+     * @throws InterruptedException
+     *         if the current thread is interrupted, downloaded chunks are kept to continue later
+     */
+    String run() throws IOException, InterruptedException {
+        Files.createDirectories(file.getParent());
+        Files.deleteIfExists(file);
+        loadCompletedChunks();
+
+        List<Integer> toDownload = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            if (completed.get(i)) {
+                onTransferred.accept(getChunkLength(i));
+            } else {
+                toDownload.add(i);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(partFile, CREATE, READ, WRITE)) {
+            this.channel = channel;
+            synchronized (digestLock) {
+                digestCompleted();
+            }
+
+            if (!toDownload.isEmpty()) {
+                downloadChunks(toDownload);
+            }
+            channel.force(false);
+        }
+
+        synchronized (digestLock) {
+            if (nextToDigest != chunks) {
+                throw new IOException(format("Download of %s is incomplete", file.getFileName()));
+            }
+        }
+
+        Files.move(partFile, file, REPLACE_EXISTING, ATOMIC_MOVE);
+        Files.deleteIfExists(chunksFile);
+        return toHexString(digest.digest());
+    }
+
+    private void downloadChunks(List<Integer> toDownload) throws IOException, InterruptedException {
+        final AtomicInteger next = new AtomicInteger();
+        final int workers = Math.min(connections, toDownload.size());
+        final ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder().setNameFormat(file.getFileName() + "-chunk-%d")
+                                                                                                         .setDaemon(true)
+                                                                                                         .build());
+        try {
+            CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < workers; i++) {
+                completionService.submit(() -> {
+                    for (int idx = next.getAndIncrement(); idx < toDownload.size(); idx = next.getAndIncrement()) {
+                        downloadChunk(toDownload.get(idx));
+                    }
+                    return null;
+                });
+            }
+
+            // the first failed worker fails the whole download
+            for (int i = 0; i < workers; i++) {
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException)cause;
+                    }
+                    throw new IOException(cause.getMessage(), cause);
+                }
+            }
+        } finally {
+            shutdownAndWait(executor);
+        }
+    }
+
+    private void downloadChunk(int chunk) throws IOException {
+        final long first = chunk * chunkSize;
+        final long last = first + getChunkLength(chunk) - 1;
+
+        final boolean digestWhileWriting;
+        synchronized (digestLock) {
+            digestWhileWriting = chunk == nextToDigest && !digestedByWriter;
+            digestedByWriter |= digestWhileWriting;
+        }
+
+        long written;
+        try (ChunkOutputStream out = new ChunkOutputStream(first, digestWhileWriting)) {
+            transport.download(url, first, last, out);
+            written = out.position - first;
+        }
+        if (written != last - first + 1) {
+            throw new IOException(format("Chunk %d of %s is incomplete, expected %d bytes but received %d", chunk, url, last - first + 1, written));
+        }
+
+        // chunk is recorded as completed only when it is surely on the disk
+        channel.force(false);
+        synchronized (digestLock) {
+            Files.write(chunksFile, (chunk + "\n").getBytes(StandardCharsets.UTF_8), CREATE, WRITE, APPEND);
+            completed.set(chunk);
+            if (digestWhileWriting) {
+                digestedByWriter = false;
+                nextToDigest++;
+            }
+            digestCompleted();
+        }
+    }
+
+    /** Digests completed chunks which follow the already digested ones, chunks are read back from the file. */
+    private void digestCompleted() throws IOException {
+        if (digestedByWriter) {
+            return;
+        }
+
+        ByteBuffer buffer = null;
+        while (nextToDigest < chunks && completed.get(nextToDigest)) {
+            if (buffer == null) {
+                buffer = ByteBuffer.allocate((int)Math.min(chunkSize, 1024 * 1024));
+            }
+
+            long position = nextToDigest * chunkSize;
+            long end = position + getChunkLength(nextToDigest);
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int)Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException(format("Unexpected end of %s", partFile));
+                }
+                buffer.flip();
+                digest.update(buffer);
+                position += read;
+            }
+            nextToDigest++;
+        }
+    }
+
+    private void loadCompletedChunks() throws IOException {
+        if (Files.exists(chunksFile) && Files.exists(partFile)) {
+            List<String> lines = Files.readAllLines(chunksFile, StandardCharsets.UTF_8);
+            if (!lines.isEmpty() && lines.get(0).equals(header)) {
+                for (String line : lines.subList(1, lines.size())) {
+                    try {
+                        int chunk = Integer.parseInt(line.trim());
+                        if (chunk >= 0 && chunk < chunks) {
+                            completed.set(chunk);
+                        }
+                    } catch (NumberFormatException e) {
+                        // the last record may be broken if process was killed while writing it
+                    }
+                }
+                return;
+            }
+        }
+
+        // nothing to continue with, start from scratch
+        Files.deleteIfExists(partFile);
+        Files.write(chunksFile, (header + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long getChunkLength(int chunk) {
+        return Math.min(chunkSize, size - chunk * chunkSize);
+    }
+
+    /**
+     * Stops workers and waits for them for a while even if the current thread is interrupted,
+     * since they mustn't write into the file after download returns.
+     */
+    private static void shutdownAndWait(ExecutorService executor) throws InterruptedException {
+        executor.shutdownNow();
+
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + WORKERS_TERMINATION_TIMEOUT_NANOS;
+        while (!executor.isTerminated() && System.nanoTime() < deadline) {
+            try {
+                executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            throw new InterruptedException();
+        }
+    }
+
+    /** Writes the chunk at its position in the file. */
+    private class ChunkOutputStream extends OutputStream {
+        private final boolean digestWhileWriting;
+        private       long    position;
+
+        ChunkOutputStream(long position, boolean digestWhileWriting) {
+            this.position = position;
+            this.digestWhileWriting = digestWhileWriting;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            if (digestWhileWriting) {
+                digest.update(b, off, len);
+            }
+            onTransferred.accept(len);
+        }
+    }
+}
@@ -234,20 +234,22 @@ public class Commons {
                 }
             }
 
-            byte[] digest = md.digest();
-
-            // convert the bytes to hex format
-            StringBuilder sb = new StringBuilder();
-            for (int i = 0; i < digest.length; i++) {
-                sb.append(Integer.toString((digest[i] & 0xff) + 0x100, 16).substring(1));
-            }
-
-            return sb.toString();
+            return toHexString(md.digest());
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalStateException(e);
         }
     }
 
+    /** Converts digest into the hex format. */
+    public static String toHexString(byte[] digest) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < digest.length; i++) {
+            sb.append(Integer.toString((digest[i] & 0xff) + 0x100, 16).substring(1));
+        }
+
+        return sb.toString();
+    }
+
 
     /** Set of artifacts to keep them in the specific order. */
     public static class ArtifactsSet extends TreeSet<Artifact> {
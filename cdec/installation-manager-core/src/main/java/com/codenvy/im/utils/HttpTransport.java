@@ -14,25 +14,35 @@
  */
 package com.codenvy.im.utils;
 
+import com.codahale.metrics.annotation.Gauge;
 import com.google.api.client.repackaged.com.google.common.annotations.VisibleForTesting;
 
 import org.eclipse.che.commons.annotation.Nullable;
-import org.eclipse.che.commons.proxy.ProxyAuthenticator;
 import org.eclipse.che.dto.server.DtoFactory;
 
+import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.ws.rs.core.MediaType;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.Authenticator;
 import java.net.HttpURLConnection;
 import java.net.Proxy;
+import java.net.ProxySelector;
 import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,6 +54,16 @@ import static org.eclipse.che.commons.lang.IoUtil.deleteRecursive;
 import static org.eclipse.che.commons.lang.IoUtil.readAndCloseQuietly;
 
 /**
+ * Connections are not disconnected after a response has been read completely, so the JDK keeps the underlying
+ * sockets alive and reuses them for subsequent requests to the same host. Size of that pool is controlled by
+ * the {@code http.maxConnections} JVM option, e.g. {@code -Dhttp.maxConnections=10}, the JDK default is 5.
+ *
+ * <p>Credentials configured by the {@code <protocol>.proxyUser} and {@code <protocol>.proxyPassword} system
+ * properties are given to the proxy when it asks for them, including the {@code CONNECT} requests of https tunnels.
+ * The authenticator is set per connection on Java 9+ and is installed as the JVM-wide default on older runtimes.
+ * Java 8u111+ doesn't authenticate tunnels by Basic scheme unless {@code -Djdk.http.auth.tunneling.disabledSchemes=""}
+ * is given to the JVM.
+ *
  * @author Anatoliy Bazko
  * @author Alexander Reshetnyak
  */
@@ -80,6 +100,40 @@ public class HttpTransport {
 
     private static final Pattern FILE_NAME = compile("attachment; filename=(.*)");
 
+    private static final Authenticator PROXY_AUTHENTICATOR           = new ProxyCredentialsAuthenticator();
+    private static final AtomicBoolean PROXY_AUTHENTICATOR_INSTALLED = new AtomicBoolean();
+
+    /** {@code HttpURLConnection#setAuthenticator} is available since Java 9 */
+    @Nullable
+    private static final Method SET_AUTHENTICATOR = findSetAuthenticator();
+
+    private final LongAdder requests      = new LongAdder();
+    private final LongAdder requestsNanos = new LongAdder();
+    private final int       connectTimeout;
+    private final int       readTimeout;
+
+    public HttpTransport() {
+        this(30 * 1000, 0);
+    }
+
+    @Inject
+    public HttpTransport(@Named("http.client.connect_timeout_ms") int connectTimeout,
+                         @Named("http.client.read_timeout_ms") int readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    @Gauge(name = "im.http.requests")
+    public long getRequestsCount() {
+        return requests.sum();
+    }
+
+    @Gauge(name = "im.http.request_latency_avg_ms")
+    public long getAverageRequestLatency() {
+        final long count = requests.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(requestsNanos.sum() / count);
+    }
+
     /**
      * Performs OPTION request.
      * Expected content type {@link javax.ws.rs.core.MediaType#APPLICATION_JSON}
@@ -169,6 +223,36 @@ public class HttpTransport {
         return download(path, "GET", accessToken, contentType, destinationDir, true);
     }
 
+    /**
+     * Performs GET request of the given range of bytes, both ends are inclusive, and writes response into the output stream.
+     *
+     * @throws HttpException
+     *         with {@link HttpURLConnection#HTTP_OK} status if server doesn't support byte ranges
+     * @throws CopyStreamInterruptedException
+     *         if the current thread is interrupted while downloading
+     */
+    public void download(String path, long first, long last, OutputStream out) throws IOException {
+        final long start = System.nanoTime();
+        final HttpURLConnection conn = openConnection(path, null, false);
+        boolean consumed = false;
+
+        try {
+            conn.setRequestProperty("Range", format("bytes=%d-%d", first, last));
+            request("GET", null, MediaType.APPLICATION_OCTET_STREAM, conn);
+
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+                throw new HttpException(conn.getResponseCode(), "Byte ranges are not supported by " + path);
+            }
+
+            try (InputStream in = conn.getInputStream()) {
+                copyInterruptable(in, out);
+            }
+            consumed = true;
+        } finally {
+            release(conn, consumed, start);
+        }
+    }
+
     @VisibleForTesting
     HttpURLConnection openConnection(String path, @Nullable String accessToken, boolean noProxy) throws IOException {
         HttpURLConnection connection;
@@ -193,7 +277,52 @@ public class HttpTransport {
 
     @VisibleForTesting
     HttpURLConnection getConnectionWithProxy(String path) throws IOException {
-        return (HttpURLConnection)new URL(path).openConnection();
+        final URL url = new URL(path);
+        final Proxy proxy = selectProxy(url);
+        final HttpURLConnection connection = (HttpURLConnection)url.openConnection(proxy);
+
+        if (proxy.type() == Proxy.Type.HTTP) {
+            setProxyAuthenticator(connection);
+        }
+        return connection;
+    }
+
+    private static void setProxyAuthenticator(HttpURLConnection connection) {
+        if (SET_AUTHENTICATOR != null) {
+            try {
+                SET_AUTHENTICATOR.invoke(connection, PROXY_AUTHENTICATOR);
+                return;
+            } catch (ReflectiveOperationException e) {
+                // fall back to the default authenticator
+            }
+        }
+
+        if (PROXY_AUTHENTICATOR_INSTALLED.compareAndSet(false, true)) {
+            Authenticator.setDefault(PROXY_AUTHENTICATOR);
+        }
+    }
+
+    @Nullable
+    private static Method findSetAuthenticator() {
+        try {
+            return HttpURLConnection.class.getMethod("setAuthenticator", Authenticator.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /** Returns the proxy the default proxy selector chooses for the given url, or {@link Proxy#NO_PROXY}. */
+    private static Proxy selectProxy(URL url) {
+        final ProxySelector selector = ProxySelector.getDefault();
+        if (selector == null) {
+            return Proxy.NO_PROXY;
+        }
+        try {
+            final List<Proxy> proxies = selector.select(url.toURI());
+            return proxies == null || proxies.isEmpty() ? Proxy.NO_PROXY : proxies.get(0);
+        } catch (URISyntaxException e) {
+            return Proxy.NO_PROXY;
+        }
     }
 
     private String request(String path,
@@ -202,18 +331,22 @@ public class HttpTransport {
                            @Nullable String expectedContentType,
                            @Nullable String accessToken,
                            boolean noProxy) throws IOException {
+        final long start = System.nanoTime();
         HttpURLConnection conn = null;
+        boolean consumed = false;
 
         try {
             conn = openConnection(path, accessToken, noProxy);
             request(method, body, expectedContentType, conn);
-            return readAndCloseQuietly(conn.getInputStream());
+            final String response = readAndCloseQuietly(conn.getInputStream());
+            consumed = true;
+            return response;
         } catch (SocketTimeoutException e) { // catch exception and throw a new one with proper message
             URL url = new URL(path);
             throw new HttpException(-1, format("Can't establish connection with %s://%s", url.getProtocol(), url.getHost()));
         } finally {
             if (conn != null) {
-                conn.disconnect();
+                release(conn, consumed, start);
             }
         }
     }
@@ -228,7 +361,9 @@ public class HttpTransport {
             Files.createDirectories(destinationDir);
         }
 
+        final long start = System.nanoTime();
         final HttpURLConnection conn = openConnection(path, accessToken, noProxy);
+        boolean consumed = false;
 
         try {
             request(method, null, expectedContentType, conn);
@@ -257,41 +392,50 @@ public class HttpTransport {
                     throw new IOException("Downloading was canceled");
                 }
 
+                consumed = true;
                 return file;
             }
         } finally {
+            release(conn, consumed, start);
+        }
+    }
+
+    /**
+     * Records request latency and returns connection to the keep-alive cache if its response has been read completely,
+     * otherwise closes it since unread data would make the connection unusable for the next request.
+     */
+    private void release(HttpURLConnection conn, boolean consumed, long start) {
+        if (!consumed) {
             conn.disconnect();
         }
+
+        requests.increment();
+        requestsNanos.add(System.nanoTime() - start);
     }
 
     private void request(String method,
                          @Nullable Object body,
                          @Nullable String expectedContentType,
                          HttpURLConnection conn) throws IOException {
-        ProxyAuthenticator.initAuthenticator(conn.getURL().toString());
-
-        try {
-            conn.setConnectTimeout(30 * 1000);
-            conn.setRequestMethod(method);
-            if (body != null) {
-                conn.addRequestProperty("content-type", "application/json");
-                conn.setDoOutput(true);
-                try (OutputStream output = conn.getOutputStream()) {
-                    output.write(DtoFactory.getInstance().toJson(body).getBytes("UTF-8"));
-                }
+        conn.setConnectTimeout(connectTimeout);
+        conn.setReadTimeout(readTimeout);
+        conn.setRequestMethod(method);
+        if (body != null) {
+            conn.addRequestProperty("content-type", "application/json");
+            conn.setDoOutput(true);
+            try (OutputStream output = conn.getOutputStream()) {
+                output.write(DtoFactory.getInstance().toJson(body).getBytes("UTF-8"));
             }
+        }
 
-            final int responseCode = conn.getResponseCode();
-            if ((responseCode / 100) != 2) {
-                InputStream in = conn.getErrorStream();
-                if (in == null) {
-                    in = conn.getInputStream();
-                }
-
-                throw new HttpException(responseCode, readAndCloseQuietly(in));
+        final int responseCode = conn.getResponseCode();
+        if ((responseCode / 100) != 2) {
+            InputStream in = conn.getErrorStream();
+            if (in == null) {
+                in = conn.getInputStream();
             }
-        } finally {
-            ProxyAuthenticator.resetAuthenticator();
+
+            throw new HttpException(responseCode, readAndCloseQuietly(in));
         }
 
         final String contentType = conn.getContentType();
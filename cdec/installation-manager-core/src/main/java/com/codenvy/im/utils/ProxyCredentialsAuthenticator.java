@@ -0,0 +1,50 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.im.utils;
+
+import java.net.Authenticator;
+import java.net.PasswordAuthentication;
+import java.net.URL;
+
+/**
+ * Answers proxy authentication requests with the credentials configured by the {@code <protocol>.proxyUser} and
+ * {@code <protocol>.proxyPassword} system properties for the protocol of the requested url.
+ * Servers are never answered, so the proxy credentials don't reach them.
+ * Unlike {@link org.eclipse.che.commons.proxy.ProxyAuthenticator} it keeps no per-request state,
+ * so a single instance may be shared by concurrent requests.
+ */
+class ProxyCredentialsAuthenticator extends Authenticator {
+
+    @Override
+    protected PasswordAuthentication getPasswordAuthentication() {
+        if (getRequestorType() != RequestorType.PROXY) {
+            return null;
+        }
+
+        final URL url = getRequestingURL();
+        final String protocol = url != null ? url.getProtocol() : getRequestingProtocol();
+        if (protocol == null) {
+            return null;
+        }
+
+        final String user = System.getProperty(protocol.toLowerCase() + ".proxyUser");
+        final String password = System.getProperty(protocol.toLowerCase() + ".proxyPassword");
+        if (user == null || password == null) {
+            return null;
+        }
+
+        return new PasswordAuthentication(user, password.toCharArray());
+    }
+}
@@ -93,6 +93,8 @@ public class DownloadManagerTest extends BaseTest {
         installManagerArtifact = spy(new InstallManagerArtifact(CODENVY_IM_BASE_DIR, UPDATE_API_ENDPOINT, DOWNLOAD_DIR, SAAS_API_ENDPOINT, transport, configManager));
         downloadManager = spy(new DownloadManager(UPDATE_API_ENDPOINT,
                                                   DOWNLOAD_DIR,
+                                                  2,
+                                                  4,
                                                   transport,
                                                   ImmutableSet.<Artifact>of(cdecArtifact, installManagerArtifact)));
         downloadManager.downloadProgress = null;
@@ -113,12 +115,12 @@ public class DownloadManagerTest extends BaseTest {
 
     @Test(expectedExceptions = IOException.class)
     public void testInitializationIfDownloadDirectoryNotExist() throws IOException {
-        new DownloadManager(UPDATE_API_ENDPOINT, "/home/bla-bla", transport, Collections.<Artifact>emptySet());
+        new DownloadManager(UPDATE_API_ENDPOINT, "/home/bla-bla", 2, 4, transport, Collections.<Artifact>emptySet());
     }
 
     @Test(expectedExceptions = IOException.class)
     public void testInitializationIfWrongPermission() throws Exception {
-        new DownloadManager(UPDATE_API_ENDPOINT, "/root", transport, Collections.<Artifact>emptySet());
+        new DownloadManager(UPDATE_API_ENDPOINT, "/root", 2, 4, transport, Collections.<Artifact>emptySet());
     }
 
 
@@ -467,6 +469,52 @@ public class DownloadManagerTest extends BaseTest {
         assertEquals(info.getStatus(), DownloadArtifactInfo.Status.FAILED);
     }
 
+    @Test(timeOut = 10000)
+    public void testDownloadFailsAsSoonAsAnyArtifactFails() throws Exception {
+        final Version cdecVersion = Version.valueOf("2.0.0");
+        final Version imVersion = Version.valueOf("1.0.0");
+        final CountDownLatch cdecDownloadCanceled = new CountDownLatch(1);
+
+        doReturn(new LinkedHashMap<Artifact, Version>() {
+            {
+                put(cdecArtifact, cdecVersion);
+                put(installManagerArtifact, imVersion);
+            }
+        }).when(downloadManager).getLatestUpdatesToDownload(null, null);
+
+        doAnswer(invocationOnMock -> {
+            try {
+                new CountDownLatch(1).await(); // the first artifact is never downloaded until canceled
+            } finally {
+                cdecDownloadCanceled.countDown();
+            }
+            return pathCDEC;
+        }).when(downloadManager).download(cdecArtifact, cdecVersion);
+        doThrow(new IOException("Connection reset")).when(downloadManager).download(installManagerArtifact, imVersion);
+
+        doReturn(pathCDEC).when(downloadManager).getPathToBinaries(cdecArtifact, cdecVersion);
+        doReturn(pathIM).when(downloadManager).getPathToBinaries(installManagerArtifact, imVersion);
+        doReturn(100L).when(downloadManager).getBinariesSize(cdecArtifact, cdecVersion);
+        doReturn(50L).when(downloadManager).getBinariesSize(installManagerArtifact, imVersion);
+
+        downloadManager.startDownload(null, null);
+
+        DownloadProgressResponse info;
+        do {
+            sleep(100); // due to async request, wait a bit to get proper download status
+            info = downloadManager.getDownloadProgress();
+        } while (info.getStatus() == DownloadArtifactInfo.Status.DOWNLOADING);
+
+        assertEquals(info.getStatus(), DownloadArtifactInfo.Status.FAILED);
+
+        List<DownloadArtifactInfo> artifacts = info.getArtifacts();
+        assertEquals(artifacts.size(), 1);
+        assertEquals(artifacts.get(0).getArtifact(), installManagerArtifact.getName());
+        assertEquals(artifacts.get(0).getStatus(), DownloadArtifactInfo.Status.FAILED);
+
+        cdecDownloadCanceled.await();
+    }
+
     @Test(expectedExceptions = DownloadAlreadyStartedException.class)
     public void testStartDownloadTwice() throws Exception {
         final Version cdecVersion = Version.valueOf("2.0.0");
@@ -0,0 +1,142 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.im.managers;
+
+import com.codenvy.im.utils.HttpTransport;
+
+import org.apache.commons.io.FileUtils;
+import org.mockito.Mock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.codenvy.im.utils.Commons.calculateMD5Sum;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ResumableDownloadTest {
+    private static final String URL     = "http://update.endpoint/repository/public/download/codenvy/1.0.0";
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.UTF_8);
+    private static final Path   DIR     = Paths.get("target", "resumable-download");
+    private static final Path   FILE    = DIR.resolve("codenvy.zip");
+
+    @Mock
+    private HttpTransport transport;
+
+    private AtomicLong transferred;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        initMocks(this);
+        transferred = new AtomicLong();
+        doAnswer(serveRange()).when(transport).download(eq(URL), anyLong(), anyLong(), any(OutputStream.class));
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(DIR.toFile());
+    }
+
+    @Test
+    public void shouldDownloadFileByChunksAndCalculateMd5Sum() throws Exception {
+        String md5 = newDownload(4, 2).run();
+
+        assertEquals(Files.readAllBytes(FILE), CONTENT);
+        assertEquals(md5, calculateMD5Sum(FILE));
+        assertEquals(transferred.get(), CONTENT.length);
+        assertFalse(Files.exists(DIR.resolve("codenvy.zip" + ResumableDownload.PART_SUFFIX)));
+        assertFalse(Files.exists(DIR.resolve("codenvy.zip" + ResumableDownload.CHUNKS_SUFFIX)));
+        verify(transport).download(eq(URL), eq(0L), eq(3L), any(OutputStream.class));
+        verify(transport).download(eq(URL), eq(4L), eq(7L), any(OutputStream.class));
+        verify(transport).download(eq(URL), eq(8L), eq(9L), any(OutputStream.class));
+    }
+
+    @Test
+    public void shouldContinueInterruptedDownloadFromIncompleteChunks() throws Exception {
+        doThrow(new IOException("Connection reset")).when(transport).download(eq(URL), eq(4L), eq(7L), any(OutputStream.class));
+        try {
+            newDownload(4, 1).run();
+            fail("Download must fail");
+        } catch (IOException e) {
+            assertEquals(e.getMessage(), "Connection reset");
+        }
+        assertFalse(Files.exists(FILE));
+
+        doAnswer(serveRange()).when(transport).download(eq(URL), eq(4L), eq(7L), any(OutputStream.class));
+        transferred.set(0);
+        String md5 = newDownload(4, 1).run();
+
+        assertEquals(Files.readAllBytes(FILE), CONTENT);
+        assertEquals(md5, calculateMD5Sum(FILE));
+        assertEquals(transferred.get(), CONTENT.length);
+        verify(transport, times(1)).download(eq(URL), eq(0L), eq(3L), any(OutputStream.class));
+        verify(transport, times(2)).download(eq(URL), eq(4L), eq(7L), any(OutputStream.class));
+    }
+
+    @Test
+    public void shouldStartFromScratchIfDownloadedChunksBelongToAnotherFile() throws Exception {
+        Files.createDirectories(DIR);
+        Files.write(DIR.resolve("codenvy.zip" + ResumableDownload.PART_SUFFIX), "garbage".getBytes(StandardCharsets.UTF_8));
+        Files.write(DIR.resolve("codenvy.zip" + ResumableDownload.CHUNKS_SUFFIX), "7:another\n0\n1\n".getBytes(StandardCharsets.UTF_8));
+
+        String md5 = newDownload(4, 2).run();
+
+        assertEquals(Files.readAllBytes(FILE), CONTENT);
+        assertEquals(md5, calculateMD5Sum(FILE));
+        verify(transport).download(eq(URL), eq(0L), eq(3L), any(OutputStream.class));
+    }
+
+    @Test
+    public void shouldDownloadEmptyFile() throws Exception {
+        String md5 = new ResumableDownload(transport, URL, FILE, 0, null, 4, 2, transferred::addAndGet).run();
+
+        assertTrue(Files.exists(FILE));
+        assertEquals(md5, "d41d8cd98f00b204e9800998ecf8427e");
+        verify(transport, never()).download(eq(URL), anyLong(), anyLong(), any(OutputStream.class));
+    }
+
+    private ResumableDownload newDownload(long chunkSize, int connections) {
+        return new ResumableDownload(transport, URL, FILE, CONTENT.length, "md5", chunkSize, connections, transferred::addAndGet);
+    }
+
+    private static Answer<Void> serveRange() {
+        return invocation -> {
+            int first = ((Long)invocation.getArguments()[1]).intValue();
+            int last = ((Long)invocation.getArguments()[2]).intValue();
+            ((OutputStream)invocation.getArguments()[3]).write(CONTENT, first, last - first + 1);
+            return null;
+        };
+    }
+}
@@ -15,6 +15,8 @@
 package com.codenvy.im.utils;
 
 import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
 
 import org.apache.commons.io.IOUtils;
 import org.eclipse.che.api.core.ServerException;
@@ -30,6 +32,11 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -42,20 +49,33 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.KeyStore;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * @author Anatoliy Bazko
@@ -233,6 +253,45 @@ public class TestHttpTransport {
         spyHttpTransport.doGet(httpsPath);
     }
 
+    @Test
+    public void shouldKeepConnectionAliveAfterResponseIsRead() throws IOException {
+        String httpPath = "http://localhost";
+
+        HttpURLConnection mockConnection = mock(HttpURLConnection.class);
+        doReturn(new URL(httpPath)).when(mockConnection).getURL();
+        doReturn(200).when(mockConnection).getResponseCode();
+        doReturn(new ByteArrayInputStream("{}".getBytes())).when(mockConnection).getInputStream();
+
+        doReturn(mockConnection).when(spyHttpTransport).openConnection(httpPath, null, false);
+
+        spyHttpTransport.doGet(httpPath);
+
+        verify(mockConnection, never()).disconnect();
+        assertEquals(spyHttpTransport.getRequestsCount(), 1);
+    }
+
+    @Test
+    public void shouldDisconnectConnectionIfRequestFailed() throws IOException {
+        String httpPath = "http://localhost";
+
+        HttpURLConnection mockConnection = mock(HttpURLConnection.class);
+        doReturn(new URL(httpPath)).when(mockConnection).getURL();
+        doReturn(500).when(mockConnection).getResponseCode();
+        doReturn(new ByteArrayInputStream("error".getBytes())).when(mockConnection).getErrorStream();
+
+        doReturn(mockConnection).when(spyHttpTransport).openConnection(httpPath, null, false);
+
+        try {
+            spyHttpTransport.doGet(httpPath);
+            fail("HttpException expected");
+        } catch (HttpException e) {
+            assertEquals(e.getStatus(), 500);
+        }
+
+        verify(mockConnection).disconnect();
+        assertEquals(spyHttpTransport.getRequestsCount(), 1);
+    }
+
     @Test
     public void shouldReturnConnectionWithProxy() throws IOException {
         spyHttpTransport.openConnection(TEXT, TEXT, false);
@@ -241,6 +300,71 @@ public class TestHttpTransport {
         verify(httpURLConnection).addRequestProperty(anyString(), anyString());
     }
 
+    @Test
+    public void shouldAuthenticateToProxyOfHttpsEndpointWithoutSendingCredentialsToEndpoint() throws Exception {
+        SSLContext sslContext = createSslContext();
+        List<String> endpointProxyAuthorizations = new CopyOnWriteArrayList<>();
+        HttpsServer server = HttpsServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        server.createContext("/get", exchange -> {
+            endpointProxyAuthorizations.add(String.valueOf(exchange.getRequestHeaders().getFirst("Proxy-Authorization")));
+            byte[] body = "{\"key\":\"value\"}".getBytes(UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", MediaType.APPLICATION_JSON);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        ProxySelector defaultProxySelector = ProxySelector.getDefault();
+        SSLSocketFactory defaultSslSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        try (TunnelingProxy proxy = new TunnelingProxy("user1", "passw1")) {
+            System.setProperty("https.proxyUser", "user1");
+            System.setProperty("https.proxyPassword", "passw1");
+            HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
+            ProxySelector.setDefault(new ProxySelector() {
+                @Override
+                public List<Proxy> select(URI uri) {
+                    return singletonList(new Proxy(Proxy.Type.HTTP, new InetSocketAddress("localhost", proxy.getPort())));
+                }
+
+                @Override
+                public void connectFailed(URI uri, SocketAddress address, IOException e) {
+                }
+            });
+
+            Map value = Commons.asMap(httpTransport.doGet("https://localhost:" + server.getAddress().getPort() + "/get"));
+
+            assertEquals(value.get("key"), "value");
+            // the tunnel is established once the proxy's challenge is answered
+            assertEquals(proxy.getAuthorizations().size(), 2);
+            assertNull(proxy.getAuthorizations().get(0));
+            assertTrue(proxy.getAuthorizations().get(1).startsWith("Digest username=\"user1\""));
+            assertEquals(endpointProxyAuthorizations, singletonList("null"));
+        } finally {
+            ProxySelector.setDefault(defaultProxySelector);
+            HttpsURLConnection.setDefaultSSLSocketFactory(defaultSslSocketFactory);
+            server.stop(0);
+        }
+    }
+
+    /** Creates SSL context which uses the self-signed certificate of localhost both to identify and to trust. */
+    private SSLContext createSslContext() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("https/localhost.jks")) {
+            keyStore.load(in, "password".toCharArray());
+        }
+
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, "password".toCharArray());
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+        return sslContext;
+    }
+
     @Test
     public void shouldReturnConnectionWithoutProxy() throws IOException {
         spyHttpTransport.openConnection(TEXT, TEXT, true);
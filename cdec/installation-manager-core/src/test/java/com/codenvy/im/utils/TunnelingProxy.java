@@ -0,0 +1,179 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.im.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.codenvy.im.utils.Commons.toHexString;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Proxy which tunnels {@code CONNECT} requests once the client authenticates by Digest scheme,
+ * Basic scheme isn't used since Java 8u111+ disables it for tunnels by default.
+ */
+class TunnelingProxy implements Closeable {
+    private static final String REALM = "test";
+    private static final String NONCE = "dcd98b7102dd2f0e8b11d0f600bfb0c093";
+
+    private final String          user;
+    private final String          password;
+    private final ServerSocket    serverSocket;
+    private final ExecutorService executor;
+    private final List<String>    authorizations;
+
+    TunnelingProxy(String user, String password) throws IOException {
+        this.user = user;
+        this.password = password;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.executor = Executors.newCachedThreadPool();
+        this.authorizations = new CopyOnWriteArrayList<>();
+        executor.execute(this::accept);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** @return values of {@code Proxy-Authorization} header of the received requests, null if the header is absent */
+    List<String> getAuthorizations() {
+        return authorizations;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                executor.execute(() -> handle(client));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket client) {
+        try {
+            InputStream in = client.getInputStream();
+            String[] requestLine = readLine(in).split(" ");
+            String authorization = null;
+            for (String header = readLine(in); !header.isEmpty(); header = readLine(in)) {
+                if (header.toLowerCase().startsWith("proxy-authorization:")) {
+                    authorization = header.substring(header.indexOf(':') + 1).trim();
+                }
+            }
+            authorizations.add(authorization);
+
+            OutputStream out = client.getOutputStream();
+            if (!"CONNECT".equals(requestLine[0]) || !isAuthorized(authorization)) {
+                out.write(("HTTP/1.1 407 Proxy Authentication Required\r\n" +
+                           "Proxy-Authenticate: Digest realm=\"" + REALM + "\", nonce=\"" + NONCE + "\"\r\n" +
+                           "Content-Length: 0\r\n" +
+                           "Connection: close\r\n\r\n").getBytes(ISO_8859_1));
+                out.flush();
+                client.close();
+                return;
+            }
+
+            String[] target = requestLine[1].split(":");
+            Socket origin = new Socket(target[0], Integer.parseInt(target[1]));
+            out.write("HTTP/1.1 200 Connection established\r\n\r\n".getBytes(ISO_8859_1));
+            out.flush();
+
+            executor.execute(() -> pipe(origin, client));
+            pipe(client, origin);
+        } catch (IOException e) {
+            closeQuietly(client);
+        }
+    }
+
+    private boolean isAuthorized(String authorization) {
+        if (authorization == null || !authorization.startsWith("Digest ")) {
+            return false;
+        }
+
+        Map<String, String> params = new HashMap<>();
+        for (String param : authorization.substring("Digest ".length()).split(",")) {
+            String[] pair = param.trim().split("=", 2);
+            params.put(pair[0], pair[1].replace("\"", ""));
+        }
+
+        String ha1 = md5(user + ':' + REALM + ':' + password);
+        String ha2 = md5("CONNECT:" + params.get("uri"));
+        return user.equals(params.get("username")) && md5(ha1 + ':' + NONCE + ':' + ha2).equals(params.get("response"));
+    }
+
+    private static String md5(String value) {
+        try {
+            return toHexString(MessageDigest.getInstance("MD5").digest(value.getBytes(ISO_8859_1)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void pipe(Socket from, Socket to) {
+        try (InputStream in = from.getInputStream();
+             OutputStream out = to.getOutputStream()) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // one of the sides has closed the tunnel
+        } finally {
+            closeQuietly(from);
+            closeQuietly(to);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char)c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
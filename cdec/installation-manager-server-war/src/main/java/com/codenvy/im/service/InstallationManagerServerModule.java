@@ -22,6 +22,7 @@ import com.codenvy.im.artifacts.InstallManagerArtifact;
 import com.google.inject.AbstractModule;
 import com.google.inject.multibindings.Multibinder;
 import com.google.inject.name.Names;
+import com.palominolabs.metrics.guice.InstrumentationModule;
 import org.eclipse.che.api.core.rest.ApiExceptionMapper;
 import org.eclipse.che.inject.DynaModule;
 import org.eclipse.che.swagger.deploy.DocsModule;
@@ -38,6 +39,7 @@ public class InstallationManagerServerModule extends AbstractModule {
         Multibinder.newSetBinder(this.binder(), Artifact.class).addBinding().to(CDECArtifact.class);
 
         install(new DocsModule());
+        install(new InstrumentationModule());
 
         bind(com.codenvy.auth.sso.client.WebAppClientUrlExtractor.class);
         bind(com.codenvy.auth.sso.client.token.ChainedTokenExtractor.class);
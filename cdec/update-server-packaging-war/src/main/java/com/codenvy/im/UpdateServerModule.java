@@ -18,6 +18,7 @@ import com.codenvy.im.update.ReportService;
 import com.codenvy.im.update.RepositoryService;
 import com.codenvy.im.update.UtilService;
 import com.google.inject.AbstractModule;
+import com.palominolabs.metrics.guice.InstrumentationModule;
 
 import org.eclipse.che.inject.DynaModule;
 
@@ -32,5 +33,7 @@ public class UpdateServerModule extends AbstractModule {
         bind(RepositoryService.class);
         bind(ReportService.class);
         bind(UtilService.class);
+
+        install(new InstrumentationModule());
     }
 }
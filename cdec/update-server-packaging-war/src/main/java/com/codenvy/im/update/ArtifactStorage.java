@@ -17,53 +17,154 @@ package com.codenvy.im.update;
 import com.codenvy.im.artifacts.ArtifactNotFoundException;
 import com.codenvy.im.artifacts.ArtifactProperties;
 import com.codenvy.im.utils.Commons;
+import com.codenvy.im.utils.IllegalVersionException;
 import com.codenvy.im.utils.Version;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 import org.eclipse.che.commons.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Named;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.codenvy.im.artifacts.ArtifactProperties.ARTIFACT_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.AUTHENTICATION_REQUIRED_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.FILE_NAME_PROPERTY;
+import static com.codenvy.im.artifacts.ArtifactProperties.MD5_PROPERTY;
+import static com.codenvy.im.artifacts.ArtifactProperties.SHA256_PROPERTY;
+import static com.codenvy.im.artifacts.ArtifactProperties.SIZE_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.SUBSCRIPTION_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.VERSION_PROPERTY;
 import static com.codenvy.im.utils.Commons.getVersionsList;
+import static com.codenvy.im.utils.Commons.toHexString;
 import static java.lang.String.format;
 import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 /**
+ * Once {@link #start() started} the storage keeps an in-memory index of artifacts, their versions and properties,
+ * which is kept up to date by the storage own writes and by a {@link WatchService} for the changes made
+ * in the repository directory directly. Until then every call goes to the file system.
+ *
  * @author Anatoliy Bazko
  */
 @Singleton
 public class ArtifactStorage {
+    private static final Logger LOG = LoggerFactory.getLogger(ArtifactStorage.class);
 
     public static final String PROPERTIES_FILE = ".properties";
 
+    /** Directory in the repository where uploaded artifacts are staged before they are published */
+    private static final String UPLOADS_DIR = ".uploads";
+
+    /** Prefix of directories inside the version directory which hold the binaries of a single upload */
+    private static final String BINARIES_DIR_PREFIX = ".binaries-";
+
+    /** Property which refers to the directory with the binaries of the version, binaries are right in the version directory if it is absent */
+    private static final String BINARIES_DIR_PROPERTY = "binaries-dir";
+
     private final String repositoryDir;
 
+    /** artifact -> version -> properties, properties are absent if version directory doesn't contain them yet */
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Version, Optional<Properties>>> index;
+    private final ConcurrentMap<WatchKey, Path>                                                 watchedDirs;
+    private final AtomicLong                                                                    indexVersion;
+
+    private volatile boolean      indexed;
+    private          WatchService watchService;
+    private          Thread       watcher;
+
     @Inject
     public ArtifactStorage(@Named("update-server.repository.path") String repositoryDir) throws IOException {
         this.repositoryDir = repositoryDir;
+        this.index = new ConcurrentHashMap<>();
+        this.watchedDirs = new ConcurrentHashMap<>();
+        this.indexVersion = new AtomicLong();
         Files.createDirectories(Paths.get(repositoryDir));
     }
 
+    /**
+     * Builds the index of the repository and starts watching it for changes.
+     *
+     * @throws java.io.IOException
+     *         if an I/O error occurs
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        watchService = getRepositoryDir().getFileSystem().newWatchService();
+        // directories are registered before they are scanned, so nothing created meanwhile is lost
+        register(getRepositoryDir());
+        rebuildIndex();
+        indexed = true;
+
+        watcher = new Thread(this::watch, "ArtifactStorageWatcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        indexed = false;
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.warn("Can't close repository watch service. " + e.getMessage());
+            }
+        }
+        watchedDirs.clear();
+        index.clear();
+    }
+
+    /**
+     * @return the number of changes applied to the index so far, it can be used to detect that anything in the repository has changed
+     */
+    public long getIndexVersion() {
+        return indexVersion.get();
+    }
+
     /**
      * @return the latest available version of the artifact in the repository filtered by certain label.
      * @throws com.codenvy.im.artifacts.ArtifactNotFoundException
@@ -72,8 +173,7 @@ public class ArtifactStorage {
      *         if an I/O error occurs
      */
     public String getLatestVersion(String artifact, @Nullable String expectedLabel) throws IOException {
-        Path dir = getArtifactDir(artifact);
-        TreeSet<Version> versions = getVersionsList(dir);
+        TreeSet<Version> versions = listVersions(artifact);
         if (versions.isEmpty()) {
             throw ArtifactNotFoundException.from(artifact);
         }
@@ -103,7 +203,7 @@ public class ArtifactStorage {
     }
 
     protected Optional<String> getProperty(String artifact, Version version, String propertyName) throws IOException {
-        Properties properties = loadProperties(artifact, version.toString());
+        Properties properties = getProperties(artifact, version.toString());
         return Optional.ofNullable((String) properties.get(propertyName));
     }
 
@@ -112,9 +212,8 @@ public class ArtifactStorage {
      */
     public Collection<Version> getVersions(String artifact, @Nullable String fromVersionNumber) throws IOException {
         Version fromVersion = Commons.createVersionOrNull(fromVersionNumber);
-        Path dir = getArtifactDir(artifact);
 
-        TreeSet<Version> versions = getVersionsList(dir);
+        TreeSet<Version> versions = listVersions(artifact);
 
         if (fromVersion != null) {
             Iterator<Version> iter = versions.iterator();
@@ -131,20 +230,102 @@ public class ArtifactStorage {
     /**
      * Uploads artifact into the repository.
      *
+     * <p>The artifact is written into a staging directory while its MD5 and SHA-256 sums and size are calculated,
+     * they are stored among the properties of the artifact. Every upload keeps its binaries in a directory of its own,
+     * which is referred by the properties, so the properties file is the only thing replaced when the version is uploaded again.
+     * Checksum or size given in properties must match the uploaded binaries.
+     *
      * @throws java.io.IOException
-     *         if an I/O error occurs
+     *         if an I/O error occurs or uploaded binaries don't match the given checksum or size
      */
-
     public void upload(final InputStream in, String artifact, String version, String fileName, Properties props) throws IOException {
-        props.put(FILE_NAME_PROPERTY, fileName);
-        props.put(VERSION_PROPERTY, version);
-        props.put(ARTIFACT_PROPERTY, artifact);
-        storeProperties(artifact, version, props);
+        Path stagingDir = null;
+        try {
+            Path uploadsDir = getRepositoryDir().resolve(UPLOADS_DIR);
+            Files.createDirectories(uploadsDir);
+            stagingDir = Files.createTempDirectory(uploadsDir, artifact + "-" + version + "-");
+            String binariesDir = BINARIES_DIR_PREFIX + stagingDir.getFileName();
+            Files.createDirectory(stagingDir.resolve(binariesDir));
+
+            MessageDigest md5 = newDigest("MD5");
+            MessageDigest sha256 = newDigest("SHA-256");
+            long size;
+            try (InputStream digestIn = new DigestInputStream(new DigestInputStream(in, md5), sha256);
+                 OutputStream out = newOutputStream(stagingDir.resolve(binariesDir).resolve(fileName))) {
+                size = IOUtils.copyLarge(digestIn, out);
+            }
+
+            String actualMd5 = toHexString(md5.digest());
+            String expectedMd5 = props.getProperty(MD5_PROPERTY);
+            if (expectedMd5 != null && !expectedMd5.equalsIgnoreCase(actualMd5)) {
+                throw new IOException(format("MD5 sum of uploaded artifact %s:%s is %s but %s is expected", artifact, version, actualMd5, expectedMd5));
+            }
+
+            String expectedSize = props.getProperty(SIZE_PROPERTY);
+            if (expectedSize != null && !expectedSize.equals(String.valueOf(size))) {
+                throw new IOException(format("Size of uploaded artifact %s:%s is %d but %s is expected", artifact, version, size, expectedSize));
+            }
+
+            props.put(FILE_NAME_PROPERTY, fileName);
+            props.put(VERSION_PROPERTY, version);
+            props.put(ARTIFACT_PROPERTY, artifact);
+            props.put(MD5_PROPERTY, actualMd5);
+            props.put(SHA256_PROPERTY, toHexString(sha256.digest()));
+            props.put(SIZE_PROPERTY, String.valueOf(size));
+            props.put(BINARIES_DIR_PROPERTY, binariesDir);
+            try (OutputStream out = new BufferedOutputStream(newOutputStream(stagingDir.resolve(PROPERTIES_FILE)))) {
+                props.store(out, null);
+            }
+
+            publish(stagingDir, getArtifactDir(artifact, version), binariesDir);
 
-        try (OutputStream out = newOutputStream(getArtifact(artifact, version, fileName))) {
-            IOUtils.copyLarge(in, out);
+            if (indexed) {
+                Properties copy = new Properties();
+                copy.putAll(props);
+                putIndexed(artifact, version, copy);
+            }
         } finally {
             in.close();
+            if (stagingDir != null && Files.exists(stagingDir)) {
+                FileUtils.deleteQuietly(stagingDir.toFile());
+            }
+        }
+    }
+
+    /**
+     * Moves staged artifact into the repository. New version appears at once with the rename of the whole directory,
+     * otherwise the binaries are moved next to the current ones and then the properties referring them replace the current ones.
+     * Binaries of the replaced properties are kept until the next upload of the version, so downloads which have just read
+     * the properties don't miss them, older binaries are removed.
+     */
+    private synchronized void publish(Path stagingDir, Path versionDir, String binariesDir) throws IOException {
+        Files.createDirectories(versionDir.getParent());
+
+        if (!Files.exists(versionDir)) {
+            Files.move(stagingDir, versionDir, ATOMIC_MOVE);
+            return;
+        }
+
+        Optional<Properties> replaced = readProperties(versionDir.resolve(PROPERTIES_FILE));
+        Files.move(stagingDir.resolve(binariesDir), versionDir.resolve(binariesDir), ATOMIC_MOVE);
+        Files.move(stagingDir.resolve(PROPERTIES_FILE), versionDir.resolve(PROPERTIES_FILE), REPLACE_EXISTING, ATOMIC_MOVE);
+
+        String replacedBinariesDir = replaced.map(props -> props.getProperty(BINARIES_DIR_PROPERTY)).orElse(null);
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(versionDir, BINARIES_DIR_PREFIX + "*")) {
+            for (Path dir : dirs) {
+                String name = dir.getFileName().toString();
+                if (!name.equals(binariesDir) && !name.equals(replacedBinariesDir)) {
+                    FileUtils.deleteQuietly(dir.toFile());
+                }
+            }
+        }
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 
@@ -173,15 +354,7 @@ public class ArtifactStorage {
      */
     public Properties loadProperties(String artifact, String version) throws IOException {
         Properties props = new Properties();
-        Path propertiesFile = getPropertiesFile(artifact, version);
-        if (!Files.exists(propertiesFile)) {
-            throw new ArtifactNotFoundException(artifact, version);
-        }
-
-        try (InputStream in = new BufferedInputStream(Files.newInputStream(propertiesFile))) {
-            props.load(in);
-        }
-
+        props.putAll(getProperties(artifact, version));
         return props;
     }
 
@@ -202,6 +375,12 @@ public class ArtifactStorage {
         try (OutputStream out = new BufferedOutputStream(newOutputStream(propertiesFile))) {
             props.store(out, null);
         }
+
+        if (indexed) {
+            Properties copy = new Properties();
+            copy.putAll(props);
+            putIndexed(artifact, version, copy);
+        }
     }
 
     /**
@@ -211,7 +390,7 @@ public class ArtifactStorage {
      *         if an I/O error occurs
      */
     protected boolean isAuthenticationRequired(String artifact, String version) throws IOException {
-        return "true".equalsIgnoreCase((String)loadProperties(artifact, version).get(AUTHENTICATION_REQUIRED_PROPERTY));
+        return "true".equalsIgnoreCase((String)getProperties(artifact, version).get(AUTHENTICATION_REQUIRED_PROPERTY));
     }
 
     /**
@@ -220,7 +399,7 @@ public class ArtifactStorage {
      *         if an I/O error occurs
      */
     protected String getRequiredSubscription(String artifact, String version) throws IOException {
-        return (String)loadProperties(artifact, version).get(SUBSCRIPTION_PROPERTY);
+        return (String)getProperties(artifact, version).get(SUBSCRIPTION_PROPERTY);
     }
 
 
@@ -230,7 +409,7 @@ public class ArtifactStorage {
      *         if an I/O error occurs
      */
     protected String getFileName(String artifact, String version) throws IOException {
-        return (String)loadProperties(artifact, version).get(FILE_NAME_PROPERTY);
+        return (String)getProperties(artifact, version).get(FILE_NAME_PROPERTY);
     }
 
     /**
@@ -239,8 +418,17 @@ public class ArtifactStorage {
      *         if an I/O error occurs
      */
     protected Path getArtifact(String artifact, String version) throws IOException {
-        String fileName = getFileName(artifact, version);
-        return getArtifact(artifact, version, fileName);
+        return getArtifact(artifact, version, getProperties(artifact, version));
+    }
+
+    /**
+     * @return the path to the binaries described by the given properties of the artifact,
+     * using the same properties for everything else about the binaries keeps them consistent while the version is uploaded again
+     */
+    protected Path getArtifact(String artifact, String version, Properties props) {
+        Path versionDir = getArtifactDir(artifact, version);
+        String binariesDir = props.getProperty(BINARIES_DIR_PROPERTY);
+        return (binariesDir == null ? versionDir : versionDir.resolve(binariesDir)).resolve(props.getProperty(FILE_NAME_PROPERTY));
     }
 
     protected Path getArtifact(String artifact, String version, String fileName) {
@@ -262,4 +450,189 @@ public class ArtifactStorage {
     protected Path getPropertiesFile(String artifact, String version) {
         return getArtifactDir(artifact, version).resolve(PROPERTIES_FILE);
     }
+
+    /**
+     * @return the properties of the artifact, they are shared with the index and mustn't be modified
+     * @throws com.codenvy.im.artifacts.ArtifactNotFoundException
+     *         if properties of the artifact are absent in the repository
+     */
+    private Properties getProperties(String artifact, String version) throws IOException {
+        if (indexed) {
+            Optional<Properties> props = getIndexed(artifact, version);
+            if (props != null && props.isPresent()) {
+                return props.get();
+            }
+        }
+
+        // either index is disabled or watcher hasn't caught up with the changes yet
+        Optional<Properties> props = readProperties(getPropertiesFile(artifact, version));
+        if (!props.isPresent()) {
+            throw new ArtifactNotFoundException(artifact, version);
+        }
+
+        if (indexed) {
+            putIndexed(artifact, version, props.get());
+        }
+        return props.get();
+    }
+
+    private TreeSet<Version> listVersions(String artifact) throws IOException {
+        if (indexed) {
+            NavigableMap<Version, Optional<Properties>> versions = index.get(artifact);
+            return versions == null ? new TreeSet<>() : new TreeSet<>(versions.keySet());
+        }
+        return getVersionsList(getArtifactDir(artifact));
+    }
+
+    @Nullable
+    private Optional<Properties> getIndexed(String artifact, String version) {
+        NavigableMap<Version, Optional<Properties>> versions = index.get(artifact);
+        if (versions == null) {
+            return null;
+        }
+
+        try {
+            return versions.get(Version.valueOf(version));
+        } catch (IllegalVersionException e) {
+            return null;
+        }
+    }
+
+    private void putIndexed(String artifact, String version, Properties props) {
+        try {
+            index.computeIfAbsent(artifact, key -> new ConcurrentSkipListMap<>()).put(Version.valueOf(version), Optional.of(props));
+            indexVersion.incrementAndGet();
+        } catch (IllegalVersionException e) {
+            // such a version is never listed, so there is no need to index it
+        }
+    }
+
+    private Optional<Properties> readProperties(Path propertiesFile) throws IOException {
+        if (!Files.exists(propertiesFile)) {
+            return Optional.empty();
+        }
+
+        Properties props = new Properties();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(propertiesFile))) {
+            props.load(in);
+        }
+        return Optional.of(props);
+    }
+
+    private void rebuildIndex() throws IOException {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(getRepositoryDir())) {
+            for (Path dir : dirs) {
+                reindexArtifact(dir);
+            }
+        }
+        index.keySet().removeIf(artifact -> !Files.isDirectory(getArtifactDir(artifact)));
+        indexVersion.incrementAndGet();
+    }
+
+    private void reindexArtifact(Path artifactDir) throws IOException {
+        String artifact = artifactDir.getFileName().toString();
+        if (artifact.startsWith(".")) {
+            return; // staging directories aren't artifacts
+        }
+
+        if (!Files.isDirectory(artifactDir)) {
+            if (index.remove(artifact) != null) {
+                indexVersion.incrementAndGet();
+            }
+            return;
+        }
+
+        register(artifactDir);
+        ConcurrentNavigableMap<Version, Optional<Properties>> versions = index.computeIfAbsent(artifact, key -> new ConcurrentSkipListMap<>());
+        TreeSet<Version> actualVersions = new TreeSet<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(artifactDir)) {
+            for (Path dir : dirs) {
+                Version version = reindexVersion(artifact, dir);
+                if (version != null) {
+                    actualVersions.add(version);
+                }
+            }
+        }
+        versions.keySet().retainAll(actualVersions);
+        indexVersion.incrementAndGet();
+    }
+
+    /** @return the version of the indexed directory or null if it isn't a version directory or it is absent */
+    @Nullable
+    private Version reindexVersion(String artifact, Path versionDir) throws IOException {
+        Version version;
+        try {
+            version = Version.valueOf(versionDir.getFileName().toString());
+        } catch (IllegalVersionException e) {
+            return null; // maybe it isn't a version directory
+        }
+
+        ConcurrentNavigableMap<Version, Optional<Properties>> versions = index.computeIfAbsent(artifact, key -> new ConcurrentSkipListMap<>());
+        if (Files.isDirectory(versionDir)) {
+            register(versionDir);
+            versions.put(version, readProperties(versionDir.resolve(PROPERTIES_FILE)));
+            indexVersion.incrementAndGet();
+            return version;
+        }
+
+        versions.remove(version);
+        indexVersion.incrementAndGet();
+        return null;
+    }
+
+    /** Registering of already watched directory returns the same key, so it is safe to call it repeatedly. */
+    private void register(Path dir) throws IOException {
+        watchedDirs.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+    }
+
+    private void watch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir = watchedDirs.get(key);
+            try {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        rebuildIndex();
+                    } else if (dir != null) {
+                        onChange(dir.resolve((Path)event.context()));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Can't update the index of the repository. " + e.getMessage(), e);
+            }
+
+            if (!key.reset()) {
+                watchedDirs.remove(key);
+            }
+        }
+    }
+
+    private void onChange(Path path) throws IOException {
+        Path relative = getRepositoryDir().relativize(path);
+        if (relative.getName(0).toString().startsWith(".")) {
+            return;
+        }
+
+        switch (relative.getNameCount()) {
+            case 1:
+                reindexArtifact(path);
+                break;
+            case 2:
+                reindexVersion(relative.getName(0).toString(), path);
+                break;
+            case 3:
+                if (PROPERTIES_FILE.equals(path.getFileName().toString())) {
+                    reindexVersion(relative.getName(0).toString(), path.getParent());
+                }
+                break;
+            default:
+                // nested files don't affect the index
+        }
+    }
 }
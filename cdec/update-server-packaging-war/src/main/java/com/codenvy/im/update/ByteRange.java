@@ -0,0 +1,97 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.im.update;
+
+import org.eclipse.che.commons.annotation.Nullable;
+
+import static java.lang.String.format;
+
+/**
+ * A single byte range of the file requested by the {@code Range} header, see RFC 7233.
+ */
+final class ByteRange {
+    private static final String BYTES_UNIT = "bytes=";
+
+    private final long first;
+    private final long last;
+    private final long size;
+
+    private ByteRange(long first, long last, long size) {
+        this.first = first;
+        this.last = last;
+        this.size = size;
+    }
+
+    /**
+     * Parses the value of the {@code Range} header for the file of the given size.
+     *
+     * @return the requested range, or null if the header is malformed or asks for several ranges,
+     * in these cases the whole file is supposed to be served
+     */
+    @Nullable
+    static ByteRange parse(@Nullable String header, long size) {
+        if (header == null || !header.startsWith(BYTES_UNIT) || header.indexOf(',') != -1) {
+            return null;
+        }
+
+        String spec = header.substring(BYTES_UNIT.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+
+        try {
+            if (dash == 0) {
+                long suffixLength = Long.parseLong(spec.substring(1));
+                if (suffixLength < 0) {
+                    return null;
+                }
+                return new ByteRange(Math.max(0, size - suffixLength), size - 1, size);
+            }
+
+            long first = Long.parseLong(spec.substring(0, dash));
+            String lastSpec = spec.substring(dash + 1);
+            long last = lastSpec.isEmpty() ? size - 1 : Long.parseLong(lastSpec);
+            if (first > last) {
+                return null;
+            }
+            return new ByteRange(first, Math.min(last, size - 1), size);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** @return false if the range lays beyond the file, then the request can't be satisfied */
+    boolean isSatisfiable() {
+        return first < size && first <= last;
+    }
+
+    long getFirst() {
+        return first;
+    }
+
+    long getLast() {
+        return last;
+    }
+
+    long getLength() {
+        return last - first + 1;
+    }
+
+    /** @return the value of the {@code Content-Range} header */
+    String toContentRange() {
+        return format("bytes %d-%d/%d", first, last, size);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.im.update;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.google.inject.Singleton;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Collects the statistics of artifacts served by the repository, per artifact.
+ */
+@Singleton
+public class DownloadStatistics {
+
+    private final ConcurrentMap<String, ArtifactStatistics> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * Records a single served download, either complete or partial.
+     *
+     * @param artifact
+     *         the name of the artifact
+     * @param bytes
+     *         the number of bytes sent to the client
+     * @param nanos
+     *         how long the sending took
+     */
+    public void record(String artifact, long bytes, long nanos) {
+        ArtifactStatistics artifactStatistics = statistics.computeIfAbsent(artifact, key -> new ArtifactStatistics());
+        artifactStatistics.downloads.increment();
+        artifactStatistics.bytes.add(bytes);
+        artifactStatistics.nanos.add(nanos);
+    }
+
+    /** @return the number of bytes served per artifact */
+    @Gauge(name = "update.repository.bytes_served")
+    public Map<String, Long> getBytesServed() {
+        return collect(s -> s.bytes.sum());
+    }
+
+    /** @return the number of downloads per artifact, including partial ones */
+    @Gauge(name = "update.repository.downloads")
+    public Map<String, Long> getDownloads() {
+        return collect(s -> s.downloads.sum());
+    }
+
+    /** @return the average throughput of downloads per artifact in bytes per second */
+    @Gauge(name = "update.repository.throughput_bytes_per_sec")
+    public Map<String, Long> getThroughput() {
+        return collect(s -> {
+            long nanos = s.nanos.sum();
+            return nanos == 0 ? 0 : s.bytes.sum() * TimeUnit.SECONDS.toNanos(1) / nanos;
+        });
+    }
+
+    private Map<String, Long> collect(Function<ArtifactStatistics, Long> value) {
+        return statistics.entrySet().stream().collect(toMap(Map.Entry::getKey, e -> value.apply(e.getValue())));
+    }
+
+    private static class ArtifactStatistics {
+        final LongAdder downloads = new LongAdder();
+        final LongAdder bytes     = new LongAdder();
+        final LongAdder nanos     = new LongAdder();
+    }
+}
@@ -32,7 +32,6 @@ import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.eclipse.che.api.core.ApiException;
 import org.eclipse.che.api.core.rest.annotations.GenerateLink;
 import org.eclipse.che.commons.annotation.Nullable;
@@ -48,21 +47,26 @@ import javax.mail.MessagingException;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -70,6 +74,9 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Pattern;
 
+import static com.codenvy.im.artifacts.ArtifactProperties.AUTHENTICATION_REQUIRED_PROPERTY;
+import static com.codenvy.im.artifacts.ArtifactProperties.FILE_NAME_PROPERTY;
+import static com.codenvy.im.artifacts.ArtifactProperties.MD5_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.PUBLIC_PROPERTIES;
 import static java.lang.String.format;
 
@@ -88,6 +95,11 @@ public class RepositoryService {
     public static final String  CAN_NOT_ADD_TRIAL_SUBSCRIPTION =
         "You do not have a valid subscription to install Codenvy. Please contact sales@codenvy.com to add subscription.";
 
+    private static final String RANGE         = "Range";
+    private static final String IF_RANGE      = "If-Range";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+
     static Logger LOG = LoggerFactory.getLogger(RepositoryService.class);  // with default access and is not final for testing propose
 
     private final String                  saasApiEndpoint;
@@ -97,6 +109,7 @@ public class RepositoryService {
     private final MailUtil                mailUtil;
     private final SaasUserServiceProxy    saasUserServiceProxy;
     private final EventLogger             eventLogger;
+    private final DownloadStatistics      downloadStatistics;
 
     @Inject
     public RepositoryService(@Named("saas.api.endpoint") String saasApiEndpoint,
@@ -105,7 +118,8 @@ public class RepositoryService {
                              HttpTransport httpTransport,
                              MailUtil mailUtil,
                              SaasUserServiceProxy saasUserServiceProxy,
-                             EventLogger eventLogger) {
+                             EventLogger eventLogger,
+                             DownloadStatistics downloadStatistics) {
         this.artifactStorage = artifactStorage;
         this.httpTransport = httpTransport;
         this.saasApiEndpoint = saasApiEndpoint;
@@ -113,6 +127,7 @@ public class RepositoryService {
         this.mailUtil = mailUtil;
         this.saasUserServiceProxy = saasUserServiceProxy;
         this.eventLogger = eventLogger;
+        this.downloadStatistics = downloadStatistics;
     }
 
     /**
@@ -226,6 +241,12 @@ public class RepositoryService {
      *         the name of the artifact
      * @param version
      *         the version of the artifact
+     * @param range
+     *         the byte range of the artifact to download, the whole artifact is downloaded if absent
+     * @param ifRange
+     *         the entity tag the range is valid for
+     * @param ifNoneMatch
+     *         the entity tags of the artifact the client already has
      * @return Response
      */
     @GenerateLink(rel = "download artifact")
@@ -233,10 +254,13 @@ public class RepositoryService {
     @Path("/download/{artifact}/{version}")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
     public Response download(@PathParam("artifact") final String artifact,
-                             @PathParam("version") final String version) {
+                             @PathParam("version") final String version,
+                             @HeaderParam(RANGE) final String range,
+                             @HeaderParam(IF_RANGE) final String ifRange,
+                             @HeaderParam(HttpHeaders.IF_NONE_MATCH) final String ifNoneMatch) {
         try {
             String userId = userManager.getCurrentUser().getUserId();
-            return doDownloadArtifact(artifact, version, userId);
+            return doDownloadArtifact(artifact, version, userId, range, ifRange, ifNoneMatch);
         } catch (ArtifactNotFoundException e) {
             return Response.status(Response.Status.NOT_FOUND).entity(
                     "Unexpected error. Can't download the artifact " + artifact + ":" + version + ". " + e.getMessage()).build();
@@ -255,6 +279,12 @@ public class RepositoryService {
      *         the artifact name
      * @param version
      *         the version of the artifact
+     * @param range
+     *         the byte range of the artifact to download, the whole artifact is downloaded if absent
+     * @param ifRange
+     *         the entity tag the range is valid for
+     * @param ifNoneMatch
+     *         the entity tags of the artifact the client already has
      * @return Response
      */
     @GenerateLink(rel = "download artifact")
@@ -262,9 +292,12 @@ public class RepositoryService {
     @Path("/public/download/{artifact}/{version}")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
     public Response downloadPublicArtifact(@PathParam("artifact") String artifact,
-                                           @PathParam("version") String version) {
+                                           @PathParam("version") String version,
+                                           @HeaderParam(RANGE) String range,
+                                           @HeaderParam(IF_RANGE) String ifRange,
+                                           @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
-            return doDownloadArtifact(artifact, version, null);
+            return doDownloadArtifact(artifact, version, null, range, ifRange, ifNoneMatch);
         } catch (ArtifactNotFoundException e) {
             return Response.status(Response.Status.NOT_FOUND).entity(
                     "Unexpected error. Can't download the artifact " + artifact + ":" + version + ". " + e.getMessage()).build();
@@ -283,6 +316,12 @@ public class RepositoryService {
      *         the name of the artifact
      * @param label
      *         label of artifact version
+     * @param range
+     *         the byte range of the artifact to download, the whole artifact is downloaded if absent
+     * @param ifRange
+     *         the entity tag the range is valid for
+     * @param ifNoneMatch
+     *         the entity tags of the artifact the client already has
      * @return Response
      */
     @GenerateLink(rel = "download artifact")
@@ -290,10 +329,13 @@ public class RepositoryService {
     @Path("/public/download/{artifact}")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
     public Response downloadPublicArtifactLatestVersion(@PathParam("artifact") final String artifact,
-                                                        @QueryParam("label") final String label) {
+                                                        @QueryParam("label") final String label,
+                                                        @HeaderParam(RANGE) final String range,
+                                                        @HeaderParam(IF_RANGE) final String ifRange,
+                                                        @HeaderParam(HttpHeaders.IF_NONE_MATCH) final String ifNoneMatch) {
         try {
             String version = artifactStorage.getLatestVersion(artifact, label);
-            return doDownloadArtifact(artifact, version, null);
+            return doDownloadArtifact(artifact, version, null, range, ifRange, ifNoneMatch);
         } catch (ArtifactNotFoundException e) {
             return Response.status(Response.Status.NOT_FOUND).entity(e.getMessage()).build();
         } catch (Exception e) {
@@ -305,8 +347,13 @@ public class RepositoryService {
 
     private Response doDownloadArtifact(final String artifact,
                                         final String version,
-                                        @Nullable final String userId) throws IOException {
-        final java.nio.file.Path path = artifactStorage.getArtifact(artifact, version);
+                                        @Nullable final String userId,
+                                        @Nullable final String rangeHeader,
+                                        @Nullable final String ifRange,
+                                        @Nullable final String ifNoneMatch) throws IOException {
+        // everything about the binaries is taken from the same properties, they may be replaced by a new upload meanwhile
+        final Properties properties = artifactStorage.loadProperties(artifact, version);
+        final java.nio.file.Path path = artifactStorage.getArtifact(artifact, version, properties);
         final boolean publicURL = userId == null;
 
         if (!Files.exists(path)) {
@@ -316,24 +363,56 @@ public class RepositoryService {
         }
 
         if (publicURL &&
-            (artifactStorage.isAuthenticationRequired(artifact, version))) {
+            "true".equalsIgnoreCase(properties.getProperty(AUTHENTICATION_REQUIRED_PROPERTY))) {
             return Response.status(Response.Status.UNAUTHORIZED).entity("Artifact '" + artifact + "' is not in public access").build();
         }
 
-        final String fileName = artifactStorage.getFileName(artifact, version);
+        final String fileName = properties.getProperty(FILE_NAME_PROPERTY);
+        final long size = Files.size(path);
+
+        final String md5 = properties.getProperty(MD5_PROPERTY);
+        final EntityTag etag = md5 == null ? null : new EntityTag(md5);
+        if (etag != null && matches(ifNoneMatch, etag)) {
+            return Response.notModified(etag).build();
+        }
+
+        // a range is ignored if the client's copy of the artifact is outdated
+        final ByteRange range = ifRange == null || (etag != null && etag.toString().equals(ifRange.trim()))
+                                ? ByteRange.parse(rangeHeader, size)
+                                : null;
+        if (range != null && !range.isSatisfiable()) {
+            return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                           .header(CONTENT_RANGE, "bytes */" + size)
+                           .build();
+        }
+
+        final long first = range == null ? 0 : range.getFirst();
+        final long length = range == null ? size : range.getLength();
 
         if (!publicURL) {
             LOG.info(format("User '%s' is downloading %s", userId, fileName));
         }
 
         StreamingOutput stream = output -> {
-            try (InputStream input = new FileInputStream(path.toFile())) {
-                IOUtils.copyLarge(input, output);
-
-                Event event = EventFactory.createImArtifactDownloadedEventWithTime(artifact.toLowerCase(),
-                                                                                   version,
-                                                                                   userId == null ? "" : userId);
-                eventLogger.log(event);
+            final long start = System.nanoTime();
+            long sent = 0;
+            try (FileChannel input = FileChannel.open(path, StandardOpenOption.READ)) {
+                WritableByteChannel out = Channels.newChannel(output);
+                while (sent < length) {
+                    long transferred = input.transferTo(first + sent, length - sent, out);
+                    if (transferred <= 0) {
+                        throw new IOException(format("Artifact %s:%s was truncated while downloading", artifact, version));
+                    }
+                    sent += transferred;
+                }
+
+                // resumed downloads are counted once they reach the end of the artifact
+                if (first + length == size) {
+                    Event event = EventFactory.createImArtifactDownloadedEventWithTime(artifact.toLowerCase(),
+                                                                                       version,
+                                                                                       userId == null ? "" : userId);
+                    eventLogger.log(event);
+                }
 
             } catch (ClientAbortException e) {
                 // do nothing
@@ -341,15 +420,45 @@ public class RepositoryService {
             } catch (Exception e) {
                 LOG.info(format("User %s failed to download %s:%s", userId == null ? "Anonymous" : userId, artifact, version), e);
                 throw new IOException(e.getMessage(), e);
+            } finally {
+                downloadStatistics.record(artifact, sent, System.nanoTime() - start);
             }
         };
 
-        return Response.ok(stream)
-                       .header("Content-Length", String.valueOf(Files.size(path)))
+        Response.ResponseBuilder response = range == null ? Response.ok(stream)
+                                                           : Response.status(Response.Status.PARTIAL_CONTENT)
+                                                                     .entity(stream)
+                                                                     .header(CONTENT_RANGE, range.toContentRange());
+        if (etag != null) {
+            response.tag(etag);
+        }
+        return response.header("Content-Length", String.valueOf(length))
+                       .header(ACCEPT_RANGES, "bytes")
                        .header("Content-Disposition", "attachment; filename=" + fileName)
                        .build();
     }
 
+    /** Checks if any of entity tags listed in the {@code If-None-Match} header matches the given one, weak comparison is used. */
+    private static boolean matches(@Nullable String ifNoneMatch, EntityTag etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /** Log event. */
     @GenerateLink(rel = "log event")
     @POST
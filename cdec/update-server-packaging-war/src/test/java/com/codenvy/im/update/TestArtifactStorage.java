@@ -34,14 +34,24 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.Collection;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static com.codenvy.im.artifacts.ArtifactProperties.AUTHENTICATION_REQUIRED_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.BUILD_TIME_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.FILE_NAME_PROPERTY;
+import static com.codenvy.im.artifacts.ArtifactProperties.MD5_PROPERTY;
+import static com.codenvy.im.artifacts.ArtifactProperties.SHA256_PROPERTY;
+import static com.codenvy.im.artifacts.ArtifactProperties.SIZE_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.SUBSCRIPTION_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.VERSION_PROPERTY;
+import static com.codenvy.im.utils.Commons.toHexString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.spy;
 import static org.testng.Assert.assertEquals;
@@ -238,4 +248,132 @@ public class TestArtifactStorage extends BaseTest {
         spyArtifactStorage.upload(new ByteArrayInputStream("content".getBytes()), CDECArtifact.NAME, "1.0.0", "tmp", new Properties());
         spyArtifactStorage.getLatestVersion(CDECArtifact.NAME, "any value");
     }
+
+    @Test
+    public void testIndexShouldReflectStoredPropertiesAndReturnCopiesOfThem() throws Exception {
+        ArtifactStorage indexedStorage = new ArtifactStorage(DOWNLOAD_DIRECTORY.toString());
+        indexedStorage.start();
+        try {
+            indexedStorage.upload(new ByteArrayInputStream("content".getBytes()), CDECArtifact.NAME, "1.0.1", "tmp", new Properties());
+            Properties props = new Properties();
+            props.put(ArtifactProperties.LABEL_PROPERTY, "STABLE");
+            props.put(FILE_NAME_PROPERTY, "tmp");
+            indexedStorage.storeProperties(CDECArtifact.NAME, "1.0.0", props);
+
+            assertEquals(indexedStorage.getVersions(CDECArtifact.NAME, null).size(), 2);
+            assertEquals(indexedStorage.getLatestVersion(CDECArtifact.NAME, null), "1.0.1");
+            assertEquals(indexedStorage.getLatestVersion(CDECArtifact.NAME, "stable"), "1.0.0");
+
+            indexedStorage.loadProperties(CDECArtifact.NAME, "1.0.0").put(FILE_NAME_PROPERTY, "modified");
+            assertEquals(indexedStorage.getFileName(CDECArtifact.NAME, "1.0.0"), "tmp");
+        } finally {
+            indexedStorage.stop();
+        }
+    }
+
+    @Test
+    public void testIndexShouldBeUpdatedOnChangesInRepository() throws Exception {
+        Files.createDirectories(artifactStorage.getArtifactDir(CDECArtifact.NAME, "1.0.0"));
+
+        ArtifactStorage indexedStorage = new ArtifactStorage(DOWNLOAD_DIRECTORY.toString());
+        indexedStorage.start();
+        try {
+            assertEquals(indexedStorage.getVersions(CDECArtifact.NAME, null).size(), 1);
+            long indexVersion = indexedStorage.getIndexVersion();
+
+            // is written bypassing indexed storage
+            Properties props = new Properties();
+            props.put(ArtifactProperties.LABEL_PROPERTY, "STABLE");
+            artifactStorage.storeProperties(CDECArtifact.NAME, "1.0.1", props);
+
+            for (int i = 0; i < 100 && indexedStorage.getVersions(CDECArtifact.NAME, null).size() != 2; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(indexedStorage.getLatestVersion(CDECArtifact.NAME, "stable"), "1.0.1");
+            assertTrue(indexedStorage.getIndexVersion() > indexVersion);
+
+            Files.delete(artifactStorage.getPropertiesFile(CDECArtifact.NAME, "1.0.1"));
+            Files.delete(artifactStorage.getArtifactDir(CDECArtifact.NAME, "1.0.1"));
+
+            for (int i = 0; i < 100 && indexedStorage.getVersions(CDECArtifact.NAME, null).size() != 1; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(indexedStorage.getLatestVersion(CDECArtifact.NAME, null), "1.0.0");
+        } finally {
+            indexedStorage.stop();
+        }
+    }
+
+    @Test
+    public void testUploadShouldStoreChecksumsAndSize() throws Exception {
+        artifactStorage.upload(new ByteArrayInputStream("content".getBytes()), CDECArtifact.NAME, "1.0.1", "codenvy.zip", new Properties());
+
+        Properties props = artifactStorage.loadProperties(CDECArtifact.NAME, "1.0.1");
+        assertEquals(props.getProperty(MD5_PROPERTY), "9a0364b9e99bb480dd25e1f0284c8555");
+        assertEquals(props.getProperty(SHA256_PROPERTY), "ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73");
+        assertEquals(props.getProperty(SIZE_PROPERTY), "7");
+        assertEquals(new String(Files.readAllBytes(artifactStorage.getArtifact(CDECArtifact.NAME, "1.0.1"))), "content");
+
+        // nothing is left in the staging directory
+        try (Stream<Path> staged = Files.list(DOWNLOAD_DIRECTORY.resolve(".uploads"))) {
+            assertEquals(staged.count(), 0);
+        }
+    }
+
+    @Test
+    public void testUploadShouldReplaceExistedVersion() throws Exception {
+        artifactStorage.upload(new ByteArrayInputStream("content".getBytes()), CDECArtifact.NAME, "1.0.1", "codenvy.zip", new Properties());
+        artifactStorage.upload(new ByteArrayInputStream("new content".getBytes()), CDECArtifact.NAME, "1.0.1", "codenvy.zip", new Properties());
+
+        assertEquals(artifactStorage.loadProperties(CDECArtifact.NAME, "1.0.1").getProperty(SIZE_PROPERTY), "11");
+        assertEquals(new String(Files.readAllBytes(artifactStorage.getArtifact(CDECArtifact.NAME, "1.0.1"))), "new content");
+    }
+
+    @Test(timeOut = 60000)
+    public void testDownloadShouldBeConsistentWithPropertiesWhileVersionIsUploadedAgain() throws Exception {
+        String[] contents = {"content", "much longer content"};
+        artifactStorage.upload(new ByteArrayInputStream(contents[0].getBytes()), CDECArtifact.NAME, "1.0.1", "codenvy.zip", new Properties());
+
+        AtomicBoolean uploading = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> uploads = executor.submit(() -> {
+            try {
+                for (int i = 1; i <= 200; i++) {
+                    artifactStorage.upload(new ByteArrayInputStream(contents[i % 2].getBytes()), CDECArtifact.NAME, "1.0.1", "codenvy.zip",
+                                           new Properties());
+                }
+            } finally {
+                uploading.set(false);
+            }
+            return null;
+        });
+
+        while (uploading.get()) {
+            Properties props = artifactStorage.loadProperties(CDECArtifact.NAME, "1.0.1");
+            byte[] binaries = Files.readAllBytes(artifactStorage.getArtifact(CDECArtifact.NAME, "1.0.1", props));
+
+            assertEquals(String.valueOf(binaries.length), props.getProperty(SIZE_PROPERTY));
+            assertEquals(toHexString(MessageDigest.getInstance("MD5").digest(binaries)), props.getProperty(MD5_PROPERTY));
+        }
+        uploads.get();
+        executor.shutdown();
+
+        // only binaries of the current and the replaced uploads are kept
+        try (Stream<Path> binaries = Files.list(artifactStorage.getArtifactDir(CDECArtifact.NAME, "1.0.1"))) {
+            assertEquals(binaries.filter(Files::isDirectory).count(), 2);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class,
+          expectedExceptionsMessageRegExp = "MD5 sum of uploaded artifact codenvy:1.0.1 is 9a0364b9e99bb480dd25e1f0284c8555 but wrong is expected")
+    public void testUploadShouldFailIfChecksumMismatches() throws Exception {
+        Properties props = new Properties();
+        props.put(MD5_PROPERTY, "wrong");
+
+        try {
+            artifactStorage.upload(new ByteArrayInputStream("content".getBytes()), CDECArtifact.NAME, "1.0.1", "codenvy.zip", props);
+        } finally {
+            assertFalse(Files.exists(artifactStorage.getArtifactDir(CDECArtifact.NAME, "1.0.1")));
+        }
+    }
 }
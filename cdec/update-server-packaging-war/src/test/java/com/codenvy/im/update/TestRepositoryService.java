@@ -51,10 +51,12 @@ import static com.codenvy.im.artifacts.ArtifactProperties.ARTIFACT_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.AUTHENTICATION_REQUIRED_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.LABEL_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.MD5_PROPERTY;
+import static com.codenvy.im.artifacts.ArtifactProperties.SIZE_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.SUBSCRIPTION_PROPERTY;
 import static com.codenvy.im.artifacts.ArtifactProperties.VERSION_PROPERTY;
 import static com.jayway.restassured.RestAssured.given;
 import static java.lang.String.format;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.endsWith;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
@@ -64,7 +66,6 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
-import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 /**
@@ -96,6 +97,7 @@ public class TestRepositoryService extends BaseTest {
         put(AUTHENTICATION_REQUIRED_PROPERTY, "true");
     }};
     private SaasUserServiceProxy    saasUserServiceProxy;
+    private DownloadStatistics      downloadStatistics;
 
     @Override
     @BeforeMethod
@@ -103,6 +105,7 @@ public class TestRepositoryService extends BaseTest {
         MockitoAnnotations.initMocks(this);
 
         saasUserServiceProxy = new SaasUserServiceProxy("", mockHttpTransport);
+        downloadStatistics = new DownloadStatistics();
         artifactStorage = new ArtifactStorage(DOWNLOAD_DIRECTORY.toString());
         repositoryService = new RepositoryService("",
                                                   mockUserManager,
@@ -110,7 +113,8 @@ public class TestRepositoryService extends BaseTest {
                                                   mockHttpTransport,
                                                   mockMailUtil,
                                                   saasUserServiceProxy,
-                                                  mockEventLogger);
+                                                  mockEventLogger,
+                                                  downloadStatistics);
 
         when(mockUserManager.getCurrentUser()).thenReturn(new SubjectImpl("name", TEST_USER_ID, "token", false));
         super.setUp();
@@ -126,10 +130,11 @@ public class TestRepositoryService extends BaseTest {
         Map value = Commons.asMap(response.body().asString());
 
         assertNotNull(value);
-        assertEquals(value.size(), 3);
+        assertEquals(value.size(), 5);
         assertEquals(value.get(ARTIFACT_PROPERTY), InstallManagerArtifact.NAME);
         assertEquals(value.get(VERSION_PROPERTY), "1.0.2");
-        assertNull(value.get(MD5_PROPERTY));
+        assertEquals(value.get(MD5_PROPERTY), "9a0364b9e99bb480dd25e1f0284c8555");
+        assertEquals(value.get(SIZE_PROPERTY), "7");
     }
 
     @Test
@@ -157,7 +162,7 @@ public class TestRepositoryService extends BaseTest {
         Map value = Commons.asMap(response.body().asString());
 
         assertNotNull(value);
-        assertEquals(value.size(), 4);
+        assertEquals(value.size(), 6);
         assertEquals(value.get(ARTIFACT_PROPERTY), CDECArtifact.NAME);
         assertEquals(value.get(VERSION_PROPERTY), "1.0.1");
         assertEquals(value.get(LABEL_PROPERTY), VersionLabel.STABLE.toString());
@@ -191,11 +196,11 @@ public class TestRepositoryService extends BaseTest {
         Map value = Commons.asMap(response.body().asString());
 
         assertNotNull(value);
-        assertEquals(value.size(), 4);
+        assertEquals(value.size(), 6);
         assertEquals(value.get(ARTIFACT_PROPERTY), InstallManagerArtifact.NAME);
         assertEquals(value.get(VERSION_PROPERTY), "1.0.1");
         assertEquals(value.get(AUTHENTICATION_REQUIRED_PROPERTY), "true");
-        assertNull(value.get(MD5_PROPERTY));
+        assertEquals(value.get(MD5_PROPERTY), "9a0364b9e99bb480dd25e1f0284c8555");
     }
 
     @Test
@@ -216,6 +221,49 @@ public class TestRepositoryService extends BaseTest {
                    "Actual value: " + loggedEvent.getParameters().toString());
     }
 
+    @Test
+    public void testDownloadPublicArtifactRange() throws Exception {
+        artifactStorage.upload(new ByteArrayInputStream("content".getBytes()), InstallManagerArtifact.NAME, "1.0.1", "tmp", new Properties());
+
+        Response response = given().header("Range", "bytes=3-").when().get("repository/public/download/" + InstallManagerArtifact.NAME + "/1.0.1");
+        assertEquals(response.statusCode(), javax.ws.rs.core.Response.Status.PARTIAL_CONTENT.getStatusCode());
+        assertEquals(response.header("Content-Range"), "bytes 3-6/7");
+        assertEquals(IOUtils.toString(response.body().asInputStream()), "tent");
+        verify(mockEventLogger).log(any(Event.class));
+
+        response = given().header("Range", "bytes=-3").when().get("repository/public/download/" + InstallManagerArtifact.NAME + "/1.0.1");
+        assertEquals(response.statusCode(), javax.ws.rs.core.Response.Status.PARTIAL_CONTENT.getStatusCode());
+        assertEquals(IOUtils.toString(response.body().asInputStream()), "ent");
+
+        response = given().header("Range", "bytes=7-").when().get("repository/public/download/" + InstallManagerArtifact.NAME + "/1.0.1");
+        assertEquals(response.statusCode(), javax.ws.rs.core.Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode());
+        assertEquals(response.header("Content-Range"), "bytes */7");
+
+        assertEquals(downloadStatistics.getBytesServed().get(InstallManagerArtifact.NAME), Long.valueOf(7));
+        assertEquals(downloadStatistics.getDownloads().get(InstallManagerArtifact.NAME), Long.valueOf(2));
+    }
+
+    @Test
+    public void testDownloadPublicArtifactConditionally() throws Exception {
+        Properties properties = new Properties();
+        properties.put(MD5_PROPERTY, "9a0364b9e99bb480dd25e1f0284c8555");
+        artifactStorage.upload(new ByteArrayInputStream("content".getBytes()), InstallManagerArtifact.NAME, "1.0.1", "tmp", properties);
+
+        Response response = given().when().get("repository/public/download/" + InstallManagerArtifact.NAME + "/1.0.1");
+        assertEquals(response.statusCode(), OK_RESPONSE.getStatus());
+        assertEquals(response.header("ETag"), "\"9a0364b9e99bb480dd25e1f0284c8555\"");
+
+        response = given().header("If-None-Match", "\"9a0364b9e99bb480dd25e1f0284c8555\"")
+                          .when().get("repository/public/download/" + InstallManagerArtifact.NAME + "/1.0.1");
+        assertEquals(response.statusCode(), javax.ws.rs.core.Response.Status.NOT_MODIFIED.getStatusCode());
+
+        // range is ignored for outdated copy of the artifact
+        response = given().header("Range", "bytes=3-").header("If-Range", "\"outdated\"")
+                          .when().get("repository/public/download/" + InstallManagerArtifact.NAME + "/1.0.1");
+        assertEquals(response.statusCode(), OK_RESPONSE.getStatus());
+        assertEquals(IOUtils.toString(response.body().asInputStream()), "content");
+    }
+
     @Test
     public void testDownloadPublicErrorWhenArtifactAbsent() throws Exception {
         Response response = given().when().get("repository/public/download/installation-manager/1.0.2");
@@ -303,7 +351,8 @@ public class TestRepositoryService extends BaseTest {
                                                   mockHttpTransport,
                                                   mockMailUtil,
                                                   saasUserServiceProxy,
-                                                  mockEventLogger);
+                                                  mockEventLogger,
+                                                  downloadStatistics);
 
         javax.ws.rs.core.Response response = repositoryService.logEvent(requestContext, testEvent);
         assertEquals(response.getStatus(), OK_RESPONSE.getStatus());
@@ -341,7 +390,8 @@ public class TestRepositoryService extends BaseTest {
                                                   mockHttpTransport,
                                                   mockMailUtil,
                                                   saasUserServiceProxy,
-                                                  mockEventLogger);
+                                                  mockEventLogger,
+                                                  downloadStatistics);
 
         javax.ws.rs.core.Response response = repositoryService.logEvent(requestContext, testEvent);
         assertEquals(response.getStatus(), OK_RESPONSE.getStatus());
@@ -61,6 +61,7 @@ node default {
   $ldap_auth_user_password_attribute = getValue("CODENVY_LDAP_AUTH_USER_PASSWORD_ATTRIBUTE","NULL")
   $ldap_auth_allow_multiple_dns = getValue("CODENVY_LDAP_AUTH_ALLOW_MULTIPLE_DNS","false")
   $ldap_auth_subtree_search = getValue("CODENVY_LDAP_AUTH_SUBTREE_SEARCH","true")
+  $ldap_auth_cache_ttl_ms = getValue("CODENVY_LDAP_AUTH_CACHE_TTL_MS","-1")
 # LDAP connection settings
   $ldap_connection_provider= getValue("CODENVY_LDAP_CONNECTION_PROVIDER","NULL")
   $ldap_connection_bind_dn = getValue("CODENVY_LDAP_CONNECTION_BIND_DN","")
@@ -92,6 +93,7 @@ node default {
 # LDAP Synchronization settings
   $ldap_sync_initial_delay_ms = getValue("CODENVY_LDAP_SYNC_INITIAL_DELAY_MS","10000")
   $ldap_sync_period_ms = getValue("CODENVY_LDAP_SYNC_PERIOD_MS","-1")
+  $ldap_sync_full_period_ms = getValue("CODENVY_LDAP_SYNC_FULL_PERIOD_MS","-1")
   $ldap_sync_page_size = getValue("CODENVY_LDAP_SYNC_PAGE_SIZE","1000")
   $ldap_sync_page_read_timeout_ms = getValue("CODENVY_LDAP_SYNC_PAGE_READ_TIMEOUT_MS","30000")
   $ldap_sync_user_additional_dn = getValue("CODENVY_LDAP_SYNC_USER_ADDITIONAL_DN","NULL")
@@ -99,6 +101,7 @@ node default {
   $ldap_sync_user_attr_email = getValue("CODENVY_LDAP_SYNC_USER_ATTR_EMAIL","cn")
   $ldap_sync_user_attr_id = getValue("CODENVY_LDAP_SYNC_USER_ATTR_ID","objectGUID")
   $ldap_sync_user_attr_name = getValue("CODENVY_LDAP_SYNC_USER_ATTR_NAME","cn")
+  $ldap_sync_user_attr_modified = getValue("CODENVY_LDAP_SYNC_USER_ATTR_MODIFIED","modifyTimestamp")
   $ldap_sync_profile_attrs = getValue("CODENVY_LDAP_SYNC_PROFILE_ATTRS","")
   $ldap_sync_group_additional_dn = getValue("CODENVY_LDAP_SYNC_GROUP_ADDITIONAL_DN","NULL")
   $ldap_sync_group_filter = getValue("CODENVY_LDAP_SYNC_GROUP_FILTER","NULL")
@@ -0,0 +1,287 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.machine.backup;
+
+import com.google.common.hash.Hashing;
+
+import org.eclipse.che.commons.schedule.ScheduleRate;
+import org.slf4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.io.Files.asByteSource;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.COPY_ATTRIBUTES;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Content-addressed store of workspace backup files.
+ *
+ * <p>Every regular file of a backup is hard linked with the store entry named by the hash of its content,
+ * modification time, permissions and owner, so identical files of all the workspaces and all the backups
+ * occupy the disk space only once. Backup scripts replace files which content is changed, so only files
+ * with a single link need to be hashed after the next backup. Attributes of unchanged files are updated
+ * in place though, e.g. by rsync {@code --executability}, which changes them for all the linked files at once.
+ * Such files are found by the inode change time, which is not earlier than the backup start, their links
+ * are broken by copying the file and the attributes the store entry is named by are restored on the shared inode.
+ *
+ * <p>Store is kept in the {@code .snapshots} folder of {@code che.user.workspaces.storage},
+ * the entries which are not linked with any backup anymore are removed once per hour.
+ */
+@Singleton
+public class BackupSnapshotStore {
+    private static final Logger LOG = getLogger(BackupSnapshotStore.class);
+
+    private static final long CTIME_TOLERANCE_MS = 1000;
+
+    private final Path storeDir;
+
+    @Inject
+    public BackupSnapshotStore(@Named("che.user.workspaces.storage") File backupsRootDir) {
+        this.storeDir = backupsRootDir.toPath().resolve(".snapshots");
+    }
+
+    /**
+     * Replaces files of the given backup with links to the identical files of the store,
+     * adding the files which are not in the store yet.
+     *
+     * @param backupDir
+     *         folder of the workspace backup
+     * @param backupStart
+     *         the moment backup script started, linked files which inode is changed since then
+     *         are checked for the attributes updated in place
+     * @return statistics of the processed backup files
+     * @throws IOException
+     *         if any error occurs while reading the backup or writing the store
+     */
+    public Result deduplicate(Path backupDir, FileTime backupStart) throws IOException {
+        final Result result = new Result();
+        if (!Files.isDirectory(backupDir)) {
+            return result;
+        }
+        // file timestamps come from the coarse kernel clock which may be behind the system time
+        final long changedSince = backupStart.toMillis() - CTIME_TOLERANCE_MS;
+        Files.walkFileTree(backupDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if ((Integer)Files.getAttribute(file, "unix:nlink") == 1) {
+                    deduplicate(file, hash(file), attrs.size(), result);
+                } else if (((FileTime)Files.getAttribute(file, "unix:ctime")).toMillis() >= changedSince) {
+                    unlinkIfAttributesChanged(file, attrs.size(), result);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Breaks the link between the file and its store entry if the attributes of the shared inode
+     * differ from the ones the entry is named by, restoring the original attributes of the entry.
+     */
+    private void unlinkIfAttributesChanged(Path file, long size, Result result) throws IOException {
+        final String hash = hash(file);
+        final Path entry = findEntry(file, hash);
+        if (entry == null) {
+            // linked with another file of the backup or the entry is already removed
+            return;
+        }
+        final EntryAttributes original = EntryAttributes.parse(entry.getFileName().toString().substring(hash.length() + 1));
+        if (original.equals(EntryAttributes.of(file))) {
+            return;
+        }
+        final Path copy = file.resolveSibling('.' + file.getFileName().toString() + ".copy");
+        try {
+            Files.copy(file, copy, COPY_ATTRIBUTES, REPLACE_EXISTING);
+            EntryAttributes.of(file).applyTo(copy);
+            original.applyTo(entry);
+            Files.move(copy, file, ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+        LOG.debug("Attributes of backup file {} were changed in place, it is unlinked from store entry {}", file, entry);
+        deduplicate(file, hash, size, result);
+    }
+
+    /** Returns the store entry which is the same file as the given one, or null if there is no such entry. */
+    private Path findEntry(Path file, String hash) throws IOException {
+        final Path shardDir = storeDir.resolve(hash.substring(0, 2));
+        if (!Files.isDirectory(shardDir)) {
+            return null;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(shardDir, hash + "-*")) {
+            for (Path entry : entries) {
+                if (Files.isSameFile(entry, file)) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void deduplicate(Path file, String hash, long size, Result result) throws IOException {
+        final Path entry = storeDir.resolve(hash.substring(0, 2)).resolve(hash + '-' + EntryAttributes.of(file));
+        if (Files.exists(entry)) {
+            final Path link = file.resolveSibling('.' + file.getFileName().toString() + ".link");
+            try {
+                Files.createLink(link, entry);
+                Files.move(link, file, ATOMIC_MOVE, REPLACE_EXISTING);
+                result.deduplicatedBytes += size;
+            } catch (IOException e) {
+                // e.g. maximum number of links to the entry is reached, keep the file as is
+                Files.deleteIfExists(link);
+                LOG.debug("Can't link backup file {} with store entry {}: {}", file, entry, e.getMessage());
+            }
+        } else {
+            Files.createDirectories(entry.getParent());
+            try {
+                Files.createLink(entry, file);
+            } catch (FileAlreadyExistsException e) {
+                // concurrent backup has just added the same file, it will be linked by the next backup
+            }
+            result.newBytes += size;
+        }
+    }
+
+    private static String hash(Path file) throws IOException {
+        return asByteSource(file.toFile()).hash(Hashing.sha256()).toString();
+    }
+
+    /** Removes the store entries which are not linked with any backup file. */
+    @ScheduleRate(initialDelay = 1, period = 1, unit = TimeUnit.HOURS)
+    public void removeUnreferenced() {
+        if (!Files.isDirectory(storeDir)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(storeDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if ((Integer)Files.getAttribute(file, "unix:nlink") == 1) {
+                        Files.deleteIfExists(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOG.error("Failed to remove unreferenced backup store entries. " + e.getLocalizedMessage(), e);
+        }
+    }
+
+    /** Attributes of the file the store entry is named by, formatted as {@code <mtime>-<permissions>-<uid>-<gid>}. */
+    private static class EntryAttributes {
+        private final long   modified;
+        private final String permissions;
+        private final int    uid;
+        private final int    gid;
+
+        private EntryAttributes(long modified, String permissions, int uid, int gid) {
+            this.modified = modified;
+            this.permissions = permissions;
+            this.uid = uid;
+            this.gid = gid;
+        }
+
+        static EntryAttributes of(Path file) throws IOException {
+            return new EntryAttributes(Files.getLastModifiedTime(file).toMillis(),
+                                       PosixFilePermissions.toString(Files.getPosixFilePermissions(file)),
+                                       (Integer)Files.getAttribute(file, "unix:uid"),
+                                       (Integer)Files.getAttribute(file, "unix:gid"));
+        }
+
+        static EntryAttributes parse(String value) {
+            // permissions contain '-' but always have 9 characters, modification time may be negative
+            final int permissionsStart = value.indexOf('-', 1) + 1;
+            final int permissionsEnd = permissionsStart + 9;
+            final String[] ids = value.substring(permissionsEnd + 1).split("-");
+            return new EntryAttributes(Long.parseLong(value.substring(0, permissionsStart - 1)),
+                                       value.substring(permissionsStart, permissionsEnd),
+                                       Integer.parseInt(ids[0]),
+                                       Integer.parseInt(ids[1]));
+        }
+
+        void applyTo(Path file) throws IOException {
+            // changing the owner requires privileges, so it is changed only when it differs
+            if ((Integer)Files.getAttribute(file, "unix:uid") != uid) {
+                Files.setAttribute(file, "unix:uid", uid);
+            }
+            if ((Integer)Files.getAttribute(file, "unix:gid") != gid) {
+                Files.setAttribute(file, "unix:gid", gid);
+            }
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString(permissions));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof EntryAttributes)) {
+                return false;
+            }
+            final EntryAttributes that = (EntryAttributes)obj;
+            return modified == that.modified
+                   && uid == that.uid
+                   && gid == that.gid
+                   && permissions.equals(that.permissions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(modified, permissions, uid, gid);
+        }
+
+        @Override
+        public String toString() {
+            return Long.toString(modified) + '-' + permissions + '-' + uid + '-' + gid;
+        }
+    }
+
+    /** Statistics of the deduplicated backup. */
+    public static class Result {
+        private long newBytes;
+        private long deduplicatedBytes;
+
+        /** Returns the size of the files which content was not in the store before the backup. */
+        public long getNewBytes() {
+            return newBytes;
+        }
+
+        /** Returns the size of the files which were replaced with the links to the store. */
+        public long getDeduplicatedBytes() {
+            return deduplicatedBytes;
+        }
+    }
+}
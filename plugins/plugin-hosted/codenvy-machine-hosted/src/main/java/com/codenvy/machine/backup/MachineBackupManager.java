@@ -14,6 +14,7 @@
  */
 package com.codenvy.machine.backup;
 
+import com.codahale.metrics.annotation.Gauge;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Singleton;
 
@@ -29,19 +30,26 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static com.codenvy.machine.agent.CodenvyInfrastructureProvisioner.SYNC_STRATEGY_PROPERTY;
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * Copies workspace files between machine's host and backup storage.
  *
+ * <p>If {@code machine.backup.deduplicate} is enabled, files of each backup are deduplicated
+ * by {@link BackupSnapshotStore} once backup script finishes.
+ *
  * @author Alexander Garagatyi
  * @author Mykola Morhun
  */
@@ -58,6 +66,14 @@ public class MachineBackupManager {
     private final String                               projectFolderPath;
     private final ConcurrentMap<String, ReentrantLock> workspacesBackupLocks;
     private final boolean                              syncAgentInMachine;
+    private final BackupSnapshotStore                  snapshotStore;
+    private final AtomicLong                           lastBackupDuration;
+    private final LongAdder                            backupsNewBytes;
+    private final LongAdder                            backupsDeduplicatedBytes;
+
+    @com.google.inject.Inject(optional = true)
+    @Named("machine.backup.deduplicate")
+    private boolean deduplicate;
 
     @Inject
     public MachineBackupManager(@Named("machine.backup.backup_script") String backupScript,
@@ -67,7 +83,8 @@ public class MachineBackupManager {
                                 @Named("che.user.workspaces.storage") File backupsRootDir,
                                 WorkspaceIdHashLocationFinder workspaceIdHashLocationFinder,
                                 @Named(SYNC_STRATEGY_PROPERTY) String syncStrategy,
-                                @Named("che.workspace.projects.storage") String projectFolderPath) {
+                                @Named("che.workspace.projects.storage") String projectFolderPath,
+                                BackupSnapshotStore snapshotStore) {
         this.backupScript = backupScript;
         this.restoreScript = restoreScript;
         this.maxBackupDuration = maxBackupDurationSec;
@@ -75,6 +92,10 @@ public class MachineBackupManager {
         this.backupsRootDir = backupsRootDir;
         this.workspaceIdHashLocationFinder = workspaceIdHashLocationFinder;
         this.projectFolderPath = projectFolderPath;
+        this.snapshotStore = snapshotStore;
+        this.lastBackupDuration = new AtomicLong();
+        this.backupsNewBytes = new LongAdder();
+        this.backupsDeduplicatedBytes = new LongAdder();
 
         switch (syncStrategy) {
             case "rsync":
@@ -193,8 +214,20 @@ public class MachineBackupManager {
                                                   destPath,
                                                   Boolean.toString(removeSourceOnSuccess));
 
+        final long start = System.nanoTime();
+        final FileTime backupStart = FileTime.fromMillis(System.currentTimeMillis());
         try {
             execute(commandLine.asArray(), maxBackupDuration, srcAddress);
+            if (deduplicate) {
+                final BackupSnapshotStore.Result result = snapshotStore.deduplicate(Paths.get(destPath), backupStart);
+                backupsNewBytes.add(result.getNewBytes());
+                backupsDeduplicatedBytes.add(result.getDeduplicatedBytes());
+                LOG.debug("Backup of workspace {} has {} bytes of new content, {} bytes are deduplicated",
+                          workspaceId, result.getNewBytes(), result.getDeduplicatedBytes());
+            }
+            final long duration = NANOSECONDS.toMillis(System.nanoTime() - start);
+            lastBackupDuration.set(duration);
+            LOG.debug("Backup of workspace {} took {} ms", workspaceId, duration);
         } catch (TimeoutException e) {
             throw new ServerException("Backup of workspace " + workspaceId + " filesystem terminated due to timeout on "
                                       + srcAddress + " node.");
@@ -278,6 +311,24 @@ public class MachineBackupManager {
         }
     }
 
+    /** Returns duration of the last successful workspace backup in milliseconds. */
+    @Gauge(name = "machine.backup.last_duration_ms")
+    public long getLastBackupDuration() {
+        return lastBackupDuration.get();
+    }
+
+    /** Returns total size of the backed up files which content was new to the backup store. */
+    @Gauge(name = "machine.backup.new_bytes")
+    public long getBackupsNewBytes() {
+        return backupsNewBytes.sum();
+    }
+
+    /** Returns total size of the backed up files which were replaced with links to identical files. */
+    @Gauge(name = "machine.backup.deduplicated_bytes")
+    public long getBackupsDeduplicatedBytes() {
+        return backupsDeduplicatedBytes.sum();
+    }
+
     @VisibleForTesting
     void execute(String[] commandLine, int timeout, String address) throws TimeoutException, IOException, InterruptedException {
         final ListLineConsumer outputConsumer = new ListLineConsumer();
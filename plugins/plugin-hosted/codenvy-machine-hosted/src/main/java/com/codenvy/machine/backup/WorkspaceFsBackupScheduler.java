@@ -14,6 +14,8 @@
  */
 package com.codenvy.machine.backup;
 
+import com.codahale.metrics.annotation.Gauge;
+import com.codenvy.activity.server.WorkspaceActivityManager;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
@@ -35,107 +37,316 @@ import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /**
  * Schedule backups of workspace fs of running machines.
  *
+ * <p>Workspace is backed up again only if there was an activity in it since the start of the backup before
+ * the last one, so one more backup is taken after the last activity to catch changes made by processes which
+ * are still running when user becomes idle. As files may be changed without any ws-agent activity
+ * workspace is backed up anyway if it was not backed up for {@code machine.backup.max_unchanged_period_second}.
+ *
+ * <p>At most {@code machine.backup.max_concurrent_backups} backups run at the same time and at most
+ * {@code machine.backup.max_concurrent_backups_per_node} of them copy files from the same node,
+ * backup of a machine which node is busy is postponed to the next scheduling.
+ * Queued backups are ordered by the time of the last successful backup of the machine, so the machines
+ * which were never backed up go first. Time of the next backup is shifted by a random delay
+ * up to tenth of the backup period to spread backups of the machines started at once.
+ * The first backup of a machine is delayed by a random part of the backup period,
+ * so backups of the machines which are already running when the scheduler starts are spread too.
+ *
  * @author Alexander Garagatyi
  */
 @Singleton
 public class WorkspaceFsBackupScheduler {
     private static final Logger LOG = LoggerFactory.getLogger(WorkspaceFsBackupScheduler.class);
 
-    private final long                          syncTimeoutMillisecond;
-    private final WorkspaceRuntimes             workspaceRuntimes;
-    private final MachineBackupManager          backupManager;
-    private final Map<String, Long>             lastMachineSynchronizationTime;
-    private final ExecutorService               executor;
-    private final ConcurrentMap<String, String> devMachinesBackupsInProgress;
-    private final Integer                       syncPort;
+    private final long                             syncTimeoutMillisecond;
+    private final WorkspaceRuntimes                workspaceRuntimes;
+    private final MachineBackupManager             backupManager;
+    private final Map<String, Long>                lastMachineSynchronizationTime;
+    private final ThreadPoolExecutor               executor;
+    private final ConcurrentMap<String, String>    devMachinesBackupsInProgress;
+    private final Integer                          syncPort;
+    private final WorkspaceActivityManager         activityManager;
+    private final Map<String, Long>                lastMachineBackupStartTime;
+    private final Map<String, Long>                previousMachineBackupStartTime;
+    private final long                             maxUnchangedPeriodMillisecond;
+    private final LongAdder                        skippedBackups;
+    private final int                              maxBackupsPerNode;
+    private final ConcurrentMap<String, Semaphore> nodesSemaphores;
+    private final LongAdder                        postponedBackups;
+    private final AtomicLong                       maxBackupLag;
+    private final AtomicLong                       currentMaxBackupLag;
 
     @Inject
     public WorkspaceFsBackupScheduler(WorkspaceRuntimes workspaceRuntimes,
                                       MachineBackupManager backupManager,
+                                      WorkspaceActivityManager activityManager,
                                       @Named("machine.backup.backup_period_second") long syncTimeoutSecond,
-                                      @Named("codenvy.workspace.projects_sync_port") Integer syncPort) {
+                                      @Named("machine.backup.max_unchanged_period_second") long maxUnchangedPeriodSecond,
+                                      @Named("codenvy.workspace.projects_sync_port") Integer syncPort,
+                                      @Named("machine.backup.max_concurrent_backups") int maxBackups,
+                                      @Named("machine.backup.max_concurrent_backups_per_node") int maxBackupsPerNode) {
         this.workspaceRuntimes = workspaceRuntimes;
         this.backupManager = backupManager;
+        this.activityManager = activityManager;
         this.syncTimeoutMillisecond = TimeUnit.SECONDS.toMillis(syncTimeoutSecond);
+        this.maxUnchangedPeriodMillisecond = TimeUnit.SECONDS.toMillis(maxUnchangedPeriodSecond);
         this.syncPort = syncPort == null || syncPort == 0 ? null : syncPort;
 
-        this.executor = Executors.newCachedThreadPool(
-                new ThreadFactoryBuilder().setNameFormat("MachineFsBackupScheduler-%s")
-                                          .setUncaughtExceptionHandler(LoggingUncaughtExceptionHandler.getInstance())
-                                          .build());
+        this.maxBackupsPerNode = maxBackupsPerNode;
+
+        this.executor = new ThreadPoolExecutor(maxBackups,
+                                               maxBackups,
+                                               60,
+                                               TimeUnit.SECONDS,
+                                               new PriorityBlockingQueue<>(),
+                                               new ThreadFactoryBuilder().setNameFormat("MachineFsBackupScheduler-%s")
+                                                                         .setUncaughtExceptionHandler(
+                                                                                 LoggingUncaughtExceptionHandler.getInstance())
+                                                                         .build());
+        this.executor.allowCoreThreadTimeOut(true);
         this.lastMachineSynchronizationTime = new ConcurrentHashMap<>();
         this.devMachinesBackupsInProgress = new ConcurrentHashMap<>();
+        this.lastMachineBackupStartTime = new ConcurrentHashMap<>();
+        this.previousMachineBackupStartTime = new ConcurrentHashMap<>();
+        this.skippedBackups = new LongAdder();
+        this.nodesSemaphores = new ConcurrentHashMap<>();
+        this.postponedBackups = new LongAdder();
+        this.maxBackupLag = new AtomicLong();
+        this.currentMaxBackupLag = new AtomicLong();
+    }
+
+    /** Returns the number of backups which were skipped because workspace was not changed. */
+    @Gauge(name = "machine.backup.skipped")
+    public long getSkippedBackups() {
+        return skippedBackups.sum();
+    }
+
+    /** Returns the number of backups which wait for a free backup thread. */
+    @Gauge(name = "machine.backup.queued")
+    public int getQueuedBackups() {
+        return executor.getQueue().size();
+    }
+
+    /** Returns the number of backups which were postponed because their node was busy with other backups. */
+    @Gauge(name = "machine.backup.postponed")
+    public long getPostponedBackups() {
+        return postponedBackups.sum();
+    }
+
+    /** Returns the longest time in milliseconds spent in the queue by the backups started during the previous scheduling period. */
+    @Gauge(name = "machine.backup.max_lag_ms")
+    public long getMaxBackupLag() {
+        return maxBackupLag.get();
     }
 
     @ScheduleRate(initialDelay = 1, period = 1, unit = TimeUnit.MINUTES)
     public void scheduleBackup() {
+        maxBackupLag.set(currentMaxBackupLag.getAndSet(0));
+        final Set<String> knownMachines = new HashSet<>();
+        boolean allMachinesKnown = true;
         for (Map.Entry<String, WorkspaceRuntimes.WorkspaceState> wsStateEntry :
                 workspaceRuntimes.getWorkspaces().entrySet()) {
 
             try {
                 WorkspaceRuntimes.RuntimeDescriptor runtimeDescriptor = workspaceRuntimes.get(wsStateEntry.getKey());
-                if (runtimeDescriptor.getRuntimeStatus().equals(WorkspaceStatus.RUNNING)) {
-
-                    MachineImpl devMachine = runtimeDescriptor.getRuntime().getDevMachine();
-                    String machineId = devMachine.getId();
-
-                    if (isTimeToBackup(machineId)) {
-                        executor.execute(() -> {
-                            // don't start new backup if previous one is in progress
-                            if (devMachinesBackupsInProgress.putIfAbsent(machineId, machineId) == null) {
-                                try {
-                                    backupWorkspaceInMachine(devMachine);
-
-                                    lastMachineSynchronizationTime.put(machineId, System.currentTimeMillis());
-                                } catch (NotFoundException ignore) {
-                                    // it is ok, machine was stopped while this backup task was in the executor queue
-                                } catch (Exception e) {
-                                    LOG.error(e.getLocalizedMessage(), e);
-                                } finally {
-                                    devMachinesBackupsInProgress.remove(machineId);
-                                }
-                            }
-                        });
+                MachineImpl devMachine = runtimeDescriptor.getRuntime() == null ? null
+                                                                                : runtimeDescriptor.getRuntime().getDevMachine();
+                if (devMachine == null) {
+                    continue;
+                }
+                String machineId = devMachine.getId();
+                // backup state is kept while workspace is not running for a while, e.g. while it is snapshotted
+                knownMachines.add(machineId);
+
+                if (runtimeDescriptor.getRuntimeStatus().equals(WorkspaceStatus.RUNNING) && isTimeToBackup(machineId)) {
+                    if (!isChangedSinceLastBackup(wsStateEntry.getKey(), machineId)) {
+                        skippedBackups.increment();
+                        continue;
+                    }
+                    // don't queue new backup if previous one is queued or in progress
+                    if (devMachinesBackupsInProgress.putIfAbsent(machineId, machineId) == null) {
+                        final Long lastBackupTime = lastMachineBackupStartTime.get(machineId);
+                        executor.execute(new BackupTask(devMachine, lastBackupTime == null ? 0 : lastBackupTime));
                     }
                 }
             } catch (NotFoundException e) {
                 // it's ok, means that ws is stopped
             } catch (ServerException e) {
+                allMachinesKnown = false;
                 LOG.error(e.getLocalizedMessage(), e);
             }
         }
+        if (allMachinesKnown) {
+            forgetStoppedMachines(knownMachines);
+        }
+        forgetIdleNodes();
+    }
+
+    /**
+     * Removes backup state of the machines which workspaces are stopped.
+     * State of a machine is updated by its backup task only while the machine is in
+     * {@link #devMachinesBackupsInProgress}, such machines are kept until the next scheduling,
+     * so a finished backup can't bring back the state of a stopped machine.
+     */
+    private void forgetStoppedMachines(Set<String> knownMachines) {
+        final Predicate<String> isStopped = machineId -> !knownMachines.contains(machineId)
+                                                         && !devMachinesBackupsInProgress.containsKey(machineId);
+        lastMachineSynchronizationTime.keySet().removeIf(isStopped);
+        lastMachineBackupStartTime.keySet().removeIf(isStopped);
+        previousMachineBackupStartTime.keySet().removeIf(isStopped);
+    }
+
+    /**
+     * Removes semaphores of the nodes which are not used by any backup, including the nodes which are gone.
+     * Semaphore is removed and acquired atomically, so a backup never holds a permit of a removed semaphore.
+     */
+    private void forgetIdleNodes() {
+        for (String host : nodesSemaphores.keySet()) {
+            nodesSemaphores.computeIfPresent(host, (h, semaphore) -> semaphore.availablePermits() == maxBackupsPerNode ? null
+                                                                                                                         : semaphore);
+        }
     }
 
     @VisibleForTesting
-    void backupWorkspaceInMachine(MachineImpl machine) throws NotFoundException, ServerException {
+    int getNodesCount() {
+        return nodesSemaphores.size();
+    }
+
+    /**
+     * Backs up workspace files of the given machine.
+     *
+     * @return {@code false} if backup is postponed because node of the machine is busy with other backups,
+     * {@code true} otherwise
+     */
+    @VisibleForTesting
+    boolean backupWorkspaceInMachine(MachineImpl machine) throws NotFoundException, ServerException {
         final Instance machineInstance = workspaceRuntimes.getMachine(machine.getWorkspaceId(), machine.getId());
         // for case if this task is in the executor queue and user stopped this machine before execution
         if (machineInstance.getStatus() != MachineStatus.RUNNING) {
-            return;
+            return true;
         }
         final InstanceNode node = machineInstance.getNode();
 
-        backupManager.backupWorkspace(machine.getWorkspaceId(),
-                                      node.getProjectsFolder(),
-                                      node.getHost(),
-                                      getSyncPort(machine));
+        final Semaphore nodeSemaphore = tryAcquireNodePermit(node.getHost());
+        if (nodeSemaphore == null) {
+            return false;
+        }
+        try {
+            backupManager.backupWorkspace(machine.getWorkspaceId(),
+                                          node.getProjectsFolder(),
+                                          node.getHost(),
+                                          getSyncPort(machine));
+        } finally {
+            nodeSemaphore.release();
+        }
+        return true;
+    }
+
+    /** Returns the semaphore of the node with acquired permit, or null if all the permits of the node are taken. */
+    private Semaphore tryAcquireNodePermit(String host) {
+        final Semaphore[] acquired = new Semaphore[1];
+        nodesSemaphores.compute(host, (h, semaphore) -> {
+            if (semaphore == null) {
+                semaphore = new Semaphore(maxBackupsPerNode);
+            }
+            if (semaphore.tryAcquire()) {
+                acquired[0] = semaphore;
+            }
+            return semaphore;
+        });
+        return acquired[0];
     }
 
     @VisibleForTesting
     boolean isTimeToBackup(String machineId) {
-        final Long lastMachineSyncTime = lastMachineSynchronizationTime.get(machineId);
+        final long currentTime = System.currentTimeMillis();
+        // machine which is not backed up yet is treated as if it was backed up a bit less than a backup period ago
+        final long lastMachineSyncTime = lastMachineSynchronizationTime.computeIfAbsent(machineId,
+                                                                                        id -> currentTime - syncTimeoutMillisecond - 1
+                                                                                              + getFirstBackupDelay());
+
+        return currentTime - lastMachineSyncTime > syncTimeoutMillisecond;
+    }
+
+    /** Returns the random delay of the first backup of a machine, which is not longer than the backup period. */
+    @VisibleForTesting
+    long getFirstBackupDelay() {
+        return ThreadLocalRandom.current().nextLong(syncTimeoutMillisecond + 1);
+    }
+
+    @VisibleForTesting
+    boolean isChangedSinceLastBackup(String workspaceId, String machineId) {
+        final Long lastBackupStartTime = lastMachineBackupStartTime.get(machineId);
+        final Long previousBackupStartTime = previousMachineBackupStartTime.get(machineId);
+        if (lastBackupStartTime == null || previousBackupStartTime == null
+            || System.currentTimeMillis() - lastBackupStartTime >= maxUnchangedPeriodMillisecond) {
+            return true;
+        }
+        final long lastActivityTime = activityManager.getLastActivityTime(workspaceId);
+        // activity is not tracked when workspaces are not stopped by timeout, then changes are unknown
+        return lastActivityTime < 0 || lastActivityTime >= previousBackupStartTime;
+    }
 
-        return lastMachineSyncTime == null || System.currentTimeMillis() - lastMachineSyncTime > syncTimeoutMillisecond;
+    /** Backup of the dev machine, backups of machines with older last backup go first. */
+    private class BackupTask implements Runnable, Comparable<BackupTask> {
+        private final MachineImpl devMachine;
+        private final long        lastBackupTime;
+        private final long        queuedTime;
+
+        BackupTask(MachineImpl devMachine, long lastBackupTime) {
+            this.devMachine = devMachine;
+            this.lastBackupTime = lastBackupTime;
+            this.queuedTime = System.currentTimeMillis();
+        }
+
+        @Override
+        public void run() {
+            final String machineId = devMachine.getId();
+            try {
+                final long backupStartTime = System.currentTimeMillis();
+                currentMaxBackupLag.accumulateAndGet(backupStartTime - queuedTime, Math::max);
+                if (!backupWorkspaceInMachine(devMachine)) {
+                    postponedBackups.increment();
+                    return;
+                }
+
+                final long backupEndTime = System.currentTimeMillis();
+                // spread backups of machines which were backed up at the same time
+                final long jitter = ThreadLocalRandom.current().nextLong(syncTimeoutMillisecond / 10 + 1);
+                lastMachineSynchronizationTime.put(machineId, backupEndTime + jitter);
+                final Long previousBackupStartTime = lastMachineBackupStartTime.put(machineId, backupStartTime);
+                if (previousBackupStartTime != null) {
+                    previousMachineBackupStartTime.put(machineId, previousBackupStartTime);
+                }
+            } catch (NotFoundException ignore) {
+                // it is ok, machine was stopped while this backup task was in the executor queue
+            } catch (Exception e) {
+                LOG.error(e.getLocalizedMessage(), e);
+            } finally {
+                devMachinesBackupsInProgress.remove(machineId);
+            }
+        }
+
+        @Override
+        public int compareTo(BackupTask that) {
+            return Long.compare(lastBackupTime, that.lastBackupTime);
+        }
     }
 
     private int getSyncPort(MachineImpl machine) throws ServerException {
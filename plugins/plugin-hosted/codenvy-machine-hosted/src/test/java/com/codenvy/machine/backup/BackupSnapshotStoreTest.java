@@ -0,0 +1,149 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.machine.backup;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.stream.Stream;
+
+import static org.eclipse.che.commons.lang.IoUtil.deleteRecursive;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for {@link BackupSnapshotStore}.
+ */
+public class BackupSnapshotStoreTest {
+    private static final FileTime MODIFIED = FileTime.fromMillis(1000000000000L);
+
+    private Path                rootDir;
+    private BackupSnapshotStore store;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        rootDir = Files.createTempDirectory("backups");
+        store = new BackupSnapshotStore(rootDir.toFile());
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        deleteRecursive(rootDir.toFile());
+    }
+
+    @Test
+    public void shouldLinkIdenticalFilesOfDifferentBackups() throws Exception {
+        final Path file1 = createFile("ws1/project/README.md", "content");
+        final Path file2 = createFile("ws2/other/README.md", "content");
+
+        final BackupSnapshotStore.Result result1 = deduplicate("ws1");
+        final BackupSnapshotStore.Result result2 = deduplicate("ws2");
+
+        assertEquals(result1.getNewBytes(), 7);
+        assertEquals(result1.getDeduplicatedBytes(), 0);
+        assertEquals(result2.getNewBytes(), 0);
+        assertEquals(result2.getDeduplicatedBytes(), 7);
+        assertTrue(Files.isSameFile(file1, file2));
+        assertEquals(new String(Files.readAllBytes(file2)), "content");
+    }
+
+    @Test
+    public void shouldNotLinkFilesWithDifferentContent() throws Exception {
+        final Path file1 = createFile("ws1/README.md", "content");
+        final Path file2 = createFile("ws2/README.md", "changed");
+
+        deduplicate("ws1");
+        final BackupSnapshotStore.Result result = deduplicate("ws2");
+
+        assertEquals(result.getNewBytes(), 7);
+        assertFalse(Files.isSameFile(file1, file2));
+    }
+
+    @Test
+    public void shouldNotHashFilesAlreadyLinkedWithStore() throws Exception {
+        createFile("ws1/README.md", "content");
+        deduplicate("ws1");
+
+        final BackupSnapshotStore.Result result = deduplicate("ws1");
+
+        assertEquals(result.getNewBytes(), 0);
+        assertEquals(result.getDeduplicatedBytes(), 0);
+    }
+
+    @Test
+    public void shouldRemoveEntriesWhichAreNotLinkedWithBackups() throws Exception {
+        final Path file = createFile("ws1/README.md", "content");
+        deduplicate("ws1");
+        Files.delete(file);
+
+        store.removeUnreferenced();
+
+        try (Stream<Path> entries = Files.walk(rootDir.resolve(".snapshots"))) {
+            assertFalse(entries.anyMatch(Files::isRegularFile));
+        }
+    }
+
+    @Test
+    public void shouldNotChangeModeOfLinkedFilesWhenModeOfOneOfThemIsUpdated() throws Exception {
+        final Path file1 = createFile("ws1/run.sh", "content");
+        final Path file2 = createFile("ws2/run.sh", "content");
+        Files.setPosixFilePermissions(file1, PosixFilePermissions.fromString("rw-r--r--"));
+        Files.setPosixFilePermissions(file2, PosixFilePermissions.fromString("rw-r--r--"));
+        deduplicate("ws1");
+        deduplicate("ws2");
+
+        // rsync --executability updates mode of the existing file in place
+        Files.setPosixFilePermissions(file1, PosixFilePermissions.fromString("rwxr-xr-x"));
+        deduplicate("ws1");
+
+        assertFalse(Files.isSameFile(file1, file2));
+        assertEquals(PosixFilePermissions.toString(Files.getPosixFilePermissions(file1)), "rwxr-xr-x");
+        assertEquals(PosixFilePermissions.toString(Files.getPosixFilePermissions(file2)), "rw-r--r--");
+        assertEquals(Files.getLastModifiedTime(file1), MODIFIED);
+        assertEquals(new String(Files.readAllBytes(file1)), "content");
+    }
+
+    @Test
+    public void shouldNotLinkFilesWithDifferentMode() throws Exception {
+        final Path file1 = createFile("ws1/run.sh", "content");
+        final Path file2 = createFile("ws2/run.sh", "content");
+        Files.setPosixFilePermissions(file1, PosixFilePermissions.fromString("rw-r--r--"));
+        Files.setPosixFilePermissions(file2, PosixFilePermissions.fromString("rwxr-xr-x"));
+
+        deduplicate("ws1");
+        final BackupSnapshotStore.Result result = deduplicate("ws2");
+
+        assertEquals(result.getNewBytes(), 7);
+        assertFalse(Files.isSameFile(file1, file2));
+    }
+
+    private BackupSnapshotStore.Result deduplicate(String backup) throws Exception {
+        return store.deduplicate(rootDir.resolve(backup), FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    private Path createFile(String path, String content) throws Exception {
+        final Path file = rootDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes());
+        Files.setLastModifiedTime(file, MODIFIED);
+        return file;
+    }
+}
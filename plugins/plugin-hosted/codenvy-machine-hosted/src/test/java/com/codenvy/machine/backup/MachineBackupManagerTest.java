@@ -88,6 +88,9 @@ public class MachineBackupManagerTest {
     @Mock
     private WorkspaceIdHashLocationFinder workspaceIdHashLocationFinder;
 
+    @Mock
+    private BackupSnapshotStore snapshotStore;
+
     @Captor
     private ArgumentCaptor<String[]> cmdCaptor;
 
@@ -104,7 +107,8 @@ public class MachineBackupManagerTest {
                                                      new File(BACKUPS_ROOT_PATH),
                                                      workspaceIdHashLocationFinder,
                                                      "rsync",
-                                                     "/projects-folder"));
+                                                     "/projects-folder",
+                                                     snapshotStore));
 
         when(workspaceIdHashLocationFinder.calculateDirPath(any(File.class), any(String.class)))
                 .thenReturn(new File(ABSOLUTE_PATH_TO_WORKSPACE_DIR));
@@ -14,6 +14,8 @@
  */
 package com.codenvy.machine.backup;
 
+import com.codenvy.activity.server.WorkspaceActivityManager;
+
 import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.model.machine.MachineStatus;
@@ -33,6 +35,8 @@ import org.testng.annotations.Test;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.Thread.sleep;
 import static org.mockito.Matchers.any;
@@ -42,6 +46,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -50,6 +55,9 @@ import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 /**
  * @author Alexander Garagatyi
@@ -66,6 +74,9 @@ public class WorkspaceFsBackupSchedulerTest {
     @Mock
     private MachineBackupManager backupManager;
 
+    @Mock
+    private WorkspaceActivityManager activityManager;
+
     private WorkspaceFsBackupScheduler scheduler;
 
     MachineImpl machine1;
@@ -84,10 +95,15 @@ public class WorkspaceFsBackupSchedulerTest {
     public void setUp() throws Exception {
         scheduler = spy(new WorkspaceFsBackupScheduler(workspaceRuntimes,
                                                        backupManager,
+                                                       activityManager,
                                                        5 * 60,
-                                                       22));
+                                                       60 * 60,
+                                                       22,
+                                                       10,
+                                                       1));
 
-        doNothing().when(scheduler).backupWorkspaceInMachine(any(MachineImpl.class));
+        doReturn(true).when(scheduler).backupWorkspaceInMachine(any(MachineImpl.class));
+        doReturn(0L).when(scheduler).getFirstBackupDelay();
 
         workspaces = new LinkedHashMap<>();
 
@@ -97,6 +113,7 @@ public class WorkspaceFsBackupSchedulerTest {
 
 
         when(machineInstance.getStatus()).thenReturn(MachineStatus.RUNNING);
+        when(activityManager.getLastActivityTime(anyString())).thenReturn(-1L);
     }
 
     private MachineImpl addWorkspace(String wsId, String machineId) throws Exception {
@@ -243,9 +260,13 @@ public class WorkspaceFsBackupSchedulerTest {
         MachineImpl machine = addWorkspace("ws3", "ms3");
         scheduler = spy(new WorkspaceFsBackupScheduler(workspaceRuntimes,
                                                        backupManager,
+                                                       activityManager,
                                                        0,
-                                                       22));
-        doNothing().when(scheduler).backupWorkspaceInMachine(any(MachineImpl.class));
+                                                       60 * 60,
+                                                       22,
+                                                       10,
+                                                       1));
+        doReturn(true).when(scheduler).backupWorkspaceInMachine(any(MachineImpl.class));
 
         scheduler.scheduleBackup();
 
@@ -261,6 +282,70 @@ public class WorkspaceFsBackupSchedulerTest {
         verify(scheduler, timeout(2000).times(2)).backupWorkspaceInMachine(eq(machine));
     }
 
+    @Test
+    public void shouldNotBackupMachineFsIfThereWasNoActivitySinceLastBackup() throws Exception {
+        // given
+        workspaces.clear();
+        MachineImpl machine = addWorkspace("ws3", "ms3");
+        when(activityManager.getLastActivityTime("ws3")).thenReturn(System.currentTimeMillis() - 1000);
+        scheduler = spy(new WorkspaceFsBackupScheduler(workspaceRuntimes,
+                                                       backupManager,
+                                                       activityManager,
+                                                       0,
+                                                       60 * 60,
+                                                       22,
+                                                       10,
+                                                       1));
+        doReturn(true).when(scheduler).backupWorkspaceInMachine(any(MachineImpl.class));
+
+        scheduler.scheduleBackup();
+        verify(scheduler, timeout(2000)).backupWorkspaceInMachine(eq(machine));
+        // wait until previous backup finish
+        sleep(100);
+        // one more backup after the last activity
+        scheduler.scheduleBackup();
+        verify(scheduler, timeout(2000).times(2)).backupWorkspaceInMachine(eq(machine));
+        sleep(100);
+
+        // when
+        scheduler.scheduleBackup();
+
+        // then
+        verify(scheduler, timeout(1000).times(2)).backupWorkspaceInMachine(eq(machine));
+        assertEquals(scheduler.getSkippedBackups(), 1);
+    }
+
+    @Test
+    public void shouldBackupMachineFsWithoutActivityIfMaxUnchangedPeriodIsExpired() throws Exception {
+        // given
+        workspaces.clear();
+        MachineImpl machine = addWorkspace("ws3", "ms3");
+        when(activityManager.getLastActivityTime("ws3")).thenReturn(System.currentTimeMillis() - 1000);
+        scheduler = spy(new WorkspaceFsBackupScheduler(workspaceRuntimes,
+                                                       backupManager,
+                                                       activityManager,
+                                                       0,
+                                                       0,
+                                                       22,
+                                                       10,
+                                                       1));
+        doReturn(true).when(scheduler).backupWorkspaceInMachine(any(MachineImpl.class));
+
+        scheduler.scheduleBackup();
+        verify(scheduler, timeout(2000)).backupWorkspaceInMachine(eq(machine));
+        sleep(100);
+        scheduler.scheduleBackup();
+        verify(scheduler, timeout(2000).times(2)).backupWorkspaceInMachine(eq(machine));
+        sleep(100);
+
+        // when
+        scheduler.scheduleBackup();
+
+        // then
+        verify(scheduler, timeout(2000).times(3)).backupWorkspaceInMachine(eq(machine));
+        assertEquals(scheduler.getSkippedBackups(), 0);
+    }
+
     @Test
     public void shouldNotBackupMachineFsIfPreviousBackupIsStillRunning() throws Exception {
         // given
@@ -268,13 +353,17 @@ public class WorkspaceFsBackupSchedulerTest {
         MachineImpl machine = addWorkspace("ws3", "ms3");
         scheduler = spy(new WorkspaceFsBackupScheduler(workspaceRuntimes,
                                                        backupManager,
+                                                       activityManager,
                                                        0,
-                                                       22));
-        doAnswer(new Answer<Void>() {
+                                                       60 * 60,
+                                                       22,
+                                                       10,
+                                                       1));
+        doAnswer(new Answer<Boolean>() {
             @Override
-            public Void answer(InvocationOnMock invocation) throws Throwable {
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
                 sleep(FAKE_BACKUP_TIME_MS);
-                return null;
+                return true;
             }
         }).when(scheduler).backupWorkspaceInMachine(any(MachineImpl.class));
 
@@ -289,6 +378,215 @@ public class WorkspaceFsBackupSchedulerTest {
         verify(scheduler, timeout(2000).times(1)).backupWorkspaceInMachine(eq(machine));
     }
 
+    @Test
+    public void shouldPostponeBackupIfNodeIsBusyWithAnotherBackup() throws Exception {
+        // given
+        when(machineInstance.getNode()).thenReturn(node);
+        when(node.getHost()).thenReturn("192.168.0.1");
+        when(node.getProjectsFolder()).thenReturn("/projects");
+        doCallRealMethod().when(scheduler).backupWorkspaceInMachine(any(MachineImpl.class));
+        final CountDownLatch backupStarted = new CountDownLatch(1);
+        final CountDownLatch backupFinish = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            backupStarted.countDown();
+            backupFinish.await();
+            return null;
+        }).when(backupManager).backupWorkspace(eq(WORKSPACE_ID_1), anyString(), anyString(), anyInt());
+        final Thread firstBackup = new Thread(() -> {
+            try {
+                scheduler.backupWorkspaceInMachine(machine1);
+            } catch (Exception ignored) {
+            }
+        });
+        firstBackup.start();
+        backupStarted.await();
+
+        // when
+        final boolean backedUp = scheduler.backupWorkspaceInMachine(machine2);
+        backupFinish.countDown();
+        firstBackup.join();
+
+        // then
+        assertFalse(backedUp);
+        verify(backupManager, never()).backupWorkspace(eq(WORKSPACE_ID_2), anyString(), anyString(), anyInt());
+        assertTrue(scheduler.backupWorkspaceInMachine(machine2));
+    }
+
+    @Test
+    public void shouldKeepBackupStateOfMachineWhileWorkspaceIsNotRunning() throws Exception {
+        // given
+        workspaces.clear();
+        MachineImpl machine = addWorkspace("ws3", "ms3");
+        scheduler.scheduleBackup();
+        verify(scheduler, timeout(2000)).backupWorkspaceInMachine(eq(machine));
+        sleep(100);
+        WorkspaceRuntimes.RuntimeDescriptor runtimeDescriptor = workspaceRuntimes.get("ws3");
+        when(runtimeDescriptor.getRuntimeStatus()).thenReturn(WorkspaceStatus.SNAPSHOTTING);
+        scheduler.scheduleBackup();
+        when(runtimeDescriptor.getRuntimeStatus()).thenReturn(WorkspaceStatus.RUNNING);
+
+        // when
+        scheduler.scheduleBackup();
+
+        // then
+        assertFalse(scheduler.isTimeToBackup("ms3"));
+        verify(scheduler, timeout(1000).times(1)).backupWorkspaceInMachine(eq(machine));
+    }
+
+    @Test
+    public void shouldForgetBackupStateOfStoppedMachine() throws Exception {
+        // given
+        workspaces.clear();
+        MachineImpl machine = addWorkspace("ws3", "ms3");
+        scheduler.scheduleBackup();
+        verify(scheduler, timeout(2000)).backupWorkspaceInMachine(eq(machine));
+        sleep(100);
+        assertFalse(scheduler.isTimeToBackup("ms3"));
+        workspaces.clear();
+
+        // when
+        scheduler.scheduleBackup();
+
+        // then
+        assertTrue(scheduler.isTimeToBackup("ms3"));
+    }
+
+    @Test
+    public void shouldForgetBackupStateOfMachineStoppedWhileItIsBackedUp() throws Exception {
+        // given
+        workspaces.clear();
+        MachineImpl machine = addWorkspace("ws3", "ms3");
+        final CountDownLatch backupStarted = new CountDownLatch(1);
+        final CountDownLatch backupFinish = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            backupStarted.countDown();
+            backupFinish.await();
+            return true;
+        }).when(scheduler).backupWorkspaceInMachine(eq(machine));
+        scheduler.scheduleBackup();
+        backupStarted.await();
+        workspaces.clear();
+        scheduler.scheduleBackup();
+        backupFinish.countDown();
+        verify(scheduler, timeout(2000)).backupWorkspaceInMachine(eq(machine));
+        sleep(100);
+
+        // when
+        scheduler.scheduleBackup();
+
+        // then
+        assertTrue(scheduler.isTimeToBackup("ms3"));
+    }
+
+    @Test
+    public void shouldDelayFirstBackupOfMachineByRandomPartOfBackupPeriod() throws Exception {
+        // given
+        workspaces.clear();
+        MachineImpl machine = addWorkspace("ws3", "ms3");
+        doReturn(TimeUnit.MINUTES.toMillis(1)).when(scheduler).getFirstBackupDelay();
+
+        // when
+        scheduler.scheduleBackup();
+
+        // then
+        assertFalse(scheduler.isTimeToBackup("ms3"));
+        verify(scheduler, never()).backupWorkspaceInMachine(eq(machine));
+        WorkspaceFsBackupScheduler realScheduler = new WorkspaceFsBackupScheduler(workspaceRuntimes,
+                                                                                  backupManager,
+                                                                                  activityManager,
+                                                                                  5 * 60,
+                                                                                  60 * 60,
+                                                                                  22,
+                                                                                  10,
+                                                                                  1);
+        for (int i = 0; i < 100; i++) {
+            final long delay = realScheduler.getFirstBackupDelay();
+            assertTrue(delay >= 0 && delay <= TimeUnit.MINUTES.toMillis(5), "Unexpected delay " + delay);
+        }
+    }
+
+    @Test
+    public void shouldReportLongestQueueLagOfBackupsStartedDuringPreviousPeriod() throws Exception {
+        // given
+        workspaces.clear();
+        addWorkspace("ws3", "ms3");
+        addWorkspace("ws4", "ms4");
+        scheduler = spy(new WorkspaceFsBackupScheduler(workspaceRuntimes,
+                                                       backupManager,
+                                                       activityManager,
+                                                       0,
+                                                       60 * 60,
+                                                       22,
+                                                       1,
+                                                       1));
+        doAnswer(invocation -> {
+            sleep(200);
+            return true;
+        }).when(scheduler).backupWorkspaceInMachine(any(MachineImpl.class));
+        // the only backup thread is busy with the first backup while the second one waits in the queue
+        scheduler.scheduleBackup();
+        verify(scheduler, timeout(2000).times(2)).backupWorkspaceInMachine(any(MachineImpl.class));
+        assertEquals(scheduler.getMaxBackupLag(), 0);
+
+        // when
+        scheduler.scheduleBackup();
+
+        // then
+        assertTrue(scheduler.getMaxBackupLag() >= 150, "Unexpected lag " + scheduler.getMaxBackupLag());
+    }
+
+    @Test
+    public void shouldForgetIdleNodes() throws Exception {
+        // given
+        when(machineInstance.getNode()).thenReturn(node);
+        when(node.getHost()).thenReturn("192.168.0.1");
+        when(node.getProjectsFolder()).thenReturn("/projects");
+        doCallRealMethod().when(scheduler).backupWorkspaceInMachine(any(MachineImpl.class));
+        scheduler.backupWorkspaceInMachine(machine1);
+        assertEquals(scheduler.getNodesCount(), 1);
+        workspaces.clear();
+
+        // when
+        scheduler.scheduleBackup();
+
+        // then
+        assertEquals(scheduler.getNodesCount(), 0);
+    }
+
+    @Test
+    public void shouldNotForgetNodeWhichIsBusyWithBackup() throws Exception {
+        // given
+        when(machineInstance.getNode()).thenReturn(node);
+        when(node.getHost()).thenReturn("192.168.0.1");
+        when(node.getProjectsFolder()).thenReturn("/projects");
+        doCallRealMethod().when(scheduler).backupWorkspaceInMachine(any(MachineImpl.class));
+        final CountDownLatch backupStarted = new CountDownLatch(1);
+        final CountDownLatch backupFinish = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            backupStarted.countDown();
+            backupFinish.await();
+            return null;
+        }).when(backupManager).backupWorkspace(eq(WORKSPACE_ID_1), anyString(), anyString(), anyInt());
+        final Thread backup = new Thread(() -> {
+            try {
+                scheduler.backupWorkspaceInMachine(machine1);
+            } catch (Exception ignored) {
+            }
+        });
+        backup.start();
+        backupStarted.await();
+        workspaces.clear();
+
+        // when
+        scheduler.scheduleBackup();
+
+        // then
+        assertEquals(scheduler.getNodesCount(), 1);
+        assertFalse(scheduler.backupWorkspaceInMachine(machine2));
+        backupFinish.countDown();
+        backup.join();
+    }
+
     @Test
     public void shouldSkipWorkspaceBackupIfMachineAlreadyStopped() throws Exception {
         // given
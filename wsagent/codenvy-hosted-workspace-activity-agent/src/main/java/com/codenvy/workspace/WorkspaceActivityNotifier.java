@@ -14,18 +14,33 @@
  */
 package com.codenvy.workspace;
 
-import org.eclipse.che.api.core.rest.HttpJsonRequestFactory;
 import org.eclipse.che.commons.schedule.ScheduleRate;
+import org.eclipse.che.dto.server.JsonStringMapImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
- * Notifies master about activity in workspace, but not more often than once per minute.
+ * Notifies master about activity in workspace, but not more often than once per schedule period.
+ * The moment of the last activity is sent to the batch activity endpoint of the master,
+ * so the master counts the activity from the time it happened rather than the time it was received.
+ *
+ * <p>Activities are only recorded on the calling thread, the master is notified by the scheduler with a single batch
+ * of the workspaces which were active during the schedule period. Connections to the master are not disconnected
+ * once the response is read, so the JDK keeps them alive and reuses them for the next batches.
  *
  * @author Mihail Kuznyetsov
  * @author Anton Korneta
@@ -34,63 +49,93 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class WorkspaceActivityNotifier {
     private static final Logger LOG = LoggerFactory.getLogger(WorkspaceActivityNotifier.class);
 
-    private final AtomicBoolean          activeDuringThreshold;
-    private final HttpJsonRequestFactory httpJsonRequestFactory;
-    private final String                 apiEndpoint;
-    private final String                 wsId;
-    private final long                   threshold;
-    private final String                 token;
+    private static final int TIMEOUT_MS = 60 * 1000;
 
-    private long lastUpdateTime;
+    private final String     apiEndpoint;
+    private final String     wsId;
+    private final String     token;
+    private final AtomicLong lastActivityTime;
 
+    // accessed by the scheduler thread only
+    private long lastNotifiedActivityTime;
 
     @Inject
-    public WorkspaceActivityNotifier(HttpJsonRequestFactory httpJsonRequestFactory,
-                                     @Named("che.api") String apiEndpoint,
+    public WorkspaceActivityNotifier(@Named("che.api") String apiEndpoint,
                                      @Named("env.CHE_WORKSPACE_ID") String wsId,
-                                     @Named("workspace.activity.notify_time_threshold_ms") long threshold,
                                      @Named("user.token") String token) {
-        this.httpJsonRequestFactory = httpJsonRequestFactory;
         this.apiEndpoint = apiEndpoint;
         this.wsId = wsId;
-        this.activeDuringThreshold = new AtomicBoolean(false);
-        this.threshold = threshold;
         this.token = token;
+        this.lastActivityTime = new AtomicLong();
     }
 
     /**
-     * Notify workspace master about activity in this workspace.
+     * Records activity in this workspace.
      * <p/>
-     * After last notification, any consecutive activities that come within specific amount of time
-     * - {@code threshold}, will not notify immediately, but trigger notification in scheduler method
-     * {@link WorkspaceActivityNotifier#scheduleActivityNotification}
+     * The method doesn't block and doesn't notify workspace master, the last recorded activity is sent
+     * by the scheduler method {@link WorkspaceActivityNotifier#scheduleActivityNotification}.
      */
     public void onActivity() {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime < (lastUpdateTime + threshold)) {
-            activeDuringThreshold.set(true);
-        } else {
-            notifyActivity();
-            lastUpdateTime = currentTime;
+        final long now = System.currentTimeMillis();
+        // most activities happen within the same millisecond as the recorded one, they don't need the CAS
+        if (now > lastActivityTime.get()) {
+            lastActivityTime.accumulateAndGet(now, Math::max);
         }
-
     }
 
     @ScheduleRate(periodParameterName = "workspace.activity.schedule_period_s")
     private void scheduleActivityNotification() {
-        if (activeDuringThreshold.compareAndSet(true, false)) {
-            notifyActivity();
+        final long activityTime = lastActivityTime.get();
+        // the activity which failed to be sent is retried by the next run
+        if (activityTime > lastNotifiedActivityTime) {
+            final Map<String, String> activities = new HashMap<>();
+            activities.put(wsId, Long.toString(activityTime));
+            if (notifyActivity(activities)) {
+                lastNotifiedActivityTime = activityTime;
+            }
         }
     }
 
-    private void notifyActivity() {
+    /** Sends the moments of the last activities by workspace ids to the batch activity endpoint of the master. */
+    private boolean notifyActivity(Map<String, String> activities) {
+        HttpURLConnection conn = null;
+        boolean consumed = false;
         try {
-            httpJsonRequestFactory.fromUrl(apiEndpoint + "/activity/" + wsId)
-                                  .usePutMethod()
-                                  .setAuthorizationHeader(token)
-                                  .request();
-        } catch (Exception e) {
+            conn = (HttpURLConnection)new URL(apiEndpoint + "/activity").openConnection();
+            conn.setConnectTimeout(TIMEOUT_MS);
+            conn.setReadTimeout(TIMEOUT_MS);
+            conn.setRequestMethod("PUT");
+            conn.setRequestProperty("Authorization", token);
+            conn.setRequestProperty("Content-Type", "application/json");
+            conn.setDoOutput(true);
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(new JsonStringMapImpl<>(activities).toJson().getBytes(UTF_8));
+            }
+
+            final int responseCode = conn.getResponseCode();
+            // the response must be read completely, otherwise the connection can't be reused
+            try (InputStream in = responseCode / 100 == 2 ? conn.getInputStream() : conn.getErrorStream()) {
+                if (in != null) {
+                    final byte[] buf = new byte[1024];
+                    while (in.read(buf) != -1) {
+                        // skip the response
+                    }
+                }
+            }
+            consumed = true;
+
+            if (responseCode / 100 != 2) {
+                LOG.error("Cannot notify master about workspace {} activity, response code {}", wsId, responseCode);
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
             LOG.error("Cannot notify master about workspace " + wsId + " activity", e);
+            return false;
+        } finally {
+            if (conn != null && !consumed) {
+                conn.disconnect();
+            }
         }
     }
 }
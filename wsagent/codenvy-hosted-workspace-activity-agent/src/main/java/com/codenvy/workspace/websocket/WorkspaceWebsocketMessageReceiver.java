@@ -21,8 +21,6 @@ import org.everrest.websockets.message.InputMessage;
 import org.everrest.websockets.message.Pair;
 import org.everrest.websockets.message.RestInputMessage;
 
-import java.util.Arrays;
-
 /**
  * Updates workspace activity on message receival by websocket.
  *
@@ -41,12 +39,7 @@ public class WorkspaceWebsocketMessageReceiver implements WSMessageReceiver {
     public void onMessage(InputMessage input) {
         // only user activity matters
         if (input instanceof RestInputMessage) {
-            final Pair[] headers = ((RestInputMessage)input).getHeaders();
-            final boolean containsPingHeader = Arrays.stream(headers)
-                                                     .anyMatch(pair -> "x-everrest-websocket-message-type".equals(pair.getName())
-                                                                       && "ping".equals(pair.getValue()));
-
-            if (!containsPingHeader) {
+            if (!isPing(((RestInputMessage)input).getHeaders())) {
                 workspaceActivityNotifier.onActivity();
             }
         } else {
@@ -54,6 +47,17 @@ public class WorkspaceWebsocketMessageReceiver implements WSMessageReceiver {
         }
     }
 
+    private static boolean isPing(Pair[] headers) {
+        if (headers != null) {
+            for (Pair header : headers) {
+                if ("x-everrest-websocket-message-type".equals(header.getName()) && "ping".equals(header.getValue())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public void onError(Exception error) {
         workspaceActivityNotifier.onActivity();
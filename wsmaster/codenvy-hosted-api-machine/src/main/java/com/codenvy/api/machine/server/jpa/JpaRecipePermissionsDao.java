@@ -99,6 +99,24 @@ public class JpaRecipePermissionsDao extends AbstractJpaPermissionsDao<RecipePer
         }
     }
 
+    @Override
+    @Transactional
+    public long getCountByInstanceAndAction(String instanceId, String action, String excludedUserId) throws ServerException {
+        requireNonNull(instanceId, "Recipe identifier required");
+        requireNonNull(action, "Action name required");
+        requireNonNull(excludedUserId, "User identifier required");
+        try {
+            return managerProvider.get()
+                                  .createNamedQuery("RecipePermissions.getCountByRecipeIdAndAction", Long.class)
+                                  .setParameter("recipeId", instanceId)
+                                  .setParameter("action", action)
+                                  .setParameter("userId", excludedUserId)
+                                  .getSingleResult();
+        } catch (RuntimeException e) {
+            throw new ServerException(e.getLocalizedMessage(), e);
+        }
+    }
+
     @Override
     protected RecipePermissionsImpl getEntity(String userId, String instanceId) throws NotFoundException {
         try {
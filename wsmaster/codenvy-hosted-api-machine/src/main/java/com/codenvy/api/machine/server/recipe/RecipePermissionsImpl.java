@@ -59,7 +59,13 @@ import java.util.List;
                             query = "SELECT recipePermission " +
                                     "FROM RecipePermissions recipePermission " +
                                     "WHERE recipePermission.recipeId = :recipeId " +
-                                    "AND recipePermission.userId IS NULL ")
+                                    "AND recipePermission.userId IS NULL "),
+                @NamedQuery(name = "RecipePermissions.getCountByRecipeIdAndAction",
+                            query = "SELECT COUNT(recipePermission) " +
+                                    "FROM RecipePermissions recipePermission " +
+                                    "WHERE recipePermission.recipeId = :recipeId " +
+                                    "AND :action MEMBER OF recipePermission.actions " +
+                                    "AND COALESCE(recipePermission.userId, '*') <> :userId ")
         }
 )
 @Table(name = "recipepermissions")
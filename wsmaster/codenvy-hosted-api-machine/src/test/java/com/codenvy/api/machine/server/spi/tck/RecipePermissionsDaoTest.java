@@ -232,6 +232,18 @@ public class RecipePermissionsDaoTest {
         dao.exists("user", "instance", null);
     }
 
+    @Test
+    public void shouldCountPermissionsByInstanceAndActionExcludingGivenUser() throws Exception {
+        assertEquals(2, dao.getCountByInstanceAndAction("recipe1", "run", "user3"));
+        assertEquals(1, dao.getCountByInstanceAndAction("recipe1", "run", "user"));
+        assertEquals(0, dao.getCountByInstanceAndAction("recipe2", "use", "user3"));
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldThrowExceptionWhenGetCountByInstanceAndActionInstanceIdArgumentIsNull() throws Exception {
+        dao.getCountByInstanceAndAction(null, "read", "user");
+    }
+
     public static class TestDomain extends AbstractPermissionsDomain<RecipePermissionsImpl> {
         public TestDomain() {
             super("recipe", asList("read", "write", "use"));
@@ -59,7 +59,13 @@ import java.util.List;
                 @NamedQuery(name = "Member.getOrganizationsCount",
                             query = "SELECT COUNT(m) " +
                                     "FROM Member m " +
-                                    "WHERE m.userId = :userId ")
+                                    "WHERE m.userId = :userId "),
+                @NamedQuery(name = "Member.getCountByOrganizationIdAndAction",
+                            query = "SELECT COUNT(m) " +
+                                    "FROM Member m " +
+                                    "WHERE m.organizationId = :organizationId " +
+                                    "AND :action MEMBER OF m.actions " +
+                                    "AND COALESCE(m.userId, '*') <> :userId ")
         }
 )
 @Table(name = "member")
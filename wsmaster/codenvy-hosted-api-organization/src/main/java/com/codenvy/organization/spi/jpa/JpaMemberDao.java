@@ -16,6 +16,7 @@ package com.codenvy.organization.spi.jpa;
 
 import com.codenvy.api.permission.server.AbstractPermissionsDomain;
 import com.codenvy.api.permission.server.jpa.AbstractJpaPermissionsDao;
+import com.codenvy.api.permission.shared.dto.PermissionsEventDto;
 import com.codenvy.organization.api.event.BeforeOrganizationRemovedEvent;
 import com.codenvy.organization.spi.MemberDao;
 import com.codenvy.organization.spi.impl.MemberImpl;
@@ -65,6 +66,24 @@ public class JpaMemberDao extends AbstractJpaPermissionsDao<MemberImpl> implemen
         return getMembers(instanceId, maxItems, skipCount);
     }
 
+    @Override
+    @Transactional
+    public long getCountByInstanceAndAction(String instanceId, String action, String excludedUserId) throws ServerException {
+        requireNonNull(instanceId, "Required non-null organization id");
+        requireNonNull(action, "Action name required");
+        requireNonNull(excludedUserId, "User identifier required");
+        try {
+            return managerProvider.get()
+                                  .createNamedQuery("Member.getCountByOrganizationIdAndAction", Long.class)
+                                  .setParameter("organizationId", instanceId)
+                                  .setParameter("action", action)
+                                  .setParameter("userId", excludedUserId)
+                                  .getSingleResult();
+        } catch (RuntimeException e) {
+            throw new ServerException(e.getLocalizedMessage(), e);
+        }
+    }
+
     @Override
     public List<MemberImpl> getByUser(String userId) throws ServerException {
         return getMemberships(userId);
@@ -74,11 +93,15 @@ public class JpaMemberDao extends AbstractJpaPermissionsDao<MemberImpl> implemen
     public void remove(String userId, String organizationId) throws ServerException {
         requireNonNull(organizationId, "Required non-null organization id");
         requireNonNull(userId, "Required non-null user id");
+        final boolean ownTransaction = !isTransactionActive();
         try {
             doRemove(organizationId, userId);
         } catch (RuntimeException e) {
             throw new ServerException(e.getLocalizedMessage(), e);
         }
+        if (ownTransaction) {
+            publishEvent(PermissionsEventDto.EventType.REMOVED, userId, organizationId);
+        }
     }
 
     @Override
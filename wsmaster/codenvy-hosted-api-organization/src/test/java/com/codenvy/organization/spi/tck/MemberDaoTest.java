@@ -14,6 +14,7 @@
  */
 package com.codenvy.organization.spi.tck;
 
+import com.codenvy.api.permission.server.spi.PermissionsDao;
 import com.codenvy.organization.spi.MemberDao;
 import com.codenvy.organization.spi.impl.MemberImpl;
 import com.codenvy.organization.spi.impl.OrganizationImpl;
@@ -257,4 +258,16 @@ public class MemberDaoTest {
     public void shouldThrowNpeOnGettingOrganizationByNullUserId() throws Exception {
         memberDao.getOrganizations(null, 30, 0);
     }
+
+    @Test
+    public void shouldCountPermissionsByInstanceAndActionExcludingGivenUser() throws Exception {
+        assertEquals(2, permissionsDao.getCountByInstanceAndAction("org1-id", "update", "user1-id"));
+        assertEquals(1, permissionsDao.getCountByInstanceAndAction("org2-id", "update", "user1-id"));
+        assertEquals(0, permissionsDao.getCountByInstanceAndAction("org2-id", "update", "user2-id"));
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldThrowExceptionWhenGetCountByInstanceAndActionInstanceIdArgumentIsNull() throws Exception {
+        permissionsDao.getCountByInstanceAndAction(null, "read", "user");
+    }
 }
@@ -15,6 +15,7 @@
 package com.codenvy.organization.spi.tck.jpa;
 
 import com.codenvy.api.permission.server.AbstractPermissionsDomain;
+import com.codenvy.api.permission.server.spi.PermissionsDao;
 import com.codenvy.organization.api.permissions.OrganizationDomain;
 import com.codenvy.organization.spi.MemberDao;
 import com.codenvy.organization.spi.OrganizationDao;
@@ -62,5 +63,6 @@ public class OrganizationJpaTckModule extends TckModule {
 
         bind(OrganizationDao.class).to(JpaOrganizationDao.class);
         bind(MemberDao.class).to(JpaMemberDao.class);
+        bind(new TypeLiteral<PermissionsDao<MemberImpl>>() {}).to(JpaMemberDao.class);
     }
 }
@@ -0,0 +1,59 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.api.permission.shared.dto;
+
+import org.eclipse.che.api.core.notification.EventOrigin;
+import org.eclipse.che.dto.shared.DTO;
+
+/**
+ * Describes change of the user's permissions related to the particular instance of domain.
+ * Published after permissions are stored or removed.
+ */
+@EventOrigin("permissions")
+@DTO
+public interface PermissionsEventDto {
+
+    enum EventType {
+        /** Published when permissions are created or updated */
+        STORED,
+
+        /** Published when permissions are removed */
+        REMOVED
+    }
+
+    EventType getEventType();
+
+    void setEventType(EventType eventType);
+
+    PermissionsEventDto withEventType(EventType eventType);
+
+    String getUserId();
+
+    void setUserId(String userId);
+
+    PermissionsEventDto withUserId(String userId);
+
+    String getDomainId();
+
+    void setDomainId(String domainId);
+
+    PermissionsEventDto withDomainId(String domainId);
+
+    String getInstanceId();
+
+    void setInstanceId(String instanceId);
+
+    PermissionsEventDto withInstanceId(String instanceId);
+}
@@ -161,6 +161,24 @@ public class PermissionsManager {
         return (Page<AbstractPermissions>)getPermissionsDao(domainId).getByInstance(instanceId, maxItems, skipCount);
     }
 
+    /**
+     * Returns all the user's permissions related to the specified domain
+     *
+     * @param userId
+     *         user id
+     * @param domainId
+     *         domain id
+     * @return list of user's permissions for all the instances of the domain
+     * @throws NotFoundException
+     *         when given domainId is unsupported
+     * @throws ServerException
+     *         when any other error occurs during permissions fetching
+     */
+    @SuppressWarnings("unchecked")
+    public List<AbstractPermissions> getByUser(String userId, String domainId) throws ServerException, NotFoundException {
+        return (List<AbstractPermissions>)getPermissionsDao(domainId).getByUser(userId);
+    }
+
     /**
      * Removes permissions of userId related to the particular instanceId of specified domainId
      *
@@ -243,24 +261,6 @@ public class PermissionsManager {
             return false;
         }
 
-        Page<? extends AbstractPermissions> page = permissionsStorage.getByInstance(instanceId, 30, 0);
-        boolean hasForeignSetPermission;
-        while (!(hasForeignSetPermission = hasForeignSetPermission(page.getItems(), userId))
-               && page.hasNextPage()) {
-
-            final Page.PageRef nextPageRef = page.getNextPageRef();
-            page = permissionsStorage.getByInstance(instanceId, nextPageRef.getPageSize(), (int)nextPageRef.getItemsBefore());
-        }
-        return !hasForeignSetPermission;
-    }
-
-    private boolean hasForeignSetPermission(List<? extends AbstractPermissions> permissions, String userId) {
-        for (AbstractPermissions permission : permissions) {
-            if (!permission.getUserId().equals(userId)
-                && permission.getActions().contains(SET_PERMISSIONS)) {
-                return true;
-            }
-        }
-        return false;
+        return permissionsStorage.getCountByInstanceAndAction(instanceId, SET_PERMISSIONS, userId) == 0;
     }
 }
@@ -47,7 +47,10 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
@@ -130,6 +133,57 @@ public class PermissionsService extends Service {
         return toDto(permissionsManager.get(EnvironmentContext.getCurrent().getSubject().getUserId(), domain, instance));
     }
 
+    @GET
+    @Path("/{domain}/effective")
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Get actions which current user is allowed to perform on specified instance of domain",
+                  notes = "Actions of the result are the actions granted to the current user " +
+                          "merged with the actions granted to all the users('*') on the instance, " +
+                          "so clients are able to check access of current user to the instance with a single request",
+                  response = PermissionsDto.class)
+    @ApiResponses({@ApiResponse(code = 200, message = "The permissions successfully fetched"),
+                   @ApiResponse(code = 404, message = "Specified domain is unsupported"),
+                   @ApiResponse(code = 409, message = "Given domain requires non nullable value for instance but it is null"),
+                   @ApiResponse(code = 500, message = "Internal server error occurred during permissions fetching")})
+    public PermissionsDto getCurrentUsersEffectivePermissions(@ApiParam(value = "Domain id to retrieve user's permissions")
+                                                              @PathParam("domain") String domain,
+                                                              @ApiParam(value = "Instance id to retrieve user's permissions")
+                                                              @QueryParam("instance") String instance) throws ServerException,
+                                                                                                              NotFoundException,
+                                                                                                              ConflictException {
+        permissionsManager.getDomain(domain);
+        final String userId = EnvironmentContext.getCurrent().getSubject().getUserId();
+        final Set<String> actions = new LinkedHashSet<>();
+        addActions(actions, userId, domain, instance);
+        addActions(actions, "*", domain, instance);
+        return DtoFactory.newDto(PermissionsDto.class)
+                         .withUserId(userId)
+                         .withDomainId(domain)
+                         .withInstanceId(instance)
+                         .withActions(new ArrayList<>(actions));
+    }
+
+    @GET
+    @Path("/{domain}/current")
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Get all the permissions of current user which are related to specified domain",
+                  notes = "Allows clients to prefetch with a single request permissions of current user " +
+                          "to all the instances of the domain. Actions granted to all the users('*') are not included",
+                  response = PermissionsDto.class,
+                  responseContainer = "List")
+    @ApiResponses({@ApiResponse(code = 200, message = "The permissions successfully fetched"),
+                   @ApiResponse(code = 404, message = "Specified domain is unsupported"),
+                   @ApiResponse(code = 500, message = "Internal server error occurred during permissions fetching")})
+    public List<PermissionsDto> getCurrentUsersDomainPermissions(@ApiParam(value = "Domain id to retrieve user's permissions")
+                                                                 @PathParam("domain") String domain) throws ServerException,
+                                                                                                            NotFoundException {
+        final String userId = EnvironmentContext.getCurrent().getSubject().getUserId();
+        return permissionsManager.getByUser(userId, domain)
+                                 .stream()
+                                 .map(this::toDto)
+                                 .collect(Collectors.toList());
+    }
+
     @GET
     @Path("/{domain}/all")
     @Produces(APPLICATION_JSON)
@@ -179,6 +233,16 @@ public class PermissionsService extends Service {
         permissionsManager.remove(user, domain, instance);
     }
 
+    private void addActions(Set<String> actions, String userId, String domain, String instance) throws ServerException,
+                                                                                                      NotFoundException,
+                                                                                                      ConflictException {
+        try {
+            actions.addAll(permissionsManager.get(userId, domain, instance).getActions());
+        } catch (NotFoundException ignored) {
+            // user doesn't have permissions
+        }
+    }
+
     private DomainDto asDto(PermissionsDomain domain) {
         return DtoFactory.newDto(DomainDto.class)
                          .withId(domain.getId())
@@ -17,19 +17,24 @@ package com.codenvy.api.permission.server.jpa;
 import com.codenvy.api.permission.server.AbstractPermissionsDomain;
 import com.codenvy.api.permission.server.model.impl.AbstractPermissions;
 import com.codenvy.api.permission.server.spi.PermissionsDao;
+import com.codenvy.api.permission.shared.dto.PermissionsEventDto;
 import com.codenvy.api.permission.shared.model.Permissions;
 import com.google.inject.persist.Transactional;
 
 import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.Page;
 import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.core.notification.EventService;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.persistence.EntityManager;
 import java.util.List;
 
+import static com.codenvy.api.permission.shared.dto.PermissionsEventDto.EventType.REMOVED;
+import static com.codenvy.api.permission.shared.dto.PermissionsEventDto.EventType.STORED;
 import static java.util.Objects.requireNonNull;
+import static org.eclipse.che.dto.server.DtoFactory.newDto;
 
 /**
  * Basic JPA DAO implementation for {@link Permissions} objects.
@@ -43,6 +48,9 @@ public abstract class AbstractJpaPermissionsDao<T extends AbstractPermissions> i
     @Inject
     protected Provider<EntityManager> managerProvider;
 
+    @Inject
+    protected EventService eventService;
+
     public AbstractJpaPermissionsDao(AbstractPermissionsDomain<T> supportedDomain) {
         this.supportedDomain = supportedDomain;
     }
@@ -55,11 +63,15 @@ public abstract class AbstractJpaPermissionsDao<T extends AbstractPermissions> i
     @Override
     public void store(T permissions) throws ServerException {
         requireNonNull(permissions, "Permissions instance required");
+        final boolean ownTransaction = !isTransactionActive();
         try {
             doCreate(permissions);
         } catch (RuntimeException e) {
             throw new ServerException(e.getMessage(), e);
         }
+        if (ownTransaction) {
+            publishEvent(STORED, permissions.getUserId(), permissions.getInstanceId());
+        }
     }
 
     @Override
@@ -80,11 +92,15 @@ public abstract class AbstractJpaPermissionsDao<T extends AbstractPermissions> i
     public void remove(String userId, String instanceId) throws ServerException, NotFoundException {
         requireNonNull(instanceId, "Instance identifier required");
         requireNonNull(userId, "User identifier required");
+        final boolean ownTransaction = !isTransactionActive();
         try {
             doRemove(userId, instanceId);
         } catch (RuntimeException x) {
             throw new ServerException(x.getLocalizedMessage(), x);
         }
+        if (ownTransaction) {
+            publishEvent(REMOVED, userId, instanceId);
+        }
     }
 
     @Override
@@ -96,6 +112,9 @@ public abstract class AbstractJpaPermissionsDao<T extends AbstractPermissions> i
     @Override
     public abstract Page<T> getByInstance(String instanceId, int maxItems, long skipCount) throws ServerException;
 
+    @Override
+    public abstract long getCountByInstanceAndAction(String instanceId, String action, String excludedUserId) throws ServerException;
+
     /**
      * Must return jpa managed entity or throw {@link NotFoundException}
      * when there is no such entity. Parameters {@code userId} and {@code instanceId}
@@ -121,6 +140,27 @@ public abstract class AbstractJpaPermissionsDao<T extends AbstractPermissions> i
         managerProvider.get().remove(entity);
     }
 
+    /**
+     * Returns true when the caller has already started the transaction, so changes of this DAO
+     * are committed with the caller's transaction rather than by this DAO.
+     */
+    protected boolean isTransactionActive() {
+        return managerProvider.get().getTransaction().isActive();
+    }
+
+    /**
+     * Publishes {@link PermissionsEventDto} about change of the user's permissions
+     * related to the instance of the supported domain.
+     * Must be called after the change is committed, otherwise listeners may reload
+     * the permissions which are not changed yet or act on a change which is rolled back.
+     */
+    protected void publishEvent(PermissionsEventDto.EventType type, String userId, String instanceId) {
+        eventService.publish(newDto(PermissionsEventDto.class).withEventType(type)
+                                                              .withUserId(userId)
+                                                              .withDomainId(supportedDomain.getId())
+                                                              .withInstanceId(instanceId));
+    }
+
     /**
      * Converts '*' user wildcard to {@code null}
      *
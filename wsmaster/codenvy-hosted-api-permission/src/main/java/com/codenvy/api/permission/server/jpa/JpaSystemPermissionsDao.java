@@ -85,6 +85,23 @@ public class JpaSystemPermissionsDao extends AbstractJpaPermissionsDao<SystemPer
         }
     }
 
+    @Override
+    @Transactional
+    public long getCountByInstanceAndAction(String instanceId, String action, String excludedUserId) throws ServerException {
+        // instanceId is ignored because system domain doesn't require it
+        requireNonNull(action, "Action name required");
+        requireNonNull(excludedUserId, "User identifier required");
+        try {
+            return managerProvider.get()
+                                  .createNamedQuery("SystemPermissions.getCountByAction", Long.class)
+                                  .setParameter("action", action)
+                                  .setParameter("userId", excludedUserId)
+                                  .getSingleResult();
+        } catch (RuntimeException e) {
+            throw new ServerException(e.getLocalizedMessage(), e);
+        }
+    }
+
     @Override
     public List<SystemPermissionsImpl> getByUser(String userId) throws ServerException {
         requireNonNull(userId, "User identifier required");
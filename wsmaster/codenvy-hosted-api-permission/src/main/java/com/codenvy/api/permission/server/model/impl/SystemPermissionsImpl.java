@@ -40,6 +40,11 @@ import java.util.List;
                 @NamedQuery(name = "SystemPermissions.getAll",
                             query = "SELECT permissions " +
                                     "FROM SystemPermissions permissions "),
+                @NamedQuery(name = "SystemPermissions.getCountByAction",
+                            query = "SELECT COUNT(permissions) " +
+                                    "FROM SystemPermissions permissions " +
+                                    "WHERE :action MEMBER OF permissions.actions " +
+                                    "AND COALESCE(permissions.userId, '*') <> :userId "),
                 @NamedQuery(name = "SystemPermissions.getTotalCount",
                             query = "SELECT COUNT(permissions) " +
                                     "FROM SystemPermissions permissions ")
@@ -16,6 +16,7 @@ package com.codenvy.api.permission.server.spi;
 
 import com.codenvy.api.permission.server.AbstractPermissionsDomain;
 import com.codenvy.api.permission.server.model.impl.AbstractPermissions;
+import com.codenvy.api.permission.shared.dto.PermissionsEventDto;
 
 import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.Page;
@@ -25,6 +26,11 @@ import java.util.List;
 
 /**
  * General contract of storage for permissions.
+ * Changes of permissions are published as {@link PermissionsEventDto} after they are committed,
+ * so caches of permissions are invalidated whoever changes them. Changes made as a part
+ * of the caller's transaction are not published, as the DAO can't know whether and when
+ * they are committed, such changes are made by the cascade removal of the instances and users,
+ * so cached permissions concern the instances and users which don't exist anymore.
  * Single Storage may maintain one or more Domains
  * (it is responsibility of system on top to make the choice consistent)
  * It actually defines CRUD methods with some specific such as:
@@ -42,7 +48,7 @@ public interface PermissionsDao<T extends AbstractPermissions> {
     AbstractPermissionsDomain<T> getDomain();
 
     /**
-     * Stores (adds or updates) permissions.
+     * Stores (adds or updates) permissions and publishes {@link PermissionsEventDto} of {@code STORED} type.
      *
      * @param permissions
      *         permission to store
@@ -107,8 +113,29 @@ public interface PermissionsDao<T extends AbstractPermissions> {
      */
     boolean exists(String userId, String instanceId, String action) throws ServerException;
 
+    /**
+     * Returns number of users, except the given one, which are permitted to perform the action on the instance.
+     * Wildcard permissions are counted as permissions of another user, unless excluded user is '*'.
+     *
+     * @param instanceId
+     *         instance id
+     * @param action
+     *         action name
+     * @param excludedUserId
+     *         id of user whose permissions must not be counted
+     * @return number of users which have permissions with given action for the instance
+     * @throws NullPointerException
+     *         when instance id is null and domain requires it
+     * @throws NullPointerException
+     *         when action or excluded user id is null
+     * @throws ServerException
+     *         when any other error occurs during permissions counting
+     */
+    long getCountByInstanceAndAction(String instanceId, String action, String excludedUserId) throws ServerException;
+
     /**
      * Removes permissions of user related to the particular instance of specified domain
+     * and publishes {@link PermissionsEventDto} of {@code REMOVED} type.
      *
      * @param userId
      *         user id
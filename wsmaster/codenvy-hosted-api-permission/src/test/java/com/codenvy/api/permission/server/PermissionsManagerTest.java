@@ -93,6 +93,23 @@ public class PermissionsManagerTest {
                                                                        permissions.getActions()));
     }
 
+    @Test
+    public void shouldBeAbleToGetPermissionsByUser() throws Exception {
+        final TestPermissionsImpl permissions1 = new TestPermissionsImpl("user", "test", "test123", singletonList("read"));
+        final TestPermissionsImpl permissions2 = new TestPermissionsImpl("user", "test", "test234", singletonList("read"));
+        when(permissionsDao.getByUser("user")).thenReturn(asList(permissions1, permissions2));
+
+        final List<AbstractPermissions> result = permissionsManager.getByUser("user", "test");
+
+        assertEquals(result, asList(permissions1, permissions2));
+    }
+
+    @Test(expectedExceptions = NotFoundException.class,
+          expectedExceptionsMessageRegExp = "Requested unsupported domain 'unsupported'")
+    public void shouldThrowExceptionWhenGettingPermissionsByUserOfUnsupportedDomain() throws Exception {
+        permissionsManager.getByUser("user", "unsupported");
+    }
+
     @Test(expectedExceptions = ConflictException.class,
           expectedExceptionsMessageRegExp = "Domain with id 'test' doesn't support following action\\(s\\): unsupported")
     public void shouldNotStorePermissionsWhenItHasUnsupportedAction() throws Exception {
@@ -107,32 +124,21 @@ public class PermissionsManagerTest {
     @Test(expectedExceptions = ConflictException.class,
           expectedExceptionsMessageRegExp = "Can't edit permissions because there is not any another user with permission 'setPermissions'")
     public void shouldNotStorePermissionsWhenItRemoveLastSetPermissions() throws Exception {
-        final TestPermissionsImpl foreignPermissions = new TestPermissionsImpl("user1", "test", "test123", singletonList("read"));
-        final TestPermissionsImpl ownPermissions = new TestPermissionsImpl("user", "test", "test123", asList("read", "setPermissions"));
-
         when(permissionsDao.exists("user", "test123", SET_PERMISSIONS)).thenReturn(true);
-        doReturn(new Page<>(singletonList(foreignPermissions), 0, 1, 2))
-                .doReturn(new Page<>(singletonList(ownPermissions), 1, 1, 2))
-                .when(permissionsDao).getByInstance(anyString(), anyInt(), anyInt());
+        when(permissionsDao.getCountByInstanceAndAction("test123", SET_PERMISSIONS, "user")).thenReturn(0L);
 
         permissionsManager.storePermission(new TestPermissionsImpl("user", "test", "test123", singletonList("delete")));
     }
 
     @Test
     public void shouldStorePermissionsWhenItRemoveSetPermissionsButThereIsAnotherOne() throws Exception {
-        final TestPermissionsImpl foreignPermissions = new TestPermissionsImpl("user1", "test", "test123", singletonList("setPermissions"));
-        final TestPermissionsImpl ownPermissions = new TestPermissionsImpl("user", "test", "test123", asList("read", "setPermissions"));
-
         when(permissionsDao.exists("user", "test123", SET_PERMISSIONS)).thenReturn(true);
-
-        doReturn(new Page<>(singletonList(ownPermissions), 0, 30, 31))
-                .doReturn(new Page<>(singletonList(foreignPermissions), 1, 30, 31))
-                .when(permissionsDao).getByInstance(anyString(), anyInt(), anyInt());
+        when(permissionsDao.getCountByInstanceAndAction("test123", SET_PERMISSIONS, "user")).thenReturn(1L);
 
         permissionsManager.storePermission(new TestPermissionsImpl("user", "test", "test123", singletonList("delete")));
 
-        verify(permissionsDao).getByInstance("test123", 30, 0);
-        verify(permissionsDao).getByInstance("test123", 30, 30);
+        verify(permissionsDao).getCountByInstanceAndAction("test123", SET_PERMISSIONS, "user");
+        verify(permissionsDao, never()).getByInstance(anyString(), anyInt(), anyInt());
     }
 
     @Test
@@ -141,7 +147,7 @@ public class PermissionsManagerTest {
 
         permissionsManager.storePermission(new TestPermissionsImpl("user", "test", "test123", singletonList("delete")));
 
-        verify(permissionsDao, never()).getByInstance(anyString(), anyInt(), anyInt());
+        verify(permissionsDao, never()).getCountByInstanceAndAction(anyString(), anyString(), anyString());
     }
 
     @Test
@@ -154,13 +160,8 @@ public class PermissionsManagerTest {
     @Test(expectedExceptions = ConflictException.class,
           expectedExceptionsMessageRegExp = "Can't remove permissions because there is not any another user with permission 'setPermissions'")
     public void shouldNotRemovePermissionsWhenItContainsLastSetPermissionsAction() throws Exception {
-        final TestPermissionsImpl firstPermissions = new TestPermissionsImpl("user1", "test", "test123", singletonList("read"));
-        final TestPermissionsImpl secondPermissions = new TestPermissionsImpl("user", "test", "test123", asList("read", "setPermissions"));
-
         when(permissionsDao.exists("user", "test123", SET_PERMISSIONS)).thenReturn(true);
-        doReturn(new Page<>(singletonList(firstPermissions), 0, 1, 2))
-                .doReturn(new Page<>(singletonList(secondPermissions), 1, 1, 2))
-                .when(permissionsDao).getByInstance(anyString(), anyInt(), anyInt());
+        when(permissionsDao.getCountByInstanceAndAction("test123", SET_PERMISSIONS, "user")).thenReturn(0L);
 
         permissionsManager.remove("user", "test", "test123");
     }
@@ -171,7 +172,7 @@ public class PermissionsManagerTest {
 
         permissionsManager.remove("user", "test", "test123");
 
-        verify(permissionsDao, never()).getByInstance(eq("test123"), anyInt(), anyInt());
+        verify(permissionsDao, never()).getCountByInstanceAndAction(anyString(), anyString(), anyString());
     }
 
     @Test
@@ -0,0 +1,172 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.api.permission.server;
+
+import com.codenvy.api.permission.server.model.impl.AbstractPermissions;
+import com.codenvy.api.permission.shared.dto.PermissionsDto;
+import com.jayway.restassured.response.Response;
+
+import org.eclipse.che.api.core.NotFoundException;
+import org.eclipse.che.commons.env.EnvironmentContext;
+import org.eclipse.che.commons.subject.Subject;
+import org.eclipse.che.dto.server.DtoFactory;
+import org.everrest.assured.EverrestJetty;
+import org.everrest.core.Filter;
+import org.everrest.core.GenericContainerRequest;
+import org.everrest.core.RequestFilter;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.testng.MockitoTestNGListener;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.jayway.restassured.RestAssured.given;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.everrest.assured.JettyHttpServer.ADMIN_USER_NAME;
+import static org.everrest.assured.JettyHttpServer.ADMIN_USER_PASSWORD;
+import static org.everrest.assured.JettyHttpServer.SECURE_PATH;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests for {@link PermissionsService}
+ */
+@Listeners(value = {MockitoTestNGListener.class, EverrestJetty.class})
+public class PermissionsServiceTest {
+    @SuppressWarnings("unused")
+    private static final EnvironmentFilter FILTER = new EnvironmentFilter();
+
+    @Mock
+    static Subject subject;
+
+    @Mock
+    PermissionsManager permissionsManager;
+
+    @InjectMocks
+    PermissionsService permissionsService;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        when(subject.getUserId()).thenReturn("user123");
+    }
+
+    @Test
+    public void shouldReturnActionsOfCurrentUserMergedWithWildcardActionsOfInstance() throws Exception {
+        when(permissionsManager.get("user123", "test", "test123"))
+                .thenReturn(new TestPermissions("user123", "test", "test123", asList("read", "write")));
+        when(permissionsManager.get("*", "test", "test123"))
+                .thenReturn(new TestPermissions("*", "test", "test123", asList("read", "use")));
+
+        final Response response = given().auth()
+                                         .basic(ADMIN_USER_NAME, ADMIN_USER_PASSWORD)
+                                         .when()
+                                         .get(SECURE_PATH + "/permissions/test/effective?instance=test123");
+
+        assertEquals(response.getStatusCode(), 200);
+        final PermissionsDto permissions = unwrapDto(response, PermissionsDto.class);
+        assertEquals(permissions.getUserId(), "user123");
+        assertEquals(permissions.getDomainId(), "test");
+        assertEquals(permissions.getInstanceId(), "test123");
+        assertEquals(permissions.getActions(), asList("read", "write", "use"));
+    }
+
+    @Test
+    public void shouldNotFetchPermissionsOfOtherInstancesOrUsers() throws Exception {
+        when(permissionsManager.get(anyString(), anyString(), anyString())).thenThrow(new NotFoundException(""));
+
+        final Response response = given().auth()
+                                         .basic(ADMIN_USER_NAME, ADMIN_USER_PASSWORD)
+                                         .when()
+                                         .get(SECURE_PATH + "/permissions/test/effective?instance=test123");
+
+        assertEquals(response.getStatusCode(), 200);
+        assertEquals(unwrapDto(response, PermissionsDto.class).getActions(), emptyList());
+        verify(permissionsManager).get("user123", "test", "test123");
+        verify(permissionsManager).get("*", "test", "test123");
+        verify(permissionsManager, never()).getByInstance(anyString(), anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void shouldRespond404WhenDomainIsNotSupported() throws Exception {
+        when(permissionsManager.getDomain("unsupported")).thenThrow(new NotFoundException("Requested unsupported domain 'unsupported'"));
+
+        final Response response = given().auth()
+                                         .basic(ADMIN_USER_NAME, ADMIN_USER_PASSWORD)
+                                         .when()
+                                         .get(SECURE_PATH + "/permissions/unsupported/effective?instance=test123");
+
+        assertEquals(response.getStatusCode(), 404);
+    }
+
+    @Test
+    public void shouldReturnAllThePermissionsOfCurrentUserInDomain() throws Exception {
+        when(permissionsManager.getByUser("user123", "test"))
+                .thenReturn(asList(new TestPermissions("user123", "test", "test123", singletonList("read")),
+                                   new TestPermissions("user123", "test", "test234", asList("read", "write"))));
+
+        final Response response = given().auth()
+                                         .basic(ADMIN_USER_NAME, ADMIN_USER_PASSWORD)
+                                         .when()
+                                         .get(SECURE_PATH + "/permissions/test/current");
+
+        assertEquals(response.getStatusCode(), 200);
+        final List<PermissionsDto> permissions = DtoFactory.getInstance().createListDtoFromJson(response.body().print(),
+                                                                                                PermissionsDto.class);
+        assertEquals(permissions.size(), 2);
+        assertEquals(permissions.get(0).getInstanceId(), "test123");
+        assertEquals(permissions.get(1).getActions(), asList("read", "write"));
+    }
+
+    private static <T> T unwrapDto(Response response, Class<T> dtoClass) {
+        return DtoFactory.getInstance().createDtoFromJson(response.body().print(), dtoClass);
+    }
+
+    @Filter
+    public static class EnvironmentFilter implements RequestFilter {
+        public void doFilter(GenericContainerRequest request) {
+            EnvironmentContext.getCurrent().setSubject(subject);
+        }
+    }
+
+    private static class TestPermissions extends AbstractPermissions {
+        String domainId;
+        String instanceId;
+
+        TestPermissions(String userId, String domainId, String instanceId, List<String> allowedActions) {
+            super(userId, allowedActions);
+            this.domainId = domainId;
+            this.instanceId = instanceId;
+        }
+
+        @Override
+        public String getInstanceId() {
+            return instanceId;
+        }
+
+        @Override
+        public String getDomainId() {
+            return domainId;
+        }
+    }
+}
@@ -17,8 +17,11 @@ package com.codenvy.api.permission.server.spi.tck;
 import com.codenvy.api.permission.server.AbstractPermissionsDomain;
 import com.codenvy.api.permission.server.jpa.JpaSystemPermissionsDao;
 import com.codenvy.api.permission.server.model.impl.SystemPermissionsImpl;
+import com.codenvy.api.permission.shared.dto.PermissionsEventDto;
 
 import org.eclipse.che.api.core.Page;
+import org.eclipse.che.api.core.notification.EventService;
+import org.eclipse.che.api.core.notification.EventSubscriber;
 import org.eclipse.che.api.user.server.model.impl.UserImpl;
 import org.eclipse.che.commons.test.tck.TckListener;
 import org.eclipse.che.commons.test.tck.repository.TckRepository;
@@ -28,11 +31,15 @@ import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static com.codenvy.api.permission.shared.dto.PermissionsEventDto.EventType.STORED;
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.eclipse.che.dto.server.DtoFactory.newDto;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertTrue;
 
@@ -54,6 +61,8 @@ public class SystemPermissionsDaoTest {
     private TckRepository<UserImpl>              userRepository;
     @Inject
     private TckRepository<SystemPermissionsImpl> systemRepository;
+    @Inject
+    private EventService                         eventService;
 
     @BeforeMethod
     public void setupEntities() throws Exception {
@@ -105,6 +114,34 @@ public class SystemPermissionsDaoTest {
         assertEquals(result2, systemPermissions[1]);
     }
 
+    @Test
+    public void shouldCountPermissionsByInstanceAndActionExcludingGivenUser() throws Exception {
+        assertEquals(2, dao.getCountByInstanceAndAction(null, "use", "user1"));
+        assertEquals(1, dao.getCountByInstanceAndAction(null, "run", "user2"));
+        assertEquals(0, dao.getCountByInstanceAndAction(null, "run", "user1"));
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldThrowExceptionWhenGetCountByInstanceAndActionActionArgumentIsNull() throws Exception {
+        dao.getCountByInstanceAndAction(null, null, "user");
+    }
+
+    @Test
+    public void shouldPublishEventWhenPermissionsAreStored() throws Exception {
+        final List<PermissionsEventDto> events = new ArrayList<>();
+        final EventSubscriber<PermissionsEventDto> subscriber = events::add;
+        eventService.subscribe(subscriber, PermissionsEventDto.class);
+        try {
+            dao.store(new SystemPermissionsImpl("user1", singletonList("read")));
+        } finally {
+            eventService.unsubscribe(subscriber, PermissionsEventDto.class);
+        }
+
+        assertEquals(events, singletonList(newDto(PermissionsEventDto.class).withEventType(STORED)
+                                                                            .withUserId("user1")
+                                                                            .withDomainId("system")));
+    }
+
     public static class TestDomain extends AbstractPermissionsDomain<SystemPermissionsImpl> {
         public TestDomain() {
             super("system", asList("read", "write", "use"));
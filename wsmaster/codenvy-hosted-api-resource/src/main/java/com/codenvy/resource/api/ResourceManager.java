@@ -17,7 +17,6 @@ package com.codenvy.resource.api;
 import com.codenvy.resource.model.Resource;
 import com.codenvy.resource.spi.impl.ResourceImpl;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.util.concurrent.Striped;
 
 import org.eclipse.che.api.core.ConflictException;
 import org.eclipse.che.api.core.NotFoundException;
@@ -26,11 +25,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Facade for Resources related operations.
@@ -46,25 +50,30 @@ public class ResourceManager {
 
     private static final Logger LOG = LoggerFactory.getLogger(ResourceManager.class);
 
-    private static final Striped<Lock> RESOURCES_LOCKS = Striped.lazyWeakLock(100);
-
-    private final ResourceAggregator        resourceAggregator;
-    private final LicenseManager            licenseManager;
-    private final Set<ResourceUsageTracker> usageTrackers;
+    private final ResourceAggregator                                resourceAggregator;
+    private final LicenseManager                                    licenseManager;
+    private final Set<ResourceUsageTracker>                         usageTrackers;
+    private final long                                              reservationTimeoutMs;
+    private final ConcurrentMap<String, List<ResourcesReservation>> reservations;
 
     @Inject
     public ResourceManager(ResourceAggregator resourceAggregator,
                            LicenseManager licenseManager,
-                           Set<ResourceUsageTracker> usageTrackers) {
+                           Set<ResourceUsageTracker> usageTrackers,
+                           @Named("resource.reservation.timeout_ms") long reservationTimeoutMs) {
         this.resourceAggregator = resourceAggregator;
         this.licenseManager = licenseManager;
         this.usageTrackers = usageTrackers;
+        this.reservationTimeoutMs = reservationTimeoutMs;
+        this.reservations = new ConcurrentHashMap<>();
     }
 
     /**
      * Reserve resources for usage.
      *
-     * <p>Note: should be invoked while consuming operation starts
+     * <p>Note: should be invoked while consuming operation starts.
+     * Resources are booked for the time of {@code operation} performing, so
+     * operations of the same account are performed concurrently.
      *
      * @param accountId
      *         account id which will use resources
@@ -81,6 +90,7 @@ public class ResourceManager {
      *         when some exception occurred while available resources fetching
      * @throws X
      *         when some exception occurred while operation performing
+     * @see #reserve(String, List)
      */
     public <T, X extends Throwable> T reserveResources(String accountId,
                                                        List<ResourceImpl> resources,
@@ -88,15 +98,67 @@ public class ResourceManager {
                                                                                                       NotFoundException,
                                                                                                       ServerException,
                                                                                                       ConflictException {
-        final Lock lock = RESOURCES_LOCKS.get(accountId);
-        lock.lock();
+        final ResourcesReservation reservation = reserve(accountId, resources);
         try {
-            List<ResourceImpl> availableResources = doGetAvailableResources(accountId);
-            //check resources availability
-            resourceAggregator.deduct(availableResources, resources);
-            return operation.use();
+            final T result = operation.use();
+            reservation.commit();
+            return result;
         } finally {
-            lock.unlock();
+            reservation.release();
+        }
+    }
+
+    /**
+     * Books resources for the given account.
+     *
+     * <p>Booked resources are deducted from available ones until the returned reservation
+     * is committed, released or expired. Booking is performed with compare-and-set
+     * on reservations of the account, so no lock is held while consuming operation is performed.
+     *
+     * @param accountId
+     *         account id which will use resources
+     * @param resources
+     *         resources which should be booked
+     * @return reservation which must be committed or released when consuming operation finishes
+     * @throws ConflictException
+     *         when given account doesn't have enough resources to use
+     * @throws NotFoundException
+     *         when {@code resources} list contains resource with not supported type
+     * @throws ServerException
+     *         when some exception occurred while available resources fetching
+     */
+    public ResourcesReservation reserve(String accountId, List<ResourceImpl> resources) throws NotFoundException,
+                                                                                              ServerException,
+                                                                                              ConflictException {
+        final List<ResourceImpl> availableResources = doGetAvailableResources(doGetTotalResources(accountId), accountId);
+        final ResourcesReservation reservation = new ResourcesReservation(this,
+                                                                          accountId,
+                                                                          resources,
+                                                                          System.currentTimeMillis() + reservationTimeoutMs);
+        for (; ; ) {
+            final List<ResourcesReservation> current = reservations.get(accountId);
+            final List<ResourcesReservation> updated = getActive(current);
+
+            final List<ResourceImpl> bookedResources = updated.stream()
+                                                              .flatMap(r -> r.getResources().stream())
+                                                              .collect(toList());
+            List<ResourceImpl> notBookedResources = availableResources;
+            if (!bookedResources.isEmpty()) {
+                try {
+                    notBookedResources = resourceAggregator.deduct(availableResources, bookedResources);
+                } catch (ConflictException e) {
+                    throw new ConflictException("Resources of account are booked by operations which are in progress. " +
+                                                "Please try again later.");
+                }
+            }
+            //check resources availability
+            resourceAggregator.deduct(notBookedResources, resources);
+
+            updated.add(reservation);
+            if (current == null ? reservations.putIfAbsent(accountId, updated) == null
+                                : reservations.replace(accountId, current, updated)) {
+                return reservation;
+            }
         }
     }
 
@@ -147,8 +209,14 @@ public class ResourceManager {
 
     @VisibleForTesting
     List<ResourceImpl> doGetAvailableResources(String accountId) throws NotFoundException, ServerException {
+        return doGetAvailableResources(doGetTotalResources(accountId), accountId);
+    }
+
+    @VisibleForTesting
+    List<ResourceImpl> doGetAvailableResources(List<ResourceImpl> totalResources, String accountId) throws NotFoundException,
+                                                                                                          ServerException {
         try {
-            return resourceAggregator.deduct(doGetTotalResources(accountId),
+            return resourceAggregator.deduct(totalResources,
                                              doGetUsedResources(accountId));
         } catch (ConflictException e) {
             // should not happen
@@ -171,4 +239,37 @@ public class ResourceManager {
         }
         return usedResources;
     }
+
+    /** Removes the given reservation from booked resources of its account. */
+    void cancelReservation(ResourcesReservation reservation) {
+        final String accountId = reservation.getAccountId();
+        for (; ; ) {
+            final List<ResourcesReservation> current = reservations.get(accountId);
+            if (current == null) {
+                return;
+            }
+            final List<ResourcesReservation> updated = getActive(current);
+            updated.remove(reservation);
+            if (updated.isEmpty() ? reservations.remove(accountId, current)
+                                  : reservations.replace(accountId, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    @VisibleForTesting
+    List<ResourcesReservation> getReservations(String accountId) {
+        return getActive(reservations.get(accountId));
+    }
+
+    /** Returns mutable copy of the given reservations without expired ones. */
+    private List<ResourcesReservation> getActive(List<ResourcesReservation> reservations) {
+        if (reservations == null) {
+            return new ArrayList<>();
+        }
+        final long currentTime = System.currentTimeMillis();
+        return reservations.stream()
+                           .filter(reservation -> !reservation.isExpired(currentTime))
+                           .collect(toCollection(ArrayList::new));
+    }
 }
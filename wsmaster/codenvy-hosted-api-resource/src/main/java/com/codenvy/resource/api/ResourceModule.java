@@ -20,6 +20,7 @@ import com.codenvy.resource.api.free.FreeResourcesProvider;
 import com.codenvy.resource.api.ram.RamResourceType;
 import com.codenvy.resource.api.ram.RamResourceUsageTracker;
 import com.codenvy.resource.api.ram.WorkspaceRamConsumer;
+import com.codenvy.resource.api.ram.WorkspaceRamReservations;
 import com.codenvy.resource.model.ResourceType;
 import com.codenvy.resource.spi.FreeResourcesLimitDao;
 import com.codenvy.resource.spi.jpa.JpaFreeResourcesLimitDao;
@@ -52,6 +53,7 @@ public class ResourceModule extends AbstractModule {
         Multibinder<ResourceType> resourcesTypesBinder = Multibinder.newSetBinder(binder(), ResourceType.class);
         resourcesTypesBinder.addBinding().to(RamResourceType.class);
 
+        bind(WorkspaceRamReservations.class).asEagerSingleton();
         final WorkspaceRamConsumer workspaceRamConsumer = new WorkspaceRamConsumer();
         requestInjection(workspaceRamConsumer);
         bindInterceptor(subclassesOf(WorkspaceManager.class), names("startWorkspace"), workspaceRamConsumer);
@@ -0,0 +1,87 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.resource.api;
+
+import com.codenvy.resource.spi.impl.ResourceImpl;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resources which are booked for an account by {@link ResourceManager#reserve(String, List)}.
+ *
+ * <p>Booked resources are considered as used until reservation is committed or released,
+ * so the consuming operation may be performed without holding any lock.
+ * Reservation which is neither committed nor released is dropped when it expires.
+ */
+public class ResourcesReservation {
+    private final ResourceManager    resourceManager;
+    private final String             accountId;
+    private final List<ResourceImpl> resources;
+    private final long               expirationTime;
+    private final AtomicBoolean      finished;
+
+    ResourcesReservation(ResourceManager resourceManager, String accountId, List<ResourceImpl> resources, long expirationTime) {
+        this.resourceManager = resourceManager;
+        this.accountId = accountId;
+        this.resources = resources;
+        this.expirationTime = expirationTime;
+        this.finished = new AtomicBoolean();
+    }
+
+    /** Returns id of account for which resources are booked. */
+    public String getAccountId() {
+        return accountId;
+    }
+
+    /** Returns booked resources. */
+    public List<ResourceImpl> getResources() {
+        return resources;
+    }
+
+    /** Returns true when reservation is already committed or released. */
+    public boolean isFinished() {
+        return finished.get();
+    }
+
+    /**
+     * Finishes reservation when consuming operation has been successfully performed,
+     * from this moment the usage of resources is reported by {@link ResourceUsageTracker}s.
+     *
+     * <p>Does nothing when reservation is already finished.
+     */
+    public void commit() {
+        finish();
+    }
+
+    /**
+     * Finishes reservation when consuming operation has failed and returns booked resources to the account.
+     *
+     * <p>Does nothing when reservation is already finished.
+     */
+    public void release() {
+        finish();
+    }
+
+    boolean isExpired(long currentTime) {
+        return expirationTime <= currentTime;
+    }
+
+    private void finish() {
+        if (finished.compareAndSet(false, true)) {
+            resourceManager.cancelReservation(this);
+        }
+    }
+}
@@ -16,48 +16,267 @@ package com.codenvy.resource.api.ram;
 
 import com.codenvy.resource.api.ResourceUsageTracker;
 import com.codenvy.resource.spi.impl.ResourceImpl;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import org.eclipse.che.account.api.AccountManager;
 import org.eclipse.che.account.shared.model.Account;
 import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.core.notification.EventService;
+import org.eclipse.che.api.core.notification.EventSubscriber;
+import org.eclipse.che.api.machine.shared.dto.event.MachineStatusEvent;
 import org.eclipse.che.api.workspace.server.WorkspaceManager;
+import org.eclipse.che.api.workspace.server.event.BeforeWorkspaceRemovedEvent;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
+import org.eclipse.che.api.workspace.shared.dto.event.WorkspaceStatusEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.eclipse.che.api.core.model.workspace.WorkspaceStatus.STOPPED;
 
 /**
  * Tracks usage of {@link RamResourceType} resource.
  *
+ * <p>Used RAM is kept in a per-account ledger of workspace id to RAM of its running machines.
+ * The ledger of an account is built with a full scan of its workspaces on first request,
+ * after that it is updated per workspace on workspace and machine status events
+ * and rebuilt from scratch once the reconcile period elapses, so missed events can't skew it for long.
+ * Events which arrive while the ledger is being built are applied to it as well,
+ * the scan doesn't overwrite RAM of the workspaces updated by them.
+ *
+ * <p>RAM of the workspaces which are still starting isn't reported, it is booked by their
+ * reservations kept in {@link WorkspaceRamReservations}, so it would be counted twice otherwise.
+ *
+ * <p>Events are published synchronously, so the workspaces are fetched on a separate thread
+ * instead of the publisher's one, updates are applied there in the order of events.
+ *
  * @author Sergii Leschenko
  */
 @Singleton
 public class RamResourceUsageTracker implements ResourceUsageTracker {
-    private final WorkspaceManager workspaceManager;
-    private final AccountManager   accountManager;
+    private static final Logger LOG = LoggerFactory.getLogger(RamResourceUsageTracker.class);
+
+    private final WorkspaceManager                             workspaceManager;
+    private final AccountManager                               accountManager;
+    private final EventService                                 eventService;
+    private final WorkspaceRamReservations                     reservations;
+    private final LoadingCache<String, Map<String, Long>>      ledger;
+    private final Map<String, Map<String, Long>>               loadingLedgers;
+    private final Map<String, String>                          namespaceAccounts;
+    private final Map<String, String>                          workspaceAccounts;
+    private final EventSubscriber<WorkspaceStatusEvent>        workspaceEventsSubscriber;
+    private final EventSubscriber<MachineStatusEvent>          machineEventsSubscriber;
+    private final EventSubscriber<BeforeWorkspaceRemovedEvent> workspaceRemovedEventsSubscriber;
+    private final ExecutorService                              updatesExecutor;
 
     @Inject
-    public RamResourceUsageTracker(WorkspaceManager workspaceManager, AccountManager accountManager) {
+    public RamResourceUsageTracker(WorkspaceManager workspaceManager,
+                                   AccountManager accountManager,
+                                   EventService eventService,
+                                   WorkspaceRamReservations reservations,
+                                   @Named("resource.ram.usage_reconcile_period_s") long reconcilePeriodSeconds) {
         this.workspaceManager = workspaceManager;
         this.accountManager = accountManager;
+        this.eventService = eventService;
+        this.reservations = reservations;
+        this.loadingLedgers = new ConcurrentHashMap<>();
+        this.namespaceAccounts = new ConcurrentHashMap<>();
+        this.workspaceAccounts = new ConcurrentHashMap<>();
+        this.updatesExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("RamUsageTracker-%d")
+                                                                                           .setDaemon(true)
+                                                                                           .build());
+        this.ledger = CacheBuilder.newBuilder()
+                                  .expireAfterWrite(reconcilePeriodSeconds, SECONDS)
+                                  .build(new CacheLoader<String, Map<String, Long>>() {
+                                      @Override
+                                      public Map<String, Long> load(String accountId) throws Exception {
+                                          return loadUsage(accountId);
+                                      }
+                                  });
+        this.workspaceEventsSubscriber = new EventSubscriber<WorkspaceStatusEvent>() {
+            @Override
+            public void onEvent(WorkspaceStatusEvent event) {
+                final String workspaceId = event.getWorkspaceId();
+                updatesExecutor.execute(() -> updateUsage(workspaceId));
+            }
+        };
+        this.machineEventsSubscriber = new EventSubscriber<MachineStatusEvent>() {
+            @Override
+            public void onEvent(MachineStatusEvent event) {
+                switch (event.getEventType()) {
+                    case RUNNING:
+                    case DESTROYED:
+                        final String workspaceId = event.getWorkspaceId();
+                        updatesExecutor.execute(() -> updateUsage(workspaceId));
+                        break;
+                    default:
+                        //do nothing
+                }
+            }
+        };
+        this.workspaceRemovedEventsSubscriber = new EventSubscriber<BeforeWorkspaceRemovedEvent>() {
+            @Override
+            public void onEvent(BeforeWorkspaceRemovedEvent event) {
+                final String workspaceId = event.getWorkspace().getId();
+                updatesExecutor.execute(() -> removeUsage(workspaceId));
+            }
+        };
     }
 
     @Override
     public ResourceImpl getUsedResource(String accountId) throws NotFoundException, ServerException {
-        final Account account = accountManager.getById(accountId);
-        final List<WorkspaceImpl> accountWorkspaces = workspaceManager.getByNamespace(account.getName());
-        final long currentlyUsedRamMB = accountWorkspaces.stream()
-                                                         .filter(ws -> STOPPED != ws.getStatus())
-                                                         .map(ws -> ws.getRuntime().getMachines())
-                                                         .flatMap(List::stream)
-                                                         .mapToInt(machine -> machine.getConfig()
-                                                                                     .getLimits()
-                                                                                     .getRam())
-                                                         .sum();
+        final Map<String, Long> workspacesRam;
+        try {
+            workspacesRam = ledger.get(accountId);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof NotFoundException) {
+                throw (NotFoundException)cause;
+            }
+            if (cause instanceof ServerException) {
+                throw (ServerException)cause;
+            }
+            throw new ServerException(cause.getLocalizedMessage(), cause);
+        }
+        // ledger is visible in the cache now, so updates can be applied to it directly
+        stopLoading(accountId, workspacesRam);
+        final long currentlyUsedRamMB = workspacesRam.entrySet()
+                                                     .stream()
+                                                     .filter(entry -> !reservations.isReserved(entry.getKey()))
+                                                     .mapToLong(Map.Entry::getValue)
+                                                     .sum();
         return new ResourceImpl(RamResourceType.ID, currentlyUsedRamMB, RamResourceType.UNIT);
     }
+
+    @VisibleForTesting
+    @PostConstruct
+    void subscribe() {
+        eventService.subscribe(workspaceEventsSubscriber);
+        eventService.subscribe(machineEventsSubscriber);
+        eventService.subscribe(workspaceRemovedEventsSubscriber);
+    }
+
+    @PreDestroy
+    void unsubscribe() {
+        eventService.unsubscribe(workspaceEventsSubscriber);
+        eventService.unsubscribe(machineEventsSubscriber);
+        eventService.unsubscribe(workspaceRemovedEventsSubscriber);
+        updatesExecutor.shutdownNow();
+    }
+
+    /**
+     * Builds usage ledger of the given account by walking through all of its workspaces.
+     *
+     * <p>The ledger is published to {@link #updateUsage(String)} before the scan,
+     * RAM of workspaces which it updates during the scan is fresher than the scanned one and is kept.
+     */
+    private Map<String, Long> loadUsage(String accountId) throws NotFoundException, ServerException {
+        final Map<String, Long> workspacesRam = new ConcurrentHashMap<>();
+        try {
+            final Account account = accountManager.getById(accountId);
+            namespaceAccounts.put(account.getName(), accountId);
+            loadingLedgers.put(accountId, workspacesRam);
+            for (WorkspaceImpl workspace : workspaceManager.getByNamespace(account.getName())) {
+                workspaceAccounts.put(workspace.getId(), accountId);
+                final long usedRam = getUsedRam(workspace);
+                if (usedRam > 0) {
+                    workspacesRam.putIfAbsent(workspace.getId(), usedRam);
+                }
+            }
+        } catch (NotFoundException | ServerException | RuntimeException e) {
+            stopLoading(accountId, workspacesRam);
+            throw e;
+        }
+        return workspacesRam;
+    }
+
+    /** Unpublishes the given ledger which is being built, unless it is already replaced with another one. */
+    private void stopLoading(String accountId, Map<String, Long> workspacesRam) {
+        loadingLedgers.computeIfPresent(accountId, (id, loading) -> loading == workspacesRam ? null : loading);
+    }
+
+    /** Returns the built or currently being built ledger of the given account or null when there is none. */
+    private Map<String, Long> getLedger(String accountId) {
+        final Map<String, Long> workspacesRam = ledger.getIfPresent(accountId);
+        return workspacesRam != null ? workspacesRam : loadingLedgers.get(accountId);
+    }
+
+    /**
+     * Recalculates RAM used by the given workspace in the ledger of its account.
+     * Does nothing when the ledger of account isn't built yet, it will be built from scratch on demand,
+     * in that case the workspace isn't fetched at all.
+     */
+    @VisibleForTesting
+    void updateUsage(String workspaceId) {
+        String accountId = workspaceAccounts.get(workspaceId);
+        if (accountId != null ? getLedger(accountId) == null : namespaceAccounts.isEmpty()) {
+            return;
+        }
+        try {
+            final WorkspaceImpl workspace = workspaceManager.getWorkspace(workspaceId);
+            if (accountId == null) {
+                accountId = namespaceAccounts.get(workspace.getNamespace());
+                if (accountId == null) {
+                    // ledger of the account has never been built
+                    return;
+                }
+                workspaceAccounts.put(workspaceId, accountId);
+            }
+            final Map<String, Long> workspacesRam = getLedger(accountId);
+            if (workspacesRam == null) {
+                return;
+            }
+            // zero is kept instead of removal, so a concurrent scan doesn't put the outdated RAM back
+            workspacesRam.put(workspaceId, getUsedRam(workspace));
+        } catch (NotFoundException e) {
+            removeUsage(workspaceId);
+        } catch (ServerException e) {
+            LOG.warn("Failed to update RAM usage of workspace '{}'. Cause: {}", workspaceId, e.getLocalizedMessage());
+            if (accountId != null) {
+                ledger.invalidate(accountId);
+            }
+        }
+    }
+
+    /** Forgets the given workspace, it is called when the workspace is removed. */
+    @VisibleForTesting
+    void removeUsage(String workspaceId) {
+        final String accountId = workspaceAccounts.remove(workspaceId);
+        if (accountId != null) {
+            final Map<String, Long> workspacesRam = getLedger(accountId);
+            if (workspacesRam != null) {
+                workspacesRam.remove(workspaceId);
+            }
+        }
+    }
+
+    private long getUsedRam(WorkspaceImpl workspace) {
+        if (STOPPED == workspace.getStatus() || workspace.getRuntime() == null) {
+            return 0;
+        }
+        return workspace.getRuntime()
+                        .getMachines()
+                        .stream()
+                        .mapToInt(machine -> machine.getConfig()
+                                                    .getLimits()
+                                                    .getRam())
+                        .sum();
+    }
 }
@@ -15,6 +15,7 @@
 package com.codenvy.resource.api.ram;
 
 import com.codenvy.resource.api.ResourceManager;
+import com.codenvy.resource.api.ResourcesReservation;
 import com.codenvy.resource.spi.impl.ResourceImpl;
 import com.google.common.annotations.VisibleForTesting;
 
@@ -25,6 +26,7 @@ import org.eclipse.che.account.shared.model.Account;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.model.workspace.Environment;
 import org.eclipse.che.api.core.model.workspace.WorkspaceConfig;
+import org.eclipse.che.api.core.model.workspace.WorkspaceStatus;
 import org.eclipse.che.api.environment.server.EnvironmentParser;
 import org.eclipse.che.api.environment.server.model.CheServicesEnvironmentImpl;
 import org.eclipse.che.api.workspace.server.WorkspaceManager;
@@ -43,6 +45,9 @@ import static java.util.Collections.singletonList;
  * and {@link WorkspaceManager#startWorkspace(WorkspaceConfig, String, boolean)}
  * and reserves RAM resource while workspace is starting.
  *
+ * <p>The reservation is kept by {@link WorkspaceRamReservations} until workspace
+ * becomes running, stopped or its start fails, it is released right away when start can't be launched.
+ *
  * @author Sergii Leschenko
  */
 @Singleton
@@ -56,6 +61,10 @@ public class WorkspaceRamConsumer implements MethodInterceptor {
     @Inject
     private AccountManager   accountManager;
 
+    @VisibleForTesting
+    @Inject
+    WorkspaceRamReservations reservations;
+
     @VisibleForTesting
     @Inject
     EnvironmentParser environmentParser;
@@ -91,7 +100,23 @@ public class WorkspaceRamConsumer implements MethodInterceptor {
         final Environment environment = config.getEnvironments().get(firstNonNull(envName, config.getDefaultEnv()));
         final ResourceImpl ramToUse = new ResourceImpl(RamResourceType.ID, sumRam(environment), RamResourceType.UNIT);
         final Account account = accountManager.getByName(namespace);
-        return resourceManager.reserveResources(account.getId(), singletonList(ramToUse), invocation::proceed);
+        final ResourcesReservation reservation = resourceManager.reserve(account.getId(), singletonList(ramToUse));
+        final WorkspaceImpl workspace;
+        try {
+            workspace = (WorkspaceImpl)invocation.proceed();
+        } catch (Throwable x) {
+            reservation.release();
+            throw x;
+        }
+        reservations.keep(workspace.getId(), reservation);
+        // start may finish before the reservation is kept, then status event is already missed
+        final WorkspaceStatus status = workspaceManager.getWorkspace(workspace.getId()).getStatus();
+        if (status == WorkspaceStatus.RUNNING) {
+            reservations.commit(workspace.getId());
+        } else if (status != WorkspaceStatus.STARTING) {
+            reservations.release(workspace.getId());
+        }
+        return workspace;
     }
 
     /**
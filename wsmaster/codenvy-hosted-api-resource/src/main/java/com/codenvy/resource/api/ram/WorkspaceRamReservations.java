@@ -0,0 +1,108 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.resource.api.ram;
+
+import com.codenvy.resource.api.ResourcesReservation;
+
+import org.eclipse.che.api.core.notification.EventService;
+import org.eclipse.che.api.core.notification.EventSubscriber;
+import org.eclipse.che.api.workspace.shared.dto.event.WorkspaceStatusEvent;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps RAM reservations of starting workspaces until their start finishes.
+ *
+ * <p>Workspace start returns as soon as runtime starting is launched, so the reservation
+ * made by {@link WorkspaceRamConsumer} is kept here and committed when workspace becomes running
+ * or released when workspace becomes stopped or its start fails. Until then RAM of the workspace
+ * stays booked, so concurrent starts of the same account can't over-commit it,
+ * and {@link RamResourceUsageTracker} doesn't report RAM of the machines which are already started.
+ *
+ * @author Sergii Leschenko
+ */
+@Singleton
+public class WorkspaceRamReservations implements EventSubscriber<WorkspaceStatusEvent> {
+    private final EventService                      eventService;
+    private final Map<String, ResourcesReservation> reservations;
+
+    @Inject
+    public WorkspaceRamReservations(EventService eventService) {
+        this.eventService = eventService;
+        this.reservations = new ConcurrentHashMap<>();
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        eventService.subscribe(this);
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        eventService.unsubscribe(this);
+    }
+
+    @Override
+    public void onEvent(WorkspaceStatusEvent event) {
+        switch (event.getEventType()) {
+            case RUNNING:
+                commit(event.getWorkspaceId());
+                break;
+            case ERROR:
+            case STOPPED:
+                release(event.getWorkspaceId());
+                break;
+            default:
+                //do nothing
+        }
+    }
+
+    /**
+     * Keeps the given reservation until the start of the given workspace finishes.
+     * Previous reservation of the workspace is released.
+     */
+    public void keep(String workspaceId, ResourcesReservation reservation) {
+        final ResourcesReservation previous = reservations.put(workspaceId, reservation);
+        if (previous != null && previous != reservation) {
+            previous.release();
+        }
+    }
+
+    /** Commits reservation of the given workspace, from this moment its RAM is reported by {@link RamResourceUsageTracker}. */
+    public void commit(String workspaceId) {
+        final ResourcesReservation reservation = reservations.remove(workspaceId);
+        if (reservation != null) {
+            reservation.commit();
+        }
+    }
+
+    /** Releases reservation of the given workspace and returns booked RAM to its account. */
+    public void release(String workspaceId) {
+        final ResourcesReservation reservation = reservations.remove(workspaceId);
+        if (reservation != null) {
+            reservation.release();
+        }
+    }
+
+    /** Returns true when the given workspace has reservation which is not finished yet. */
+    public boolean isReserved(String workspaceId) {
+        return reservations.containsKey(workspaceId);
+    }
+}
@@ -14,11 +14,13 @@
  */
 package com.codenvy.resource.api;
 
+import com.codenvy.resource.api.ram.RamResourceType;
 import com.codenvy.resource.model.Resource;
 import com.codenvy.resource.spi.impl.LicenseImpl;
 import com.codenvy.resource.spi.impl.ResourceImpl;
 
 import org.eclipse.che.api.core.ConflictException;
+import org.eclipse.che.api.core.ServerException;
 import org.mockito.Mock;
 import org.mockito.testng.MockitoTestNGListener;
 import org.testng.annotations.BeforeMethod;
@@ -41,6 +43,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * Tests for {@link ResourceManager}
@@ -67,7 +70,8 @@ public class ResourceManagerTest {
     public void setUp() throws Exception {
         resourceManager = spy(new ResourceManager(resourceAggregator,
                                                   licenseManager,
-                                                  singleton(resourceUsageTracker)));
+                                                  singleton(resourceUsageTracker),
+                                                  60_000));
     }
 
     @Test
@@ -117,7 +121,8 @@ public class ResourceManagerTest {
 
     @Test(expectedExceptions = ConflictException.class, expectedExceptionsMessageRegExp = "No enough resources")
     public void shouldThrowConflictExceptionWhenAccountDoesNotHaveEnoughResourcesToReserve() throws Exception {
-        doReturn(singletonList(emptyList())).when(resourceManager).doGetAvailableResources(anyString());
+        doReturn(emptyList()).when(resourceManager).doGetTotalResources(anyString());
+        doReturn(singletonList(emptyList())).when(resourceManager).doGetAvailableResources(any(), anyString());
         when(resourceAggregator.deduct(any(), any())).thenThrow(new ConflictException("No enough resources"));
 
         resourceManager.reserveResources("account123",
@@ -128,7 +133,8 @@ public class ResourceManagerTest {
     @Test
     public void shouldReturnValueOfOperationOnResourcesReserve() throws Exception {
         final Object value = new Object();
-        doReturn(singletonList(emptyList())).when(resourceManager).doGetAvailableResources(anyString());
+        doReturn(emptyList()).when(resourceManager).doGetTotalResources(anyString());
+        doReturn(singletonList(emptyList())).when(resourceManager).doGetAvailableResources(any(), anyString());
         doReturn(new ArrayList<>()).when(resourceAggregator).deduct(any(), any());
 
         final Object result = resourceManager.reserveResources("account123",
@@ -139,10 +145,26 @@ public class ResourceManagerTest {
         assertTrue(value == result);
     }
 
+    @Test
+    public void shouldFetchTotalResourcesOnlyOnceOnResourcesReserve() throws Exception {
+        final List<ResourceImpl> totalResources = singletonList(new ResourceImpl(TEST_RESOURCE_TYPE, 2000, TEST_RESOURCE_UNIT));
+        doReturn(totalResources).when(resourceManager).doGetTotalResources(anyString());
+        doReturn(emptyList()).when(resourceManager).doGetUsedResources(anyString());
+        doReturn(new ArrayList<>()).when(resourceAggregator).deduct(any(), any());
+
+        resourceManager.reserveResources("account123",
+                                         Collections.singletonList(new ResourceImpl(TEST_RESOURCE_TYPE, 100, TEST_RESOURCE_UNIT)),
+                                         () -> null);
+
+        verify(resourceManager).doGetTotalResources(eq("account123"));
+        verify(resourceManager).doGetAvailableResources(eq(totalResources), eq("account123"));
+    }
+
     @Test(expectedExceptions = ConflictException.class,
           expectedExceptionsMessageRegExp = "error")
     public void shouldRethrowExceptionWhenSomeExceptionOccursWhenReservingResources() throws Exception {
-        doReturn(singletonList(emptyList())).when(resourceManager).doGetAvailableResources(anyString());
+        doReturn(emptyList()).when(resourceManager).doGetTotalResources(anyString());
+        doReturn(singletonList(emptyList())).when(resourceManager).doGetAvailableResources(any(), anyString());
         doReturn(new ArrayList<>()).when(resourceAggregator).deduct(any(), any());
 
         resourceManager.reserveResources("account123",
@@ -151,4 +173,62 @@ public class ResourceManagerTest {
                                              throw new ConflictException("error");
                                          });
     }
+
+    @Test(expectedExceptions = ConflictException.class)
+    public void shouldNotReserveResourcesWhichAreBookedByPendingReservation() throws Exception {
+        final ResourceManager resourceManager = createManagerWithRamLimit(1000, 60_000);
+
+        resourceManager.reserve("account123", singletonList(new ResourceImpl(RamResourceType.ID, 700, RamResourceType.UNIT)));
+        resourceManager.reserve("account123", singletonList(new ResourceImpl(RamResourceType.ID, 500, RamResourceType.UNIT)));
+    }
+
+    @Test
+    public void shouldReturnBookedResourcesWhenReservationIsReleased() throws Exception {
+        final ResourceManager resourceManager = createManagerWithRamLimit(1000, 60_000);
+
+        final ResourcesReservation reservation =
+                resourceManager.reserve("account123", singletonList(new ResourceImpl(RamResourceType.ID, 700, RamResourceType.UNIT)));
+        reservation.release();
+        resourceManager.reserve("account123", singletonList(new ResourceImpl(RamResourceType.ID, 700, RamResourceType.UNIT)));
+
+        assertTrue(reservation.isFinished());
+        assertEquals(resourceManager.getReservations("account123").size(), 1);
+    }
+
+    @Test
+    public void shouldIgnoreExpiredReservations() throws Exception {
+        final ResourceManager resourceManager = createManagerWithRamLimit(1000, 0);
+
+        resourceManager.reserve("account123", singletonList(new ResourceImpl(RamResourceType.ID, 700, RamResourceType.UNIT)));
+        resourceManager.reserve("account123", singletonList(new ResourceImpl(RamResourceType.ID, 700, RamResourceType.UNIT)));
+
+        assertTrue(resourceManager.getReservations("account123").isEmpty());
+    }
+
+    @Test
+    public void shouldReleaseReservationWhenOperationFails() throws Exception {
+        final ResourceManager resourceManager = createManagerWithRamLimit(1000, 60_000);
+
+        try {
+            resourceManager.reserveResources("account123",
+                                             singletonList(new ResourceImpl(RamResourceType.ID, 700, RamResourceType.UNIT)),
+                                             () -> {
+                                                 throw new ServerException("error");
+                                             });
+            fail("ServerException expected");
+        } catch (ServerException ignored) {
+        }
+
+        assertTrue(resourceManager.getReservations("account123").isEmpty());
+    }
+
+    private ResourceManager createManagerWithRamLimit(long ramLimit, long reservationTimeoutMs) throws Exception {
+        when(license.getTotalResources()).thenReturn(singletonList(new ResourceImpl(RamResourceType.ID, ramLimit, RamResourceType.UNIT)));
+        when(licenseManager.getByAccount(anyString())).thenReturn(license);
+        when(resourceUsageTracker.getUsedResource(anyString())).thenReturn(new ResourceImpl(RamResourceType.ID, 0, RamResourceType.UNIT));
+        return new ResourceManager(new ResourceAggregator(singleton(new RamResourceType())),
+                                   licenseManager,
+                                   singleton(resourceUsageTracker),
+                                   reservationTimeoutMs);
+    }
 }
@@ -14,34 +14,52 @@
  */
 package com.codenvy.resource.api.ram;
 
+import com.codenvy.resource.api.LicenseManager;
+import com.codenvy.resource.api.ResourceAggregator;
+import com.codenvy.resource.api.ResourceManager;
+import com.codenvy.resource.api.ResourcesReservation;
+import com.codenvy.resource.spi.impl.LicenseImpl;
 import com.codenvy.resource.spi.impl.ResourceImpl;
 
 import org.eclipse.che.account.api.AccountManager;
 import org.eclipse.che.account.shared.model.Account;
 import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.model.workspace.WorkspaceStatus;
+import org.eclipse.che.api.core.notification.EventService;
+import org.eclipse.che.api.core.notification.EventSubscriber;
 import org.eclipse.che.api.machine.server.model.impl.MachineConfigImpl;
 import org.eclipse.che.api.machine.server.model.impl.MachineImpl;
 import org.eclipse.che.api.machine.server.model.impl.MachineLimitsImpl;
 import org.eclipse.che.api.workspace.server.WorkspaceManager;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceRuntimeImpl;
-import org.mockito.InjectMocks;
+import org.eclipse.che.api.workspace.shared.dto.event.WorkspaceStatusEvent;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.testng.MockitoTestNGListener;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
 
 /**
  * Tests for {@link RamResourceUsageTracker}
@@ -56,9 +74,26 @@ public class RamResourceUsageTrackerTest {
     private WorkspaceManager workspaceManager;
     @Mock
     private AccountManager   accountManager;
+    @Mock
+    private EventService     eventService;
+    @Mock
+    private LicenseManager   licenseManager;
+    @Mock
+    private LicenseImpl      license;
+
+    private WorkspaceRamReservations reservations;
+    private RamResourceUsageTracker  ramUsageTracker;
 
-    @InjectMocks
-    private RamResourceUsageTracker ramUsageTracker;
+    @BeforeMethod
+    public void setUp() throws Exception {
+        reservations = new WorkspaceRamReservations(eventService);
+        ramUsageTracker = new RamResourceUsageTracker(workspaceManager, accountManager, eventService, reservations, 60);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        ramUsageTracker.unsubscribe();
+    }
 
     @Test(expectedExceptions = NotFoundException.class,
           expectedExceptionsMessageRegExp = "Account was not found")
@@ -100,13 +135,142 @@ public class RamResourceUsageTrackerTest {
         verify(workspaceManager).getByNamespace(eq("testAccount"));
     }
 
+    @Test
+    public void shouldNotRescanWorkspacesOnSubsequentGettingUsedRam() throws Exception {
+        when(accountManager.getById(any())).thenReturn(account);
+        when(account.getName()).thenReturn("testAccount");
+        when(workspaceManager.getByNamespace(anyString()))
+                .thenReturn(singletonList(createWorkspace(WorkspaceStatus.RUNNING, 1000)));
+
+        ramUsageTracker.getUsedResource("account123");
+        ResourceImpl usedRam = ramUsageTracker.getUsedResource("account123");
+
+        assertEquals(usedRam.getAmount(), 1000L);
+        verify(workspaceManager, times(1)).getByNamespace(eq("testAccount"));
+    }
+
+    @Test
+    public void shouldUpdateUsedRamWhenWorkspaceStatusChanges() throws Exception {
+        when(accountManager.getById(any())).thenReturn(account);
+        when(account.getName()).thenReturn("testAccount");
+        when(workspaceManager.getByNamespace(anyString()))
+                .thenReturn(singletonList(createWorkspace("workspace1", WorkspaceStatus.RUNNING, 1000)));
+        assertEquals(ramUsageTracker.getUsedResource("account123").getAmount(), 1000L);
+
+        when(workspaceManager.getWorkspace("workspace2")).thenReturn(createWorkspace("workspace2", WorkspaceStatus.RUNNING, 500, 500));
+        ramUsageTracker.updateUsage("workspace2");
+        assertEquals(ramUsageTracker.getUsedResource("account123").getAmount(), 2000L);
+
+        when(workspaceManager.getWorkspace("workspace1")).thenReturn(createWorkspace("workspace1", WorkspaceStatus.STOPPED, 1000));
+        ramUsageTracker.updateUsage("workspace1");
+        assertEquals(ramUsageTracker.getUsedResource("account123").getAmount(), 1000L);
+
+        verify(workspaceManager, times(1)).getByNamespace(eq("testAccount"));
+    }
+
+    @Test
+    public void shouldSkipUpdateOfUsedRamWithoutFetchingWorkspaceWhenLedgerOfAccountIsNotBuiltYet() throws Exception {
+        ramUsageTracker.updateUsage("workspace1");
+
+        verify(workspaceManager, never()).getWorkspace(anyString());
+        verify(workspaceManager, never()).getByNamespace(anyString());
+        verify(accountManager, never()).getByName(anyString());
+    }
+
+    @Test
+    public void shouldApplyUpdatesOfUsedRamWhichArriveWhileLedgerIsBeingBuilt() throws Exception {
+        when(accountManager.getById(any())).thenReturn(account);
+        when(account.getName()).thenReturn("testAccount");
+        when(workspaceManager.getWorkspace("workspace2")).thenReturn(createWorkspace("workspace2", WorkspaceStatus.STOPPED, 500));
+        when(workspaceManager.getByNamespace(anyString())).thenAnswer(invocation -> {
+            // workspace2 gets stopped after the scan has read it as running
+            ramUsageTracker.updateUsage("workspace2");
+            return asList(createWorkspace("workspace1", WorkspaceStatus.RUNNING, 1000),
+                          createWorkspace("workspace2", WorkspaceStatus.RUNNING, 500));
+        });
+
+        assertEquals(ramUsageTracker.getUsedResource("account123").getAmount(), 1000L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldFetchWorkspaceOutsideOfEventPublisherThread() throws Exception {
+        when(accountManager.getById(any())).thenReturn(account);
+        when(account.getName()).thenReturn("testAccount");
+        when(workspaceManager.getByNamespace(anyString()))
+                .thenReturn(singletonList(createWorkspace("workspace1", WorkspaceStatus.RUNNING, 1000)));
+        assertEquals(ramUsageTracker.getUsedResource("account123").getAmount(), 1000L);
+        final AtomicReference<Thread> fetchingThread = new AtomicReference<>();
+        when(workspaceManager.getWorkspace("workspace1")).thenAnswer(invocation -> {
+            fetchingThread.set(Thread.currentThread());
+            return createWorkspace("workspace1", WorkspaceStatus.STOPPED, 1000);
+        });
+        ramUsageTracker.subscribe();
+        final ArgumentCaptor<EventSubscriber> subscribersCaptor = ArgumentCaptor.forClass(EventSubscriber.class);
+        verify(eventService, times(3)).subscribe(subscribersCaptor.capture());
+        final WorkspaceStatusEvent event = mock(WorkspaceStatusEvent.class);
+        when(event.getWorkspaceId()).thenReturn("workspace1");
+
+        // the first one is the subscriber of workspace status events
+        subscribersCaptor.getAllValues().get(0).onEvent(event);
+
+        verify(workspaceManager, timeout(1000)).getWorkspace("workspace1");
+        assertNotEquals(fetchingThread.get(), Thread.currentThread());
+    }
+
+    @Test
+    public void shouldNotCountRamOfStartingWorkspaceTwiceWhenTwoStartsExactlyFillLimit() throws Exception {
+        when(accountManager.getById(any())).thenReturn(account);
+        when(account.getName()).thenReturn("testAccount");
+        when(workspaceManager.getByNamespace(anyString())).thenReturn(new ArrayList<>());
+        when(license.getTotalResources()).thenReturn(singletonList(new ResourceImpl(RamResourceType.ID, 2000, RamResourceType.UNIT)));
+        when(licenseManager.getByAccount("account123")).thenReturn(license);
+        final ResourceManager resourceManager = new ResourceManager(new ResourceAggregator(singleton(new RamResourceType())),
+                                                                    licenseManager,
+                                                                    singleton(ramUsageTracker),
+                                                                    60_000);
+        final List<ResourceImpl> workspaceRam = singletonList(new ResourceImpl(RamResourceType.ID, 1000, RamResourceType.UNIT));
+        final ResourcesReservation reservation1 = resourceManager.reserve("account123", workspaceRam);
+        reservations.keep("workspace1", reservation1);
+        // machine of the first workspace is already running while the workspace is still starting
+        when(workspaceManager.getWorkspace("workspace1")).thenReturn(createWorkspace("workspace1", WorkspaceStatus.STARTING, 1000));
+        ramUsageTracker.updateUsage("workspace1");
+
+        final ResourcesReservation reservation2 = resourceManager.reserve("account123", workspaceRam);
+        reservations.keep("workspace2", reservation2);
+        reservations.commit("workspace1");
+
+        assertEquals(ramUsageTracker.getUsedResource("account123").getAmount(), 1000L);
+        assertEquals(resourceManager.getAvailableResources("account123").get(0).getAmount(), 1000L);
+    }
+
+    @Test
+    public void shouldForgetRemovedWorkspace() throws Exception {
+        when(accountManager.getById(any())).thenReturn(account);
+        when(account.getName()).thenReturn("testAccount");
+        when(workspaceManager.getByNamespace(anyString()))
+                .thenReturn(singletonList(createWorkspace("workspace1", WorkspaceStatus.RUNNING, 1000)));
+        assertEquals(ramUsageTracker.getUsedResource("account123").getAmount(), 1000L);
+
+        ramUsageTracker.removeUsage("workspace1");
+
+        assertEquals(ramUsageTracker.getUsedResource("account123").getAmount(), 0L);
+    }
+
     /** Creates users workspace object based on the owner and machines RAM. */
     public static WorkspaceImpl createWorkspace(WorkspaceStatus status, Integer... machineRams) {
+        return createWorkspace(null, status, machineRams);
+    }
+
+    /** Creates users workspace object with the given id based on the owner and machines RAM. */
+    public static WorkspaceImpl createWorkspace(String id, WorkspaceStatus status, Integer... machineRams) {
         final List<MachineImpl> machines = new ArrayList<>(machineRams.length - 1);
         for (Integer machineRam : machineRams) {
             machines.add(createMachine(machineRam));
         }
         return WorkspaceImpl.builder()
+                            .setId(id)
+                            .setNamespace("testAccount")
                             .setRuntime(new WorkspaceRuntimeImpl(null, null, machines, null))
                             .setStatus(status)
                             .build();
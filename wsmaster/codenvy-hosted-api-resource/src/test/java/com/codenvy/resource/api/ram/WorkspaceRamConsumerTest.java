@@ -14,7 +14,12 @@
  */
 package com.codenvy.resource.api.ram;
 
+import com.codenvy.resource.api.LicenseManager;
+import com.codenvy.resource.api.ResourceAggregator;
 import com.codenvy.resource.api.ResourceManager;
+import com.codenvy.resource.api.ResourceUsageTracker;
+import com.codenvy.resource.api.ResourcesReservation;
+import com.codenvy.resource.spi.impl.LicenseImpl;
 import com.codenvy.resource.spi.impl.ResourceImpl;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
@@ -22,7 +27,11 @@ import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import org.aopalliance.intercept.MethodInvocation;
 import org.eclipse.che.account.api.AccountManager;
 import org.eclipse.che.account.spi.AccountImpl;
+import org.eclipse.che.api.core.ConflictException;
+import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.model.workspace.WorkspaceConfig;
+import org.eclipse.che.api.core.model.workspace.WorkspaceStatus;
+import org.eclipse.che.api.core.notification.EventService;
 import org.eclipse.che.api.environment.server.EnvironmentParser;
 import org.eclipse.che.plugin.docker.compose.ComposeEnvironment;
 import org.eclipse.che.plugin.docker.compose.ComposeServiceImpl;
@@ -33,8 +42,10 @@ import org.eclipse.che.api.workspace.server.model.impl.EnvironmentRecipeImpl;
 import org.eclipse.che.api.workspace.server.model.impl.ExtendedMachineImpl;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceConfigImpl;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
+import org.eclipse.che.api.workspace.shared.dto.event.WorkspaceStatusEvent;
 import org.eclipse.che.commons.lang.NameGenerator;
 import org.eclipse.che.commons.lang.Size;
+import org.eclipse.che.dto.server.DtoFactory;
 import org.eclipse.che.plugin.docker.compose.yaml.ComposeEnvironmentParser;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -46,14 +57,21 @@ import org.testng.annotations.Test;
 
 import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * Tests for {@link WorkspaceRamConsumer}
@@ -67,15 +85,25 @@ public class WorkspaceRamConsumerTest {
     private static final int DEFAULT_SIZE_MB = 500;
 
     @Mock
-    private ResourceManager  resourceManager;
+    private ResourceManager      resourceManager;
     @Mock
-    private WorkspaceManager workspaceManager;
+    private WorkspaceManager     workspaceManager;
     @Mock
-    private AccountManager   accountManager;
+    private AccountManager       accountManager;
     @Mock
-    private MethodInvocation invocation;
+    private MethodInvocation     invocation;
     @Mock
-    private AccountImpl      account;
+    private AccountImpl          account;
+    @Mock
+    private ResourcesReservation reservation;
+    @Mock
+    private EventService         eventService;
+    @Mock
+    private LicenseManager       licenseManager;
+    @Mock
+    private LicenseImpl          license;
+    @Mock
+    private ResourceUsageTracker usageTracker;
 
     @Mock
     RecipeDownloader recipeDownloader;
@@ -87,10 +115,17 @@ public class WorkspaceRamConsumerTest {
     @InjectMocks
     private WorkspaceRamConsumer ramConsumer;
 
+    private WorkspaceRamReservations reservations;
+
     @BeforeMethod
     public void setUp() throws Exception {
         ramConsumer.environmentParser = environmentParser;
         ramConsumer.defaultMachineMemorySizeMB = DEFAULT_SIZE_MB;
+        ramConsumer.reservations = reservations = new WorkspaceRamReservations(eventService);
+        when(resourceManager.reserve(any(), any())).thenReturn(reservation);
+        final WorkspaceImpl startingWorkspace = createWorkspaceWithStatus("workspace123", WorkspaceStatus.STARTING);
+        when(invocation.proceed()).thenReturn(startingWorkspace);
+        when(workspaceManager.getWorkspace("workspace123")).thenReturn(startingWorkspace);
     }
 
     @Test
@@ -105,9 +140,9 @@ public class WorkspaceRamConsumerTest {
 
         verify(workspaceManager).getWorkspace(eq("workspace123"));
         verify(accountManager).getByName(eq("testAccount"));
-        verify(resourceManager).reserveResources(eq("account123"), eq(singletonList(new ResourceImpl(RamResourceType.ID,
-                                                                                                     1000,
-                                                                                                     RamResourceType.UNIT))), any());
+        verify(resourceManager).reserve(eq("account123"), eq(singletonList(new ResourceImpl(RamResourceType.ID,
+                                                                                            1000,
+                                                                                            RamResourceType.UNIT))));
     }
 
     @Test
@@ -122,9 +157,9 @@ public class WorkspaceRamConsumerTest {
 
         verify(workspaceManager).getWorkspace(eq("workspace123"));
         verify(accountManager).getByName(eq("testAccount"));
-        verify(resourceManager).reserveResources(eq("account123"), eq(singletonList(new ResourceImpl(RamResourceType.ID,
-                                                                                                     1000,
-                                                                                                     RamResourceType.UNIT))), any());
+        verify(resourceManager).reserve(eq("account123"), eq(singletonList(new ResourceImpl(RamResourceType.ID,
+                                                                                            1000,
+                                                                                            RamResourceType.UNIT))));
     }
 
     @Test
@@ -139,9 +174,9 @@ public class WorkspaceRamConsumerTest {
 
         verify(workspaceManager).getWorkspace(eq("workspace123"));
         verify(accountManager).getByName(eq("testAccount"));
-        verify(resourceManager).reserveResources(eq("account123"), eq(singletonList(new ResourceImpl(RamResourceType.ID,
-                                                                                                     DEFAULT_SIZE_MB + 300,
-                                                                                                     RamResourceType.UNIT))), any());
+        verify(resourceManager).reserve(eq("account123"), eq(singletonList(new ResourceImpl(RamResourceType.ID,
+                                                                                            DEFAULT_SIZE_MB + 300,
+                                                                                            RamResourceType.UNIT))));
     }
 
     @Test
@@ -154,9 +189,9 @@ public class WorkspaceRamConsumerTest {
         ramConsumer.invoke(invocation);
 
         verify(accountManager).getByName(eq("testAccount"));
-        verify(resourceManager).reserveResources(eq("account123"), eq(singletonList(new ResourceImpl(RamResourceType.ID,
-                                                                                                     DEFAULT_SIZE_MB + 700,
-                                                                                                     RamResourceType.UNIT))), any());
+        verify(resourceManager).reserve(eq("account123"), eq(singletonList(new ResourceImpl(RamResourceType.ID,
+                                                                                            DEFAULT_SIZE_MB + 700,
+                                                                                            RamResourceType.UNIT))));
     }
 
     @Test
@@ -169,9 +204,88 @@ public class WorkspaceRamConsumerTest {
         ramConsumer.invoke(invocation);
 
         verify(accountManager).getByName(eq("testAccount"));
-        verify(resourceManager).reserveResources(eq("account123"), eq(singletonList(new ResourceImpl(RamResourceType.ID,
-                                                                                                     1000,
-                                                                                                     RamResourceType.UNIT))), any());
+        verify(resourceManager).reserve(eq("account123"), eq(singletonList(new ResourceImpl(RamResourceType.ID,
+                                                                                            1000,
+                                                                                            RamResourceType.UNIT))));
+    }
+
+    @Test
+    public void shouldKeepReservationUntilWorkspaceIsRunning() throws Throwable {
+        startWorkspaceFromConfig("workspace123", 700);
+
+        verify(reservation, never()).commit();
+        verify(reservation, never()).release();
+        assertTrue(reservations.isReserved("workspace123"));
+
+        reservations.onEvent(createStatusEvent("workspace123", WorkspaceStatusEvent.EventType.RUNNING));
+
+        verify(reservation).commit();
+        assertFalse(reservations.isReserved("workspace123"));
+    }
+
+    @Test
+    public void shouldReleaseReservationWhenWorkspaceStartFails() throws Throwable {
+        startWorkspaceFromConfig("workspace123", 700);
+
+        reservations.onEvent(createStatusEvent("workspace123", WorkspaceStatusEvent.EventType.ERROR));
+
+        verify(reservation).release();
+        assertFalse(reservations.isReserved("workspace123"));
+    }
+
+    @Test
+    public void shouldReleaseReservationWhenWorkspaceStartCanNotBeLaunched() throws Throwable {
+        when(invocation.getArguments()).thenReturn(new Object[] {createConfig("default", "default", 700), "testAccount"});
+        when(accountManager.getByName(any())).thenReturn(account);
+        when(account.getId()).thenReturn("account123");
+        when(invocation.proceed()).thenThrow(new ServerException("error"));
+
+        try {
+            ramConsumer.invoke(invocation);
+            fail("ServerException expected");
+        } catch (ServerException ignored) {
+        }
+
+        verify(reservation).release();
+    }
+
+    @Test
+    public void shouldReleaseReservationWhenWorkspaceIsNotStartingAnyMoreAfterStartIsLaunched() throws Throwable {
+        when(invocation.getArguments()).thenReturn(new Object[] {createConfig("default", "default", 700), "testAccount"});
+        when(accountManager.getByName(any())).thenReturn(account);
+        when(account.getId()).thenReturn("account123");
+        when(workspaceManager.getWorkspace("workspace123")).thenReturn(createWorkspaceWithStatus("workspace123", WorkspaceStatus.STOPPED));
+
+        ramConsumer.invoke(invocation);
+
+        verify(reservation).release();
+        assertFalse(reservations.isReserved("workspace123"));
+    }
+
+    @Test
+    public void shouldNotAllowConcurrentStartsWhichTogetherExceedRamLimit() throws Throwable {
+        when(license.getTotalResources()).thenReturn(singletonList(new ResourceImpl(RamResourceType.ID, 1000, RamResourceType.UNIT)));
+        when(licenseManager.getByAccount(anyString())).thenReturn(license);
+        when(usageTracker.getUsedResource(anyString())).thenReturn(new ResourceImpl(RamResourceType.ID, 0, RamResourceType.UNIT));
+        final ResourceManager limitedManager = new ResourceManager(new ResourceAggregator(singleton(new RamResourceType())),
+                                                                   licenseManager,
+                                                                   singleton(usageTracker),
+                                                                   60_000);
+        when(resourceManager.reserve(any(), any()))
+                .thenAnswer(call -> limitedManager.reserve((String)call.getArguments()[0],
+                                                           (List<ResourceImpl>)call.getArguments()[1]));
+
+        startWorkspaceFromConfig("workspace1", 700);
+        try {
+            startWorkspaceFromConfig("workspace2", 500);
+            fail("ConflictException expected");
+        } catch (ConflictException ignored) {
+        }
+
+        reservations.onEvent(createStatusEvent("workspace1", WorkspaceStatusEvent.EventType.ERROR));
+        startWorkspaceFromConfig("workspace2", 500);
+
+        assertTrue(reservations.isReserved("workspace2"));
     }
 
     @Test(dataProvider = "interceptedMethods")
@@ -218,6 +332,30 @@ public class WorkspaceRamConsumerTest {
                             .build();
     }
 
+    private void startWorkspaceFromConfig(String workspaceId, Integer... machineRamsMb) throws Throwable {
+        when(invocation.getArguments()).thenReturn(new Object[] {createConfig("default", "default", machineRamsMb), "testAccount"});
+        when(accountManager.getByName(any())).thenReturn(account);
+        when(account.getId()).thenReturn("account123");
+        final WorkspaceImpl workspace = createWorkspaceWithStatus(workspaceId, WorkspaceStatus.STARTING);
+        when(invocation.proceed()).thenReturn(workspace);
+        when(workspaceManager.getWorkspace(workspaceId)).thenReturn(workspace);
+
+        ramConsumer.invoke(invocation);
+    }
+
+    private static WorkspaceImpl createWorkspaceWithStatus(String id, WorkspaceStatus status) {
+        return WorkspaceImpl.builder()
+                            .setId(id)
+                            .setStatus(status)
+                            .build();
+    }
+
+    private static WorkspaceStatusEvent createStatusEvent(String workspaceId, WorkspaceStatusEvent.EventType eventType) {
+        return DtoFactory.newDto(WorkspaceStatusEvent.class)
+                         .withWorkspaceId(workspaceId)
+                         .withEventType(eventType);
+    }
+
     public static WorkspaceConfigImpl createConfig(String envName, String defaultEnvName, Integer... machineRamsMb) throws Exception {
         Map<String, ExtendedMachineImpl> machines = new HashMap<>();
         HashMap<String, ComposeServiceImpl> services = new HashMap<>(machineRamsMb.length);
@@ -54,7 +54,13 @@ import java.util.List;
                             query = "SELECT worker " +
                                     "FROM Worker worker " +
                                     "WHERE worker.userId = :userId " +
-                                    "AND worker.workspaceId = :workspaceId ")
+                                    "AND worker.workspaceId = :workspaceId "),
+                @NamedQuery(name = "Worker.getCountByWorkspaceIdAndAction",
+                            query = "SELECT COUNT(worker) " +
+                                    "FROM Worker worker " +
+                                    "WHERE worker.workspaceId = :workspaceId " +
+                                    "AND :action MEMBER OF worker.actions " +
+                                    "AND COALESCE(worker.userId, '*') <> :userId ")
         }
 )
 @Table(name = "worker")
@@ -100,6 +100,24 @@ public class JpaStackPermissionsDao extends AbstractJpaPermissionsDao<StackPermi
         }
     }
 
+    @Override
+    @Transactional
+    public long getCountByInstanceAndAction(String instanceId, String action, String excludedUserId) throws ServerException {
+        requireNonNull(instanceId, "Stack identifier required");
+        requireNonNull(action, "Action name required");
+        requireNonNull(excludedUserId, "User identifier required");
+        try {
+            return managerProvider.get()
+                                  .createNamedQuery("StackPermissions.getCountByStackIdAndAction", Long.class)
+                                  .setParameter("stackId", instanceId)
+                                  .setParameter("action", action)
+                                  .setParameter("userId", excludedUserId)
+                                  .getSingleResult();
+        } catch (RuntimeException e) {
+            throw new ServerException(e.getLocalizedMessage(), e);
+        }
+    }
+
     @Override
     protected StackPermissionsImpl getEntity(String userId, String instanceId) throws NotFoundException {
         try {
@@ -124,6 +124,24 @@ public class JpaWorkerDao extends AbstractJpaPermissionsDao<WorkerImpl> implemen
         }
     }
 
+    @Override
+    @Transactional
+    public long getCountByInstanceAndAction(String instanceId, String action, String excludedUserId) throws ServerException {
+        requireNonNull(instanceId, "Workspace identifier required");
+        requireNonNull(action, "Action name required");
+        requireNonNull(excludedUserId, "User identifier required");
+        try {
+            return managerProvider.get()
+                                  .createNamedQuery("Worker.getCountByWorkspaceIdAndAction", Long.class)
+                                  .setParameter("workspaceId", instanceId)
+                                  .setParameter("action", action)
+                                  .setParameter("userId", excludedUserId)
+                                  .getSingleResult();
+        } catch (RuntimeException e) {
+            throw new ServerException(e.getLocalizedMessage(), e);
+        }
+    }
+
     @Override
     protected WorkerImpl getEntity(String userId, String instanceId) throws NotFoundException {
         try {
@@ -59,7 +59,13 @@ import java.util.List;
                             query = "SELECT stack " +
                                     "FROM StackPermissions stack " +
                                     "WHERE stack.stackId = :stackId " +
-                                    "AND stack.userId IS NULL ")
+                                    "AND stack.userId IS NULL "),
+                @NamedQuery(name = "StackPermissions.getCountByStackIdAndAction",
+                            query = "SELECT COUNT(stack) " +
+                                    "FROM StackPermissions stack " +
+                                    "WHERE stack.stackId = :stackId " +
+                                    "AND :action MEMBER OF stack.actions " +
+                                    "AND COALESCE(stack.userId, '*') <> :userId ")
         }
 )
 @Table(indexes = {@Index(columnList = "userId, stackId", unique = true),
@@ -53,6 +53,7 @@ public class JpaTckModule extends TckModule {
         bind(new TypeLiteral<AbstractPermissionsDomain<WorkerImpl>>() {}).to(WorkerDaoTest.TestDomain.class);
 
         bind(WorkerDao.class).to(JpaWorkerDao.class);
+        bind(new TypeLiteral<PermissionsDao<WorkerImpl>>() {}).to(JpaWorkerDao.class);
         bind(new TypeLiteral<TckRepository<WorkerImpl>>() {}).toInstance(new JpaTckRepository<>(WorkerImpl.class));
         bind(new TypeLiteral<TckRepository<UserImpl>>() {}).toInstance(new JpaTckRepository<>(UserImpl.class));
 
@@ -170,6 +170,19 @@ public class StackPermissionsDaoTest {
         dao.getByInstance(null, 1, 0);
     }
 
+    /* StackPermissionsDao.getCountByInstanceAndAction() tests */
+    @Test
+    public void shouldCountPermissionsByInstanceAndActionExcludingGivenUser() throws Exception {
+        assertEquals(2, dao.getCountByInstanceAndAction("stack2", "configure", "user1"));
+        assertEquals(1, dao.getCountByInstanceAndAction("stack2", "configure", "user"));
+        assertEquals(0, dao.getCountByInstanceAndAction("stack1", "run", "user1"));
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldThrowExceptionWhenGetCountByInstanceAndActionInstanceIdArgumentIsNull() throws Exception {
+        dao.getCountByInstanceAndAction(null, "read", "user");
+    }
+
     /* StackPermissionsDao.get() tests */
     @Test
     public void shouldBeAbleToGetPermissions() throws Exception {
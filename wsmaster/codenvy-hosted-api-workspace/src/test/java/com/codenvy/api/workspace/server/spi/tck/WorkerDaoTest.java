@@ -15,6 +15,7 @@
 package com.codenvy.api.workspace.server.spi.tck;
 
 import com.codenvy.api.permission.server.AbstractPermissionsDomain;
+import com.codenvy.api.permission.server.spi.PermissionsDao;
 import com.codenvy.api.workspace.server.model.impl.WorkerImpl;
 import com.codenvy.api.workspace.server.spi.WorkerDao;
 
@@ -56,6 +57,9 @@ public class WorkerDaoTest {
     @Inject
     private WorkerDao workerDao;
 
+    @Inject
+    private PermissionsDao<WorkerImpl> permissionsDao;
+
     @Inject
     private TckRepository<WorkerImpl> workerRepository;
 
@@ -208,6 +212,19 @@ public class WorkerDaoTest {
         workerDao.removeWorker("ws1", "unexisted_user");
     }
 
+    /* PermissionsDao.getCountByInstanceAndAction() tests */
+    @Test
+    public void shouldCountPermissionsByInstanceAndActionExcludingGivenUser() throws Exception {
+        assertEquals(2, permissionsDao.getCountByInstanceAndAction("ws2", "configure", "user1"));
+        assertEquals(1, permissionsDao.getCountByInstanceAndAction("ws2", "configure", "user2"));
+        assertEquals(0, permissionsDao.getCountByInstanceAndAction("ws1", "run", "user1"));
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void shouldThrowExceptionWhenGetCountByInstanceAndActionInstanceIdArgumentIsNull() throws Exception {
+        permissionsDao.getCountByInstanceAndAction(null, "read", "user");
+    }
+
     public static class TestDomain extends AbstractPermissionsDomain<WorkerImpl> {
         public TestDomain() {
             super("workspace", Arrays.asList("read", "write", "use", "delete"));
@@ -14,6 +14,7 @@
  */
 package com.codenvy.api.permission.server;
 
+import com.codahale.metrics.annotation.Gauge;
 import com.codenvy.api.permission.shared.dto.PermissionsDto;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -27,8 +28,9 @@ import org.eclipse.che.api.core.rest.HttpJsonRequestFactory;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.ws.rs.core.UriBuilder;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -36,87 +38,122 @@ import java.util.concurrent.TimeUnit;
  * Implementation of {@link PermissionChecker} that load permissions by http requests to {@link PermissionsService}
  *
  * <p>It also caches permissions to avoid frequently requests to workspace master.
+ * On the first check of the user in the domain all the permissions of the user in this domain
+ * are prefetched by single request, so checks of the actions granted to the user on any
+ * instance of the domain don't require further requests. Prefetched permissions don't contain
+ * actions granted to all the users('*'), so when the action is not granted to the user the actions
+ * granted to the user on the instance, merged with the wildcard ones, are fetched by single request.
+ * Concurrent misses of the same key are served by single request.
+ *
+ * <p>Changes of permissions are not propagated from workspace master, as its event bus delivers
+ * every event to every agent and permissions events concern users and instances of all the tenants.
+ * So cached entries are only expired and revoked permissions are granted by the agent until
+ * {@code permission.cache.expire_after_write_s} passes, which is why this period is kept short.
  *
  * @author Sergii Leschenko
  */
 @Singleton
 public class HttpPermissionCheckerImpl implements PermissionChecker {
-    private final LoadingCache<Key, Set<String>> permissionsCache;
+    private final LoadingCache<PermissionsKey, Set<String>>              permissionsCache;
+    private final LoadingCache<PermissionsKey, Map<String, Set<String>>> domainPermissionsCache;
 
     @Inject
     public HttpPermissionCheckerImpl(@Named("che.api") String apiEndpoint,
+                                     @Named("permission.cache.max_size") long cacheMaxSize,
+                                     @Named("permission.cache.expire_after_write_s") long cacheExpirationSeconds,
                                      HttpJsonRequestFactory requestFactory) {
-        //TODO mb make configurable size of cache and expiration time
         this.permissionsCache = CacheBuilder.newBuilder()
-                                            .maximumSize(1000)
-                                            .expireAfterWrite(1, TimeUnit.MINUTES)
-                                            .build(new CacheLoader<Key, Set<String>>() {
+                                            .maximumSize(cacheMaxSize)
+                                            .expireAfterWrite(cacheExpirationSeconds, TimeUnit.SECONDS)
+                                            .recordStats()
+                                            .build(new CacheLoader<PermissionsKey, Set<String>>() {
                                                 @Override
-                                                public Set<String> load(Key key) throws Exception {
-                                                    UriBuilder currentUsersPermissions = UriBuilder.fromUri(apiEndpoint)
-                                                                                                   .path(PermissionsService.class)
-                                                                                                   .path(PermissionsService.class,
-                                                                                                         "getCurrentUsersPermissions");
-                                                    if (key.instance != null) {
-                                                        currentUsersPermissions.queryParam("instance", key.instance);
+                                                public Set<String> load(PermissionsKey key) throws Exception {
+                                                    UriBuilder effectivePermissions = UriBuilder.fromUri(apiEndpoint)
+                                                                                                .path(PermissionsService.class)
+                                                                                                .path(PermissionsService.class,
+                                                                                                      "getCurrentUsersEffectivePermissions");
+                                                    if (key.getInstance() != null) {
+                                                        effectivePermissions.queryParam("instance", key.getInstance());
                                                     }
-                                                    String userPermissionsUrl = currentUsersPermissions.build(key.domain).toString();
+                                                    String permissionsUrl = effectivePermissions.build(key.getDomain()).toString();
                                                     try {
-                                                        PermissionsDto usersPermissions = requestFactory.fromUrl(userPermissionsUrl)
-                                                                                                        .useGetMethod()
-                                                                                                        .request().asDto(
-                                                                        PermissionsDto.class);
-                                                        return new HashSet<>(usersPermissions.getActions());
+                                                        PermissionsDto permissions = requestFactory.fromUrl(permissionsUrl)
+                                                                                                   .useGetMethod()
+                                                                                                   .request()
+                                                                                                   .asDto(PermissionsDto.class);
+                                                        return new HashSet<>(permissions.getActions());
                                                     } catch (NotFoundException e) {
-                                                        //user doesn't have permissions
+                                                        //domain is not supported
                                                         return new HashSet<>();
                                                     }
                                                 }
                                             });
+        this.domainPermissionsCache = CacheBuilder.newBuilder()
+                                                  .maximumSize(cacheMaxSize)
+                                                  .expireAfterWrite(cacheExpirationSeconds, TimeUnit.SECONDS)
+                                                  .recordStats()
+                                                  .build(new CacheLoader<PermissionsKey, Map<String, Set<String>>>() {
+                                                      @Override
+                                                      public Map<String, Set<String>> load(PermissionsKey key) throws Exception {
+                                                          String permissionsUrl = UriBuilder.fromUri(apiEndpoint)
+                                                                                            .path(PermissionsService.class)
+                                                                                            .path(PermissionsService.class,
+                                                                                                  "getCurrentUsersDomainPermissions")
+                                                                                            .build(key.getDomain())
+                                                                                            .toString();
+                                                          // instance of the domain may be null
+                                                          final Map<String, Set<String>> instancesActions = new HashMap<>();
+                                                          try {
+                                                              for (PermissionsDto permissions : requestFactory.fromUrl(permissionsUrl)
+                                                                                                              .useGetMethod()
+                                                                                                              .request()
+                                                                                                              .asList(PermissionsDto.class)) {
+                                                                  instancesActions.put(permissions.getInstanceId(),
+                                                                                       new HashSet<>(permissions.getActions()));
+                                                              }
+                                                          } catch (NotFoundException e) {
+                                                              //domain is not supported
+                                                          }
+                                                          return instancesActions;
+                                                      }
+                                                  });
     }
 
     @Override
     public boolean hasPermission(String user, String domain, String instance, String action) throws ServerException {
         try {
-            return permissionsCache.get(new Key(user, domain, instance)).contains(action)
-                    || permissionsCache.get(new Key("*", domain, instance)).contains(action);
+            final Set<String> userActions = domainPermissionsCache.get(new PermissionsKey(user, domain, null)).get(instance);
+            if (userActions != null && userActions.contains(action)) {
+                return true;
+            }
+            return permissionsCache.get(new PermissionsKey(user, domain, instance)).contains(action);
         } catch (Exception e) {
             throw new ServerException(e.getMessage(), e);
         }
     }
 
-    private static final class Key {
-        private final String user;
-        private final String domain;
-        private final String instance;
+    /** @return number of permission checks served by the cache */
+    @Gauge(name = "auth.permission.cache_hits")
+    public long getCacheHits() {
+        return permissionsCache.stats().hitCount();
+    }
 
-        private Key(String user, String domain, String instance) {
-            this.user = user;
-            this.domain = domain;
-            this.instance = instance;
-        }
+    /** @return number of permission checks which required request to workspace master */
+    @Gauge(name = "auth.permission.cache_misses")
+    public long getCacheMisses() {
+        return permissionsCache.stats().missCount();
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (!(obj instanceof Key)) {
-                return false;
-            }
-            final Key other = (Key)obj;
-            return Objects.equals(user, other.user) &&
-                   Objects.equals(domain, other.domain) &&
-                   Objects.equals(instance, other.instance);
-        }
+    /** @return number of requests which prefetched all the permissions of the user in the domain */
+    @Gauge(name = "auth.permission.cache_domain_prefetches")
+    public long getDomainPrefetches() {
+        return domainPermissionsCache.stats().loadCount();
+    }
 
-        @Override
-        public int hashCode() {
-            int hash = 7;
-            hash = hash * 31 + Objects.hashCode(user);
-            hash = hash * 31 + Objects.hashCode(domain);
-            hash = hash * 31 + Objects.hashCode(instance);
-            return hash;
-        }
+    /** @return average time in nanoseconds spent on loading permissions from workspace master */
+    @Gauge(name = "auth.permission.cache_average_load_penalty_ns")
+    public double getAverageLoadPenalty() {
+        return permissionsCache.stats().averageLoadPenalty();
     }
 }
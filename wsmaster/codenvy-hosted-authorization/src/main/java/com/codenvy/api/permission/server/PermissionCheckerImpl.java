@@ -14,30 +14,115 @@
  */
 package com.codenvy.api.permission.server;
 
+import com.codahale.metrics.annotation.Gauge;
+import com.codenvy.api.permission.shared.dto.PermissionsEventDto;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import org.eclipse.che.api.core.ConflictException;
 import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.core.notification.EventService;
+import org.eclipse.che.api.core.notification.EventSubscriber;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of {@link PermissionChecker} that use {@link PermissionsManager} for checking
  *
+ * <p>Permissions are cached locally, cached entries are invalidated by {@link PermissionsEventDto}
+ * published by the permissions DAOs on each change, so the expiration time may be long.
+ *
  * @author Sergii Leschenko
  */
+@Singleton
 public class PermissionCheckerImpl implements PermissionChecker {
-    private final PermissionsManager permissionsManager;
+    private final PermissionsManager                        permissionsManager;
+    private final EventService                              eventService;
+    private final LoadingCache<PermissionsKey, Set<String>> permissionsCache;
+    private final EventSubscriber<PermissionsEventDto>      invalidator;
 
     @Inject
-    public PermissionCheckerImpl(PermissionsManager permissionsManager) {
+    public PermissionCheckerImpl(PermissionsManager permissionsManager,
+                                 EventService eventService,
+                                 @Named("permission.cache.max_size") long cacheMaxSize,
+                                 @Named("permission.cache.expire_after_write_s") long cacheExpirationSeconds) {
         this.permissionsManager = permissionsManager;
+        this.eventService = eventService;
+        this.permissionsCache = CacheBuilder.newBuilder()
+                                            .maximumSize(cacheMaxSize)
+                                            .expireAfterWrite(cacheExpirationSeconds, TimeUnit.SECONDS)
+                                            .recordStats()
+                                            .build(new CacheLoader<PermissionsKey, Set<String>>() {
+                                                @Override
+                                                public Set<String> load(PermissionsKey key) throws Exception {
+                                                    try {
+                                                        return new HashSet<>(permissionsManager.get(key.getUser(),
+                                                                                                    key.getDomain(),
+                                                                                                    key.getInstance())
+                                                                                               .getActions());
+                                                    } catch (NotFoundException e) {
+                                                        //user doesn't have permissions
+                                                        return new HashSet<>();
+                                                    }
+                                                }
+                                            });
+        this.invalidator = event -> permissionsCache.invalidate(new PermissionsKey(event.getUserId(),
+                                                                                   event.getDomainId(),
+                                                                                   event.getInstanceId()));
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        eventService.subscribe(invalidator, PermissionsEventDto.class);
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        eventService.unsubscribe(invalidator, PermissionsEventDto.class);
     }
 
     @Override
     public boolean hasPermission(String user, String domain, String instance, String action) throws ServerException,
                                                                                                     NotFoundException,
                                                                                                     ConflictException {
-        return permissionsManager.exists(user, domain, instance, action)
-                || permissionsManager.exists("*", domain, instance, action);
+        if (!permissionsManager.getDomain(domain).getAllowedActions().contains(action)) {
+            return false;
+        }
+        return getActions(user, domain, instance).contains(action)
+                || getActions("*", domain, instance).contains(action);
+    }
+
+    /** @return number of permission checks served by the cache */
+    @Gauge(name = "auth.permission.master_cache_hits")
+    public long getCacheHits() {
+        return permissionsCache.stats().hitCount();
+    }
+
+    /** @return number of permission checks which required loading permissions from storage */
+    @Gauge(name = "auth.permission.master_cache_misses")
+    public long getCacheMisses() {
+        return permissionsCache.stats().missCount();
+    }
+
+    private Set<String> getActions(String user, String domain, String instance) throws ServerException, ConflictException {
+        try {
+            return permissionsCache.get(new PermissionsKey(user, domain, instance));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof ConflictException) {
+                throw (ConflictException)e.getCause();
+            }
+            throw new ServerException(e.getCause().getMessage(), e.getCause());
+        }
     }
 }
@@ -0,0 +1,69 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.api.permission.server;
+
+import java.util.Objects;
+
+/**
+ * Identifies cached permissions of the user related to the particular instance of domain.
+ *
+ * @author Sergii Leschenko
+ */
+final class PermissionsKey {
+    private final String user;
+    private final String domain;
+    private final String instance;
+
+    PermissionsKey(String user, String domain, String instance) {
+        this.user = user;
+        this.domain = domain;
+        this.instance = instance;
+    }
+
+    String getUser() {
+        return user;
+    }
+
+    String getDomain() {
+        return domain;
+    }
+
+    String getInstance() {
+        return instance;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PermissionsKey)) {
+            return false;
+        }
+        final PermissionsKey other = (PermissionsKey)obj;
+        return Objects.equals(user, other.user) &&
+               Objects.equals(domain, other.domain) &&
+               Objects.equals(instance, other.instance);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = hash * 31 + Objects.hashCode(user);
+        hash = hash * 31 + Objects.hashCode(domain);
+        hash = hash * 31 + Objects.hashCode(instance);
+        return hash;
+    }
+}
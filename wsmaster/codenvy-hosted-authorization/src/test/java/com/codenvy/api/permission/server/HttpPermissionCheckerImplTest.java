@@ -0,0 +1,105 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.api.permission.server;
+
+import com.codenvy.api.permission.shared.dto.PermissionsDto;
+
+import org.eclipse.che.api.core.NotFoundException;
+import org.eclipse.che.api.core.rest.HttpJsonRequest;
+import org.eclipse.che.api.core.rest.HttpJsonRequestFactory;
+import org.eclipse.che.api.core.rest.HttpJsonResponse;
+import org.eclipse.che.commons.test.mockito.answer.SelfReturningAnswer;
+import org.mockito.Mock;
+import org.mockito.testng.MockitoTestNGListener;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import static java.util.Arrays.asList;
+import static org.eclipse.che.dto.server.DtoFactory.newDto;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for {@link HttpPermissionCheckerImpl}
+ */
+@Listeners(MockitoTestNGListener.class)
+public class HttpPermissionCheckerImplTest {
+    private static final String API_ENDPOINT = "http://localhost:8080/api";
+
+    @Mock
+    private HttpJsonRequestFactory requestFactory;
+    @Mock
+    private HttpJsonResponse       response;
+
+    private HttpJsonRequest           request;
+    private HttpPermissionCheckerImpl permissionChecker;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        request = mock(HttpJsonRequest.class, new SelfReturningAnswer());
+        when(requestFactory.fromUrl(anyString())).thenReturn(request);
+        when(request.request()).thenReturn(response);
+        when(response.asDto(PermissionsDto.class)).thenReturn(newDto(PermissionsDto.class).withUserId("user123")
+                                                                                          .withDomainId("test")
+                                                                                          .withInstanceId("test123")
+                                                                                          .withActions(asList("read", "use")));
+
+        permissionChecker = new HttpPermissionCheckerImpl(API_ENDPOINT, 100, 60, requestFactory);
+    }
+
+    @Test
+    public void shouldLoadEffectivePermissionsOfInstanceOnCacheMiss() throws Exception {
+        assertTrue(permissionChecker.hasPermission("user123", "test", "test123", "read"));
+        assertFalse(permissionChecker.hasPermission("user123", "test", "test123", "delete"));
+
+        verify(requestFactory).fromUrl(API_ENDPOINT + "/permissions/test/effective?instance=test123");
+        assertEquals(permissionChecker.getCacheMisses(), 1);
+        assertEquals(permissionChecker.getCacheHits(), 1);
+    }
+
+    @Test
+    public void shouldPrefetchPermissionsOfUserInDomainOnFirstCheck() throws Exception {
+        when(response.asList(PermissionsDto.class)).thenReturn(asList(newDto(PermissionsDto.class).withUserId("user123")
+                                                                                                  .withDomainId("test")
+                                                                                                  .withInstanceId("test123")
+                                                                                                  .withActions(asList("read", "use")),
+                                                                      newDto(PermissionsDto.class).withUserId("user123")
+                                                                                                  .withDomainId("test")
+                                                                                                  .withInstanceId("test234")
+                                                                                                  .withActions(asList("read", "write"))));
+
+        assertTrue(permissionChecker.hasPermission("user123", "test", "test123", "use"));
+        assertTrue(permissionChecker.hasPermission("user123", "test", "test234", "write"));
+
+        verify(requestFactory).fromUrl(API_ENDPOINT + "/permissions/test/current");
+        verify(requestFactory, never()).fromUrl(startsWith(API_ENDPOINT + "/permissions/test/effective"));
+        assertEquals(permissionChecker.getDomainPrefetches(), 1);
+    }
+
+    @Test
+    public void shouldNotHavePermissionsWhenDomainIsNotSupported() throws Exception {
+        when(request.request()).thenThrow(new NotFoundException("Requested unsupported domain 'test'"));
+
+        assertFalse(permissionChecker.hasPermission("user123", "test", "test123", "read"));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.api.permission.server;
+
+import com.codenvy.api.permission.server.model.impl.AbstractPermissions;
+import com.codenvy.api.permission.shared.dto.PermissionsEventDto;
+
+import org.eclipse.che.api.core.NotFoundException;
+import org.eclipse.che.api.core.notification.EventService;
+import org.mockito.Mock;
+import org.mockito.testng.MockitoTestNGListener;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.codenvy.api.permission.shared.dto.PermissionsEventDto.EventType.REMOVED;
+import static com.codenvy.api.permission.shared.dto.PermissionsEventDto.EventType.STORED;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.eclipse.che.dto.server.DtoFactory.newDto;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for {@link PermissionCheckerImpl}
+ */
+@Listeners(MockitoTestNGListener.class)
+public class PermissionCheckerImplTest {
+    @Mock
+    private PermissionsManager        permissionsManager;
+    @Mock
+    private AbstractPermissionsDomain domain;
+
+    private EventService          eventService;
+    private PermissionCheckerImpl permissionChecker;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        when(domain.getAllowedActions()).thenReturn(asList("read", "use", "delete"));
+        doReturn(domain).when(permissionsManager).getDomain("test");
+        when(permissionsManager.get("*", "test", "test123")).thenThrow(new NotFoundException(""));
+
+        eventService = new EventService();
+        permissionChecker = new PermissionCheckerImpl(permissionsManager, eventService, 100, 3600);
+        permissionChecker.subscribe();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        permissionChecker.unsubscribe();
+    }
+
+    @Test
+    public void shouldServeRepeatedChecksFromCache() throws Exception {
+        final AbstractPermissions permissions = permissions(asList("read", "use"));
+        when(permissionsManager.get("user123", "test", "test123")).thenReturn(permissions);
+
+        assertTrue(permissionChecker.hasPermission("user123", "test", "test123", "read"));
+        assertTrue(permissionChecker.hasPermission("user123", "test", "test123", "use"));
+
+        verify(permissionsManager).get("user123", "test", "test123");
+    }
+
+    @Test
+    public void shouldReloadPermissionsWhenTheyAreStored() throws Exception {
+        final AbstractPermissions before = permissions(singletonList("read"));
+        final AbstractPermissions after = permissions(asList("read", "delete"));
+        when(permissionsManager.get("user123", "test", "test123")).thenReturn(before, after);
+        assertFalse(permissionChecker.hasPermission("user123", "test", "test123", "delete"));
+
+        eventService.publish(event(STORED, "user123"));
+
+        assertTrue(permissionChecker.hasPermission("user123", "test", "test123", "delete"));
+    }
+
+    @Test
+    public void shouldNotGrantPermissionsWhenTheyAreRemoved() throws Exception {
+        final AbstractPermissions permissions = permissions(singletonList("read"));
+        when(permissionsManager.get("user123", "test", "test123")).thenReturn(permissions)
+                                                                  .thenThrow(new NotFoundException(""));
+        assertTrue(permissionChecker.hasPermission("user123", "test", "test123", "read"));
+
+        eventService.publish(event(REMOVED, "user123"));
+
+        assertFalse(permissionChecker.hasPermission("user123", "test", "test123", "read"));
+    }
+
+    @Test
+    public void shouldNotInvalidatePermissionsOfOtherUsers() throws Exception {
+        final AbstractPermissions permissions = permissions(singletonList("read"));
+        when(permissionsManager.get("user123", "test", "test123")).thenReturn(permissions);
+        permissionChecker.hasPermission("user123", "test", "test123", "read");
+
+        eventService.publish(event(STORED, "user234"));
+        permissionChecker.hasPermission("user123", "test", "test123", "read");
+
+        verify(permissionsManager, times(1)).get("user123", "test", "test123");
+    }
+
+    @Test
+    public void shouldReloadWildcardPermissionsWhenTheyAreStored() throws Exception {
+        when(permissionsManager.get("user123", "test", "test123")).thenThrow(new NotFoundException(""));
+        assertFalse(permissionChecker.hasPermission("user123", "test", "test123", "read"));
+        final AbstractPermissions wildcardPermissions = permissions(singletonList("read"));
+        doReturn(wildcardPermissions).when(permissionsManager).get("*", "test", "test123");
+
+        eventService.publish(event(STORED, "*"));
+
+        assertTrue(permissionChecker.hasPermission("user123", "test", "test123", "read"));
+    }
+
+    private static AbstractPermissions permissions(List<String> actions) {
+        final AbstractPermissions permissions = mock(AbstractPermissions.class);
+        when(permissions.getActions()).thenReturn(actions);
+        return permissions;
+    }
+
+    private static PermissionsEventDto event(PermissionsEventDto.EventType type, String userId) {
+        return newDto(PermissionsEventDto.class).withEventType(type)
+                                                .withUserId(userId)
+                                                .withDomainId("test")
+                                                .withInstanceId("test123");
+    }
+}
@@ -14,33 +14,38 @@
  */
 package com.codenvy.machine.authentication.server;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
+import com.codahale.metrics.annotation.Gauge;
+import com.codahale.metrics.annotation.Timed;
+import com.google.common.util.concurrent.Striped;
 
 import org.eclipse.che.api.core.NotFoundException;
 
 import javax.inject.Singleton;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 
 import static java.lang.String.format;
 import static org.eclipse.che.commons.lang.NameGenerator.generate;
 
 /**
- * Table-based storage of machine security tokens.
- * Table rows is workspace id's, columns - user id's.
- * Table is synchronized externally as required by its javadoc.
+ * Storage of machine security tokens.
+ *
+ * <p>Tokens are kept in per-workspace rows where key is user id and value is token,
+ * alongside with the reverse index token -> user, so lookup of the user
+ * by token doesn't depend on the number of running workspaces and their users.
+ * Modifications of the workspace row and the index are guarded by the workspace
+ * striped lock, lookups by token are lock-free.
  *
  * @author Max Shaposhnik (mshaposhnik@codenvy.com)
- * @see HashBasedTable
  */
 @Singleton
 public class MachineTokenRegistry {
 
-    private final Table<String, String, String> tokens = HashBasedTable.create();
-    private final ReadWriteLock                 lock   = new ReentrantReadWriteLock();
+    private final Map<String, Map<String, String>> workspaceTokens = new ConcurrentHashMap<>();
+    private final Map<String, String>              tokenIndex      = new ConcurrentHashMap<>();
+    private final Striped<Lock>                    workspaceLocks  = Striped.lazyWeakLock(64);
 
     /**
      * Generates new machine security token for given user and workspace.
@@ -52,13 +57,12 @@ public class MachineTokenRegistry {
      * @return generated token value
      */
     public String generateToken(String userId, String workspaceId) {
-        lock.writeLock().lock();
+        final Lock lock = workspaceLocks.get(workspaceId);
+        lock.lock();
         try {
-            final String token = generate("machine", 128);
-            tokens.put(workspaceId, userId, token);
-            return token;
+            return doGenerateToken(userId, workspaceId);
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -75,15 +79,24 @@ public class MachineTokenRegistry {
      *         when there is no running workspace with given id
      */
     public String getOrCreateToken(String userId, String workspaceId) throws NotFoundException {
-        lock.writeLock().lock();
+        final Map<String, String> wsRow = workspaceTokens.get(workspaceId);
+        if (wsRow != null) {
+            final String token = wsRow.get(userId);
+            if (token != null) {
+                return token;
+            }
+        }
+        final Lock lock = workspaceLocks.get(workspaceId);
+        lock.lock();
         try {
-            final Map<String, String> wsRow = tokens.row(workspaceId);
-            if (wsRow.isEmpty()) {
+            final Map<String, String> lockedRow = workspaceTokens.get(workspaceId);
+            if (lockedRow == null || lockedRow.isEmpty()) {
                 throw new NotFoundException(format("No running workspace found with id %s", workspaceId));
             }
-            return wsRow.get(userId) == null ? generateToken(userId, workspaceId) : wsRow.get(userId);
+            final String token = lockedRow.get(userId);
+            return token == null ? doGenerateToken(userId, workspaceId) : token;
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -94,18 +107,13 @@ public class MachineTokenRegistry {
      * @throws NotFoundException
      *         when no token exists for given user and workspace
      */
+    @Timed(name = "auth.machine.token_registry_user_lookup")
     public String getUserId(String token) throws NotFoundException {
-        lock.readLock().lock();
-        try {
-            for (Table.Cell<String, String, String> tokenCell : tokens.cellSet()) {
-                if (tokenCell.getValue().equals(token)) {
-                    return tokenCell.getColumnKey();
-                }
-            }
+        final String userId = token == null ? null : tokenIndex.get(token);
+        if (userId == null) {
             throw new NotFoundException("User not found for token " + token);
-        } finally {
-            lock.readLock().unlock();
         }
+        return userId;
     }
 
     /**
@@ -117,13 +125,43 @@ public class MachineTokenRegistry {
      * is a map where key is user id and value is token
      */
     public Map<String, String> removeTokens(String workspaceId) {
-        lock.writeLock().lock();
+        final Lock lock = workspaceLocks.get(workspaceId);
+        lock.lock();
         try {
-            final Map<String, String> rowCopy = new HashMap<>(tokens.row(workspaceId));
-            tokens.row(workspaceId).clear();
-            return rowCopy;
+            final Map<String, String> row = workspaceTokens.remove(workspaceId);
+            if (row == null) {
+                return new HashMap<>();
+            }
+            for (String token : row.values()) {
+                tokenIndex.remove(token);
+            }
+            return new HashMap<>(row);
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
+        }
+    }
+
+    /** @return number of registered machine tokens */
+    @Gauge(name = "auth.machine.token_registry_tokens")
+    public int size() {
+        return tokenIndex.size();
+    }
+
+    /** @return number of workspaces which have at least one machine token */
+    @Gauge(name = "auth.machine.token_registry_workspaces")
+    public int workspacesCount() {
+        return workspaceTokens.size();
+    }
+
+    /** Must be called under the lock of the given workspace. */
+    private String doGenerateToken(String userId, String workspaceId) {
+        final String token = generate("machine", 128);
+        tokenIndex.put(token, userId);
+        final String oldToken = workspaceTokens.computeIfAbsent(workspaceId, id -> new ConcurrentHashMap<>())
+                                               .put(userId, token);
+        if (oldToken != null) {
+            tokenIndex.remove(oldToken);
         }
+        return token;
     }
 }
@@ -14,6 +14,7 @@
  */
 package com.codenvy.api.dao.authentication;
 
+import java.util.Iterator;
 import java.util.Set;
 
 /**
@@ -57,4 +58,15 @@ public interface TicketManager {
      * @return set of access tickets
      */
     Set<AccessTicket> getAccessTickets();
+
+    /**
+     * Get iterator over all access tickets.
+     * Unlike {@link #getAccessTickets()} implementations may return
+     * a weakly consistent iterator which doesn't copy the tickets.
+     *
+     * @return iterator over access tickets
+     */
+    default Iterator<AccessTicket> accessTicketsIterator() {
+        return getAccessTickets().iterator();
+    }
 }
@@ -17,7 +17,6 @@ package com.codenvy.api.workspace;
 import com.codenvy.service.systemram.SystemRamInfoProvider;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.util.concurrent.Striped;
 
 import org.eclipse.che.account.api.AccountManager;
 import org.eclipse.che.api.core.BadRequestException;
@@ -28,23 +27,31 @@ import org.eclipse.che.api.core.model.workspace.Environment;
 import org.eclipse.che.api.core.model.workspace.Workspace;
 import org.eclipse.che.api.core.model.workspace.WorkspaceConfig;
 import org.eclipse.che.api.core.notification.EventService;
+import org.eclipse.che.api.core.notification.EventSubscriber;
 import org.eclipse.che.api.environment.server.EnvironmentParser;
 import org.eclipse.che.api.environment.server.model.CheServicesEnvironmentImpl;
 import org.eclipse.che.api.machine.server.spi.SnapshotDao;
 import org.eclipse.che.api.workspace.server.WorkspaceManager;
 import org.eclipse.che.api.workspace.server.WorkspaceRuntimes;
+import org.eclipse.che.api.workspace.server.event.BeforeWorkspaceRemovedEvent;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
 import org.eclipse.che.api.workspace.server.spi.WorkspaceDao;
+import org.eclipse.che.api.workspace.shared.dto.event.WorkspaceStatusEvent;
 import org.eclipse.che.commons.annotation.Nullable;
 import org.eclipse.che.commons.lang.Size;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.locks.Lock;
 
 import static java.lang.String.format;
 import static java.lang.Thread.currentThread;
@@ -54,24 +61,35 @@ import static org.eclipse.che.api.core.model.workspace.WorkspaceStatus.STOPPED;
  * Manager that checks limits and delegates all its operations to the {@link WorkspaceManager}.
  * Doesn't contain any logic related to start/stop or any kind of operations different from limits checks.
  *
+ * <p>Numbers of created and started workspaces are kept in per namespace counters,
+ * which are updated by this manager and by workspace status events, and are
+ * reconciled with the workspaces storage when the reconcile period elapses.
+ * Counters of a namespace are dropped when its last workspace is removed.
+ *
  * @author Yevhenii Voevodin
  * @author Igor Vinokur
  */
 @Singleton
 public class LimitsCheckingWorkspaceManager extends WorkspaceManager {
 
-    private static final Striped<Lock> CREATE_LOCKS               = Striped.lazyWeakLock(100);
-    private static final Striped<Lock> START_LOCKS                = Striped.lazyWeakLock(100);
-    private static final long          BYTES_TO_MEGABYTES_DIVIDER = 1024L * 1024L;
+    private static final long BYTES_TO_MEGABYTES_DIVIDER = 1024L * 1024L;
 
-    private final EnvironmentParser     environmentParser;
-    private final SystemRamInfoProvider systemRamInfoProvider;
+    private final EnvironmentParser                            environmentParser;
+    private final SystemRamInfoProvider                        systemRamInfoProvider;
+    private final EventService                                 eventService;
+    private final ConcurrentMap<String, NamespaceCounters>     namespaceCounters;
+    private final ConcurrentMap<String, String>                startedWorkspacesNamespaces;
+    private final Set<String>                                  removingWorkspaces;
+    private final ConcurrentMap<String, NamespaceCounters>     removingWorkspacesCounters;
+    private final EventSubscriber<WorkspaceStatusEvent>        workspaceEventsSubscriber;
+    private final EventSubscriber<BeforeWorkspaceRemovedEvent> workspaceRemovedEventsSubscriber;
 
     private final int workspacesPerUser;
     private final int startedWorkspacesLimit;
 
     private final long maxRamPerEnvMB;
     private final long defaultMachineMemorySizeBytes;
+    private final long countersReconcilePeriodMs;
 
     @VisibleForTesting
     Semaphore startSemaphore;
@@ -90,7 +108,8 @@ public class LimitsCheckingWorkspaceManager extends WorkspaceManager {
                                           EnvironmentParser environmentParser,
                                           @Named("che.workspace.auto_snapshot") boolean defaultAutoSnapshot,
                                           @Named("che.workspace.auto_restore") boolean defaultAutoRestore,
-                                          @Named("che.workspace.default_memory_mb") int defaultMachineMemorySizeMB) {
+                                          @Named("che.workspace.default_memory_mb") int defaultMachineMemorySizeMB,
+                                          @Named("limits.workspace.counters.reconcile_period_ms") long countersReconcilePeriodMs) {
         super(workspaceDao, runtimes, eventService, accountManager, defaultAutoSnapshot, defaultAutoRestore, snapshotDao);
         this.startedWorkspacesLimit = startedWorkspacesLimit;
         this.systemRamInfoProvider = systemRamInfoProvider;
@@ -98,11 +117,55 @@ public class LimitsCheckingWorkspaceManager extends WorkspaceManager {
         this.maxRamPerEnvMB = "-1".equals(maxRamPerEnv) ? -1 : Size.parseSizeToMegabytes(maxRamPerEnv);
         this.environmentParser = environmentParser;
         this.defaultMachineMemorySizeBytes = Size.parseSize(defaultMachineMemorySizeMB + "MB");
+        this.countersReconcilePeriodMs = countersReconcilePeriodMs;
+        this.eventService = eventService;
+        this.namespaceCounters = new ConcurrentHashMap<>();
+        this.startedWorkspacesNamespaces = new ConcurrentHashMap<>();
+        this.removingWorkspaces = ConcurrentHashMap.newKeySet();
+        this.removingWorkspacesCounters = new ConcurrentHashMap<>();
+        this.workspaceEventsSubscriber = new EventSubscriber<WorkspaceStatusEvent>() {
+            @Override
+            public void onEvent(WorkspaceStatusEvent event) {
+                if (event.getEventType() == WorkspaceStatusEvent.EventType.STOPPED) {
+                    final String namespace = startedWorkspacesNamespaces.remove(event.getWorkspaceId());
+                    final NamespaceCounters counters = namespace == null ? null : namespaceCounters.get(namespace);
+                    if (counters != null) {
+                        counters.workspaceStopped(event.getWorkspaceId());
+                    }
+                }
+            }
+        };
+        this.workspaceRemovedEventsSubscriber = new EventSubscriber<BeforeWorkspaceRemovedEvent>() {
+            @Override
+            public void onEvent(BeforeWorkspaceRemovedEvent event) {
+                // the workspace is already loaded by the storage, so its namespace is taken from here
+                final WorkspaceImpl workspace = event.getWorkspace();
+                if (removingWorkspaces.contains(workspace.getId())) {
+                    NamespaceCounters counters;
+                    do {
+                        counters = namespaceCounters.computeIfAbsent(workspace.getNamespace(), NamespaceCounters::new);
+                    } while (!counters.acquireRemoval());
+                    removingWorkspacesCounters.put(workspace.getId(), counters);
+                }
+            }
+        };
         if (maxSameTimeStartWSRequests > 0) {
             this.startSemaphore = new Semaphore(maxSameTimeStartWSRequests);
         }
     }
 
+    @PostConstruct
+    void subscribe() {
+        eventService.subscribe(workspaceEventsSubscriber);
+        eventService.subscribe(workspaceRemovedEventsSubscriber);
+    }
+
+    @PreDestroy
+    void unsubscribe() {
+        eventService.unsubscribe(workspaceEventsSubscriber);
+        eventService.unsubscribe(workspaceRemovedEventsSubscriber);
+    }
+
     @Override
     public WorkspaceImpl createWorkspace(WorkspaceConfig config,
                                          String namespace) throws ServerException,
@@ -148,13 +211,24 @@ public class LimitsCheckingWorkspaceManager extends WorkspaceManager {
                                                                              ServerException,
                                                                              NotFoundException {
         checkMaxEnvironmentRam(update.getConfig());
-        // Workspace must not be updated while the manager checks it's resources to allow start
-        final Lock lock = START_LOCKS.get(getWorkspace(id).getNamespace());
-        lock.lock();
+        return super.updateWorkspace(id, update);
+    }
+
+    @Override
+    public void removeWorkspace(String workspaceId) throws ConflictException, ServerException {
+        // removal is counted as pending from the moment the workspace is loaded by the storage until it is removed,
+        // see BeforeWorkspaceRemovedEvent subscriber
+        removingWorkspaces.add(workspaceId);
+        boolean removed = false;
         try {
-            return super.updateWorkspace(id, update);
+            super.removeWorkspace(workspaceId);
+            removed = true;
         } finally {
-            lock.unlock();
+            removingWorkspaces.remove(workspaceId);
+            final NamespaceCounters counters = removingWorkspacesCounters.remove(workspaceId);
+            if (counters != null && counters.releaseRemoval(workspaceId, removed)) {
+                namespaceCounters.remove(counters.getNamespace(), counters);
+            }
         }
     }
 
@@ -214,20 +288,22 @@ public class LimitsCheckingWorkspaceManager extends WorkspaceManager {
             return callback.call();
         }
 
-        // It is important to lock in this place because:
-        // if started workspaces number limit is 10 and user has 9 started workspaces, then if he sends 2 separate requests
-        // to start a workspace, it may start both of them, because started workspaces number check is not atomic one.
-        final Lock lock = START_LOCKS.get(namespace);
-        lock.lock();
+        // Start is counted as pending until the callback finishes, so if started workspaces number limit is 10
+        // and user has 9 started workspaces, only one of 2 concurrent requests to start a workspace passes the check.
+        NamespaceCounters counters;
+        do {
+            counters = getCounters(namespace);
+        } while (!counters.acquireStart(startedWorkspacesLimit));
+        T workspace = null;
         try {
-            long startedWorkspaces = getByNamespace(namespace).stream().filter(ws -> STOPPED != ws.getStatus()).count();
-            if (startedWorkspaces >= startedWorkspacesLimit) {
-                throw new LimitExceededException(format("You are only allowed to start %d workspace%s.", startedWorkspacesLimit,
-                                                        startedWorkspacesLimit == 1 ? "" : "s"));
-            }
-            return callback.call();
+            workspace = callback.call();
+            return workspace;
         } finally {
-            lock.unlock();
+            final String workspaceId = workspace == null ? null : workspace.getId();
+            if (workspaceId != null) {
+                startedWorkspacesNamespaces.put(workspaceId, namespace);
+            }
+            counters.releaseStart(workspaceId);
         }
     }
 
@@ -244,21 +320,19 @@ public class LimitsCheckingWorkspaceManager extends WorkspaceManager {
         if (workspacesPerUser < 0) {
             return callback.call();
         }
-        // It is important to lock in this place because:
-        // if workspace per user limit is 10 and user has 9, then if he sends 2 separate requests to create
-        // a new workspace, it may create both of them, because workspace count check is not atomic one
-        final Lock lock = CREATE_LOCKS.get(namespace);
-        lock.lock();
+        // Creation is counted as pending until the callback finishes, so if workspace per user limit is 10
+        // and user has 9, only one of 2 concurrent requests to create a new workspace passes the check.
+        NamespaceCounters counters;
+        do {
+            counters = getCounters(namespace);
+        } while (!counters.acquireCreation(workspacesPerUser));
+        boolean created = false;
         try {
-            final List<WorkspaceImpl> workspaces = getByNamespace(namespace);
-            if (workspaces.size() >= workspacesPerUser) {
-                throw new LimitExceededException(format("You are only allowed to create %d workspace%s.", workspacesPerUser,
-                                                        workspacesPerUser == 1 ? "" : "s"),
-                                                 ImmutableMap.of("workspace_max_count", Integer.toString(workspacesPerUser)));
-            }
-            return callback.call();
+            final T workspace = callback.call();
+            created = true;
+            return workspace;
         } finally {
-            lock.unlock();
+            counters.releaseCreation(created);
         }
     }
 
@@ -299,4 +373,157 @@ public class LimitsCheckingWorkspaceManager extends WorkspaceManager {
                                   .sum();
         return sumBytes / BYTES_TO_MEGABYTES_DIVIDER;
     }
+
+    /**
+     * Returns counters of the given namespace, counters are (re)loaded from
+     * the workspaces storage if they are not reconciled within the reconcile period.
+     * Reconciliation is postponed while there are pending creations or removals in the namespace.
+     * Returned counters may be dropped concurrently, then acquiring of them fails and they should be got again.
+     */
+    @VisibleForTesting
+    NamespaceCounters getCounters(String namespace) throws ServerException {
+        final NamespaceCounters counters = namespaceCounters.computeIfAbsent(namespace, NamespaceCounters::new);
+        synchronized (counters) {
+            final long currentTime = System.currentTimeMillis();
+            if (counters.isOutdated(currentTime, countersReconcilePeriodMs)) {
+                final List<WorkspaceImpl> workspaces = getByNamespace(namespace);
+                for (WorkspaceImpl workspace : workspaces) {
+                    if (STOPPED != workspace.getStatus() && workspace.getId() != null) {
+                        startedWorkspacesNamespaces.put(workspace.getId(), namespace);
+                    }
+                }
+                counters.reconcile(workspaces, currentTime);
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Numbers of created and started workspaces in the namespace.
+     *
+     * <p>Operations which passed the limits check but are not finished yet
+     * are counted as pending ones, to not allow concurrent operations to exceed the limits.
+     * A pending creation may or may not be in the storage yet, so counters are not reconciled
+     * until there are no pending creations, otherwise a workspace stored before the reconciliation
+     * would be counted by both the reconciliation and the finished creation.
+     * The same applies to pending removals.
+     *
+     * <p>Counters which are dropped can't be acquired anymore, acquire methods return false for them.
+     */
+    @VisibleForTesting
+    static class NamespaceCounters {
+        private final String      namespace;
+        private final Set<String> startedWorkspaces = new HashSet<>();
+
+        private int     createdWorkspaces;
+        private int     pendingCreations;
+        private int     pendingStarts;
+        private int     pendingRemovals;
+        private long    reconciliationTime = -1;
+        private boolean dropped;
+
+        NamespaceCounters(String namespace) {
+            this.namespace = namespace;
+        }
+
+        String getNamespace() {
+            return namespace;
+        }
+
+        synchronized boolean isOutdated(long currentTime, long reconcilePeriodMs) {
+            if (pendingCreations > 0 || pendingRemovals > 0) {
+                return false;
+            }
+            return reconciliationTime < 0 || currentTime - reconciliationTime >= reconcilePeriodMs;
+        }
+
+        synchronized void reconcile(List<WorkspaceImpl> workspaces, long currentTime) {
+            createdWorkspaces = workspaces.size();
+            startedWorkspaces.clear();
+            for (WorkspaceImpl workspace : workspaces) {
+                if (STOPPED != workspace.getStatus()) {
+                    startedWorkspaces.add(workspace.getId());
+                }
+            }
+            reconciliationTime = currentTime;
+        }
+
+        synchronized boolean acquireCreation(int limit) throws LimitExceededException {
+            if (dropped) {
+                return false;
+            }
+            if (createdWorkspaces + pendingCreations >= limit) {
+                throw new LimitExceededException(format("You are only allowed to create %d workspace%s.", limit, limit == 1 ? "" : "s"),
+                                                 ImmutableMap.of("workspace_max_count", Integer.toString(limit)));
+            }
+            pendingCreations++;
+            return true;
+        }
+
+        synchronized void releaseCreation(boolean created) {
+            pendingCreations--;
+            if (created) {
+                createdWorkspaces++;
+            }
+        }
+
+        synchronized boolean acquireStart(int limit) throws LimitExceededException {
+            if (dropped) {
+                return false;
+            }
+            if (startedWorkspaces.size() + pendingStarts >= limit) {
+                throw new LimitExceededException(format("You are only allowed to start %d workspace%s.", limit, limit == 1 ? "" : "s"));
+            }
+            pendingStarts++;
+            return true;
+        }
+
+        synchronized void releaseStart(@Nullable String startedWorkspaceId) {
+            pendingStarts--;
+            if (startedWorkspaceId != null) {
+                startedWorkspaces.add(startedWorkspaceId);
+            }
+        }
+
+        synchronized void workspaceStopped(String workspaceId) {
+            startedWorkspaces.remove(workspaceId);
+        }
+
+        synchronized boolean acquireRemoval() {
+            if (dropped) {
+                return false;
+            }
+            pendingRemovals++;
+            return true;
+        }
+
+        /**
+         * Finishes pending removal of the given workspace.
+         *
+         * @return true when counters are dropped as there are neither workspaces nor pending operations in the namespace
+         */
+        synchronized boolean releaseRemoval(String workspaceId, boolean removed) {
+            pendingRemovals--;
+            if (removed) {
+                startedWorkspaces.remove(workspaceId);
+                if (createdWorkspaces > 0) {
+                    createdWorkspaces--;
+                }
+            }
+            dropped = createdWorkspaces == 0
+                      && startedWorkspaces.isEmpty()
+                      && pendingCreations == 0
+                      && pendingStarts == 0
+                      && pendingRemovals == 0;
+            return dropped;
+        }
+
+        synchronized int getCreatedWorkspaces() {
+            return createdWorkspaces;
+        }
+
+        synchronized int getStartedWorkspaces() {
+            return startedWorkspaces.size();
+        }
+    }
 }
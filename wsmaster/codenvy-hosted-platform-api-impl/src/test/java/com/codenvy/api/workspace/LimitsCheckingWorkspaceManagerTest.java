@@ -14,6 +14,7 @@
  */
 package com.codenvy.api.workspace;
 
+import com.codenvy.api.workspace.LimitsCheckingWorkspaceManager.NamespaceCounters;
 import com.codenvy.api.workspace.LimitsCheckingWorkspaceManager.WorkspaceCallback;
 import com.codenvy.service.systemram.SystemRamInfo;
 import com.codenvy.service.systemram.SystemRamInfoProvider;
@@ -22,8 +23,14 @@ import com.google.common.collect.ImmutableList;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.model.workspace.WorkspaceConfig;
 import org.eclipse.che.api.core.model.workspace.WorkspaceStatus;
+import org.eclipse.che.api.core.notification.EventService;
 import org.eclipse.che.api.environment.server.EnvironmentParser;
+import org.eclipse.che.api.workspace.server.WorkspaceRuntimes;
+import org.eclipse.che.api.workspace.server.event.BeforeWorkspaceRemovedEvent;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
+import org.eclipse.che.api.workspace.server.spi.WorkspaceDao;
+import org.eclipse.che.api.workspace.shared.dto.event.WorkspaceStatusEvent;
+import org.eclipse.che.dto.server.DtoFactory;
 import org.eclipse.che.plugin.docker.compose.yaml.ComposeEnvironmentParser;
 import org.mockito.Mock;
 import org.mockito.testng.MockitoTestNGListener;
@@ -39,6 +46,7 @@ import java.util.concurrent.Semaphore;
 
 import static com.codenvy.api.workspace.TestObjects.createConfig;
 import static com.codenvy.api.workspace.TestObjects.createRuntime;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
@@ -54,8 +62,11 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
 
 /**
@@ -290,6 +301,7 @@ public class LimitsCheckingWorkspaceManagerTest {
         List<WorkspaceImpl> workspaces = new ArrayList<>();
         for (WorkspaceStatus status : WorkspaceStatus.values()) {
             WorkspaceImpl workspace = mock(WorkspaceImpl.class);
+            when(workspace.getId()).thenReturn("workspace-" + status);
             when(workspace.getStatus()).thenReturn(status);
             workspaces.add(workspace);
         }
@@ -312,6 +324,7 @@ public class LimitsCheckingWorkspaceManagerTest {
         List<WorkspaceImpl> workspaces = new ArrayList<>();
         for (WorkspaceStatus status : WorkspaceStatus.values()) {
             WorkspaceImpl workspace = mock(WorkspaceImpl.class);
+            when(workspace.getId()).thenReturn("workspace-" + status);
             when(workspace.getStatus()).thenReturn(status);
             workspaces.add(workspace);
         }
@@ -332,6 +345,148 @@ public class LimitsCheckingWorkspaceManagerTest {
         verify(manager, never()).getByNamespace(any());
     }
 
+    @Test
+    public void shouldNotLoadWorkspacesOfNamespaceOnEachCreation() throws Exception {
+        final LimitsCheckingWorkspaceManager manager = managerBuilder().setWorkspacesPerUser(3).build();
+        doReturn(emptyList()).when(manager).getByNamespace(anyString());
+        final WorkspaceCallback callback = mock(WorkspaceCallback.class);
+
+        manager.checkNumberOfWorkspacesAndPropagateCreation("user123", callback);
+        manager.checkNumberOfWorkspacesAndPropagateCreation("user123", callback);
+
+        verify(callback, times(2)).call();
+        verify(manager, times(1)).getByNamespace("user123");
+        assertEquals(manager.getCounters("user123").getCreatedWorkspaces(), 2);
+    }
+
+    @Test
+    public void shouldNotCountWorkspaceTwiceWhenCountersAreReconciledWhileItIsBeingCreated() throws Exception {
+        final LimitsCheckingWorkspaceManager manager = managerBuilder().setWorkspacesPerUser(3)
+                                                                       .setCountersReconcilePeriodMs(0)
+                                                                       .build();
+        final List<WorkspaceImpl> storedWorkspaces = new ArrayList<>();
+        doAnswer(invocation -> new ArrayList<>(storedWorkspaces)).when(manager).getByNamespace(anyString());
+        final NamespaceCounters counters = manager.getCounters("user123");
+
+        manager.checkNumberOfWorkspacesAndPropagateCreation("user123", () -> {
+            final WorkspaceImpl workspace = mock(WorkspaceImpl.class);
+            storedWorkspaces.add(workspace);
+            // workspace is already stored but its creation is not finished yet
+            manager.getCounters("user123");
+            return workspace;
+        });
+
+        assertEquals(counters.getCreatedWorkspaces(), 1);
+    }
+
+    @Test(expectedExceptions = LimitExceededException.class,
+          expectedExceptionsMessageRegExp = "You are only allowed to create 2 workspaces.")
+    public void shouldCountCreatedWorkspacesWhenCheckingWorkspacesLimit() throws Exception {
+        final LimitsCheckingWorkspaceManager manager = managerBuilder().build();
+        doReturn(singletonList(mock(WorkspaceImpl.class))).when(manager).getByNamespace(anyString());
+        final WorkspaceCallback callback = mock(WorkspaceCallback.class);
+        manager.checkNumberOfWorkspacesAndPropagateCreation("user123", callback);
+
+        manager.checkNumberOfWorkspacesAndPropagateCreation("user123", callback);
+    }
+
+    @Test
+    public void shouldNotCountWorkspaceWhenCreationFailed() throws Exception {
+        final LimitsCheckingWorkspaceManager manager = managerBuilder().build();
+        doReturn(emptyList()).when(manager).getByNamespace(anyString());
+        final WorkspaceCallback callback = mock(WorkspaceCallback.class);
+        when(callback.call()).thenThrow(new ServerException("error"));
+
+        try {
+            manager.checkNumberOfWorkspacesAndPropagateCreation("user123", callback);
+        } catch (ServerException ignored) {
+        }
+
+        assertEquals(manager.getCounters("user123").getCreatedWorkspaces(), 0);
+    }
+
+    @Test(expectedExceptions = LimitExceededException.class,
+          expectedExceptionsMessageRegExp = "You are only allowed to start 1 workspace.")
+    public void shouldCountPendingStartWhenCheckingStartedWorkspacesLimit() throws Exception {
+        final LimitsCheckingWorkspaceManager manager = managerBuilder().setStartedWorkspacesLimit(1).build();
+        doReturn(emptyList()).when(manager).getByNamespace(anyString());
+
+        manager.checkLimitsAndPropagateStart("user123", () -> manager.checkLimitsAndPropagateStart("user123", () -> null));
+    }
+
+    @Test
+    public void shouldDecreaseStartedWorkspacesWhenWorkspaceIsStopped() throws Exception {
+        final EventService eventService = new EventService();
+        final LimitsCheckingWorkspaceManager manager = managerBuilder().setEventService(eventService).build();
+        doReturn(emptyList()).when(manager).getByNamespace(anyString());
+        manager.subscribe();
+        final WorkspaceImpl workspace = mock(WorkspaceImpl.class);
+        when(workspace.getId()).thenReturn("workspace123");
+
+        manager.checkLimitsAndPropagateStart("user123", () -> workspace);
+        assertEquals(manager.getCounters("user123").getStartedWorkspaces(), 1);
+        eventService.publish(DtoFactory.newDto(WorkspaceStatusEvent.class)
+                                       .withWorkspaceId("workspace123")
+                                       .withEventType(WorkspaceStatusEvent.EventType.STOPPED));
+
+        assertEquals(manager.getCounters("user123").getStartedWorkspaces(), 0);
+    }
+
+    @Test
+    public void shouldNotDecreaseCreatedWorkspacesTwiceWhenCountersAreReconciledWhileWorkspaceIsBeingRemoved() throws Exception {
+        final EventService eventService = new EventService();
+        final WorkspaceDao workspaceDao = mock(WorkspaceDao.class);
+        final LimitsCheckingWorkspaceManager manager = managerBuilder().setEventService(eventService)
+                                                                       .setWorkspaceDao(workspaceDao)
+                                                                       .setCountersReconcilePeriodMs(0)
+                                                                       .build();
+        manager.subscribe();
+        final WorkspaceImpl workspace1 = createStoppedWorkspace("workspace1");
+        final List<WorkspaceImpl> storedWorkspaces = new ArrayList<>(asList(workspace1, createStoppedWorkspace("workspace2")));
+        doAnswer(invocation -> new ArrayList<>(storedWorkspaces)).when(manager).getByNamespace(anyString());
+        final NamespaceCounters counters = manager.getCounters("user123");
+        doAnswer(invocation -> {
+            eventService.publish(new BeforeWorkspaceRemovedEvent(workspace1));
+            storedWorkspaces.remove(workspace1);
+            // workspace is already removed from the storage but its removal is not finished yet
+            manager.getCounters("user123");
+            return null;
+        }).when(workspaceDao).remove("workspace1");
+
+        manager.removeWorkspace("workspace1");
+
+        assertEquals(counters.getCreatedWorkspaces(), 1);
+        verify(manager, never()).getWorkspace(anyString());
+    }
+
+    @Test
+    public void shouldDropCountersOfNamespaceWhenItsLastWorkspaceIsRemoved() throws Exception {
+        final EventService eventService = new EventService();
+        final WorkspaceDao workspaceDao = mock(WorkspaceDao.class);
+        final LimitsCheckingWorkspaceManager manager = managerBuilder().setEventService(eventService)
+                                                                       .setWorkspaceDao(workspaceDao)
+                                                                       .build();
+        manager.subscribe();
+        final WorkspaceImpl workspace = createStoppedWorkspace("workspace1");
+        doReturn(singletonList(workspace)).when(manager).getByNamespace(anyString());
+        final NamespaceCounters counters = manager.getCounters("user123");
+        doAnswer(invocation -> eventService.publish(new BeforeWorkspaceRemovedEvent(workspace))).when(workspaceDao)
+                                                                                              .remove("workspace1");
+
+        manager.removeWorkspace("workspace1");
+
+        assertEquals(counters.getCreatedWorkspaces(), 0);
+        assertNotSame(manager.getCounters("user123"), counters);
+    }
+
+    private static WorkspaceImpl createStoppedWorkspace(String id) {
+        return WorkspaceImpl.builder()
+                            .setId(id)
+                            .setNamespace("user123")
+                            .setStatus(WorkspaceStatus.STOPPED)
+                            .build();
+    }
+
     private static ManagerBuilder managerBuilder() throws ServerException {
         return new ManagerBuilder();
     }
@@ -347,6 +502,10 @@ public class LimitsCheckingWorkspaceManagerTest {
         private int                   startedWorkspacesLimit;
         private int                   maxSameTimeStartWSRequests;
         private int                   defaultMachineMemorySizeMB;
+        private EventService          eventService;
+        private WorkspaceDao          workspaceDao;
+        private WorkspaceRuntimes     runtimes;
+        private long                  countersReconcilePeriodMs;
 
         ManagerBuilder() throws ServerException {
             workspacesPerUser = 2;
@@ -356,7 +515,9 @@ public class LimitsCheckingWorkspaceManagerTest {
             defaultAutoSnapshot = false;
             defaultAutoRestore = false;
             defaultMachineMemorySizeMB = 2000;
+            countersReconcilePeriodMs = 60_000;
 
+            runtimes = mock(WorkspaceRuntimes.class);
             systemRamInfoProvider = mock(SystemRamInfoProvider.class);
             when(systemRamInfoProvider.getSystemRamInfo()).thenReturn(new SystemRamInfo(0, parseSize("3 GiB")));
 
@@ -369,15 +530,26 @@ public class LimitsCheckingWorkspaceManagerTest {
                                                           maxRamPerEnv,
                                                           maxSameTimeStartWSRequests,
                                                           systemRamInfoProvider,
-                                                          null,
-                                                          null,
-                                                          null,
+                                                          workspaceDao,
+                                                          runtimes,
+                                                          eventService,
                                                           null,
                                                           null,
                                                           environmentParser,
                                                           defaultAutoSnapshot,
                                                           defaultAutoRestore,
-                                                          defaultMachineMemorySizeMB));
+                                                          defaultMachineMemorySizeMB,
+                                                          countersReconcilePeriodMs));
+        }
+
+        ManagerBuilder setEventService(EventService eventService) {
+            this.eventService = eventService;
+            return this;
+        }
+
+        ManagerBuilder setWorkspaceDao(WorkspaceDao workspaceDao) {
+            this.workspaceDao = workspaceDao;
+            return this;
         }
 
         ManagerBuilder setWorkspacesPerUser(int workspacesPerUser) {
@@ -400,6 +572,11 @@ public class LimitsCheckingWorkspaceManagerTest {
             return this;
         }
 
+        ManagerBuilder setCountersReconcilePeriodMs(long countersReconcilePeriodMs) {
+            this.countersReconcilePeriodMs = countersReconcilePeriodMs;
+            return this;
+        }
+
         ManagerBuilder setSystemRamInfoProvider(SystemRamInfoProvider systemRamInfoProvider) {
             this.systemRamInfoProvider = systemRamInfoProvider;
             return this;
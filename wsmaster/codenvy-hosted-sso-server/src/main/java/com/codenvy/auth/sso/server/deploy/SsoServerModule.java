@@ -14,7 +14,7 @@
  */
 package com.codenvy.auth.sso.server.deploy;
 
-import com.codenvy.auth.sso.server.ticket.InMemoryTicketManager;
+import com.codenvy.auth.sso.server.ticket.BoundedTicketManager;
 import com.google.inject.AbstractModule;
 
 /**
@@ -26,11 +26,12 @@ public class SsoServerModule extends AbstractModule {
 
     @Override
     protected void configure() {
-        bind(com.codenvy.api.dao.authentication.TicketManager.class).to(InMemoryTicketManager.class);
+        bind(com.codenvy.api.dao.authentication.TicketManager.class).to(BoundedTicketManager.class);
         bind(com.codenvy.api.dao.authentication.TokenGenerator.class).to(com.codenvy.auth.sso.server.SecureRandomTokenGenerator.class);
         bind(com.codenvy.api.dao.authentication.CookieBuilder.class).to(com.codenvy.auth.sso.server.SsoCookieBuilder.class);
         bind(com.codenvy.auth.sso.server.SsoService.class);
 
+        bind(com.codenvy.auth.sso.server.ticket.SsoClientLogoutNotifier.class);
         bind(com.codenvy.auth.sso.server.ticket.AccessTicketInvalidator.class);
         bind(com.codenvy.auth.sso.server.ticket.LogoutOnUserRemoveSubscriber.class).asEagerSingleton();
         bind(org.eclipse.che.api.auth.AuthenticationExceptionMapper.class);
@@ -26,6 +26,7 @@ import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.util.Iterator;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -53,7 +54,8 @@ public class AccessTicketInvalidator extends TimerTask {
     @Override
     public void run() {
 
-        for (AccessTicket accessTicket : ticketManager.getAccessTickets()) {
+        for (Iterator<AccessTicket> it = ticketManager.accessTicketsIterator(); it.hasNext(); ) {
+            final AccessTicket accessTicket = it.next();
             if (System.currentTimeMillis() > accessTicket.getCreationTime() + ticketLifeTimeSeconds * 1000) {
                 LOG.info("Initiate user {} sso logout by timeout", accessTicket.getUserId());
                 ticketManager.removeTicket(accessTicket.getAccessToken());
@@ -0,0 +1,267 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.auth.sso.server.ticket;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.codenvy.api.dao.authentication.AccessTicket;
+import com.codenvy.api.dao.authentication.TicketManager;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+
+import org.eclipse.che.commons.annotation.Nullable;
+import org.eclipse.che.commons.schedule.ScheduleDelay;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Clock;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Implementation of {@link TicketManager} which keeps limited number of tickets in memory.
+ *
+ * <p>Tickets are evicted when they are not used longer than idle timeout,
+ * when they live longer than the ticket lifetime, or when the maximum number
+ * of tickets is reached, in this case the least recently used tickets are evicted first.
+ * Registered SSO clients are notified about evicted tickets in the same way
+ * as about explicitly removed ones.
+ *
+ * <p>If the storage file is configured tickets are saved to it every {@code auth.sso.ticket.store_period_seconds}
+ * and when the manager is stopped, then loaded back on start, so users are not forced to login again
+ * after the restart, including the one after a crash.
+ * The storage file contains live access tokens so it is readable by its owner only.
+ * Restored tickets keep their original creation time and expire when the ticket lifetime
+ * passes since that time rather than since the restart.
+ */
+@Singleton
+public class BoundedTicketManager implements TicketManager {
+    private static final Logger LOG = LoggerFactory.getLogger(BoundedTicketManager.class);
+
+    private static final int STORAGE_FORMAT_VERSION = 1;
+
+    private final Cache<String, AccessTicket> accessTickets;
+    private final SsoClientLogoutNotifier     logoutNotifier;
+    private final long                        ticketLifetimeMs;
+    private final Path                        storageFile;
+    private final Clock                       clock;
+
+    @Inject
+    public BoundedTicketManager(SsoClientLogoutNotifier logoutNotifier,
+                                @Named("auth.sso.access_ticket_lifetime_seconds") int ticketLifetimeSeconds,
+                                @Named("auth.sso.ticket.idle_timeout_seconds") int idleTimeoutSeconds,
+                                @Named("auth.sso.ticket.max_size") int maxSize,
+                                @Nullable @Named("auth.sso.ticket.storage_file") String storageFile) {
+        this(logoutNotifier, ticketLifetimeSeconds, idleTimeoutSeconds, maxSize, storageFile, Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    BoundedTicketManager(SsoClientLogoutNotifier logoutNotifier,
+                         int ticketLifetimeSeconds,
+                         int idleTimeoutSeconds,
+                         int maxSize,
+                         String storageFile,
+                         Clock clock) {
+        this.logoutNotifier = logoutNotifier;
+        this.clock = clock;
+        this.ticketLifetimeMs = TimeUnit.SECONDS.toMillis(ticketLifetimeSeconds);
+        this.storageFile = storageFile == null || storageFile.isEmpty() ? null : Paths.get(storageFile);
+        this.accessTickets = CacheBuilder.newBuilder()
+                                         .expireAfterWrite(ticketLifetimeSeconds, TimeUnit.SECONDS)
+                                         .expireAfterAccess(idleTimeoutSeconds, TimeUnit.SECONDS)
+                                         .maximumSize(maxSize)
+                                         .ticker(new Ticker() {
+                                             @Override
+                                             public long read() {
+                                                 return TimeUnit.MILLISECONDS.toNanos(clock.millis());
+                                             }
+                                         })
+                                         .recordStats()
+                                         .removalListener(this::onRemoval)
+                                         .build();
+    }
+
+    @Override
+    public void putAccessTicket(AccessTicket accessTicket) {
+        if (accessTicket.getUserId() == null) {
+            throw new IllegalArgumentException("Access ticket has no principal or username in principal");
+        }
+        accessTickets.put(accessTicket.getAccessToken(), accessTicket);
+    }
+
+    @Override
+    public AccessTicket getAccessTicket(String accessToken) {
+        if (accessToken == null) {
+            return null;
+        }
+        final AccessTicket ticket = accessTickets.getIfPresent(accessToken);
+        if (ticket != null && isExpired(ticket, clock.millis())) {
+            // restored tickets may outlive their lifetime in the cache, as the cache counts it since the restart
+            removeTicket(accessToken);
+            return null;
+        }
+        return ticket;
+    }
+
+    @Override
+    public AccessTicket removeTicket(String accessToken) {
+        if (accessToken == null) {
+            return null;
+        }
+        final AccessTicket ticket = accessTickets.asMap().remove(accessToken);
+        if (ticket != null) {
+            logoutNotifier.notifyClients(ticket);
+        }
+        return ticket;
+    }
+
+    @Override
+    public Set<AccessTicket> getAccessTickets() {
+        return new HashSet<>(accessTickets.asMap().values());
+    }
+
+    @Override
+    public Iterator<AccessTicket> accessTicketsIterator() {
+        accessTickets.cleanUp();
+        return accessTickets.asMap().values().iterator();
+    }
+
+    /** @return number of access tickets. */
+    @Gauge(name = "auth.sso.access_ticket_number")
+    public long size() {
+        return accessTickets.size();
+    }
+
+    /** @return number of access tickets evicted due to expiration or size limit. */
+    @Gauge(name = "auth.sso.access_ticket_evicted")
+    public long evicted() {
+        return accessTickets.stats().evictionCount();
+    }
+
+    /** Loads tickets saved by the previous {@link #store()} call, if the storage file is configured. */
+    @PostConstruct
+    public void load() {
+        if (storageFile == null || !Files.exists(storageFile)) {
+            return;
+        }
+        final long now = clock.millis();
+        int loaded = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(storageFile)))) {
+            if (in.readInt() != STORAGE_FORMAT_VERSION) {
+                LOG.warn("Unsupported format of access tickets storage file '{}', tickets are not loaded", storageFile);
+                return;
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final AccessTicket ticket = new AccessTicket(in.readUTF(), in.readUTF(), in.readUTF(), in.readLong());
+                final int clientsCount = in.readInt();
+                for (int j = 0; j < clientsCount; j++) {
+                    ticket.registerClientUrl(in.readUTF());
+                }
+                if (!isExpired(ticket, now)) {
+                    accessTickets.put(ticket.getAccessToken(), ticket);
+                    loaded++;
+                }
+            }
+        } catch (EOFException x) {
+            LOG.warn("Access tickets storage file '{}' is truncated, loaded {} tickets", storageFile, loaded);
+        } catch (IOException | IllegalArgumentException x) {
+            LOG.error("Couldn't load access tickets from '" + storageFile + "'", x);
+        }
+        LOG.info("Loaded {} access tickets from '{}'", loaded, storageFile);
+    }
+
+    /** Saves tickets periodically, so they are not lost when the manager is not stopped gracefully. */
+    @ScheduleDelay(initialDelay = 60, delayParameterName = "auth.sso.ticket.store_period_seconds")
+    void storePeriodically() {
+        store();
+    }
+
+    /** Saves tickets to the storage file, if it is configured. */
+    @PreDestroy
+    public synchronized void store() {
+        if (storageFile == null) {
+            return;
+        }
+        final Set<AccessTicket> tickets = getAccessTickets();
+        final Path tmpFile = storageFile.resolveSibling(storageFile.getFileName() + ".tmp");
+        try {
+            if (storageFile.getParent() != null) {
+                Files.createDirectories(storageFile.getParent());
+            }
+            Files.deleteIfExists(tmpFile);
+            if (storageFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.createFile(tmpFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            } else {
+                Files.createFile(tmpFile);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile, WRITE)))) {
+                out.writeInt(STORAGE_FORMAT_VERSION);
+                out.writeInt(tickets.size());
+                for (AccessTicket ticket : tickets) {
+                    out.writeUTF(ticket.getAccessToken());
+                    out.writeUTF(ticket.getUserId());
+                    out.writeUTF(ticket.getAuthHandlerType());
+                    out.writeLong(ticket.getCreationTime());
+                    final Set<String> clients = ticket.getRegisteredClients();
+                    out.writeInt(clients.size());
+                    for (String client : clients) {
+                        out.writeUTF(client);
+                    }
+                }
+            }
+            Files.move(tmpFile, storageFile, ATOMIC_MOVE, REPLACE_EXISTING);
+            LOG.debug("Stored {} access tickets to '{}'", tickets.size(), storageFile);
+        } catch (IOException x) {
+            LOG.error("Couldn't store access tickets to '" + storageFile + "'", x);
+        }
+    }
+
+    private boolean isExpired(AccessTicket ticket, long now) {
+        return ticket.getCreationTime() + ticketLifetimeMs <= now;
+    }
+
+    private void onRemoval(RemovalNotification<String, AccessTicket> notification) {
+        if (notification.wasEvicted() && notification.getValue() != null) {
+            LOG.debug("Access ticket of user {} was evicted, cause {}",
+                      notification.getValue().getUserId(),
+                      notification.getCause());
+            logoutNotifier.notifyClients(notification.getValue());
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.auth.sso.server.ticket;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.codenvy.api.dao.authentication.AccessTicket;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.eclipse.che.commons.lang.IoUtil;
+import org.eclipse.che.commons.lang.concurrent.LoggingUncaughtExceptionHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers logout requests to the SSO clients registered in the access ticket.
+ *
+ * <p>Requests are sent asynchronously by the bounded pool of threads, each client
+ * is notified by a separate task, so one slow client doesn't delay logout from others.
+ * Failed requests are retried with growing delay, retries wait in the scheduler rather than
+ * in the pool threads, so unreachable clients don't hold the threads needed by healthy ones.
+ * When the queue of pending requests is full new requests are dropped and counted as failed.
+ */
+@Singleton
+public class SsoClientLogoutNotifier {
+    private static final Logger LOG = LoggerFactory.getLogger(SsoClientLogoutNotifier.class);
+
+    private final ThreadPoolExecutor          executor;
+    private final ScheduledThreadPoolExecutor retryScheduler;
+    private final int                         timeoutMs;
+    private final int                         maxAttempts;
+    private final AtomicLong                  delivered;
+    private final AtomicLong                  failed;
+    private final AtomicLong                  deliveryTimeMs;
+
+    @Inject
+    public SsoClientLogoutNotifier(@Named("auth.sso.logout.pool_size") int poolSize,
+                                   @Named("auth.sso.logout.queue_size") int queueSize,
+                                   @Named("auth.sso.logout.timeout_ms") int timeoutMs,
+                                   @Named("auth.sso.logout.max_attempts") int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max number of logout attempts must be positive, but was " + maxAttempts);
+        }
+        this.timeoutMs = timeoutMs;
+        this.maxAttempts = maxAttempts;
+        this.delivered = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.deliveryTimeMs = new AtomicLong();
+        this.executor = new ThreadPoolExecutor(poolSize,
+                                               poolSize,
+                                               60,
+                                               TimeUnit.SECONDS,
+                                               new ArrayBlockingQueue<>(queueSize),
+                                               new ThreadFactoryBuilder().setNameFormat("SsoClientLogoutNotifier-%d")
+                                                                         .setUncaughtExceptionHandler(
+                                                                                 LoggingUncaughtExceptionHandler.getInstance())
+                                                                         .setDaemon(true)
+                                                                         .build());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.retryScheduler = new ScheduledThreadPoolExecutor(1,
+                                                              new ThreadFactoryBuilder().setNameFormat("SsoClientLogoutRetry-%d")
+                                                                                        .setUncaughtExceptionHandler(
+                                                                                                LoggingUncaughtExceptionHandler
+                                                                                                        .getInstance())
+                                                                                        .setDaemon(true)
+                                                                                        .build());
+        this.retryScheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Schedules logout requests for all the clients registered in the given ticket.
+     * This method never blocks on the network.
+     *
+     * @param ticket
+     *         removed access ticket
+     */
+    public void notifyClients(AccessTicket ticket) {
+        final long start = System.currentTimeMillis();
+        for (String ssoClient : ticket.getRegisteredClients()) {
+            submit(ssoClient, ticket.getAccessToken(), 1, start);
+        }
+    }
+
+    /** @return number of logout requests waiting to be sent */
+    @Gauge(name = "auth.sso.logout_queued")
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    /** @return number of failed logout requests waiting for the next attempt */
+    @Gauge(name = "auth.sso.logout_retries_scheduled")
+    public int getScheduledRetries() {
+        return retryScheduler.getQueue().size();
+    }
+
+    /** @return number of logout requests delivered to the clients */
+    @Gauge(name = "auth.sso.logout_delivered")
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    /** @return number of logout requests which were not delivered after all the attempts or were dropped */
+    @Gauge(name = "auth.sso.logout_failed")
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /** @return average time in milliseconds spent to deliver logout request, including retries */
+    @Gauge(name = "auth.sso.logout_average_latency_ms")
+    public long getAverageLatency() {
+        final long deliveredCount = delivered.get();
+        return deliveredCount == 0 ? 0 : deliveryTimeMs.get() / deliveredCount;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // pending retries are not delivered, they would delay the shutdown up to the longest retry delay
+        failed.addAndGet(retryScheduler.shutdownNow().size());
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMs * 2, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException x) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(String ssoClient, String accessToken, int attempt, long start) {
+        try {
+            executor.execute(() -> deliver(ssoClient, accessToken, attempt, start));
+        } catch (RejectedExecutionException x) {
+            failed.incrementAndGet();
+            LOG.warn("Logout queue is full. Logout request to {} was dropped", ssoClient);
+        }
+    }
+
+    private void deliver(String ssoClient, String accessToken, int attempt, long start) {
+        try {
+            if (sendLogout(ssoClient, accessToken)) {
+                delivered.incrementAndGet();
+                deliveryTimeMs.addAndGet(System.currentTimeMillis() - start);
+            } else {
+                failed.incrementAndGet();
+            }
+            return;
+        } catch (IOException e) {
+            LOG.warn("{}. Not able to send logout request to {}, attempt {} of {}",
+                     e.getLocalizedMessage(), ssoClient, attempt, maxAttempts);
+        }
+        if (attempt >= maxAttempts) {
+            failed.incrementAndGet();
+            return;
+        }
+        try {
+            retryScheduler.schedule(() -> submit(ssoClient, accessToken, attempt + 1, start),
+                                    attempt * 1000L,
+                                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException x) {
+            // notifier is shut down
+            failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Sends logout request to the client.
+     *
+     * @return true if the request was accepted by the client, false if the client
+     * refused it in a way which makes no sense to retry
+     * @throws IOException
+     *         when request failed and may be retried
+     */
+    private boolean sendLogout(String ssoClient, String accessToken) throws IOException {
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection)new URL(ssoClient + "/_sso/client/logout").openConnection();
+            conn.setRequestMethod("POST");
+            conn.setDoOutput(true);
+            conn.setInstanceFollowRedirects(false);
+            conn.setConnectTimeout(timeoutMs);
+            conn.setReadTimeout(timeoutMs);
+            conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(("authToken=" + URLEncoder.encode(accessToken, "UTF-8")).getBytes());
+            }
+
+            int responseCode = conn.getResponseCode();
+            LOG.debug("Sent logout request to {} response {}", conn.getURL(), responseCode);
+            if (responseCode / 100 != 2) {
+                if (responseCode == HttpServletResponse.SC_BAD_GATEWAY) {
+                    LOG.warn("Tenant {} is unavailable. Logout request not executed", ssoClient);
+                    return false;
+                } else if (responseCode == HttpServletResponse.SC_MOVED_TEMPORARILY) {
+                    LOG.warn("Logout request for tenant {} was redirected to {}. Logout was omitted",
+                             ssoClient, conn.getHeaderField("Location"));
+                    return false;
+                } else {
+                    InputStream errorStream = conn.getErrorStream();
+                    String message = errorStream != null ? IoUtil.readAndCloseQuietly(errorStream) : "";
+                    throw new IOException(
+                            "Unexpected response code '" + responseCode + "' for SSO logout request to" +
+                            " '" + conn.getURL() + "'. " + message);
+                }
+            }
+            return true;
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.auth.sso.server.ticket;
+
+import com.codenvy.api.dao.authentication.AccessTicket;
+
+import org.mockito.Mock;
+import org.mockito.testng.MockitoTestNGListener;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Tests for {@link BoundedTicketManager}.
+ */
+@Listeners(MockitoTestNGListener.class)
+public class BoundedTicketManagerTest {
+
+    @Mock
+    private SsoClientLogoutNotifier logoutNotifier;
+
+    @Test
+    public void shouldBeAbleToPutGetAndRemoveTicket() {
+        final BoundedTicketManager ticketManager = new BoundedTicketManager(logoutNotifier, 3600, 3600, 10, null);
+        final AccessTicket ticket = new AccessTicket("token", "user123", "default");
+
+        ticketManager.putAccessTicket(ticket);
+
+        assertEquals(ticketManager.getAccessTicket("token"), ticket);
+        assertEquals(ticketManager.getAccessTickets(), Collections.singleton(ticket));
+        assertEquals(ticketManager.removeTicket("token"), ticket);
+        assertNull(ticketManager.getAccessTicket("token"));
+        verify(logoutNotifier).notifyClients(ticket);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedTicketWhenMaxSizeIsReached() {
+        final BoundedTicketManager ticketManager = new BoundedTicketManager(logoutNotifier, 3600, 3600, 1, null);
+        final AccessTicket ticket1 = new AccessTicket("token1", "user123", "default");
+        final AccessTicket ticket2 = new AccessTicket("token2", "user234", "default");
+
+        ticketManager.putAccessTicket(ticket1);
+        ticketManager.putAccessTicket(ticket2);
+
+        assertNull(ticketManager.getAccessTicket("token1"));
+        assertEquals(ticketManager.getAccessTicket("token2"), ticket2);
+        verify(logoutNotifier).notifyClients(ticket1);
+    }
+
+    @Test
+    public void shouldStoreAndLoadTickets() throws Exception {
+        final Path storage = Files.createTempDirectory("tickets").resolve("tickets.bin");
+        final BoundedTicketManager ticketManager = new BoundedTicketManager(logoutNotifier, 3600, 3600, 10, storage.toString());
+        final AccessTicket ticket = new AccessTicket("token", "user123", "default");
+        ticket.registerClientUrl("http://localhost/client");
+        ticketManager.putAccessTicket(ticket);
+
+        ticketManager.store();
+        final BoundedTicketManager restored = new BoundedTicketManager(logoutNotifier, 3600, 3600, 10, storage.toString());
+        restored.load();
+
+        assertEquals(restored.getAccessTicket("token"), ticket);
+    }
+
+    @Test
+    public void shouldNotLoadExpiredTickets() throws Exception {
+        final Path storage = Files.createTempDirectory("tickets").resolve("tickets.bin");
+        final BoundedTicketManager ticketManager = new BoundedTicketManager(logoutNotifier, 3600, 3600, 10, storage.toString());
+        ticketManager.putAccessTicket(new AccessTicket("token", "user123", "default", System.currentTimeMillis() - 7200 * 1000));
+
+        ticketManager.store();
+        final BoundedTicketManager restored = new BoundedTicketManager(logoutNotifier, 3600, 3600, 10, storage.toString());
+        restored.load();
+
+        assertNull(restored.getAccessTicket("token"));
+    }
+
+    @Test
+    public void shouldStoreTicketsToFileReadableByOwnerOnly() throws Exception {
+        final Path storage = Files.createTempDirectory("tickets").resolve("tickets.bin");
+        final BoundedTicketManager ticketManager = new BoundedTicketManager(logoutNotifier, 3600, 3600, 10, storage.toString());
+        ticketManager.putAccessTicket(new AccessTicket("token", "user123", "default"));
+
+        ticketManager.store();
+
+        assertEquals(PosixFilePermissions.toString(Files.getPosixFilePermissions(storage)), "rw-------");
+    }
+
+    @Test
+    public void shouldExpireRestoredTicketsWhenLifetimeSinceOriginalCreationPasses() throws Exception {
+        final Path storage = Files.createTempDirectory("tickets").resolve("tickets.bin");
+        final TestClock clock = new TestClock();
+        final BoundedTicketManager ticketManager = new BoundedTicketManager(logoutNotifier, 2, 3600, 10, storage.toString(), clock);
+        ticketManager.putAccessTicket(new AccessTicket("token", "user123", "default", clock.millis() - 1500));
+
+        ticketManager.store();
+        final BoundedTicketManager restored = new BoundedTicketManager(logoutNotifier, 2, 3600, 10, storage.toString(), clock);
+        restored.load();
+        clock.advance(1000);
+
+        assertNull(restored.getAccessTicket("token"));
+    }
+
+    @Test
+    public void shouldExpireIdleTickets() {
+        final TestClock clock = new TestClock();
+        final BoundedTicketManager ticketManager = new BoundedTicketManager(logoutNotifier, 3600, 60, 10, null, clock);
+        ticketManager.putAccessTicket(new AccessTicket("token", "user123", "default", clock.millis()));
+
+        clock.advance(61_000);
+
+        assertNull(ticketManager.getAccessTicket("token"));
+    }
+
+    @Test
+    public void shouldStoreTicketsPeriodically() throws Exception {
+        final Path storage = Files.createTempDirectory("tickets").resolve("tickets.bin");
+        final BoundedTicketManager ticketManager = new BoundedTicketManager(logoutNotifier, 3600, 3600, 10, storage.toString());
+        final AccessTicket ticket = new AccessTicket("token", "user123", "default");
+        ticketManager.putAccessTicket(ticket);
+
+        ticketManager.storePeriodically();
+        // manager is not stopped, e.g. the process is killed
+        final BoundedTicketManager restored = new BoundedTicketManager(logoutNotifier, 3600, 3600, 10, storage.toString());
+        restored.load();
+
+        assertEquals(restored.getAccessTicket("token"), ticket);
+    }
+
+    private static class TestClock extends Clock {
+        private final AtomicLong millis = new AtomicLong(System.currentTimeMillis());
+
+        void advance(long deltaMillis) {
+            millis.addAndGet(deltaMillis);
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.auth.sso.server.ticket;
+
+import com.codenvy.api.dao.authentication.AccessTicket;
+import com.sun.net.httpserver.HttpServer;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.util.function.LongSupplier;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests for {@link SsoClientLogoutNotifier}.
+ */
+public class SsoClientLogoutNotifierTest {
+
+    private HttpServer              server;
+    private String                  serverUrl;
+    private SsoClientLogoutNotifier notifier;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/failing/_sso/client/logout", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.createContext("/healthy/_sso/client/logout", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        serverUrl = "http://localhost:" + server.getAddress().getPort();
+        notifier = new SsoClientLogoutNotifier(1, 10, 1000, 3);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        notifier.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldNotDelayLogoutOfHealthyClientWhileFailedOneWaitsForRetry() throws Exception {
+        notifier.notifyClients(ticket("token1", serverUrl + "/failing"));
+        notifier.notifyClients(ticket("token2", serverUrl + "/healthy"));
+
+        // the only pool thread would be busy with the retries of the failing client for 3 seconds
+        assertEventually(notifier::getDelivered, 1, 500);
+        assertEventually(notifier::getFailed, 1, 5000);
+    }
+
+    private AccessTicket ticket(String token, String client) {
+        final AccessTicket ticket = new AccessTicket(token, "user123", "default");
+        ticket.registerClientUrl(client);
+        return ticket;
+    }
+
+    private static void assertEventually(LongSupplier actual, long expected, long timeoutMs) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        while (actual.getAsLong() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(actual.getAsLong(), expected);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.service.systemram;
+
+import com.codahale.metrics.annotation.Gauge;
+
+import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.commons.schedule.ScheduleDelay;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of {@link SystemRamInfoProvider} which shares the snapshot of system RAM info
+ * received from {@link DockerBasedSystemRamInfoProvider} between all the consumers.
+ *
+ * <p>The snapshot is refreshed in background with {@code system.ram.info_refresh_period_sec} period,
+ * which is shorter than the configured staleness, so consumers normally get the snapshot without waiting.
+ * When background refresh fails or falls behind the snapshot is refreshed on demand once it is older than
+ * the staleness. The refresh is single-flight: while one thread fetches the new snapshot
+ * other threads that need it wait for the result instead of issuing their own requests to docker.
+ */
+@Singleton
+public class CachingSystemRamInfoProvider implements SystemRamInfoProvider {
+    private static final Logger LOG = LoggerFactory.getLogger(CachingSystemRamInfoProvider.class);
+
+    private final DockerBasedSystemRamInfoProvider delegate;
+    private final long                             maxStalenessMs;
+    private final Object                           refreshLock;
+    private final AtomicLong                       refreshesCount;
+
+    private volatile Snapshot snapshot;
+    private volatile long     lastRefreshDurationMs;
+
+    @Inject
+    public CachingSystemRamInfoProvider(DockerBasedSystemRamInfoProvider delegate,
+                                        @Named("system.ram.info_max_staleness_ms") long maxStalenessMs) {
+        this.delegate = delegate;
+        this.maxStalenessMs = maxStalenessMs;
+        this.refreshLock = new Object();
+        this.refreshesCount = new AtomicLong();
+    }
+
+    @Override
+    public SystemRamInfo getSystemRamInfo() throws ServerException {
+        Snapshot current = snapshot;
+        if (isFresh(current)) {
+            return current.systemRamInfo;
+        }
+        synchronized (refreshLock) {
+            // snapshot may have been refreshed by another thread while this one was waiting for the lock
+            current = snapshot;
+            if (isFresh(current)) {
+                return current.systemRamInfo;
+            }
+            return refresh();
+        }
+    }
+
+    /** Refreshes the snapshot regardless of its age, so consumers don't wait for docker. */
+    @ScheduleDelay(initialDelay = 0, delayParameterName = "system.ram.info_refresh_period_sec")
+    void refreshInBackground() {
+        synchronized (refreshLock) {
+            try {
+                refresh();
+            } catch (ServerException e) {
+                LOG.warn("Failed to refresh system RAM info. Cause: {}", e.getLocalizedMessage());
+            }
+        }
+    }
+
+    private SystemRamInfo refresh() throws ServerException {
+        final long start = System.currentTimeMillis();
+        final SystemRamInfo systemRamInfo = delegate.getSystemRamInfo();
+        final long end = System.currentTimeMillis();
+        lastRefreshDurationMs = end - start;
+        refreshesCount.incrementAndGet();
+        snapshot = new Snapshot(systemRamInfo, end);
+        return systemRamInfo;
+    }
+
+    @Gauge(name = "system.ram.info_refreshes")
+    public long getRefreshesCount() {
+        return refreshesCount.get();
+    }
+
+    @Gauge(name = "system.ram.info_refresh_latency_ms")
+    public long getLastRefreshDurationMs() {
+        return lastRefreshDurationMs;
+    }
+
+    @Gauge(name = "system.ram.info_age_ms")
+    public long getSnapshotAgeMs() {
+        final Snapshot current = snapshot;
+        return current == null ? -1 : System.currentTimeMillis() - current.creationTime;
+    }
+
+    private boolean isFresh(Snapshot snapshot) {
+        return snapshot != null && System.currentTimeMillis() - snapshot.creationTime < maxStalenessMs;
+    }
+
+    private static class Snapshot {
+        final SystemRamInfo systemRamInfo;
+        final long          creationTime;
+
+        Snapshot(SystemRamInfo systemRamInfo, long creationTime) {
+            this.systemRamInfo = systemRamInfo;
+            this.creationTime = creationTime;
+        }
+    }
+}
@@ -23,8 +23,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static org.eclipse.che.commons.lang.Size.parseSize;
 
@@ -63,7 +63,7 @@ public class DockerBasedSystemRamInfoProvider implements SystemRamInfoProvider {
             throw new ServerException(SYSTEM_RAM_INFO_ERROR);
         }
 
-        List<String> allNodesRamUsage = new ArrayList<>();
+        Map<String, String> allNodesRamUsage = new LinkedHashMap<>();
         /*
           System values from docker response are introduced in a 2-dimensional string array e.g.:
           "SystemStatus": [
@@ -93,10 +93,19 @@ public class DockerBasedSystemRamInfoProvider implements SystemRamInfoProvider {
           RAM vales are divided by nodes and introduced in a string array which has '└ Reserved Memory' in first element,
           and RAM values of node in format <used RAM size> / <total RAM size> in second element.
           There are as many RAM values arrays inside the 'statusOutput' array as many nodes are present in the system.
+          Node name is taken from the closest preceding array which first element starts with space and isn't a node property.
          */
+        String nodeName = null;
         for (String[] systemInfoEntry : statusOutput) {
-            if (systemInfoEntry.length == 2 && " └ Reserved Memory".equals(systemInfoEntry[0])) {
-                allNodesRamUsage.add(systemInfoEntry[1]);
+            if (systemInfoEntry.length != 2 || systemInfoEntry[0] == null) {
+                continue;
+            }
+            if (" └ Reserved Memory".equals(systemInfoEntry[0])) {
+                final String key = nodeName == null || allNodesRamUsage.containsKey(nodeName) ? "node" + (allNodesRamUsage.size() + 1)
+                                                                                            : nodeName;
+                allNodesRamUsage.put(key, systemInfoEntry[1]);
+            } else if (systemInfoEntry[0].startsWith(" ") && !systemInfoEntry[0].contains("└")) {
+                nodeName = systemInfoEntry[0].trim();
             }
         }
         if (allNodesRamUsage.isEmpty()) {
@@ -106,17 +115,22 @@ public class DockerBasedSystemRamInfoProvider implements SystemRamInfoProvider {
 
         long systemRamUsed = 0;
         long systemRamTotal = 0;
-        for (String nodeRamUsage : allNodesRamUsage) {
+        Map<String, SystemRamInfo> nodesRamInfo = new LinkedHashMap<>();
+        for (Map.Entry<String, String> nodeEntry : allNodesRamUsage.entrySet()) {
+            String nodeRamUsage = nodeEntry.getValue();
             String[] ramValues = nodeRamUsage.split(" / ");
             if (ramValues.length != 2) {
                 LOG.error("A problem occurred while parsing system information from docker. " +
                           "Expected: <used RAM size> / <total RAM size> but got: " + nodeRamUsage);
                 throw new ServerException(SYSTEM_RAM_INFO_ERROR);
             }
-            systemRamUsed += parseSize(ramValues[0]);
-            systemRamTotal += parseSize(ramValues[1]);
+            long nodeRamUsed = parseSize(ramValues[0]);
+            long nodeRamTotal = parseSize(ramValues[1]);
+            nodesRamInfo.put(nodeEntry.getKey(), new SystemRamInfo(nodeRamUsed, nodeRamTotal));
+            systemRamUsed += nodeRamUsed;
+            systemRamTotal += nodeRamTotal;
         }
 
-        return new SystemRamInfo(systemRamUsed, systemRamTotal);
+        return new SystemRamInfo(systemRamUsed, systemRamTotal, nodesRamInfo);
     }
 }
@@ -14,8 +14,12 @@
  */
 package com.codenvy.service.systemram;
 
+import java.util.Map;
 import java.util.Objects;
 
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableMap;
+
 /**
  * Describes system RAM values and properties.
  *
@@ -23,14 +27,20 @@ import java.util.Objects;
  */
 public class SystemRamInfo {
 
-    private final long    systemRamUsed;
-    private final long    systemRamTotal;
-    private final boolean isSystemRamLimitExceeded;
+    private final long                       systemRamUsed;
+    private final long                       systemRamTotal;
+    private final boolean                    isSystemRamLimitExceeded;
+    private final Map<String, SystemRamInfo> nodesRamInfo;
 
     public SystemRamInfo(long systemRamUsed, long systemRamTotal) {
+        this(systemRamUsed, systemRamTotal, emptyMap());
+    }
+
+    public SystemRamInfo(long systemRamUsed, long systemRamTotal, Map<String, SystemRamInfo> nodesRamInfo) {
         this.systemRamUsed = systemRamUsed;
         this.systemRamTotal = systemRamTotal;
         this.isSystemRamLimitExceeded = systemRamTotal * 0.9 < systemRamUsed;
+        this.nodesRamInfo = unmodifiableMap(nodesRamInfo);
     }
 
     /**
@@ -54,6 +64,14 @@ public class SystemRamInfo {
         return isSystemRamLimitExceeded;
     }
 
+    /**
+     * RAM values of each node of the system, where key is the node name.
+     * Returns empty map when the system doesn't provide per node values.
+     */
+    public Map<String, SystemRamInfo> getNodesRamInfo() {
+        return nodesRamInfo;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -63,12 +81,13 @@ public class SystemRamInfo {
         
         return systemRamUsed == other.systemRamUsed &&
                systemRamTotal == other.systemRamTotal &&
-               isSystemRamLimitExceeded == other.isSystemRamLimitExceeded;
+               isSystemRamLimitExceeded == other.isSystemRamLimitExceeded &&
+               Objects.equals(nodesRamInfo, other.nodesRamInfo);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(systemRamUsed, systemRamTotal, isSystemRamLimitExceeded);
+        return Objects.hash(systemRamUsed, systemRamTotal, isSystemRamLimitExceeded, nodesRamInfo);
     }
 
     @Override
@@ -77,6 +96,7 @@ public class SystemRamInfo {
                "systemRamUsed=" + systemRamUsed +
                ", systemRamTotal=" + systemRamTotal +
                ", isSystemRamLimitExceeded=" + isSystemRamLimitExceeded +
+               ", nodesRamInfo=" + nodesRamInfo +
                '}';
     }
 }
@@ -0,0 +1,116 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.service.systemram;
+
+import org.eclipse.che.api.core.ServerException;
+import org.mockito.Mock;
+import org.mockito.testng.MockitoTestNGListener;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests for {@link CachingSystemRamInfoProvider}
+ */
+@Listeners(MockitoTestNGListener.class)
+public class CachingSystemRamInfoProviderTest {
+
+    @Mock
+    private DockerBasedSystemRamInfoProvider delegate;
+
+    @Test
+    public void shouldReturnCachedSnapshotWhileItIsNotStale() throws Exception {
+        final SystemRamInfo systemRamInfo = new SystemRamInfo(1, 10);
+        when(delegate.getSystemRamInfo()).thenReturn(systemRamInfo);
+        final CachingSystemRamInfoProvider provider = new CachingSystemRamInfoProvider(delegate, 60_000);
+
+        assertEquals(provider.getSystemRamInfo(), systemRamInfo);
+        assertEquals(provider.getSystemRamInfo(), systemRamInfo);
+
+        verify(delegate, times(1)).getSystemRamInfo();
+        assertEquals(provider.getRefreshesCount(), 1);
+    }
+
+    @Test
+    public void shouldRefreshSnapshotWhenItIsStale() throws Exception {
+        when(delegate.getSystemRamInfo()).thenReturn(new SystemRamInfo(1, 10), new SystemRamInfo(2, 10));
+        final CachingSystemRamInfoProvider provider = new CachingSystemRamInfoProvider(delegate, 0);
+
+        provider.getSystemRamInfo();
+        final SystemRamInfo systemRamInfo = provider.getSystemRamInfo();
+
+        assertEquals(systemRamInfo, new SystemRamInfo(2, 10));
+        verify(delegate, times(2)).getSystemRamInfo();
+    }
+
+    @Test
+    public void shouldRefreshSnapshotInBackgroundEvenIfItIsNotStale() throws Exception {
+        when(delegate.getSystemRamInfo()).thenReturn(new SystemRamInfo(1, 10), new SystemRamInfo(2, 10));
+        final CachingSystemRamInfoProvider provider = new CachingSystemRamInfoProvider(delegate, 60_000);
+
+        provider.refreshInBackground();
+        provider.refreshInBackground();
+
+        assertEquals(provider.getSystemRamInfo(), new SystemRamInfo(2, 10));
+        verify(delegate, times(2)).getSystemRamInfo();
+    }
+
+    @Test
+    public void shouldKeepPreviousSnapshotWhenBackgroundRefreshFails() throws Exception {
+        when(delegate.getSystemRamInfo()).thenReturn(new SystemRamInfo(1, 10)).thenThrow(new ServerException("error"));
+        final CachingSystemRamInfoProvider provider = new CachingSystemRamInfoProvider(delegate, 60_000);
+
+        provider.refreshInBackground();
+        provider.refreshInBackground();
+
+        assertEquals(provider.getSystemRamInfo(), new SystemRamInfo(1, 10));
+    }
+
+    @Test
+    public void shouldFetchSystemRamInfoOnceWhenManyThreadsRequestItConcurrently() throws Exception {
+        final CountDownLatch fetchLatch = new CountDownLatch(1);
+        when(delegate.getSystemRamInfo()).thenAnswer(invocation -> {
+            fetchLatch.await();
+            return new SystemRamInfo(1, 10);
+        });
+        final CachingSystemRamInfoProvider provider = new CachingSystemRamInfoProvider(delegate, 60_000);
+        final ExecutorService executor = Executors.newFixedThreadPool(10);
+        final List<Future<SystemRamInfo>> results = new ArrayList<>();
+        final Callable<SystemRamInfo> task = provider::getSystemRamInfo;
+        for (int i = 0; i < 10; i++) {
+            results.add(executor.submit(task));
+        }
+
+        fetchLatch.countDown();
+        for (Future<SystemRamInfo> result : results) {
+            assertEquals(result.get(), new SystemRamInfo(1, 10));
+        }
+        executor.shutdown();
+
+        verify(delegate, times(1)).getSystemRamInfo();
+    }
+}
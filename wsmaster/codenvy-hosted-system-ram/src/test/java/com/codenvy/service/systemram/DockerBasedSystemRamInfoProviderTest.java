@@ -76,6 +76,23 @@ public class DockerBasedSystemRamInfoProviderTest {
         assertEquals(systemRamInfo.getSystemRamTotal(), 3L * 1024 * 1024 * 1024 );
     }
 
+    @Test
+    public void shouldReturnRamValuesOfEachNode() throws Exception {
+        when(systemInfo.getSystemStatus()).thenReturn(new String[][] {{"Nodes", "2"},
+                                                                      {" node1.codenvy", "10.0.0.1:2376"},
+                                                                      {" └ Reserved Memory", "1 GiB / 2 GiB"},
+                                                                      {" node2.codenvy", "10.0.0.2:2376"},
+                                                                      {" └ Reserved Memory", "2 GiB / 4 GiB"}});
+
+        SystemRamInfo systemRamInfo = systemRamInfoProvider.getSystemRamInfo();
+
+        assertEquals(systemRamInfo.getSystemRamTotal(), 6L * 1024 * 1024 * 1024);
+        assertEquals(systemRamInfo.getNodesRamInfo().size(), 2);
+        assertEquals(systemRamInfo.getNodesRamInfo().get("node1.codenvy"), new SystemRamInfo(1024 * 1024 * 1024, 2L * 1024 * 1024 * 1024));
+        assertEquals(systemRamInfo.getNodesRamInfo().get("node2.codenvy"),
+                     new SystemRamInfo(2L * 1024 * 1024 * 1024, 4L * 1024 * 1024 * 1024));
+    }
+
     @Test(expectedExceptions = ServerException.class,
           expectedExceptionsMessageRegExp = "An error occurred while getting system RAM info.")
     public void shouldThrowExceptionIfFailedToRecognizeDockerSystemInfo() throws Exception {
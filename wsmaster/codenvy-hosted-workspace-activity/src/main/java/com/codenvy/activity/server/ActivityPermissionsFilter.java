@@ -23,6 +23,8 @@ import org.everrest.core.Filter;
 import org.everrest.core.resource.GenericResourceMethod;
 
 import javax.ws.rs.Path;
+import java.util.HashMap;
+import java.util.Map;
 
 import static com.codenvy.api.workspace.server.WorkspaceDomain.DOMAIN_ID;
 import static com.codenvy.api.workspace.server.WorkspaceDomain.USE;
@@ -50,6 +52,22 @@ public class ActivityPermissionsFilter extends CheMethodInvokerFilter {
                 action = USE;
                 break;
             }
+            case "activeBatch": {
+                // activities of the workspaces the user is not allowed to use are skipped
+                // rather than failing the whole batch because of a single workspace
+                @SuppressWarnings("unchecked")
+                final Map<String, String> activities = (Map<String, String>)arguments[0];
+                if (activities != null) {
+                    final Map<String, String> permitted = new HashMap<>(activities.size());
+                    for (Map.Entry<String, String> entry : activities.entrySet()) {
+                        if (currentSubject.hasPermission(DOMAIN_ID, entry.getKey(), USE)) {
+                            permitted.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                    arguments[0] = permitted;
+                }
+                return;
+            }
             default:
                 throw new ForbiddenException("The user does not have permission to perform this operation");
         }
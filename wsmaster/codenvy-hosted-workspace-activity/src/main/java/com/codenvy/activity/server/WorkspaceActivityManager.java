@@ -14,7 +14,9 @@
  */
 package com.codenvy.activity.server;
 
+import com.codahale.metrics.annotation.Gauge;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 
 import org.eclipse.che.api.core.NotFoundException;
@@ -23,6 +25,7 @@ import org.eclipse.che.api.core.notification.EventService;
 import org.eclipse.che.api.core.notification.EventSubscriber;
 import org.eclipse.che.api.workspace.server.WorkspaceManager;
 import org.eclipse.che.api.workspace.shared.dto.event.WorkspaceStatusEvent;
+import org.eclipse.che.commons.lang.concurrent.LoggingUncaughtExceptionHandler;
 import org.eclipse.che.commons.schedule.ScheduleRate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,7 +35,15 @@ import javax.annotation.PreDestroy;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.codenvy.activity.shared.Constants.ACTIVITY_CHECKER;
 import static org.eclipse.che.api.workspace.shared.Constants.WORKSPACE_STOPPED_BY;
@@ -43,6 +54,9 @@ import static org.eclipse.che.api.workspace.shared.Constants.WORKSPACE_STOPPED_B
  * <p>Note that the workspace is not stopped immediately, scheduler will stop the workspaces with one minute rate.
  * If workspace expiry period is negative, then workspace would not be stopped automatically.
  *
+ * <p>Expiration moments are kept ordered, so each scheduler run visits only the workspaces which are already expired,
+ * and the workspaces are stopped by a pool of {@code stop.workspace.pool_size} threads rather than by the scheduler.
+ *
  * @author Anton Korneta
  */
 @Singleton
@@ -50,20 +64,39 @@ public class WorkspaceActivityManager {
 
     private static final Logger LOG = LoggerFactory.getLogger(WorkspaceActivityManager.class);
 
-    private final long               expirePeriod;
-    private final Map<String, Long>  activeWorkspaces;
-    private final WorkspaceManager   workspaceManager;
-    private final EventService       eventService;
-    private final EventSubscriber<?> workspaceEventsSubscriber;
+    private final long                          expirePeriod;
+    private final ConcurrentMap<String, Long>   activeWorkspaces;
+    private final ConcurrentSkipListSet<Expiry> expiries;
+    private final WorkspaceManager              workspaceManager;
+    private final EventService                  eventService;
+    private final EventSubscriber<?>            workspaceEventsSubscriber;
+    private final ThreadPoolExecutor            stopExecutor;
+    private final AtomicLong                    stopLag;
+    private final LongAdder                     stopFailures;
 
     @Inject
     public WorkspaceActivityManager(@Named("machine.ws_agent.inactive_stop_timeout_ms") long expirePeriod,
+                                    @Named("stop.workspace.pool_size") int stopPoolSize,
                                     WorkspaceManager workspaceManager,
                                     EventService eventService) {
         this.expirePeriod = expirePeriod;
         this.workspaceManager = workspaceManager;
         this.eventService = eventService;
         this.activeWorkspaces = new ConcurrentHashMap<>();
+        this.expiries = new ConcurrentSkipListSet<>();
+        this.stopLag = new AtomicLong();
+        this.stopFailures = new LongAdder();
+        this.stopExecutor = new ThreadPoolExecutor(stopPoolSize,
+                                                   stopPoolSize,
+                                                   60,
+                                                   TimeUnit.SECONDS,
+                                                   new LinkedBlockingQueue<>(),
+                                                   new ThreadFactoryBuilder().setNameFormat("WorkspaceActivityStopper-%d")
+                                                                             .setUncaughtExceptionHandler(
+                                                                                     LoggingUncaughtExceptionHandler.getInstance())
+                                                                             .setDaemon(true)
+                                                                             .build());
+        this.stopExecutor.allowCoreThreadTimeOut(true);
         this.workspaceEventsSubscriber = new EventSubscriber<WorkspaceStatusEvent>() {
             @Override
             public void onEvent(WorkspaceStatusEvent event) {
@@ -80,7 +113,7 @@ public class WorkspaceActivityManager {
                         update(event.getWorkspaceId(), System.currentTimeMillis());
                         break;
                     case STOPPED:
-                        activeWorkspaces.remove(event.getWorkspaceId());
+                        untrack(event.getWorkspaceId());
                         break;
                     default:
                         //do nothing
@@ -99,36 +132,106 @@ public class WorkspaceActivityManager {
      */
     public void update(String wsId, long activityTime) {
         if (expirePeriod > 0) {
-            activeWorkspaces.put(wsId, activityTime + expirePeriod);
+            final long expireTime = activityTime + expirePeriod;
+            // the expiry set is modified under the map's lock of the workspace entry, so both stay consistent
+            activeWorkspaces.compute(wsId, (id, oldExpireTime) -> {
+                if (oldExpireTime != null) {
+                    if (oldExpireTime >= expireTime) {
+                        // reported activity is older than the one already known
+                        return oldExpireTime;
+                    }
+                    expiries.remove(new Expiry(id, oldExpireTime));
+                }
+                expiries.add(new Expiry(id, expireTime));
+                return expireTime;
+            });
+        }
+    }
+
+    /**
+     * Updates the expiry periods of the given workspaces, each workspace is updated
+     * in the same way as by {@link #update(String, long)}.
+     *
+     * @param activities
+     *         moments in which the last activities occurred by workspace identifiers
+     */
+    public void update(Map<String, Long> activities) {
+        for (Map.Entry<String, Long> activity : activities.entrySet()) {
+            update(activity.getKey(), activity.getValue());
         }
     }
 
+    /**
+     * Returns the moment in which the last activity of the workspace occurred
+     * or {@code -1} if activity of the workspace is not tracked.
+     *
+     * @param wsId
+     *         workspace identifier
+     */
+    public long getLastActivityTime(String wsId) {
+        final Long expireTime = activeWorkspaces.get(wsId);
+        return expireTime == null ? -1 : expireTime - expirePeriod;
+    }
+
+    /** Returns the number of workspaces which activity is tracked. */
+    @Gauge(name = "workspace.activity.tracked")
+    public int getTrackedWorkspaces() {
+        return activeWorkspaces.size();
+    }
+
+    /** Returns the delay in milliseconds between expiration and the stop of the last stopped workspace. */
+    @Gauge(name = "workspace.activity.stop_lag_ms")
+    public long getStopLag() {
+        return stopLag.get();
+    }
+
+    /** Returns the number of workspaces which were failed to stop. */
+    @Gauge(name = "workspace.activity.stop_failures")
+    public long getStopFailures() {
+        return stopFailures.sum();
+    }
+
+    @VisibleForTesting
     @ScheduleRate(periodParameterName = "stop.workspace.scheduler.period")
-    private void invalidate() {
+    void invalidate() {
         if (expirePeriod <= 0) {
             return;
         }
         final long currentTime = System.currentTimeMillis();
-        for (Map.Entry<String, Long> workspaceExpireEntry : activeWorkspaces.entrySet()) {
-            if (workspaceExpireEntry.getValue() <= currentTime) {
-                try {
-                    String workspaceId = workspaceExpireEntry.getKey();
-
-                    Workspace workspace = workspaceManager.getWorkspace(workspaceId);
-                    workspace.getAttributes().put(WORKSPACE_STOPPED_BY, ACTIVITY_CHECKER);
-                    workspaceManager.updateWorkspace(workspaceId, workspace);
-                    workspaceManager.stopWorkspace(workspaceId);
-                } catch (NotFoundException e) {
-                    LOG.info("Workspace already stopped");
-                } catch (Exception ex) {
-                    LOG.error("Failed to stop the workspace", ex);
-                } finally {
-                    activeWorkspaces.remove(workspaceExpireEntry.getKey());
-                }
+        // expiries are ordered, so only the due ones are visited and removed, the rest are never touched
+        for (Expiry expiry : expiries) {
+            if (expiry.expireTime > currentTime) {
+                break;
+            }
+            // the workspace may be concurrently updated, then its expiry is already replaced with a later one
+            if (expiries.remove(expiry) && activeWorkspaces.remove(expiry.workspaceId, expiry.expireTime)) {
+                stopExecutor.execute(() -> stop(expiry));
             }
         }
     }
 
+    private void stop(Expiry expiry) {
+        stopLag.set(System.currentTimeMillis() - expiry.expireTime);
+        try {
+            Workspace workspace = workspaceManager.getWorkspace(expiry.workspaceId);
+            workspace.getAttributes().put(WORKSPACE_STOPPED_BY, ACTIVITY_CHECKER);
+            workspaceManager.updateWorkspace(expiry.workspaceId, workspace);
+            workspaceManager.stopWorkspace(expiry.workspaceId);
+        } catch (NotFoundException e) {
+            LOG.info("Workspace already stopped");
+        } catch (Exception ex) {
+            stopFailures.increment();
+            LOG.error("Failed to stop the workspace", ex);
+        }
+    }
+
+    private void untrack(String wsId) {
+        activeWorkspaces.computeIfPresent(wsId, (id, expireTime) -> {
+            expiries.remove(new Expiry(id, expireTime));
+            return null;
+        });
+    }
+
     @VisibleForTesting
     @PostConstruct
     void subscribe() {
@@ -140,5 +243,40 @@ public class WorkspaceActivityManager {
     @PreDestroy
     private void unsubscribe() {
         eventService.unsubscribe(workspaceEventsSubscriber);
+        stopExecutor.shutdownNow();
+    }
+
+    /** The moment when the workspace expires, ordered by time and then by workspace id. */
+    private static final class Expiry implements Comparable<Expiry> {
+        final String workspaceId;
+        final long   expireTime;
+
+        Expiry(String workspaceId, long expireTime) {
+            this.workspaceId = workspaceId;
+            this.expireTime = expireTime;
+        }
+
+        @Override
+        public int compareTo(Expiry that) {
+            final int result = Long.compare(expireTime, that.expireTime);
+            return result != 0 ? result : workspaceId.compareTo(that.workspaceId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Expiry)) {
+                return false;
+            }
+            final Expiry that = (Expiry)obj;
+            return expireTime == that.expireTime && workspaceId.equals(that.workspaceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(workspaceId, expireTime);
+        }
     }
 }
@@ -19,21 +19,27 @@ import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 
+import org.eclipse.che.api.core.BadRequestException;
 import org.eclipse.che.api.core.ForbiddenException;
 import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.rest.Service;
 import org.eclipse.che.api.workspace.server.WorkspaceManager;
+import org.eclipse.che.api.workspace.server.WorkspaceRuntimes;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import java.util.HashMap;
+import java.util.Map;
 
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static org.eclipse.che.api.core.model.workspace.WorkspaceStatus.RUNNING;
 
 /**
@@ -49,11 +55,15 @@ public class WorkspaceActivityService extends Service {
 
     private final WorkspaceActivityManager workspaceActivityManager;
     private final WorkspaceManager         workspaceManager;
+    private final WorkspaceRuntimes        workspaceRuntimes;
 
     @Inject
-    public WorkspaceActivityService(WorkspaceActivityManager workspaceActivityManager, WorkspaceManager wsManager) {
+    public WorkspaceActivityService(WorkspaceActivityManager workspaceActivityManager,
+                                    WorkspaceManager wsManager,
+                                    WorkspaceRuntimes workspaceRuntimes) {
         this.workspaceActivityManager = workspaceActivityManager;
         this.workspaceManager = wsManager;
+        this.workspaceRuntimes = workspaceRuntimes;
     }
 
     @PUT
@@ -69,4 +79,39 @@ public class WorkspaceActivityService extends Service {
             LOG.debug("Updated activity on workspace {}", wsId);
         }
     }
+
+    @PUT
+    @Consumes(APPLICATION_JSON)
+    @ApiOperation(value = "Notifies activity of several workspaces at once",
+                  notes = "Accepts the moments of the last activity by workspace ids. " +
+                          "Workspaces which are not running, do not exist or can't be used by the user are skipped.")
+    @ApiResponses({@ApiResponse(code = 204, message = "Activities counted"),
+                   @ApiResponse(code = 400, message = "Activity moment is not a number")})
+    public void activeBatch(@ApiParam(value = "Last activity moments in milliseconds by workspace ids")
+                            Map<String, String> activities) throws BadRequestException, ServerException {
+        if (activities == null) {
+            throw new BadRequestException("Workspace activities required");
+        }
+        final long currentTime = System.currentTimeMillis();
+        final Map<String, Long> running = new HashMap<>(activities.size());
+        for (Map.Entry<String, String> entry : activities.entrySet()) {
+            final long activityTime;
+            try {
+                activityTime = Long.parseLong(entry.getValue());
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Activity moment of workspace " + entry.getKey() + " is not a number");
+            }
+            try {
+                // runtime status is kept in memory, so the batch doesn't hit the database
+                if (workspaceRuntimes.get(entry.getKey()).getRuntimeStatus() == RUNNING) {
+                    // activity can't happen in the future, the clocks of agents may drift ahead of the master
+                    running.put(entry.getKey(), Math.min(activityTime, currentTime));
+                }
+            } catch (NotFoundException e) {
+                LOG.debug("Skipped activity of not running workspace {}", entry.getKey());
+            }
+        }
+        workspaceActivityManager.update(running);
+        LOG.debug("Updated activity on {} workspaces", running.size());
+    }
 }
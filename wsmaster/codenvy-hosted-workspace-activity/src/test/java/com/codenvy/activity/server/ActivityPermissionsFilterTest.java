@@ -14,6 +14,7 @@
  */
 package com.codenvy.activity.server;
 
+import com.google.common.collect.ImmutableMap;
 import com.jayway.restassured.response.Response;
 
 import org.eclipse.che.api.core.ForbiddenException;
@@ -35,12 +36,14 @@ import org.testng.annotations.Test;
 import static com.codenvy.api.workspace.server.WorkspaceDomain.DOMAIN_ID;
 import static com.codenvy.api.workspace.server.WorkspaceDomain.USE;
 import static com.jayway.restassured.RestAssured.given;
+import static java.util.Collections.singletonMap;
 import static org.everrest.assured.JettyHttpServer.ADMIN_USER_NAME;
 import static org.everrest.assured.JettyHttpServer.ADMIN_USER_PASSWORD;
 import static org.everrest.assured.JettyHttpServer.SECURE_PATH;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
@@ -96,6 +99,39 @@ public class ActivityPermissionsFilterTest {
         assertEquals(response.getStatusCode(), 403);
     }
 
+    @Test
+    public void shouldCheckPermissionsOfEachWorkspaceOnBatchUpdate() throws Exception {
+        when(subject.hasPermission(DOMAIN_ID, "workspace123", USE)).thenReturn(true);
+        when(subject.hasPermission(DOMAIN_ID, "workspace234", USE)).thenReturn(true);
+
+        final Response response = given().auth()
+                                         .basic(ADMIN_USER_NAME, ADMIN_USER_PASSWORD)
+                                         .contentType("application/json")
+                                         .body("{\"workspace123\":\"1000\",\"workspace234\":\"2000\"}")
+                                         .when()
+                                         .put(SECURE_PATH + "/activity");
+
+        assertEquals(response.getStatusCode(), 204);
+        verify(service).activeBatch(ImmutableMap.of("workspace123", "1000", "workspace234", "2000"));
+    }
+
+    @Test
+    public void shouldSkipActivitiesOfNotOwnedWorkspacesOnBatchUpdate() throws Exception {
+        when(subject.hasPermission(DOMAIN_ID, "workspace123", USE)).thenReturn(true);
+        when(subject.hasPermission(DOMAIN_ID, "workspace234", USE)).thenReturn(false);
+
+        final Response response = given().auth()
+                                         .basic(ADMIN_USER_NAME, ADMIN_USER_PASSWORD)
+                                         .contentType("application/json")
+                                         .body("{\"workspace123\":\"1000\",\"workspace234\":\"2000\"}")
+                                         .when()
+                                         .put(SECURE_PATH + "/activity");
+
+        assertEquals(response.getStatusCode(), 204);
+        verify(service).activeBatch(singletonMap("workspace123", "1000"));
+        verify(subject, never()).checkPermission(anyString(), anyString(), anyString());
+    }
+
     @Test(expectedExceptions = ForbiddenException.class)
     public void shouldThrowExceptionWhenCallingUnlistedMethod() throws Exception {
 
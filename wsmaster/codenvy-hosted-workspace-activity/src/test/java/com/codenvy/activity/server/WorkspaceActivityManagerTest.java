@@ -17,6 +17,7 @@ package com.codenvy.activity.server;
 import org.eclipse.che.api.core.notification.EventService;
 import org.eclipse.che.api.core.notification.EventSubscriber;
 import org.eclipse.che.api.workspace.server.WorkspaceManager;
+import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
 import org.eclipse.che.api.workspace.shared.dto.event.WorkspaceStatusEvent;
 import org.eclipse.che.dto.server.DtoFactory;
 import org.mockito.ArgumentCaptor;
@@ -30,6 +31,13 @@ import org.testng.annotations.Test;
 import java.lang.reflect.Field;
 import java.util.Map;
 
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
@@ -52,7 +60,7 @@ public class WorkspaceActivityManagerTest {
 
     @BeforeMethod
     private void setUp() {
-        activityManager = new WorkspaceActivityManager(EXPIRE_PERIOD, workspaceManager, eventService);
+        activityManager = new WorkspaceActivityManager(EXPIRE_PERIOD, 2, workspaceManager, eventService);
     }
 
     @Test
@@ -120,6 +128,41 @@ public class WorkspaceActivityManagerTest {
         assertTrue(activeWorkspaces.isEmpty());
     }
 
+    @Test
+    public void shouldStopOnlyExpiredWorkspaces() throws Exception {
+        doReturn(mock(WorkspaceImpl.class)).when(workspaceManager).getWorkspace(anyString());
+        activityManager.update("expired", 1000L);
+        activityManager.update("active", System.currentTimeMillis());
+
+        activityManager.invalidate();
+
+        verify(workspaceManager, timeout(1000)).stopWorkspace("expired");
+        verify(workspaceManager, never()).stopWorkspace("active");
+        final Map<String, Long> activeWorkspaces = getActiveWorkspaces(activityManager);
+        assertEquals(activeWorkspaces.keySet(), singleton("active"));
+    }
+
+    @Test
+    public void shouldNotStopWorkspaceWhichActivityWasUpdatedAfterExpiration() throws Exception {
+        activityManager.update("testWsId", 1000L);
+        activityManager.update("testWsId", System.currentTimeMillis());
+
+        activityManager.invalidate();
+
+        verify(workspaceManager, never()).stopWorkspace("testWsId");
+        assertEquals(activityManager.getTrackedWorkspaces(), 1);
+    }
+
+    @Test
+    public void shouldNotMoveExpirationBackWhenOlderActivityIsReported() throws Exception {
+        final Map<String, Long> activeWorkspaces = getActiveWorkspaces(activityManager);
+        activityManager.update("testWsId", 2000L);
+
+        activityManager.update(singletonMap("testWsId", 1000L));
+
+        assertEquals((long)activeWorkspaces.get("testWsId"), 2000L + EXPIRE_PERIOD);
+    }
+
     @SuppressWarnings("unchecked")
     private Map<String, Long> getActiveWorkspaces(WorkspaceActivityManager workspaceActivityManager) throws Exception {
         for (Field field : workspaceActivityManager.getClass().getDeclaredFields()) {
@@ -22,6 +22,7 @@ import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.model.workspace.WorkspaceStatus;
 import org.eclipse.che.api.core.rest.ApiExceptionMapper;
 import org.eclipse.che.api.workspace.server.WorkspaceManager;
+import org.eclipse.che.api.workspace.server.WorkspaceRuntimes;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceConfigImpl;
 import org.eclipse.che.api.workspace.server.model.impl.WorkspaceImpl;
 import org.eclipse.che.commons.env.EnvironmentContext;
@@ -39,8 +40,10 @@ import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
 import static com.jayway.restassured.RestAssured.given;
+import static java.util.Collections.singletonMap;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -67,11 +70,14 @@ public class WorkspaceActivityServiceTest {
     @Mock
     private WorkspaceManager workspaceManager;
 
+    @Mock
+    private WorkspaceRuntimes workspaceRuntimes;
+
     private WorkspaceActivityService workspaceActivityService;
 
     @BeforeMethod
     public void setUp() {
-        workspaceActivityService = new WorkspaceActivityService(workspaceActivityManager, workspaceManager);
+        workspaceActivityService = new WorkspaceActivityService(workspaceActivityManager, workspaceManager, workspaceRuntimes);
     }
 
     @Test
@@ -100,6 +106,37 @@ public class WorkspaceActivityServiceTest {
         verifyZeroInteractions(workspaceActivityManager);
     }
 
+    @Test
+    public void shouldUpdateActivitiesOfRunningWorkspacesInBatch() throws Exception {
+        final WorkspaceRuntimes.RuntimeDescriptor running = mock(WorkspaceRuntimes.RuntimeDescriptor.class);
+        when(running.getRuntimeStatus()).thenReturn(WorkspaceStatus.RUNNING);
+        final WorkspaceRuntimes.RuntimeDescriptor stopping = mock(WorkspaceRuntimes.RuntimeDescriptor.class);
+        when(stopping.getRuntimeStatus()).thenReturn(WorkspaceStatus.STOPPING);
+        when(workspaceRuntimes.get(WORKSPACE_ID)).thenReturn(running);
+        when(workspaceRuntimes.get("stopping")).thenReturn(stopping);
+        when(workspaceRuntimes.get("unknown")).thenThrow(new NotFoundException("not found"));
+
+        final Response response = given().contentType("application/json")
+                                         .body("{\"" + WORKSPACE_ID + "\":\"1000\",\"stopping\":\"1000\",\"unknown\":\"1000\"}")
+                                         .when()
+                                         .put(SERVICE_PATH);
+
+        assertEquals(response.getStatusCode(), 204);
+        verify(workspaceActivityManager).update(singletonMap(WORKSPACE_ID, 1000L));
+        verifyZeroInteractions(workspaceManager);
+    }
+
+    @Test
+    public void shouldRejectBatchWithMalformedActivityTime() throws Exception {
+        final Response response = given().contentType("application/json")
+                                         .body("{\"" + WORKSPACE_ID + "\":\"yesterday\"}")
+                                         .when()
+                                         .put(SERVICE_PATH);
+
+        assertEquals(response.getStatusCode(), 400);
+        verifyZeroInteractions(workspaceActivityManager);
+    }
+
     @DataProvider(name = "wsStatus")
     public Object[][] getWorkspaceStatus() {
         return new Object[][]{ {WorkspaceStatus.STARTING}, {WorkspaceStatus.STOPPED}, {WorkspaceStatus.STOPPING} };
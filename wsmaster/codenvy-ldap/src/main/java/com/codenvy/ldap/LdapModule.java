@@ -55,6 +55,7 @@ public class LdapModule extends AbstractModule {
         bind(DBUserFinder.class).toProvider(DBUserFinderProvider.class);
         bind(LdapEntrySelector.class).toProvider(LdapEntrySelectorProvider.class);
         bind(LdapSynchronizer.class).asEagerSingleton();
+        bind(LdapSynchronizer.DropFingerprintBeforeUserRemovedEventSubscriber.class).asEagerSingleton();
         bind(LdapSynchronizerService.class);
     }
 }
@@ -15,11 +15,18 @@
 package com.codenvy.ldap.auth;
 
 
+import com.codahale.metrics.annotation.Gauge;
+import com.codahale.metrics.annotation.Timed;
 import com.codenvy.api.dao.authentication.AuthenticationHandler;
 import com.codenvy.ldap.LdapUserIdNormalizer;
-import com.codenvy.ldap.sync.UserMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
 
 import org.eclipse.che.api.auth.AuthenticationException;
+import org.eclipse.che.api.core.notification.EventService;
+import org.eclipse.che.api.core.notification.EventSubscriber;
+import org.eclipse.che.api.user.server.event.PostUserRemovedEvent;
 import org.ldaptive.Credential;
 import org.ldaptive.LdapException;
 import org.ldaptive.auth.AuthenticationRequest;
@@ -29,34 +36,114 @@ import org.ldaptive.auth.Authenticator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * LDAP authentication handler that uses the ldaptive {@code Authenticator} component underneath.
  * This handler provides simple attribute resolution machinery by reading attributes from the entry
  * corresponding to the DN of the bound user (in the bound security context) upon successful authentication.
  *
+ * <p>If the cache time to live is configured to be > 0, successful authentications are cached,
+ * so repeated authentications of the same user with the same password don't hit the directory
+ * until the cache entry expires. Cached authentications are keyed by the hash of credentials
+ * mixed with a random per instance secret, passwords themselves are never kept in memory.
+ * A different password always goes to the directory, cached authentications of a login
+ * are invalidated when its authentication fails, when it succeeds with another password
+ * or when the corresponding user is removed.
+ *
+ * <p>Note that password changes made in the directory can't be tracked by the handler,
+ * so the old password keeps working until its cached authentication expires,
+ * that's why the cache time to live is limited to {@value #MAX_CACHE_TTL_MS}ms.
+ *
  * @author Sergii Kabashniuk
  */
+@Singleton
 public class LdapAuthenticationHandler implements AuthenticationHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(LdapAuthenticationHandler.class);
 
     public static final String TYPE = "ldap";
 
-    private final Authenticator        ldapAuthenticator;
-    private final LdapUserIdNormalizer idNormalizer;
-    private final String[]             returnAttributes;
+    private static final int  SECRET_LENGTH    = 32;
+    private static final long MAX_CACHE_TTL_MS = 60_000;
+
+    private final Authenticator                         ldapAuthenticator;
+    private final LdapUserIdNormalizer                  idNormalizer;
+    private final String[]                              returnAttributes;
+    private final EventService                          eventService;
+    private final Cache<String, CachedAuthentication>   cache;
+    private final EventSubscriber<PostUserRemovedEvent> userRemovedSubscriber;
+    private final byte[]                                secret;
+    private final LongAdder                             cacheHits;
+    private final LongAdder                             cacheMisses;
 
+    /**
+     * Creates an instance of handler.
+     *
+     * @param cacheTtlMs
+     *         how long successful authentication is cached, if it is <= 0
+     *         then each authentication hits the directory, values greater
+     *         than {@value #MAX_CACHE_TTL_MS} are reduced to it
+     * @param cacheMaxSize
+     *         how many successful authentications may be cached
+     */
     @Inject
-    public LdapAuthenticationHandler(Authenticator ldapAuthenticator, LdapUserIdNormalizer idNormalizer) {
+    public LdapAuthenticationHandler(Authenticator ldapAuthenticator,
+                                     LdapUserIdNormalizer idNormalizer,
+                                     EventService eventService,
+                                     @Named("ldap.auth.cache.ttl_ms") long cacheTtlMs,
+                                     @Named("ldap.auth.cache.max_size") long cacheMaxSize) {
         this.ldapAuthenticator = ldapAuthenticator;
         this.idNormalizer = idNormalizer;
+        this.eventService = eventService;
         this.returnAttributes = new String[] {idNormalizer.getIdAttributeName()};
+        if (cacheTtlMs > MAX_CACHE_TTL_MS) {
+            LOG.warn("'ldap.auth.cache.ttl_ms' is reduced from {} to {} as changes of passwords are not tracked",
+                     cacheTtlMs,
+                     MAX_CACHE_TTL_MS);
+        }
+        this.cache = cacheTtlMs <= 0 ? null : CacheBuilder.newBuilder()
+                                                          .expireAfterWrite(Math.min(cacheTtlMs, MAX_CACHE_TTL_MS),
+                                                                            TimeUnit.MILLISECONDS)
+                                                          .maximumSize(cacheMaxSize)
+                                                          .build();
+        this.userRemovedSubscriber = new EventSubscriber<PostUserRemovedEvent>() {
+            @Override
+            public void onEvent(PostUserRemovedEvent event) {
+                if (event != null && event.getUserId() != null) {
+                    invalidateUser(event.getUserId());
+                }
+            }
+        };
+        this.secret = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(secret);
+        this.cacheHits = new LongAdder();
+        this.cacheMisses = new LongAdder();
     }
 
     @Override
     public String authenticate(String login, String password) throws AuthenticationException {
+        final String cacheKey = cache == null ? null : credentialsHash(login, password);
+        if (cache != null) {
+            final CachedAuthentication cached = cache.getIfPresent(cacheKey);
+            if (cached != null) {
+                cacheHits.increment();
+                LOG.debug("LDAP authentication for {} is taken from the cache", login);
+                return cached.userId;
+            }
+            cacheMisses.increment();
+        }
 
         final AuthenticationResponse response;
         try {
@@ -64,25 +151,101 @@ public class LdapAuthenticationHandler implements AuthenticationHandler {
             final AuthenticationRequest request = new AuthenticationRequest(login,
                                                                             new Credential(password));
             request.setReturnAttributes(returnAttributes);
-            response = this.ldapAuthenticator.authenticate(request);
+            response = bind(request);
         } catch (final LdapException e) {
             throw new AuthenticationException(401, "Unexpected LDAP error");
         }
         LOG.debug("LDAP response: {}", response);
 
         if (!response.getResult()) {
+            invalidate(login);
             throw new AuthenticationException(401, "Authentication failed. Please check username and password.");
         }
 
         if (AuthenticationResultCode.DN_RESOLUTION_FAILURE == response.getAuthenticationResultCode()) {
+            invalidate(login);
             throw new AuthenticationException(login + "  is not found");
         }
         LOG.debug("Account state {}", response.getAccountState());
-        return idNormalizer.retrieveAndNormalize(response.getLdapEntry());
+        final String userId = idNormalizer.retrieveAndNormalize(response.getLdapEntry());
+        if (cache != null) {
+            // authentications with the previous password of the login must not be served anymore
+            invalidate(login);
+            cache.put(cacheKey, new CachedAuthentication(login, userId));
+        }
+        return userId;
+    }
+
+    /** Authenticates against the directory, the latency distribution is reported by the timer. */
+    @Timed(name = "auth.ldap.bind")
+    protected AuthenticationResponse bind(AuthenticationRequest request) throws LdapException {
+        return ldapAuthenticator.authenticate(request);
     }
 
     @Override
     public String getType() {
         return TYPE;
     }
+
+    /** Removes cached authentications of the given login, so the next authentication hits the directory. */
+    public void invalidate(String login) {
+        if (cache != null) {
+            cache.asMap().values().removeIf(cached -> cached.login.equals(login));
+        }
+    }
+
+    /** Removes all the cached authentications of the user with the given identifier. */
+    public void invalidateUser(String userId) {
+        if (cache != null) {
+            cache.asMap().values().removeIf(cached -> cached.userId.equals(userId));
+        }
+    }
+
+    /** @return the ratio of authentications served by the cache. */
+    @Gauge(name = "auth.ldap.cache_hit_rate")
+    public double cacheHitRate() {
+        final long hits = cacheHits.sum();
+        final long total = hits + cacheMisses.sum();
+        return total == 0 ? 0 : (double)hits / total;
+    }
+
+    /** @return the number of cached authentications. */
+    @Gauge(name = "auth.ldap.cache_size")
+    public long cacheSize() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        eventService.subscribe(userRemovedSubscriber);
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        eventService.unsubscribe(userRemovedSubscriber);
+    }
+
+    /** Returns hex encoded hash of the given credentials mixed with the secret of this instance. */
+    private String credentialsHash(String login, String password) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(secret);
+            digest.update(login.getBytes(UTF_8));
+            digest.update((byte)0);
+            return BaseEncoding.base16().encode(digest.digest(password.getBytes(UTF_8)));
+        } catch (NoSuchAlgorithmException x) {
+            throw new IllegalStateException(x.getMessage(), x);
+        }
+    }
+
+    /** Successful authentication of the login. */
+    private static class CachedAuthentication {
+        private final String login;
+        private final String userId;
+
+        private CachedAuthentication(String login, String userId) {
+            this.login = login;
+            this.userId = userId;
+        }
+    }
 }
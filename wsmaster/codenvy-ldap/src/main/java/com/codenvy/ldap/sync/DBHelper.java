@@ -46,4 +46,25 @@ public class DBHelper {
                          .createNativeQuery(nativeQuery)
                          .getResultList();
     }
+
+    /**
+     * Executes query which has a single parameter and returns execution result.
+     *
+     * @param query
+     *         query to execute
+     * @param resultClass
+     *         the type of the query result
+     * @param paramName
+     *         the name of the query parameter
+     * @param paramValue
+     *         the value of the query parameter
+     * @return execution result
+     */
+    @Transactional
+    public <T> List<T> executeQuery(String query, Class<T> resultClass, String paramName, Object paramValue) {
+        return emProvider.get()
+                         .createQuery(query, resultClass)
+                         .setParameter(paramName, paramValue)
+                         .getResultList();
+    }
 }
@@ -16,11 +16,20 @@ package com.codenvy.ldap.sync;
 
 import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.ServerException;
+import org.eclipse.che.api.core.model.user.Profile;
 import org.eclipse.che.api.core.model.user.User;
+import org.eclipse.che.api.user.server.model.impl.ProfileImpl;
+import org.eclipse.che.api.user.server.model.impl.UserImpl;
 import org.eclipse.che.api.user.server.spi.UserDao;
 
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
+
+import static java.util.Collections.emptyMap;
+import static java.util.stream.Collectors.toMap;
 
 /**
  * Retrieves user from persistence layer.
@@ -72,6 +81,41 @@ public abstract class DBUserFinder {
     /** Returns linking attribute values for those users who exist in persistence layer. */
     public abstract Set<String> findLinkingIds();
 
+    /**
+     * Finds all the users with specified identifiers by a single query.
+     *
+     * @param linkingIds
+     *         the values returned from {@link #extractLinkingId(User)}
+     * @return linking identifier to user mapping, users who don't exist are missing
+     */
+    public abstract Map<String, User> findAll(Collection<String> linkingIds);
+
+    /**
+     * Finds profiles of the users with specified identifiers by a single query.
+     *
+     * @param userIds
+     *         identifiers of the users
+     * @return user identifier to profile mapping, profiles which don't exist are missing
+     */
+    public Map<String, Profile> findProfiles(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return emptyMap();
+        }
+        return dbHelper.executeQuery("SELECT p FROM Profile p WHERE p.userId IN :ids", ProfileImpl.class, "ids", userIds)
+                       .stream()
+                       .collect(toMap(Profile::getUserId, profile -> profile));
+    }
+
+    /** Finds users whose attribute is in specified values. */
+    protected Map<String, User> findAllBy(String attribute, Collection<String> values, Function<User, String> keyExtractor) {
+        if (values.isEmpty()) {
+            return emptyMap();
+        }
+        return dbHelper.executeQuery("SELECT u FROM Usr u WHERE u." + attribute + " IN :values", UserImpl.class, "values", values)
+                       .stream()
+                       .collect(toMap(keyExtractor, user -> user));
+    }
+
     /** Retrieves user by his id. */
     private static class ByIdUserFinder extends DBUserFinder {
 
@@ -94,6 +138,11 @@ public abstract class DBUserFinder {
         public Set<String> findLinkingIds() {
             return new HashSet<>(dbHelper.executeNativeQuery("SELECT id FROM Usr"));
         }
+
+        @Override
+        public Map<String, User> findAll(Collection<String> ids) {
+            return findAllBy("id", ids, User::getId);
+        }
     }
 
     /** Retrieves user by his email. */
@@ -118,5 +167,10 @@ public abstract class DBUserFinder {
         public Set<String> findLinkingIds() {
             return new HashSet<>(dbHelper.executeNativeQuery("SELECT email FROM Usr"));
         }
+
+        @Override
+        public Map<String, User> findAll(Collection<String> emails) {
+            return findAllBy("email", emails, User::getEmail);
+        }
     }
 }
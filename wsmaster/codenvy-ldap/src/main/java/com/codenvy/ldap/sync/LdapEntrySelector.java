@@ -39,4 +39,26 @@ public interface LdapEntrySelector {
      *         when any error occurs during selection, or during iteration
      */
     Iterable<LdapEntry> select(Connection connection) throws SyncException;
+
+    /**
+     * Selects only those ldap entries which match the given {@code changesFilter}
+     * in addition to the implementation specific criteria, this is used for
+     * incremental synchronization, e.g. <i>(modifyTimestamp>=20161018120000Z)</i>.
+     *
+     * <p>Implementations which are not capable of narrowing the selection
+     * fall back to {@link #select(Connection)}, which is always safe as
+     * the caller is expected to skip entries which didn't change.
+     *
+     * @param connection
+     *         the connection which should be used for selection,
+     *         it is already opened and shouldn't be closed
+     * @param changesFilter
+     *         ldap filter describing changed entries
+     * @return an iterable describing the result iterator
+     * @throws SyncException
+     *         when any error occurs during selection, or during iteration
+     */
+    default Iterable<LdapEntry> selectChanged(Connection connection, String changesFilter) throws SyncException {
+        return select(connection);
+    }
 }
@@ -19,6 +19,7 @@ import com.google.inject.Provider;
 
 import org.eclipse.che.commons.annotation.Nullable;
 import org.eclipse.che.commons.lang.Pair;
+import org.ldaptive.ConnectionFactory;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -41,12 +42,14 @@ public class LdapEntrySelectorProvider implements Provider<LdapEntrySelector> {
     private final LdapEntrySelector selector;
 
     @Inject
-    public LdapEntrySelectorProvider(@Named("ldap.base_dn") String baseDn,
+    public LdapEntrySelectorProvider(ConnectionFactory connFactory,
+                                     @Named("ldap.base_dn") String baseDn,
                                      @Named("ldap.sync.user.filter") String usersFilter,
                                      @Named("ldap.sync.user.additional_dn") @Nullable String additionalUserDn,
                                      @Named("ldap.sync.group.filter") @Nullable String groupFilter,
                                      @Named("ldap.sync.group.additional_dn") @Nullable String additionalGroupDn,
                                      @Named("ldap.sync.group.attr.members") @Nullable String membersAttrName,
+                                     @Named("ldap.sync.group.members.concurrency") int membersConcurrency,
                                      @Named("ldap.sync.page.size") int pageSize,
                                      @Named("ldap.sync.page.read_timeout_ms") long pageReadTimeoutMs,
                                      @Named("ldap.sync.profile.attrs") @Nullable Pair<String, String>[] profileAttributes,
@@ -78,7 +81,10 @@ public class LdapEntrySelectorProvider implements Provider<LdapEntrySelector> {
                                           usersFilter,
                                           syncAttributes);
         } else {
-            selector = new MembershipSelector(normalizeDn(additionalGroupDn, baseDn),
+            selector = new MembershipSelector(connFactory,
+                                              membersConcurrency,
+                                              pageSize <= 0 ? DEFAULT_PAGE_SIZE : pageSize,
+                                              normalizeDn(additionalGroupDn, baseDn),
                                               groupFilter,
                                               usersFilter,
                                               membersAttrName,
@@ -15,14 +15,21 @@
 package com.codenvy.ldap.sync;
 
 import com.codenvy.ldap.LdapUserIdNormalizer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.persist.Transactional;
 
+import org.eclipse.che.api.core.ApiException;
 import org.eclipse.che.api.core.ConflictException;
 import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.ServerException;
 import org.eclipse.che.api.core.model.user.Profile;
 import org.eclipse.che.api.core.model.user.User;
+import org.eclipse.che.api.core.notification.EventService;
+import org.eclipse.che.api.core.notification.EventSubscriber;
+import org.eclipse.che.api.user.server.event.BeforeUserRemovedEvent;
 import org.eclipse.che.commons.lang.concurrent.LoggingUncaughtExceptionHandler;
 import org.eclipse.che.api.user.server.model.impl.ProfileImpl;
 import org.eclipse.che.api.user.server.model.impl.UserImpl;
@@ -33,8 +40,10 @@ import org.eclipse.che.commons.lang.Pair;
 import org.eclipse.che.core.db.DBInitializer;
 import org.ldaptive.Connection;
 import org.ldaptive.ConnectionFactory;
+import org.ldaptive.LdapAttribute;
 import org.ldaptive.LdapEntry;
 import org.ldaptive.LdapException;
+import org.ldaptive.SearchFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,14 +52,31 @@ import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
+import static java.lang.Boolean.TRUE;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Periodically synchronizes ldap users with a provided database.
@@ -67,6 +93,32 @@ import static java.lang.String.format;
  *
  * <p>Ldap entries selection strategy is picked by {@link LdapEntrySelectorProvider}.
  *
+ * <p>If full synchronization period is configured to be > 0, then
+ * synchronizations performed in between of full ones are incremental:
+ * only those entries which were modified since the last
+ * synchronization are selected and users missing from ldap are not removed.
+ * Users which couldn't be written to database are selected by their identifiers
+ * along with the modified entries, each of them is retried by at most {@value #MAX_RETRY_ATTEMPTS}
+ * subsequent synchronizations, after that it is synchronized once its entry changes or by
+ * the next full synchronization. Invalid entries are not retried as they can't be synchronized until changed.
+ * The first synchronization after start is always full.
+ *
+ * <p>Selected entries are grouped into batches which are written by a small
+ * pool of writers, the existing users and profiles of each batch are fetched
+ * in bulk and the batch modifications are applied in a single transaction.
+ * The number of batches waiting for writing is bounded, when all the writers
+ * are busy the reading thread writes the batch by itself, so the memory
+ * consumption doesn't depend on the number of synchronized entries.
+ *
+ * <p>Fingerprints of synchronized entries are kept in memory, if a selected
+ * entry has the same fingerprint as the one previously synchronized,
+ * then the user is neither fetched from database nor updated.
+ * Full synchronizations skip by fingerprint only the users present in database,
+ * and fingerprint of a user is dropped when the user is removed from database,
+ * so removed users are recreated by the next synchronization.
+ * Changes made to users and profiles directly in database are reconciled
+ * once their ldap entries change or after restart, when no fingerprints are known.
+ *
  * <p>It is thread-safe.
  *
  * @author Yevhenii Voevodin
@@ -82,10 +134,29 @@ public class LdapSynchronizer {
     private static final String USER_NAME_ATTRIBUTE_NAME  = "ldap.sync.user.attr.name";
     private static final String USER_EMAIL_ATTRIBUTE_NAME = "ldap.sync.user.attr.email";
 
+    /**
+     * The moment of the last successful synchronization is shifted back
+     * by this value to tolerate clock skew between this host and ldap server.
+     */
+    private static final long CLOCK_SKEW_TOLERANCE_MS = TimeUnit.MINUTES.toMillis(5);
+
+    /** How many times in a row a user which failed to be written is selected again by incremental synchronizations. */
+    private static final int MAX_RETRY_ATTEMPTS = 3;
+    /** How many failed users are retried at most, the rest of them wait for the next full synchronization. */
+    private static final int MAX_RETRIED_USERS  = 500;
+
+    private static final DateTimeFormatter GENERALIZED_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss'Z'")
+                                                                                      .withZone(ZoneOffset.UTC);
+
     private final long                             syncPeriodMs;
     private final long                             initDelayMs;
     private final boolean                          updateIfExists;
     private final boolean                          removeIfMissing;
+    private final long                             fullSyncPeriodMs;
+    private final String                           modifiedAttr;
+    private final String                           userIdAttr;
+    private final int                              writersCount;
+    private final int                              writeBatchSize;
     private final Function<LdapEntry, ProfileImpl> profileMapper;
     private final Function<LdapEntry, UserImpl>    userMapper;
     private final LdapEntrySelector                selector;
@@ -97,6 +168,17 @@ public class LdapSynchronizer {
     private final LdapUserIdNormalizer             idNormalizer;
     private final DBUserFinder                     userFinder;
 
+    /** The moment when the last finished synchronization started, null if there was no such synchronization. */
+    private volatile Instant lastSyncStart;
+    /** The moment when the last successful full synchronization started, null if there was no such synchronization. */
+    private volatile Instant lastFullSyncStart;
+
+    /** Linking identifier to fingerprint of the entry which was last synchronized with database. */
+    private final ConcurrentMap<String, Long> fingerprints = new ConcurrentHashMap<>();
+
+    /** Linking identifier of the user as it is stored in ldap to the number of failed attempts to write the user. */
+    private final ConcurrentMap<String, Integer> retries = new ConcurrentHashMap<>();
+
     /**
      * Creates an instance of synchronizer.
      *
@@ -136,6 +218,17 @@ public class LdapSynchronizer {
      * @param removeIfMissing
      *         whether remove those users who are present in persistence layer while missing
      *         from ldap storage
+     * @param fullSyncPeriodMs
+     *         how often full synchronization must be performed, if it is <= 0 then
+     *         each synchronization is full, otherwise synchronizations performed
+     *         in between of full ones select only modified entries
+     * @param modifiedAttr
+     *         ldap attribute indicating the time of the entry's last modification,
+     *         used by incremental synchronization e.g. 'modifyTimestamp'
+     * @param writersCount
+     *         how many threads write synchronized users in parallel
+     * @param writeBatchSize
+     *         how many users are written by a single transaction
      * @param userFinder
      *         gets database users and their attributes
      */
@@ -154,10 +247,20 @@ public class LdapSynchronizer {
                             @Named("ldap.sync.profile.attrs") @Nullable Pair<String, String>[] profileAttributes,
                             @Named("ldap.sync.update_if_exists") boolean updateIfExists,
                             @Named("ldap.sync.remove_if_missing") boolean removeIfMissing,
+                            @Named("ldap.sync.full_period_ms") long fullSyncPeriodMs,
+                            @Named("ldap.sync.user.attr.modified") String modifiedAttr,
+                            @Named("ldap.sync.write.workers") int writersCount,
+                            @Named("ldap.sync.write.batch_size") int writeBatchSize,
                             DBUserFinder userFinder) {
         if (initDelayMs < 0) {
             throw new IllegalArgumentException("'ldap.sync.initial_delay_ms' must be >= 0, the actual value is " + initDelayMs);
         }
+        if (writersCount <= 0) {
+            throw new IllegalArgumentException("'ldap.sync.write.workers' must be > 0, the actual value is " + writersCount);
+        }
+        if (writeBatchSize <= 0) {
+            throw new IllegalArgumentException("'ldap.sync.write.batch_size' must be > 0, the actual value is " + writeBatchSize);
+        }
         this.connFactory = connFactory;
         this.userDao = userDao;
         this.profileDao = profileDao;
@@ -170,6 +273,11 @@ public class LdapSynchronizer {
         this.isSyncing = new AtomicBoolean(false);
         this.updateIfExists = updateIfExists;
         this.removeIfMissing = removeIfMissing;
+        this.fullSyncPeriodMs = fullSyncPeriodMs;
+        this.modifiedAttr = modifiedAttr;
+        this.userIdAttr = userIdAttr;
+        this.writersCount = writersCount;
+        this.writeBatchSize = writeBatchSize;
         this.userFinder = userFinder;
         this.scheduler = Executors.newScheduledThreadPool(1,
                                                           new ThreadFactoryBuilder().setNameFormat("LdapSynchronizer-%d")
@@ -203,18 +311,44 @@ public class LdapSynchronizer {
      *         when any error occurs during synchronization
      */
     public SyncResult syncAll() throws LdapException, SyncException {
-        LOG.info("Preparing synchronization environment");
-        final SyncResult syncResult = new SyncResult();
-        final Set<String> linkingIds = userFinder.findLinkingIds();
+        final Instant start = Instant.now();
+        final Instant since = lastSyncStart;
+        final boolean full = since == null
+                             || fullSyncPeriodMs <= 0
+                             || Duration.between(lastFullSyncStart, start).toMillis() >= fullSyncPeriodMs;
+        LOG.info("Preparing {} synchronization environment", full ? "full" : "incremental");
+        final SyncResult syncResult = new SyncResult(full, start);
+        final Set<String> linkingIds = full ? userFinder.findLinkingIds() : null;
+        if (full) {
+            // all the entries are selected anyway, failed ones are collected again
+            retries.clear();
+        }
         LOG.debug("Using selector {} for synchronization", selector);
         LOG.info("Starting synchronization of users/profiles");
+        final ThreadPoolExecutor writers = newWritersExecutor();
         try (Connection connection = connFactory.getConnection()) {
             connection.open();
+            final Iterable<LdapEntry> entries;
+            if (full) {
+                entries = selector.select(connection);
+            } else {
+                final String changesFilter = changesFilter(since);
+                LOG.debug("Selecting entries changed since the last synchronization and failed ones, filter '{}'", changesFilter);
+                entries = selector.selectChanged(connection, changesFilter);
+            }
             long iteration = 0;
-            for (LdapEntry entry : selector.select(connection)) {
+            List<SyncEntry> batch = new ArrayList<>(writeBatchSize);
+            for (LdapEntry entry : entries) {
                 iteration++;
 
-                syncFetched(entry, linkingIds, syncResult);
+                final SyncEntry syncEntry = prepare(entry, linkingIds, syncResult);
+                if (syncEntry != null && !containsEntry(batch, syncEntry.linkingId)) {
+                    batch.add(syncEntry);
+                }
+                if (batch.size() == writeBatchSize) {
+                    submit(writers, batch, syncResult);
+                    batch = new ArrayList<>(writeBatchSize);
+                }
 
                 // Each EACH_ENTRIES_COUNT_CHECK_INTERRUPTION synchronized entries check whether thread wasn't interrupted
                 // if it was - stop the synchronization, all the users who were not synchronized
@@ -222,74 +356,353 @@ public class LdapSynchronizer {
                 if (iteration % EACH_ENTRIES_COUNT_CHECK_INTERRUPTION == 0) {
                     if (Thread.currentThread().isInterrupted()) {
                         LOG.warn("User/Profile synchronization was interrupted");
+                        writers.shutdownNow();
+                        syncResult.finish();
                         LOG.info("Synchronization result: {}", syncResult);
                         return syncResult;
                     }
                 }
             }
+            if (!batch.isEmpty()) {
+                submit(writers, batch, syncResult);
+            }
+        } finally {
+            writers.shutdown();
         }
 
-        if (removeIfMissing && !linkingIds.isEmpty()) {
+        if (!awaitWritersTermination(writers)) {
+            LOG.warn("User/Profile synchronization was interrupted");
+            syncResult.finish();
+            LOG.info("Synchronization result: {}", syncResult);
+            return syncResult;
+        }
+
+        if (full && removeIfMissing && !linkingIds.isEmpty()) {
             LOG.info("Removing users missing from ldap storage, users to remove '{}'", linkingIds.size());
             for (String linkingId : linkingIds) {
                 try {
                     final User user = userFinder.findOne(linkingId);
                     userDao.remove(user.getId());
-                    syncResult.removed++;
+                    fingerprints.remove(linkingId);
+                    syncResult.removed.increment();
                     LOG.debug("Removed user '{}'", user.getId());
                 } catch (NotFoundException | ServerException | ConflictException x) {
                     LOG.info(format("Couldn't remove user '%s' due to occurred error", linkingId), x);
-                    syncResult.failed++;
+                    syncResult.failed.increment();
                 }
             }
         }
 
+        lastSyncStart = start;
+        if (syncResult.getFailed() != 0) {
+            LOG.warn("Failed to synchronize '{}' users, '{}' of them will be selected again by the next synchronization",
+                     syncResult.getFailed(),
+                     retries.size());
+        }
+        if (full) {
+            lastFullSyncStart = start;
+        }
+        syncResult.finish();
         LOG.info("Synchronization result: {}", syncResult);
         return syncResult;
     }
 
-    /** Validates and tries to persist fetched ldap entry. */
-    private void syncFetched(LdapEntry entry, Set<String> linkingIds, SyncResult syncResult) {
-        idNormalizer.normalize(entry);
+    /**
+     * Returns filter of the entries modified since the given moment
+     * and the entries of users which failed to be written by previous synchronizations.
+     */
+    private String changesFilter(Instant since) {
+        final String modifiedFilter = format("(%s>=%s)",
+                                             modifiedAttr,
+                                             GENERALIZED_TIME_FORMAT.format(since.minusMillis(CLOCK_SKEW_TOLERANCE_MS)));
+        if (retries.isEmpty()) {
+            return modifiedFilter;
+        }
+        final StringBuilder filter = new StringBuilder("(|").append(modifiedFilter);
+        for (String ldapId : retries.keySet()) {
+            filter.append('(').append(userIdAttr).append('=').append(SearchFilter.encodeValue(ldapId)).append(')');
+        }
+        return filter.append(')').toString();
+    }
+
+    /**
+     * Validates and maps fetched ldap entry, returns null if the entry is not valid.
+     *
+     * @param linkingIds
+     *         linking identifiers of all the database users, entry's identifier
+     *         is removed from this set once the entry is prepared. If it is null
+     *         or it doesn't contain the identifier then the user existence is unknown
+     *         and will be checked by writer, as the same user may be selected more than once
+     *         e.g. when it is a member of several groups
+     */
+    private SyncEntry prepare(LdapEntry entry, @Nullable Set<String> linkingIds, SyncResult syncResult) {
+        try {
+            final LdapAttribute idAttr = entry.getAttribute(userIdAttr);
+            final String ldapId = idAttr == null ? null : idAttr.getStringValue();
+            idNormalizer.normalize(entry);
+            final UserImpl ldapUser = userMapper.apply(entry);
+            if (!isValid(ldapUser)) {
+                syncResult.failed.increment();
+                return null;
+            }
+            final String linkingId = userFinder.extractLinkingId(ldapUser);
+            final Boolean exists = linkingIds != null && linkingIds.remove(linkingId) ? TRUE : null;
+            final ProfileImpl ldapProfile = profileMapper.apply(entry);
+            final long fingerprint = fingerprint(ldapUser, ldapProfile);
+            // when all the database users are known only those present in database are skipped
+            if (updateIfExists
+                && (linkingIds == null || TRUE.equals(exists))
+                && Long.valueOf(fingerprint).equals(fingerprints.get(linkingId))) {
+                syncResult.skippedByFingerprint.increment();
+                LOG.debug("User & profile '{}' are not changed since the previous synchronization", ldapUser.getId());
+                return null;
+            }
+            return new SyncEntry(entry, ldapUser, ldapProfile, ldapId, linkingId, exists, fingerprint);
+        } catch (RuntimeException x) {
+            LOG.info("Couldn't prepare ldap entry '{}' for synchronization. Error: {}", entry, x.getMessage());
+            syncResult.failed.increment();
+            return null;
+        }
+    }
+
+    /** Returns true if the batch already contains the entry with the given linking identifier. */
+    private static boolean containsEntry(List<SyncEntry> batch, String linkingId) {
+        for (SyncEntry entry : batch) {
+            if (entry.linkingId.equals(linkingId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Submits the batch to writers, if all the writers are busy and
+     * the queue is full the batch is synchronized by the caller thread,
+     * so reading of ldap entries slows down to the speed of writing them.
+     */
+    private void submit(ThreadPoolExecutor writers, List<SyncEntry> batch, SyncResult syncResult) {
+        writers.execute(() -> syncBatch(batch, syncResult));
+    }
+
+    private ThreadPoolExecutor newWritersExecutor() {
+        return new ThreadPoolExecutor(writersCount,
+                                      writersCount,
+                                      0L,
+                                      TimeUnit.MILLISECONDS,
+                                      new ArrayBlockingQueue<>(writersCount),
+                                      new ThreadFactoryBuilder().setNameFormat("LdapSynchronizerWriter-%d")
+                                                                .setUncaughtExceptionHandler(
+                                                                        LoggingUncaughtExceptionHandler.getInstance())
+                                                                .setDaemon(true)
+                                                                .build(),
+                                      new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /** Waits until all the submitted batches are synchronized, returns false if the waiting was interrupted. */
+    private static boolean awaitWritersTermination(ThreadPoolExecutor writers) {
+        try {
+            while (!writers.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.debug("Waiting for users/profiles writers to finish, batches left '{}'", writers.getQueue().size());
+            }
+            return true;
+        } catch (InterruptedException x) {
+            writers.shutdownNow();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Synchronizes the batch of entries: existing users and profiles
+     * are fetched by two queries and all the modifications are applied in a single transaction.
+     * If the batch fails, its entries are synchronized one by one,
+     * so the failure of a single entry doesn't affect the others.
+     */
+    private void syncBatch(List<SyncEntry> batch, SyncResult syncResult) {
+        final List<SyncEntry> toCreate = new ArrayList<>();
+        final List<SyncEntry> toUpdate = new ArrayList<>();
+        final List<SyncEntry> oneByOne = new ArrayList<>();
+        long skipped = 0;
+        long upToDate = 0;
+        try {
+            final Map<String, User> dbUsers = userFinder.findAll(batch.stream()
+                                                                      .filter(e -> e.exists == null || e.exists && updateIfExists)
+                                                                      .map(e -> e.linkingId)
+                                                                      .collect(toList()));
+            for (SyncEntry entry : batch) {
+                entry.dbUser = dbUsers.get(entry.linkingId);
+                final boolean exists = entry.exists != null ? entry.exists : entry.dbUser != null;
+                if (!exists) {
+                    toCreate.add(entry);
+                } else if (!updateIfExists) {
+                    retries.remove(entry.ldapId);
+                    skipped++;
+                    LOG.debug("User & profile '{}' are skipped", entry.ldapUser.getId());
+                } else if (entry.dbUser == null) {
+                    oneByOne.add(entry);
+                } else {
+                    toUpdate.add(entry);
+                }
+            }
+
+            final Map<String, Profile> dbProfiles = userFinder.findProfiles(toUpdate.stream()
+                                                                                    .map(e -> e.dbUser.getId())
+                                                                                    .collect(toList()));
+            for (Iterator<SyncEntry> it = toUpdate.iterator(); it.hasNext(); ) {
+                final SyncEntry entry = it.next();
+                final Profile dbProfile = dbProfiles.get(entry.dbUser.getId());
+                if (dbProfile == null) {
+                    oneByOne.add(entry);
+                    it.remove();
+                } else if (entry.dbUser.equals(entry.ldapUser) && dbProfile.equals(entry.ldapProfile)) {
+                    upToDate++;
+                    markSynchronized(entry);
+                    LOG.debug("User & profile '{}' are up-to-date", entry.ldapUser.getId());
+                    it.remove();
+                } else {
+                    entry.dbProfile = dbProfile;
+                }
+            }
 
-        final UserImpl ldapUser = userMapper.apply(entry);
-        if (!isValid(ldapUser)) {
-            syncResult.failed++;
+            if (!toCreate.isEmpty() || !toUpdate.isEmpty()) {
+                writeBatch(toCreate, toUpdate);
+            }
+        } catch (RuntimeException | ApiException x) {
+            LOG.debug("Couldn't synchronize batch of '{}' entries, synchronizing them one by one. Error: {}",
+                      batch.size(),
+                      x.getMessage());
+            batch.forEach(entry -> syncOne(entry, syncResult));
             return;
         }
 
-        final ProfileImpl ldapProfile = profileMapper.apply(entry);
+        toCreate.forEach(this::markSynchronized);
+        toUpdate.forEach(this::markSynchronized);
+        syncResult.created.add(toCreate.size());
+        syncResult.updated.add(toUpdate.size());
+        syncResult.skipped.add(skipped);
+        syncResult.upToDate.add(upToDate);
+        LOG.debug("Created '{}' and updated '{}' users & profiles", toCreate.size(), toUpdate.size());
+        oneByOne.forEach(entry -> syncOne(entry, syncResult));
+    }
+
+    /** Synchronizes a single entry fetching its database state separately. */
+    private void syncOne(SyncEntry entry, SyncResult syncResult) {
+        final UserImpl ldapUser = entry.ldapUser;
         try {
-            final String linkingId = userFinder.extractLinkingId(ldapUser);
-            if (!linkingIds.remove(linkingId)) {
-                createUserAndProfile(ldapUser, ldapProfile);
-                syncResult.created++;
+            User dbUser = null;
+            if (entry.exists == null) {
+                dbUser = findOrNull(entry.linkingId);
+            }
+            if (entry.exists != null ? !entry.exists : dbUser == null) {
+                createUserAndProfile(ldapUser, entry.ldapProfile);
+                markSynchronized(entry);
+                syncResult.created.increment();
                 LOG.debug("Created user & profile '{}'", ldapUser.getId());
                 return;
             }
 
             if (!updateIfExists) {
-                syncResult.skipped++;
+                retries.remove(entry.ldapId);
+                syncResult.skipped.increment();
                 LOG.debug("User & profile '{}' are skipped", ldapUser.getId());
                 return;
             }
 
-            final User dbUser = userFinder.findOne(linkingId);
+            if (dbUser == null) {
+                dbUser = userFinder.findOne(entry.linkingId);
+            }
             final Profile dbProfile = profileDao.getById(dbUser.getId());
-            if (updateUserAndProfile(dbUser, dbProfile, ldapUser, ldapProfile)) {
-                syncResult.updated++;
+            final boolean updated = updateUserAndProfile(dbUser, dbProfile, ldapUser, entry.ldapProfile);
+            markSynchronized(entry);
+            if (updated) {
+                syncResult.updated.increment();
                 LOG.debug("Updated user & profile '{}'", ldapUser.getId());
             } else {
-                syncResult.upToDate++;
+                syncResult.upToDate.increment();
                 LOG.debug("User & profile '{}' are up-to-date", ldapUser.getId());
             }
         } catch (RuntimeException | ConflictException | NotFoundException | ServerException x) {
+            fingerprints.remove(entry.linkingId);
             LOG.info("Couldn't synchronize(update/create) user or his profile '{}' " +
                      "due to occurred error, original ldap entry '{}'. Error: {}",
                      ldapUser.getId(),
-                     entry,
+                     entry.ldapEntry,
                      x.getMessage());
-            syncResult.failed++;
+            scheduleRetry(entry);
+            syncResult.failed.increment();
+        }
+    }
+
+    /** Remembers that the entry is synchronized, so it isn't retried and isn't compared with database until it changes. */
+    private void markSynchronized(SyncEntry entry) {
+        fingerprints.put(entry.linkingId, entry.fingerprint);
+        retries.remove(entry.ldapId);
+    }
+
+    /** Makes the next synchronizations select the entry which failed to be written, unless it failed too many times. */
+    private void scheduleRetry(SyncEntry entry) {
+        if (retries.size() >= MAX_RETRIED_USERS && !retries.containsKey(entry.ldapId)) {
+            LOG.debug("Too many users failed to synchronize, user '{}' will be retried by the next full synchronization",
+                      entry.ldapUser.getId());
+            return;
+        }
+        if (retries.merge(entry.ldapId, 1, Integer::sum) > MAX_RETRY_ATTEMPTS) {
+            retries.remove(entry.ldapId);
+            LOG.warn("User '{}' failed to synchronize '{}' times in a row, it will be synchronized " +
+                     "once its entry changes or by the next full synchronization",
+                     entry.ldapUser.getId(),
+                     MAX_RETRY_ATTEMPTS + 1);
+        }
+    }
+
+    /** Forgets the fingerprint of the given user, so the user is compared with ldap entry by the next synchronization. */
+    public void dropFingerprint(User user) {
+        fingerprints.remove(userFinder.extractLinkingId(user));
+    }
+
+    @VisibleForTesting
+    Instant getLastSyncStart() {
+        return lastSyncStart;
+    }
+
+    /** Computes fingerprint of the user and profile mapped from ldap entry. */
+    @VisibleForTesting
+    static long fingerprint(UserImpl user, ProfileImpl profile) {
+        final Hasher hasher = Hashing.murmur3_128().newHasher();
+        putNullable(hasher, user.getId());
+        putNullable(hasher, user.getName());
+        putNullable(hasher, user.getEmail());
+        for (Map.Entry<String, String> attribute : new TreeMap<>(profile.getAttributes()).entrySet()) {
+            putNullable(hasher, attribute.getKey());
+            putNullable(hasher, attribute.getValue());
+        }
+        return hasher.hash().asLong();
+    }
+
+    private static void putNullable(Hasher hasher, @Nullable String value) {
+        if (value == null) {
+            hasher.putByte((byte)0);
+        } else {
+            hasher.putByte((byte)1).putInt(value.length()).putString(value, UTF_8);
+        }
+    }
+
+    private User findOrNull(String linkingId) throws ServerException {
+        try {
+            return userFinder.findOne(linkingId);
+        } catch (NotFoundException x) {
+            return null;
+        }
+    }
+
+    @Transactional(rollbackOn = {RuntimeException.class, ApiException.class})
+    protected void writeBatch(List<SyncEntry> toCreate, List<SyncEntry> toUpdate) throws ApiException {
+        for (SyncEntry entry : toCreate) {
+            userDao.create(entry.ldapUser);
+            profileDao.create(entry.ldapProfile);
+        }
+        for (SyncEntry entry : toUpdate) {
+            updateUserAndProfile(entry.dbUser, entry.dbProfile, entry.ldapUser, entry.ldapProfile);
         }
     }
 
@@ -362,6 +775,30 @@ public class LdapSynchronizer {
         }
     }
 
+    /** Drops fingerprints of the users removed from database, so they are recreated by incremental synchronizations. */
+    @Singleton
+    public static class DropFingerprintBeforeUserRemovedEventSubscriber implements EventSubscriber<BeforeUserRemovedEvent> {
+        @Inject
+        private EventService     eventService;
+        @Inject
+        private LdapSynchronizer synchronizer;
+
+        @PostConstruct
+        public void subscribe() {
+            eventService.subscribe(this, BeforeUserRemovedEvent.class);
+        }
+
+        @PreDestroy
+        public void unsubscribe() {
+            eventService.unsubscribe(this, BeforeUserRemovedEvent.class);
+        }
+
+        @Override
+        public void onEvent(BeforeUserRemovedEvent event) {
+            synchronizer.dropFingerprint(event.getUser());
+        }
+    }
+
     private boolean isValid(UserImpl user) {
         if (user.getId() == null) {
             LOG.warn(format("Cannot find out user's id. Please, check configuration `%s` parameter correctness.",
@@ -384,36 +821,48 @@ public class LdapSynchronizer {
     /** Describes synchronization result. */
     public static class SyncResult {
 
-        private long created;
-        private long updated;
-        private long removed;
-        private long failed;
-        private long upToDate;
-        private long skipped;
+        private final boolean full;
+        private final Instant start;
+
+        private final LongAdder created  = new LongAdder();
+        private final LongAdder updated  = new LongAdder();
+        private final LongAdder removed  = new LongAdder();
+        private final LongAdder failed   = new LongAdder();
+        private final LongAdder upToDate = new LongAdder();
+        private final LongAdder skipped  = new LongAdder();
+
+        private final LongAdder skippedByFingerprint = new LongAdder();
+
+        private Duration duration = Duration.ZERO;
+
+        private SyncResult(boolean full, Instant start) {
+            this.full = full;
+            this.start = start;
+        }
 
         /** How many users where removed. */
         public long getRemoved() {
-            return removed;
+            return removed.sum();
         }
 
         /** How many users where updated. */
         public long getUpdated() {
-            return updated;
+            return updated.sum();
         }
 
         /** How many users where created. */
         public long getCreated() {
-            return created;
+            return created.sum();
         }
 
         /** How many users couldn't be created or updated. */
         public long getFailed() {
-            return failed;
+            return failed.sum();
         }
 
         /** How many users were not updated because the database version of them is the same. */
         public long getUpToDate() {
-            return upToDate;
+            return upToDate.sum();
         }
 
         /**
@@ -421,7 +870,15 @@ public class LdapSynchronizer {
          * synchronization configuration options.
          */
         public long getSkipped() {
-            return skipped;
+            return skipped.sum();
+        }
+
+        /**
+         * For how many users neither database read nor write was performed because their
+         * ldap entries didn't change since the previous synchronization.
+         */
+        public long getSkippedByFingerprint() {
+            return skippedByFingerprint.sum();
         }
 
         /**
@@ -429,25 +886,90 @@ public class LdapSynchronizer {
          * or how many ldap users were processed.
          */
         public long getProcessed() {
-            return created + updated + upToDate + failed + skipped;
+            return getCreated() + getUpdated() + getUpToDate() + getFailed() + getSkipped() + getSkippedByFingerprint();
+        }
+
+        /** Whether all the entries were synchronized or only those modified since the previous synchronization. */
+        public boolean isFull() {
+            return full;
+        }
+
+        /** When the synchronization started. */
+        public Instant getStart() {
+            return start;
+        }
+
+        /** How long the synchronization took. */
+        public Duration getDuration() {
+            return duration;
+        }
+
+        /** How many ldap users were processed per second. */
+        public double getThroughput() {
+            final long durationMs = duration.toMillis();
+            return durationMs == 0 ? getProcessed() : getProcessed() * 1000D / durationMs;
+        }
+
+        private void finish() {
+            duration = Duration.between(start, Instant.now());
         }
 
         @Override
         public String toString() {
-            return format("processed = '%d', " +
+            return format("mode = '%s', " +
+                          "processed = '%d', " +
                           "created = '%d', " +
                           "updated = '%d', " +
                           "removed = '%d', " +
                           "failed = '%d', " +
                           "up-to-date = '%d', " +
-                          "skipped = '%d'",
+                          "skipped = '%d', " +
+                          "skipped-by-fingerprint = '%d', " +
+                          "duration = '%dms', " +
+                          "throughput = '%.2f/s'",
+                          full ? "full" : "incremental",
                           getProcessed(),
-                          created,
-                          updated,
-                          removed,
-                          failed,
-                          upToDate,
-                          skipped);
+                          getCreated(),
+                          getUpdated(),
+                          getRemoved(),
+                          getFailed(),
+                          getUpToDate(),
+                          getSkipped(),
+                          getSkippedByFingerprint(),
+                          duration.toMillis(),
+                          getThroughput());
+        }
+    }
+
+    /** Ldap entry prepared for synchronization along with its database state. */
+    private static class SyncEntry {
+        private final LdapEntry   ldapEntry;
+        private final UserImpl    ldapUser;
+        private final ProfileImpl ldapProfile;
+        /** User identifier as it is stored in ldap, before normalization. */
+        private final String      ldapId;
+        private final String      linkingId;
+        /** Whether the user exists in the database, null if it is unknown. */
+        private final Boolean     exists;
+        private final long        fingerprint;
+
+        private User    dbUser;
+        private Profile dbProfile;
+
+        private SyncEntry(LdapEntry ldapEntry,
+                          UserImpl ldapUser,
+                          ProfileImpl ldapProfile,
+                          String ldapId,
+                          String linkingId,
+                          Boolean exists,
+                          long fingerprint) {
+            this.ldapEntry = ldapEntry;
+            this.ldapUser = ldapUser;
+            this.ldapProfile = ldapProfile;
+            this.ldapId = ldapId;
+            this.linkingId = linkingId;
+            this.exists = exists;
+            this.fingerprint = fingerprint;
         }
     }
 
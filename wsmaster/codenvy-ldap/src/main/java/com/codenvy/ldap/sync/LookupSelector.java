@@ -31,6 +31,7 @@ import java.time.Duration;
 import java.util.Arrays;
 import java.util.Iterator;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
 import static org.ldaptive.ResultCode.SUCCESS;
 
 /**
@@ -61,6 +62,18 @@ public class LookupSelector implements LdapEntrySelector {
 
     @Override
     public Iterable<LdapEntry> select(Connection connection) {
+        return select(connection, filter);
+    }
+
+    @Override
+    public Iterable<LdapEntry> selectChanged(Connection connection, String changesFilter) {
+        if (isNullOrEmpty(filter)) {
+            return select(connection, changesFilter);
+        }
+        return select(connection, "(&" + enclose(filter) + enclose(changesFilter) + ')');
+    }
+
+    private Iterable<LdapEntry> select(Connection connection, String filter) {
         final SearchRequest req = new SearchRequest();
         req.setBaseDn(baseDn);
         req.setSearchFilter(new SearchFilter(filter));
@@ -82,6 +95,11 @@ public class LookupSelector implements LdapEntrySelector {
                '}';
     }
 
+    /** Filters are allowed to be configured without enclosing parentheses, e.g. 'objectClass=person'. */
+    private static String enclose(String filter) {
+        return filter.startsWith("(") ? filter : '(' + filter + ')';
+    }
+
     private static class PagedIterable implements Iterable<LdapEntry> {
 
         private final SearchRequest      request;
@@ -14,51 +14,119 @@
  */
 package com.codenvy.ldap.sync;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.eclipse.che.commons.lang.concurrent.LoggingUncaughtExceptionHandler;
 import org.ldaptive.Connection;
+import org.ldaptive.ConnectionFactory;
+import org.ldaptive.LdapAttribute;
 import org.ldaptive.LdapEntry;
 import org.ldaptive.LdapException;
 import org.ldaptive.Response;
+import org.ldaptive.ReturnAttributes;
 import org.ldaptive.SearchFilter;
 import org.ldaptive.SearchOperation;
 import org.ldaptive.SearchRequest;
 import org.ldaptive.SearchResult;
 import org.ldaptive.ad.handler.ObjectGuidHandler;
-import org.ldaptive.ad.handler.RangeEntryHandler;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.String.format;
-import static java.util.stream.Collectors.toSet;
 import static org.ldaptive.ResultCode.SUCCESS;
 import static org.ldaptive.SearchScope.OBJECT;
 import static org.ldaptive.SearchScope.SUBTREE;
 
 /**
- * Queries all the group members and returns and
- * iterable requesting each of them when {@link Iterator#next()} is called.
+ * Queries all the group members and returns an iterable which
+ * resolves them in batches while {@link Iterator#next()} is called.
+ *
+ * <p>Groups members are read group by group, if the members attribute is too large
+ * to be returned at once (e.g. Active Directory returns <i>member;range=0-1499</i>)
+ * it is read range by range, so there is no need to keep all the members
+ * distinguished names in memory before resolving them. Each group member is
+ * returned only once per selection, even if it belongs to several groups,
+ * unless the selection has already returned more than {@value #MAX_REMEMBERED_MEMBERS}
+ * distinct members, after that repeated members may be returned again and the consumer must tolerate that.
+ *
+ * <p>Members are resolved by batches of {@code batchSize} entries, if the
+ * {@code concurrency} is greater than 1 then the batch is split between
+ * {@code concurrency} threads, each of them using its own connection
+ * from the given connection factory (which is expected to be pooled).
+ * The threads are shared by all the selections and terminate after
+ * being idle for a minute, so an abandoned selection doesn't leak them.
  *
  * @author Yevhenii Voevodin
  */
 public class MembershipSelector implements LdapEntrySelector {
 
-    private final String   baseDn;
-    private final String   groupsFilter;
-    private final String   usersFilter;
-    private final String   membersAttr;
-    private final String[] returnAttrs;
+    private static final String RANGE_OPTION           = ";range=";
+    private static final int    MAX_REMEMBERED_MEMBERS = 100_000;
+
+    private final String             baseDn;
+    private final String             groupsFilter;
+    private final String             usersFilter;
+    private final String             membersAttr;
+    private final String[]           returnAttrs;
+    private final ConnectionFactory  connFactory;
+    private final int                concurrency;
+    private final int                batchSize;
+    private final ThreadPoolExecutor executor;
 
     public MembershipSelector(String baseDn,
                               String groupsFilter,
                               String usersFilter,
                               String membersAttr,
                               String... returnAttrs) {
+        this(null, 1, 1, baseDn, groupsFilter, usersFilter, membersAttr, returnAttrs);
+    }
+
+    public MembershipSelector(ConnectionFactory connFactory,
+                              int concurrency,
+                              int batchSize,
+                              String baseDn,
+                              String groupsFilter,
+                              String usersFilter,
+                              String membersAttr,
+                              String... returnAttrs) {
+        if (concurrency > 1 && connFactory == null) {
+            throw new IllegalArgumentException("Connection factory is required for concurrent members resolution");
+        }
+        this.connFactory = connFactory;
+        this.concurrency = Math.max(1, concurrency);
+        this.batchSize = Math.max(1, batchSize);
         this.baseDn = baseDn;
         this.groupsFilter = groupsFilter;
         this.usersFilter = usersFilter;
         this.membersAttr = membersAttr;
         this.returnAttrs = returnAttrs;
+        if (this.concurrency > 1) {
+            this.executor = new ThreadPoolExecutor(this.concurrency,
+                                                   this.concurrency,
+                                                   1,
+                                                   TimeUnit.MINUTES,
+                                                   new LinkedBlockingQueue<>(),
+                                                   new ThreadFactoryBuilder().setNameFormat("MembershipSelector-%d")
+                                                                             .setUncaughtExceptionHandler(
+                                                                                     LoggingUncaughtExceptionHandler.getInstance())
+                                                                             .setDaemon(true)
+                                                                             .build());
+            this.executor.allowCoreThreadTimeOut(true);
+        } else {
+            this.executor = null;
+        }
     }
 
     @Override
@@ -67,26 +135,12 @@ public class MembershipSelector implements LdapEntrySelector {
         groupsSearch.setBaseDn(baseDn);
         groupsSearch.setSearchFilter(new SearchFilter(groupsFilter));
         groupsSearch.setSearchScope(SUBTREE);
-        groupsSearch.setReturnAttributes(membersAttr);
-        groupsSearch.setSearchEntryHandlers(new RangeEntryHandler());
-        try {
-            final Response<SearchResult> response = new SearchOperation(connection).execute(groupsSearch);
-            if (response.getResultCode() != SUCCESS) {
-                throw new SyncException("Couldn't get groups, result code is " + response.getResultCode());
-            }
-            return new RequestEachEntryIterable(response.getResult()
-                                                        .getEntries()
-                                                        .stream()
-                                                        .flatMap(entry -> entry.getAttribute(membersAttr)
-                                                                               .getStringValues()
-                                                                               .stream())
-                                                        .collect(toSet()),
-                                                connection,
-                                                usersFilter,
-                                                returnAttrs);
-        } catch (LdapException x) {
-            throw new SyncException(x.getLocalizedMessage(), x);
+        groupsSearch.setReturnAttributes(ReturnAttributes.NONE.value());
+        final List<String> groupDns = new ArrayList<>();
+        for (LdapEntry group : search(new SearchOperation(connection), groupsSearch, "Couldn't get groups").getEntries()) {
+            groupDns.add(group.getDn());
         }
+        return () -> new MembersIterator(new MemberDnsIterator(groupDns.iterator(), connection), connection);
     }
 
     @Override
@@ -97,72 +151,209 @@ public class MembershipSelector implements LdapEntrySelector {
                ", usersFilter='" + usersFilter + '\'' +
                ", membersAttr='" + membersAttr + '\'' +
                ", returnAttrs=" + Arrays.toString(returnAttrs) +
+               ", concurrency=" + concurrency +
+               ", batchSize=" + batchSize +
                '}';
     }
 
-    private static class RequestEachEntryIterable implements Iterable<LdapEntry> {
-        private final Set<String>  dns;
-        private final Connection   connection;
-        private final SearchFilter usersFilter;
-
-        private RequestEachEntryIterable(Set<String> dns,
-                                         Connection connection,
-                                         String usersFilter,
-                                         String[] returnAttrs) {
-            this.dns = dns;
-            this.connection = connection;
-            this.usersFilter = new SearchFilter(usersFilter);
-            this.returnAttrs = returnAttrs;
+    private static SearchResult search(SearchOperation searchOp, SearchRequest request, String errorMessage) {
+        try {
+            final Response<SearchResult> response = searchOp.execute(request);
+            if (response.getResultCode() != SUCCESS) {
+                throw new SyncException(format("%s, result code is '%s'", errorMessage, response.getResultCode()));
+            }
+            return response.getResult();
+        } catch (LdapException x) {
+            throw new SyncException(x.getLocalizedMessage(), x);
         }
+    }
 
-        private final String[] returnAttrs;
+    /** Resolves a single member, returns null if the member doesn't match users filter. */
+    private LdapEntry resolveMember(SearchOperation searchOp, String dn) {
+        final SearchRequest request = new SearchRequest();
+        request.setBaseDn(dn);
+        request.setSearchFilter(new SearchFilter(usersFilter));
+        request.setSearchScope(OBJECT);
+        request.setReturnAttributes(returnAttrs);
+        request.setSearchEntryHandlers(new ObjectGuidHandler());
+        return search(searchOp, request, format("Couldn't get entry dn '%s'", dn)).getEntry();
+    }
 
-        @Override
-        public Iterator<LdapEntry> iterator() {
-            return new RequestEachEntryIterator(dns.iterator(), connection, usersFilter, returnAttrs);
+    /** Resolves the batch of members using given connection. */
+    private List<LdapEntry> resolveMembers(Connection connection, List<String> dns) {
+        final SearchOperation searchOp = new SearchOperation(connection);
+        final List<LdapEntry> entries = new ArrayList<>(dns.size());
+        for (String dn : dns) {
+            final LdapEntry entry = resolveMember(searchOp, dn);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /** Resolves the batch of members using a new connection from the connection factory. */
+    private List<LdapEntry> resolveMembers(List<String> dns) throws LdapException {
+        try (Connection connection = connFactory.getConnection()) {
+            connection.open();
+            return resolveMembers(connection, dns);
         }
     }
 
-    private static class RequestEachEntryIterator implements Iterator<LdapEntry> {
+    /**
+     * Iterates over distinguished names of all the groups members,
+     * skipping those which were already returned while the number of them is bounded.
+     */
+    private class MemberDnsIterator implements Iterator<String> {
 
-        private final Iterator<String> dnsIterator;
-        private final SearchFilter     usersFilter;
-        private final String[]         returnAttrs;
+        private final Iterator<String> groupsIt;
         private final SearchOperation  searchOp;
+        private final Set<String>      seen;
 
-        private RequestEachEntryIterator(Iterator<String> dns,
-                                         Connection connection,
-                                         SearchFilter usersFilter,
-                                         String[] returnAttrs) {
-            this.dnsIterator = dns;
-            this.usersFilter = usersFilter;
-            this.returnAttrs = returnAttrs;
+        private String           groupDn;
+        private String           nextRangeAttr;
+        private Iterator<String> rangeIt;
+        private String           next;
+
+        private MemberDnsIterator(Iterator<String> groupsIt, Connection connection) {
+            this.groupsIt = groupsIt;
             this.searchOp = new SearchOperation(connection);
+            this.seen = new HashSet<>();
+            this.rangeIt = Collections.emptyIterator();
         }
 
         @Override
         public boolean hasNext() {
-            return dnsIterator.hasNext();
+            while (next == null) {
+                if (rangeIt.hasNext()) {
+                    final String dn = rangeIt.next();
+                    if (seen.size() < MAX_REMEMBERED_MEMBERS ? seen.add(dn) : !seen.contains(dn)) {
+                        next = dn;
+                    }
+                } else if (nextRangeAttr != null) {
+                    readRange(nextRangeAttr);
+                } else if (groupsIt.hasNext()) {
+                    groupDn = groupsIt.next();
+                    readRange(membersAttr);
+                } else {
+                    return false;
+                }
+            }
+            return true;
         }
 
         @Override
-        public LdapEntry next() {
-            final String dn = dnsIterator.next();
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final String dn = next;
+            next = null;
+            return dn;
+        }
+
+        /**
+         * Reads the values of the given members attribute of the current group.
+         * If the server returned only a range of values, then remembers
+         * the attribute name for reading the next range.
+         */
+        private void readRange(String attrName) {
             final SearchRequest request = new SearchRequest();
-            request.setBaseDn(dn);
-            request.setSearchFilter(usersFilter);
+            request.setBaseDn(groupDn);
+            request.setSearchFilter(new SearchFilter("(objectClass=*)"));
             request.setSearchScope(OBJECT);
-            request.setReturnAttributes(returnAttrs);
-            request.setSearchEntryHandlers(new ObjectGuidHandler());
+            request.setReturnAttributes(attrName);
+            final LdapEntry group = search(searchOp, request, format("Couldn't get members of group '%s'", groupDn)).getEntry();
+            nextRangeAttr = null;
+            rangeIt = Collections.emptyIterator();
+            if (group == null) {
+                return;
+            }
+            for (LdapAttribute attr : group.getAttributes()) {
+                final String name = attr.getName();
+                if (name.equalsIgnoreCase(membersAttr)) {
+                    rangeIt = attr.getStringValues().iterator();
+                    return;
+                }
+                final int rangeIdx = name.toLowerCase().indexOf(RANGE_OPTION);
+                if (rangeIdx != -1 && name.substring(0, rangeIdx).equalsIgnoreCase(membersAttr)) {
+                    rangeIt = attr.getStringValues().iterator();
+                    // e.g. member;range=0-1499, the last range ends with '*'
+                    final String rangeEnd = name.substring(name.indexOf('-', rangeIdx) + 1);
+                    if (!"*".equals(rangeEnd)) {
+                        nextRangeAttr = format("%s%s%d-*", membersAttr, RANGE_OPTION, Long.parseLong(rangeEnd) + 1);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Resolves members by batches of distinguished names. */
+    private class MembersIterator implements Iterator<LdapEntry> {
+
+        private final Iterator<String> dnsIt;
+        private final Connection       connection;
+
+        private Iterator<LdapEntry> batchIt;
+
+        private MembersIterator(Iterator<String> dnsIt, Connection connection) {
+            this.dnsIt = dnsIt;
+            this.connection = connection;
+            this.batchIt = Collections.emptyIterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!batchIt.hasNext()) {
+                if (!dnsIt.hasNext()) {
+                    return false;
+                }
+                final List<String> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && dnsIt.hasNext()) {
+                    batch.add(dnsIt.next());
+                }
+                batchIt = resolve(batch).iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public LdapEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batchIt.next();
+        }
+
+        private List<LdapEntry> resolve(List<String> batch) {
+            if (concurrency == 1 || batch.size() == 1) {
+                return resolveMembers(connection, batch);
+            }
+            final int partSize = (batch.size() + concurrency - 1) / concurrency;
+            final List<Future<List<LdapEntry>>> futures = new ArrayList<>(concurrency);
+            for (int from = 0; from < batch.size(); from += partSize) {
+                final List<String> part = batch.subList(from, Math.min(from + partSize, batch.size()));
+                futures.add(executor.submit(() -> resolveMembers(part)));
+            }
+            final List<LdapEntry> entries = new ArrayList<>(batch.size());
             try {
-                final Response<SearchResult> response = searchOp.execute(request);
-                if (response.getResultCode() != SUCCESS) {
-                    throw new SyncException(format("Couldn't get entry dn '%s', result code is '%s'", dn, response.getResultCode()));
+                for (Future<List<LdapEntry>> future : futures) {
+                    entries.addAll(future.get());
+                }
+            } catch (InterruptedException x) {
+                Thread.currentThread().interrupt();
+                futures.forEach(future -> future.cancel(true));
+                throw new SyncException("Members resolution was interrupted");
+            } catch (ExecutionException x) {
+                futures.forEach(future -> future.cancel(true));
+                final Throwable cause = x.getCause();
+                if (cause instanceof SyncException) {
+                    throw (SyncException)cause;
                 }
-                return response.getResult().getEntry();
-            } catch (LdapException x) {
-                throw new SyncException(x.getLocalizedMessage(), x);
+                throw new SyncException(cause.getLocalizedMessage(), cause);
             }
+            return entries;
         }
     }
 }
@@ -0,0 +1,123 @@
+/*
+ *  [2012] - [2016] Codenvy, S.A.
+ *  All Rights Reserved.
+ *
+ * NOTICE:  All information contained herein is, and remains
+ * the property of Codenvy S.A. and its suppliers,
+ * if any.  The intellectual and technical concepts contained
+ * herein are proprietary to Codenvy S.A.
+ * and its suppliers and may be covered by U.S. and Foreign Patents,
+ * patents in process, and are protected by trade secret or copyright law.
+ * Dissemination of this information or reproduction of this material
+ * is strictly forbidden unless prior written permission is obtained
+ * from Codenvy S.A..
+ */
+package com.codenvy.ldap.auth;
+
+import com.codenvy.ldap.LdapUserIdNormalizer;
+
+import org.eclipse.che.api.auth.AuthenticationException;
+import org.eclipse.che.api.core.notification.EventService;
+import org.eclipse.che.api.user.server.event.PostUserRemovedEvent;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.ldaptive.auth.AuthenticationRequest;
+import org.ldaptive.auth.AuthenticationResponse;
+import org.ldaptive.auth.Authenticator;
+import org.mockito.Mock;
+import org.mockito.testng.MockitoTestNGListener;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests {@link LdapAuthenticationHandler} authentications caching.
+ */
+@Listeners(MockitoTestNGListener.class)
+public class LdapAuthenticationHandlerTest {
+
+    @Mock
+    private Authenticator authenticator;
+
+    private EventService              eventService;
+    private LdapAuthenticationHandler handler;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        eventService = new EventService();
+        handler = new LdapAuthenticationHandler(authenticator, new LdapUserIdNormalizer("uid"), eventService, 60_000, 100);
+        handler.subscribe();
+
+        final AuthenticationResponse response = mock(AuthenticationResponse.class);
+        when(response.getResult()).thenReturn(true);
+        when(response.getLdapEntry()).thenReturn(new LdapEntry("uid=user123,dc=codenvy,dc=com", new LdapAttribute("uid", "user123")));
+        when(authenticator.authenticate(any(AuthenticationRequest.class))).thenReturn(response);
+    }
+
+    @Test
+    public void cachesSuccessfulAuthentication() throws Exception {
+        assertEquals(handler.authenticate("user", "password"), "user123");
+        assertEquals(handler.authenticate("user", "password"), "user123");
+
+        verify(authenticator).authenticate(any(AuthenticationRequest.class));
+        assertEquals(handler.cacheHitRate(), 0.5D);
+    }
+
+    @Test
+    public void authenticatesAgainstDirectoryWhenPasswordDiffersFromCachedOne() throws Exception {
+        handler.authenticate("user", "password");
+        handler.authenticate("user", "new-password");
+
+        verify(authenticator, times(2)).authenticate(any(AuthenticationRequest.class));
+    }
+
+    @Test
+    public void doesNotServePreviousPasswordOnceAnotherOneIsAccepted() throws Exception {
+        handler.authenticate("user", "password");
+        handler.authenticate("user", "new-password");
+        handler.authenticate("user", "password");
+
+        verify(authenticator, times(3)).authenticate(any(AuthenticationRequest.class));
+        assertEquals(handler.cacheSize(), 1);
+    }
+
+    @Test
+    public void invalidatesCachedAuthenticationWhenDirectoryRejectsIt() throws Exception {
+        handler.authenticate("user", "password");
+        final AuthenticationResponse failed = mock(AuthenticationResponse.class);
+        when(authenticator.authenticate(any(AuthenticationRequest.class))).thenReturn(failed);
+        try {
+            handler.authenticate("user", "wrong-password");
+        } catch (AuthenticationException ignored) {
+        }
+
+        assertEquals(handler.cacheSize(), 0);
+    }
+
+    @Test
+    public void invalidatesCachedAuthenticationWhenUserIsRemoved() throws Exception {
+        handler.authenticate("user", "password");
+
+        eventService.publish(new PostUserRemovedEvent("user123"));
+        handler.authenticate("user", "password");
+
+        verify(authenticator, times(2)).authenticate(any(AuthenticationRequest.class));
+    }
+
+    @Test
+    public void doesNotCacheAuthenticationsIfTimeToLiveIsNotPositive() throws Exception {
+        handler = new LdapAuthenticationHandler(authenticator, new LdapUserIdNormalizer("uid"), eventService, 0, 100);
+
+        handler.authenticate("user", "password");
+        handler.authenticate("user", "password");
+
+        verify(authenticator, times(2)).authenticate(any(AuthenticationRequest.class));
+    }
+}
@@ -20,6 +20,7 @@ import com.codenvy.ldap.EmbeddedLdapServer;
 import org.apache.directory.shared.ldap.entry.ServerEntry;
 import org.apache.directory.shared.ldap.exception.LdapInvalidAttributeValueException;
 import org.eclipse.che.api.auth.AuthenticationException;
+import org.eclipse.che.api.core.notification.EventService;
 import org.eclipse.che.commons.lang.NameGenerator;
 import org.eclipse.che.commons.lang.Pair;
 import org.ldaptive.auth.Authenticator;
@@ -71,7 +72,7 @@ public class LdapDirectBindTest {
                                           null,
                                           USER_FILTER,
                                           ALLOW_MULTIPLE_DNS, SUBTREE_SEARCH).get();
-        handler = new LdapAuthenticationHandler(authenticator, new LdapUserIdNormalizer("uid"));
+        handler = new LdapAuthenticationHandler(authenticator, new LdapUserIdNormalizer("uid"), new EventService(), 0, 0);
 
         // create a set of users
         users = new ArrayList<>();
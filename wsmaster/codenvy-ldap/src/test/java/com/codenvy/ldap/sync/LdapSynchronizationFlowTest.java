@@ -106,7 +106,8 @@ public class LdapSynchronizationFlowTest {
         // sync the second time
         syncResult = synchronizer.syncAll();
         assertEquals(syncResult.getCreated(), 1);
-        assertEquals(syncResult.getUpToDate(), 3);
+        assertEquals(syncResult.getUpToDate(), 0);
+        assertEquals(syncResult.getSkippedByFingerprint(), 3);
         assertEquals(syncResult.getUpdated(), 0);
         assertEquals(syncResult.getRemoved(), 0);
         assertEquals(syncResult.getFailed(), 0);
@@ -118,7 +119,8 @@ public class LdapSynchronizationFlowTest {
         // sync and check user is removed from database
         syncResult = synchronizer.syncAll();
         assertEquals(syncResult.getCreated(), 0);
-        assertEquals(syncResult.getUpToDate(), 3);
+        assertEquals(syncResult.getUpToDate(), 0);
+        assertEquals(syncResult.getSkippedByFingerprint(), 3);
         assertEquals(syncResult.getUpdated(), 0);
         assertEquals(syncResult.getRemoved(), 1);
         assertEquals(syncResult.getFailed(), 0);
@@ -130,7 +132,8 @@ public class LdapSynchronizationFlowTest {
         // sync and check user is updated
         syncResult = synchronizer.syncAll();
         assertEquals(syncResult.getCreated(), 0);
-        assertEquals(syncResult.getUpToDate(), 2);
+        assertEquals(syncResult.getUpToDate(), 0);
+        assertEquals(syncResult.getSkippedByFingerprint(), 2);
         assertEquals(syncResult.getUpdated(), 1);
         assertEquals(syncResult.getRemoved(), 0);
         assertEquals(syncResult.getFailed(), 0);
@@ -160,14 +163,14 @@ public class LdapSynchronizationFlowTest {
         SyncResult syncResult = synchronizer.syncAll();
         assertEquals(syncResult.getCreated(), 0);
         assertEquals(syncResult.getUpdated(), 0);
-        assertEquals(syncResult.getUpToDate(), 1);
+        assertEquals(syncResult.getSkippedByFingerprint(), 1);
         assertEquals(syncResult.getRemoved(), 1);
         assertEquals(syncResult.getFailed(), 1);
 
         // sync second time, and check that failed synchronization is resolved
         syncResult = synchronizer.syncAll();
         assertEquals(syncResult.getCreated(), 0);
-        assertEquals(syncResult.getUpToDate(), 1);
+        assertEquals(syncResult.getSkippedByFingerprint(), 1);
         assertEquals(syncResult.getUpdated(), 1);
         assertEquals(syncResult.getRemoved(), 0);
         assertEquals(syncResult.getFailed(), 0);
@@ -214,10 +217,15 @@ public class LdapSynchronizationFlowTest {
             bind(ConnectionFactory.class).toInstance(server.getConnectionFactory());
             bindConstant().annotatedWith(Names.named("ldap.sync.initial_delay_ms")).to(0L);
             bindConstant().annotatedWith(Names.named("ldap.sync.period_ms")).to(-1L);
+            bindConstant().annotatedWith(Names.named("ldap.sync.full_period_ms")).to(-1L);
+            bindConstant().annotatedWith(Names.named("ldap.sync.user.attr.modified")).to("modifyTimestamp");
+            bindConstant().annotatedWith(Names.named("ldap.sync.write.workers")).to(2);
+            bindConstant().annotatedWith(Names.named("ldap.sync.write.batch_size")).to(10);
             bindConstant().annotatedWith(Names.named("ldap.sync.user.attr.email")).to("mail");
             bindConstant().annotatedWith(Names.named("ldap.sync.user.attr.id")).to("uid");
             bindConstant().annotatedWith(Names.named("ldap.sync.user.attr.name")).to("cn");
             bindConstant().annotatedWith(Names.named("ldap.sync.page.size")).to(10);
+            bindConstant().annotatedWith(Names.named("ldap.sync.group.members.concurrency")).to(2);
             bindConstant().annotatedWith(Names.named("ldap.sync.page.read_timeout_ms")).to(30_000L);
             bindConstant().annotatedWith(Names.named("ldap.sync.remove_if_missing")).to(true);
             bindConstant().annotatedWith(Names.named("ldap.sync.update_if_exists")).to(true);
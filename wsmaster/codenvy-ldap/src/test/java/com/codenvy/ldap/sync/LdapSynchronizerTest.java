@@ -18,6 +18,8 @@ import com.codenvy.ldap.LdapUserIdNormalizer;
 import com.codenvy.ldap.sync.LdapSynchronizer.SyncResult;
 import com.google.common.collect.ImmutableMap;
 
+import org.eclipse.che.api.core.ConflictException;
+import org.eclipse.che.api.core.NotFoundException;
 import org.eclipse.che.api.core.model.user.User;
 import org.eclipse.che.api.user.server.model.impl.ProfileImpl;
 import org.eclipse.che.api.user.server.model.impl.UserImpl;
@@ -28,6 +30,7 @@ import org.ldaptive.Connection;
 import org.ldaptive.ConnectionFactory;
 import org.ldaptive.LdapAttribute;
 import org.ldaptive.LdapEntry;
+import org.mockito.ArgumentMatcher;
 import org.mockito.Mock;
 import org.mockito.testng.MockitoTestNGListener;
 import org.testng.annotations.BeforeMethod;
@@ -35,20 +38,31 @@ import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
 import javax.persistence.EntityManager;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toMap;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.matches;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
 
 /**
  * Tests {@link LdapSynchronizer}.
@@ -102,6 +116,10 @@ public class LdapSynchronizerTest {
                                             new Pair[] {Pair.of("firstName", "givenName")},
                                             true,
                                             true,
+                                            -1,
+                                            "modifyTimestamp",
+                                            2,
+                                            2,
                                             userFinder);
 
         // mocking existing ids
@@ -192,6 +210,18 @@ public class LdapSynchronizerTest {
         verify(profileDao, never()).update(anyObject());
     }
 
+    @Test
+    public void synchronizesUserSelectedSeveralTimesOnce() throws Exception {
+        // e.g. the user is a member of several groups
+        when(entrySelector.select(anyObject())).thenReturn(asList(createUserEntry("user123"), createUserEntry("user123")));
+
+        final SyncResult syncResult = synchronizer.syncAll();
+
+        assertEquals(syncResult.getCreated(), 1);
+        assertEquals(syncResult.getFailed(), 0);
+        verify(userDao).create(anyObject());
+    }
+
     @Test
     public void updatesUsersWhoChangedInLdap() throws Exception {
         final Map<String, LdapEntry> users = new HashMap<>();
@@ -226,6 +256,136 @@ public class LdapSynchronizerTest {
         verify(profileDao, times(2)).update(anyObject());
     }
 
+    @Test
+    @SuppressWarnings("unchecked") // mocking bulk lookups
+    public void fetchesExistingUsersAndProfilesInBulk() throws Exception {
+        final Map<String, LdapEntry> users = new HashMap<>();
+        users.put("user123", createUserEntry("user123"));
+        users.put("user234", createUserEntry("user234"));
+        users.put("user345", createUserEntry("user345"));
+        when(entrySelector.select(anyObject())).thenReturn(users.values());
+        existingIds.addAll(users.keySet());
+
+        final UserMapper mapper = new UserMapper("uid", "cn", "mail");
+        when(userFinder.findAll(any())).thenAnswer(inv -> {
+            final Collection<String> ids = (Collection<String>)inv.getArguments()[0];
+            return ids.stream()
+                      .map(users::get)
+                      .map(mapper)
+                      .collect(toMap(User::getId, user -> user));
+        });
+        when(userFinder.findProfiles(any())).thenAnswer(inv -> {
+            final Collection<String> ids = (Collection<String>)inv.getArguments()[0];
+            return ids.stream()
+                      .collect(toMap(id -> id, id -> new ProfileImpl(id, ImmutableMap.of("firstName", "new-firstName-" + id))));
+        });
+
+        final SyncResult syncResult = synchronizer.syncAll();
+
+        assertEquals(syncResult.getProcessed(), 3);
+        assertEquals(syncResult.getUpdated(), 3);
+        assertEquals(syncResult.getFailed(), 0);
+        verify(profileDao, times(3)).update(anyObject());
+        verify(userFinder, never()).findOne(any());
+        verify(profileDao, never()).getById(any());
+    }
+
+    @Test
+    public void skipsExistingUsersWhoseEntriesDidNotChangeSincePreviousSynchronization() throws Exception {
+        synchronizer = createSynchronizerWithFullSyncPeriod(TimeUnit.HOURS.toMillis(1));
+        final Map<String, LdapEntry> users = new HashMap<>();
+        users.put("user123", createUserEntry("user123"));
+        users.put("user234", createUserEntry("user234"));
+        mockExistingUsers(users);
+
+        final SyncResult fullResult = synchronizer.syncAll();
+        users.put("user234", createUserEntry("user234", "name-user234", "emailuser234", "new-firstName"));
+        when(entrySelector.selectChanged(anyObject(), anyString())).thenReturn(users.values());
+        final SyncResult incrementalResult = synchronizer.syncAll();
+
+        assertTrue(fullResult.isFull());
+        assertEquals(fullResult.getUpdated(), 2);
+        assertEquals(fullResult.getSkippedByFingerprint(), 0);
+        assertFalse(incrementalResult.isFull());
+        assertEquals(incrementalResult.getProcessed(), 2);
+        assertEquals(incrementalResult.getSkippedByFingerprint(), 1);
+        assertEquals(incrementalResult.getUpdated(), 1);
+        verify(profileDao, times(3)).update(anyObject());
+    }
+
+    @Test
+    public void writesNothingWhenFullSynchronizationIsRepeatedWithoutChangesInLdap() throws Exception {
+        final Map<String, LdapEntry> users = new HashMap<>();
+        users.put("user123", createUserEntry("user123"));
+        users.put("user234", createUserEntry("user234"));
+        mockExistingUsers(users);
+
+        final SyncResult firstResult = synchronizer.syncAll();
+        existingIds.addAll(users.keySet());
+        final SyncResult secondResult = synchronizer.syncAll();
+
+        assertEquals(firstResult.getUpdated(), 2);
+        assertTrue(secondResult.isFull());
+        assertEquals(secondResult.getProcessed(), 2);
+        assertEquals(secondResult.getSkippedByFingerprint(), 2);
+        assertEquals(secondResult.getUpdated(), 0);
+        verify(userFinder).findAll(any());
+        verify(profileDao, times(2)).update(anyObject());
+        verify(userDao, never()).update(anyObject());
+        verify(userDao, never()).create(anyObject());
+    }
+
+    @Test
+    public void recreatesRemovedUserWhoseEntryDidNotChangeSincePreviousSynchronization() throws Exception {
+        synchronizer = createSynchronizerWithFullSyncPeriod(TimeUnit.HOURS.toMillis(1));
+        final LdapEntry entry = createUserEntry("user123");
+        when(entrySelector.select(anyObject())).thenReturn(singletonList(entry));
+        when(entrySelector.selectChanged(anyObject(), anyString())).thenReturn(singletonList(entry));
+
+        final SyncResult fullResult = synchronizer.syncAll();
+        synchronizer.dropFingerprint(new UserImpl("user123", "emailuser123", "name-user123"));
+        final SyncResult incrementalResult = synchronizer.syncAll();
+
+        assertEquals(fullResult.getCreated(), 1);
+        assertFalse(incrementalResult.isFull());
+        assertEquals(incrementalResult.getSkippedByFingerprint(), 0);
+        assertEquals(incrementalResult.getCreated(), 1);
+        verify(userDao, times(2)).create(anyObject());
+    }
+
+    @Test
+    public void fingerprintDependsOnUserAndProfileAttributes() {
+        final UserImpl user = new UserImpl("id", "email", "name");
+        final long fingerprint = LdapSynchronizer.fingerprint(user, new ProfileImpl("id", ImmutableMap.of("firstName", "first")));
+
+        assertEquals(LdapSynchronizer.fingerprint(new UserImpl("id", "email", "name"), new ProfileImpl("id", ImmutableMap.of("firstName", "first"))),
+                     fingerprint);
+        assertNotEquals(LdapSynchronizer.fingerprint(new UserImpl("id", "email2", "name"),
+                                                     new ProfileImpl("id", ImmutableMap.of("firstName", "first"))),
+                        fingerprint);
+        assertNotEquals(LdapSynchronizer.fingerprint(user, new ProfileImpl("id", ImmutableMap.of("firstName", "second"))),
+                        fingerprint);
+    }
+
+    @Test
+    public void synchronizesEntriesOneByOneIfBatchWriteFails() throws Exception {
+        when(entrySelector.select(anyObject())).thenReturn(asList(createUserEntry("user123"),
+                                                                  createUserEntry("user234")));
+        doThrow(new ConflictException("conflict")).when(userDao).create(argThat(new ArgumentMatcher<UserImpl>() {
+            @Override
+            public boolean matches(Object argument) {
+                return ((UserImpl)argument).getId().equals("user123");
+            }
+        }));
+
+        final SyncResult syncResult = synchronizer.syncAll();
+
+        assertEquals(syncResult.getProcessed(), 2);
+        assertEquals(syncResult.getCreated(), 1);
+        assertEquals(syncResult.getFailed(), 1);
+        verify(profileDao).create(anyObject());
+    }
+
     @Test
     public void skipsUsersIfTheyAlreadyExistAndUpdateIfExistsAttributeIsSetToFalse() throws Exception {
         synchronizer = new LdapSynchronizer(connFactory,
@@ -242,6 +402,10 @@ public class LdapSynchronizerTest {
                                             null,
                                             false, // <- don't update
                                             true,
+                                            -1,
+                                            "modifyTimestamp",
+                                            2,
+                                            2,
                                             userFinder);
         when(entrySelector.select(anyObject())).thenReturn(asList(createUserEntry("user123"),
                                                                   createUserEntry("user234")));
@@ -259,6 +423,148 @@ public class LdapSynchronizerTest {
         assertEquals(syncResult.getSkipped(), 2);
     }
 
+    @Test
+    public void synchronizesOnlyChangedEntriesInBetweenOfFullSynchronizations() throws Exception {
+        synchronizer = new LdapSynchronizer(connFactory,
+                                            entrySelector,
+                                            userDao,
+                                            profileDao,
+                                            idNormalizer,
+                                            null,
+                                            0,
+                                            0,
+                                            "uid",
+                                            "cn",
+                                            "mail",
+                                            null,
+                                            true,
+                                            true,
+                                            TimeUnit.HOURS.toMillis(1),
+                                            "modifyTimestamp",
+                                            2,
+                                            2,
+                                            userFinder);
+        when(entrySelector.select(anyObject())).thenReturn(singletonList(createUserEntry("user123")));
+        existingIds.add("missed-in-selection");
+        when(userFinder.findOne("missed-in-selection")).thenReturn(new UserImpl("missed-in-selection", "email", "name"));
+
+        final SyncResult fullResult = synchronizer.syncAll();
+
+        assertTrue(fullResult.isFull());
+        assertEquals(fullResult.getRemoved(), 1);
+
+        when(entrySelector.selectChanged(anyObject(), anyString())).thenReturn(singletonList(createUserEntry("user234")));
+        when(userFinder.findOne("user234")).thenThrow(new NotFoundException("not found"));
+
+        final SyncResult incrementalResult = synchronizer.syncAll();
+
+        assertFalse(incrementalResult.isFull());
+        assertEquals(incrementalResult.getProcessed(), 1);
+        assertEquals(incrementalResult.getCreated(), 1);
+        assertEquals(incrementalResult.getRemoved(), 0);
+        verify(userFinder).findLinkingIds();
+        verify(entrySelector).select(anyObject());
+        verify(entrySelector).selectChanged(anyObject(), matches("\\(modifyTimestamp>=\\d{14}Z\\)"));
+    }
+
+    @Test
+    public void advancesTheLastSynchronizationStartWhenSomeUsersFailedToSynchronize() throws Exception {
+        synchronizer = createSynchronizerWithFullSyncPeriod(TimeUnit.HOURS.toMillis(1));
+        when(entrySelector.select(anyObject())).thenReturn(singletonList(createUserEntry("user123")));
+        final SyncResult fullResult = synchronizer.syncAll();
+        assertEquals(synchronizer.getLastSyncStart(), fullResult.getStart());
+
+        final LdapEntry invalidEntry = new LdapEntry("uid=user234,dc=codenvy,dc=com");
+        invalidEntry.addAttribute(new LdapAttribute("uid", "user234"));
+        when(entrySelector.selectChanged(anyObject(), anyString())).thenReturn(singletonList(invalidEntry));
+
+        final SyncResult incrementalResult = synchronizer.syncAll();
+
+        assertFalse(incrementalResult.isFull());
+        assertEquals(incrementalResult.getFailed(), 1);
+        assertEquals(synchronizer.getLastSyncStart(), incrementalResult.getStart());
+    }
+
+    @Test
+    public void selectsUserWhichKeepsFailingByIdentifierWhileSynchronizationsStayIncremental() throws Exception {
+        synchronizer = createSynchronizerWithFullSyncPeriod(TimeUnit.HOURS.toMillis(1));
+        when(entrySelector.select(anyObject())).thenReturn(asList(createUserEntry("user123"), createUserEntry("user234")));
+        when(entrySelector.selectChanged(anyObject(), anyString())).thenReturn(singletonList(createUserEntry("user234")));
+        doThrow(new ConflictException("conflict")).when(userDao).create(argThat(new ArgumentMatcher<UserImpl>() {
+            @Override
+            public boolean matches(Object argument) {
+                return ((UserImpl)argument).getId().equals("user234");
+            }
+        }));
+
+        final SyncResult fullResult = synchronizer.syncAll();
+        final SyncResult secondResult = synchronizer.syncAll();
+        final SyncResult thirdResult = synchronizer.syncAll();
+
+        assertTrue(fullResult.isFull());
+        assertEquals(fullResult.getFailed(), 1);
+        assertFalse(secondResult.isFull());
+        assertEquals(secondResult.getFailed(), 1);
+        assertFalse(thirdResult.isFull());
+        assertEquals(thirdResult.getFailed(), 1);
+        assertEquals(synchronizer.getLastSyncStart(), thirdResult.getStart());
+        verify(entrySelector, times(2)).selectChanged(anyObject(),
+                                                      matches("\\(\\|\\(modifyTimestamp>=\\d{14}Z\\)\\(uid=user234\\)\\)"));
+    }
+
+    @Test
+    public void performsFullSynchronizationEachTimeIfFullSynchronizationPeriodIsNotPositive() throws Exception {
+        when(entrySelector.select(anyObject())).thenReturn(singletonList(createUserEntry("user123")));
+
+        assertTrue(synchronizer.syncAll().isFull());
+        assertTrue(synchronizer.syncAll().isFull());
+        verify(entrySelector, never()).selectChanged(anyObject(), anyString());
+    }
+
+    @SuppressWarnings("unchecked") // mocking bulk lookups
+    private void mockExistingUsers(Map<String, LdapEntry> users) throws Exception {
+        when(entrySelector.select(anyObject())).thenAnswer(inv -> users.values());
+        existingIds.addAll(users.keySet());
+        final UserMapper mapper = new UserMapper("uid", "cn", "mail");
+        when(userFinder.findOne(any())).thenAnswer(inv -> mapper.apply(users.get(inv.getArguments()[0].toString())));
+        when(userFinder.findAll(any())).thenAnswer(inv -> {
+            final Collection<String> ids = (Collection<String>)inv.getArguments()[0];
+            return ids.stream()
+                      .filter(users::containsKey)
+                      .map(users::get)
+                      .map(mapper)
+                      .collect(toMap(User::getId, user -> user));
+        });
+        when(profileDao.getById(any())).thenAnswer(inv -> new ProfileImpl(inv.getArguments()[0].toString()));
+        when(userFinder.findProfiles(any())).thenAnswer(inv -> {
+            final Collection<String> ids = (Collection<String>)inv.getArguments()[0];
+            return ids.stream().collect(toMap(id -> id, id -> new ProfileImpl(id)));
+        });
+    }
+
+    @SuppressWarnings("unchecked") // synchronizer generic array of string pairs
+    private LdapSynchronizer createSynchronizerWithFullSyncPeriod(long fullSyncPeriodMs) {
+        return new LdapSynchronizer(connFactory,
+                                    entrySelector,
+                                    userDao,
+                                    profileDao,
+                                    idNormalizer,
+                                    null,
+                                    0,
+                                    0,
+                                    "uid",
+                                    "cn",
+                                    "mail",
+                                    new Pair[] {Pair.of("firstName", "givenName")},
+                                    true,
+                                    true,
+                                    fullSyncPeriodMs,
+                                    "modifyTimestamp",
+                                    2,
+                                    2,
+                                    userFinder);
+    }
+
     private static LdapEntry createUserEntry(String id) {
         return createUserEntry(id, "name-" + id, "email" + id, "firstName-" + id);
     }
@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.stream.StreamSupport;
 
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
@@ -97,4 +98,51 @@ public class MembershipSelectorTest {
             }
         }
     }
+
+    @Test
+    public void testConcurrentMembershipSelection() throws Exception {
+        final MembershipSelector selector =
+                new MembershipSelector(connFactory,
+                                       3,
+                                       7,
+                                       server.getBaseDn(),
+                                       "(objectClass=groupOfNames)",
+                                       "(objectClass=inetOrgPerson)",
+                                       "member",
+                                       "uid",
+                                       "givenName");
+        try (Connection conn = connFactory.getConnection()) {
+            conn.open();
+            final List<LdapEntry> selection = StreamSupport.stream(selector.select(conn).spliterator(), false)
+                                                           .collect(toList());
+            // odd users are members of both groups but returned once
+            assertEquals(selection.size(), 200);
+            assertEquals(selection.stream().map(LdapEntry::getDn).collect(toSet()).size(), 200);
+            for (LdapEntry entry : selection) {
+                assertNotNull(entry.getAttribute("givenName"));
+                assertNotNull(entry.getAttribute("uid"));
+            }
+        }
+    }
+
+    @Test
+    public void skipsMembersWhichDoNotMatchUsersFilter() throws Exception {
+        final MembershipSelector selector =
+                new MembershipSelector(connFactory,
+                                       2,
+                                       10,
+                                       server.getBaseDn(),
+                                       "(objectClass=groupOfNames)",
+                                       "(givenName=gn-10*)",
+                                       "member",
+                                       "uid",
+                                       "givenName");
+        try (Connection conn = connFactory.getConnection()) {
+            conn.open();
+            final Set<LdapEntry> selection = StreamSupport.stream(selector.select(conn).spliterator(), false)
+                                                          .collect(toSet());
+            // gn-100 ... gn-109
+            assertEquals(selection.size(), 10);
+        }
+    }
 }
@@ -30,8 +30,17 @@ import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 /**
  * Tests {@link DBUserFinder}.
@@ -70,6 +79,25 @@ public class UserFinderTest {
         assertEquals(finder.findOne("id"), user);
     }
 
+    @Test(dataProvider = "extractsIdsProvider")
+    public void findsAllUsersByLinkingIds(BiFunction<UserDao, DBHelper, DBUserFinder> provider,
+                                          Function<UserImpl, String> idExtractor) {
+        final DBUserFinder finder = provider.apply(userDao, dbHelper);
+        final UserImpl user = new UserImpl("id", "email", "name");
+        when(dbHelper.executeQuery(anyString(), eq(UserImpl.class), anyString(), any())).thenReturn(singletonList(user));
+
+        assertEquals(finder.findAll(singletonList(idExtractor.apply(user))), singletonMap(idExtractor.apply(user), user));
+    }
+
+    @Test(dataProvider = "extractsIdsProvider")
+    public void doesNotQueryDatabaseWhenNoLinkingIdsSpecified(BiFunction<UserDao, DBHelper, DBUserFinder> provider,
+                                                              Function<UserImpl, String> ignored) {
+        final DBUserFinder finder = provider.apply(userDao, dbHelper);
+
+        assertTrue(finder.findAll(emptyList()).isEmpty());
+        verify(dbHelper, never()).executeQuery(anyString(), any(), anyString(), any());
+    }
+
     @Test(dataProvider = "extractsIdsProvider")
     public void extractsIds(BiFunction<UserDao, DBHelper, DBUserFinder> provider, Function<UserImpl, String> idExtractor) {
         final DBUserFinder finder = provider.apply(userDao, dbHelper);